@@ -1,5 +1,7 @@
 package swp;
 
+import swp.parser.lr.LRAlgorithm;
+
 import java.io.*;
 import java.util.*;
 
@@ -11,14 +13,19 @@ public class Config {
 	public static final String configFile = "config.ini";
 
 	private static final Map<String, String> config = new HashMap<String, String>(){{
-		put("useLALR", "yes");
 		put("tmpDir", "/tmp");
 		put("cacheInFile", "yes");
+		put("eliminateUnitReductions", "no");
+		put("optimizeGrammar", "no");
+		put("lrAlgorithm", "LALR");
+		put("compactLexerTables", "no");
+		put("hashKeywords", "no");
+		put("lazyLexerTables", "no");
 	}};
 
-	/** Use LARL instead of LR? */
-	public static boolean useLALR(){
-		return config.get("useLALR").equals("yes");
+	/** Algorithm that builds the LR automata of grammars that don't set their own (SLR, LALR, LR1 or PAGER) */
+	public static LRAlgorithm lrAlgorithm(){
+		return LRAlgorithm.valueOf(config.get("lrAlgorithm"));
 	}
 
 	public static String getTmpDir(){
@@ -29,9 +36,37 @@ public class Config {
 		return config.get("cacheInFile").equals("yes");
 	}
 
+	/** Remove the reductions of unit productions without actions from the LR parser tables? */
+	public static boolean eliminateUnitReductions(){
+		return config.get("eliminateUnitReductions").equals("yes");
+	}
+
+	/** Optimize the grammar before building the LR parser table? (@see swp.grammar.GrammarOptimizer) */
+	public static boolean optimizeGrammar(){
+		return config.get("optimizeGrammar").equals("yes");
+	}
+
+	/** Encode the lexer tables with default transitions and row displacement? (@see swp.lexer.automata.CompactTable) */
+	public static boolean compactLexerTables(){
+		return config.get("compactLexerTables").equals("yes");
+	}
+
+	/** Find keywords with a perfect hash table instead of lexer automaton states? (@see swp.lexer.automata.KeywordTable) */
+	public static boolean hashKeywords(){
+		return config.get("hashKeywords").equals("yes");
+	}
+
+	/** Determinize the lexer automata while lexing? (@see swp.lexer.automata.LazyTable) */
+	public static boolean lazyLexerTables(){
+		return config.get("lazyLexerTables").equals("yes");
+	}
+
 	private static void loadConfig(){
 		try {
 			boolean rewriteConfigFile = false;
+			// value of the legacy key useLALR, null if the config file doesn't contain it
+			String useLALR = null;
+			boolean hasLRAlgorithm = false;
 			File file = new File(configFile);
 			if (file.exists()){
 				Set<String> keys = config.keySet();
@@ -43,13 +78,29 @@ public class Config {
 						if (config.containsKey(parts[0])){
 							keys.remove(parts[0]);
 							config.put(parts[0], parts[1]);
+							hasLRAlgorithm = hasLRAlgorithm || parts[0].equals("lrAlgorithm");
+						} else if (parts[0].equals("useLALR")){
+							// replaced by lrAlgorithm, the rewritten config file doesn't contain it
+							useLALR = parts[1];
+							rewriteConfigFile = true;
 						} else {
 							System.err.println("Unknown config key \"" + parts[0] + "\"");
 						}
 					}
 				}
-				rewriteConfigFile = !keys.isEmpty();
+				rewriteConfigFile = rewriteConfigFile || !keys.isEmpty();
 				reader.close();
+				if (useLALR != null && !hasLRAlgorithm){
+					config.put("lrAlgorithm", useLALR.equals("no") ? LRAlgorithm.LR1.name() : LRAlgorithm.LALR.name());
+				}
+				try {
+					LRAlgorithm.valueOf(config.get("lrAlgorithm"));
+				} catch (IllegalArgumentException ex){
+					System.err.println(String.format("Unknown LR algorithm \"%s\" for config key lrAlgorithm, " +
+							"expected one of %s, using LALR", config.get("lrAlgorithm"), Arrays.toString(LRAlgorithm.values())));
+					config.put("lrAlgorithm", LRAlgorithm.LALR.name());
+					rewriteConfigFile = true;
+				}
 			} else {
 				rewriteConfigFile = true;
 			}
@@ -5,7 +5,6 @@ import swp.grammar.GrammarBuilder;
 import swp.grammar.random.SentenceGenerator;
 import swp.lexer.alphabet.AlphabetTerminals;
 import swp.parser.lr.DiffGraph;
-import swp.parser.lr.Graph;
 
 public class Main {
 
@@ -41,9 +40,7 @@ public class Main {
 	    System.out.println(gen.generateRandomSentence());
 	  //  new DiffGraph(g2, "/tmp/lalr").createPNGs().createMP4(1);
 
-	    Graph.isLALR = false;
-
-	   // new DiffGraph(g2, "/tmp/lr").createMP4(1);
+	   // new DiffGraph(g2, LRAlgorithm.LR1, "/tmp/lr").createMP4(1);
 
 	    //new SimpleCalculator4();
 	    /*
@@ -55,11 +52,10 @@ public class Main {
 	    System.out.println(llParser.parse());*/
 	    /*GrammarBuilder builder = new GrammarBuilder(new AlphabetTerminals());
 	    builder.add("start", "id", "4").add("id", '3');
-	    Graph.isLALR = true;
 	    Grammar g = builder.toGrammar("start");
 	    System.out.println(g.longDescription());
 	    System.out.println("First_1 set = " + g.calculateFirst1Set());
-	    Graph graph = Graph.createFromGrammar(g);
+	    Graph graph = Graph.createFromGrammar(g, LRAlgorithm.LALR);
 	    System.out.println(graph);
 	    graph.toImage("test", "svg");
 	    LRParserTable table = graph.toExtParserTable();
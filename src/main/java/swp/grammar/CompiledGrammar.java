@@ -0,0 +1,344 @@
+package swp.grammar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Frozen, integer interned form of a grammar that is used by the table generators.
+ *
+ * Every non terminal and production has a dense index, terminals are identified by their id (token type).
+ * Right hand side symbols are encoded as ints: terminal ids are ≥ 0, non terminals are stored as
+ * the bitwise complement (<code>~index</code>) of their index (see encodeNonTerminal).
+ *
+ * Create it via Grammar.compile(), it doesn't reflect later modifications of the grammar.
+ */
+public class CompiledGrammar {
+
+	public final Grammar grammar;
+
+	/**
+	 * [non terminal index] => non terminal, sorted by id
+	 */
+	public final NonTerminal[] nonTerminals;
+
+	/**
+	 * [non terminal id] => non terminal index, -1 for unused ids
+	 */
+	public final int[] nonTerminalIndexes;
+
+	/**
+	 * [terminal id] => terminal, null for ids that aren't used in the grammar
+	 */
+	public final Terminal[] terminals;
+
+	/**
+	 * [production index] => production, in the order of the grammar
+	 */
+	public final Production[] productions;
+
+	/**
+	 * [production id] => production index, -1 for unused ids
+	 */
+	public final int[] productionIndexes;
+
+	/**
+	 * [production index] => non terminal index of the left hand side
+	 */
+	public final int[] lefts;
+
+	/**
+	 * [production index] => encoded right hand side symbols (empty for epsilon productions)
+	 */
+	public final int[][] rights;
+
+	/**
+	 * [non terminal index] => indexes of its productions
+	 */
+	public final int[][] productionsOf;
+
+	public final int start;
+
+	/**
+	 * [non terminal index] => can it derive epsilon?
+	 */
+	public final boolean[] nullable;
+
+	/**
+	 * [non terminal index] => first 1 set (terminal ids)
+	 */
+	public final BitSet[] first;
+
+	/**
+	 * [non terminal index] => follow 1 set (terminal ids)
+	 */
+	public final BitSet[] follow;
+
+	/**
+	 * [production index][position] => first 1 set of the right hand side behind the position,
+	 * the bit terminals.length is set if the rest of the right hand side is nullable
+	 */
+	private final BitSet[][] suffixFirst;
+
+	/**
+	 * [production index] => index of the LR(0) item in front of its right hand side, the item at position p
+	 * has the index itemOffsets[production] + p
+	 */
+	public final int[] itemOffsets;
+
+	/**
+	 * Number of LR(0) items
+	 */
+	public final int itemCount;
+
+	CompiledGrammar(Grammar grammar){
+		this.grammar = grammar;
+		List<Production> productionList = new ArrayList<>(grammar.getProductions());
+		Set<NonTerminal> usedNonTerminals = new TreeSet<>((n1, n2) -> Integer.compare(n1.id, n2.id));
+		usedNonTerminals.add(grammar.getStart());
+		int maxTerminalId = grammar.eof.id;
+		int maxProductionId = 0;
+		for (Production production : productionList){
+			usedNonTerminals.add(production.left);
+			maxProductionId = Math.max(maxProductionId, production.id);
+			for (Symbol symbol : production.right){
+				if (symbol instanceof NonTerminal){
+					usedNonTerminals.add((NonTerminal)symbol);
+				} else if (symbol instanceof Terminal){
+					maxTerminalId = Math.max(maxTerminalId, ((Terminal) symbol).id);
+				}
+			}
+		}
+		nonTerminals = usedNonTerminals.toArray(new NonTerminal[0]);
+		nonTerminalIndexes = new int[nonTerminals[nonTerminals.length - 1].id + 1];
+		Arrays.fill(nonTerminalIndexes, -1);
+		for (int i = 0; i < nonTerminals.length; i++){
+			nonTerminalIndexes[nonTerminals[i].id] = i;
+		}
+		start = nonTerminalIndexes[grammar.getStart().id];
+		terminals = new Terminal[maxTerminalId + 1];
+		terminals[grammar.eof.id] = grammar.eof;
+		productions = productionList.toArray(new Production[0]);
+		productionIndexes = new int[maxProductionId + 1];
+		Arrays.fill(productionIndexes, -1);
+		lefts = new int[productions.length];
+		rights = new int[productions.length][];
+		int[] productionCounts = new int[nonTerminals.length];
+		for (int i = 0; i < productions.length; i++){
+			Production production = productions[i];
+			productionIndexes[production.id] = i;
+			lefts[i] = nonTerminalIndexes[production.left.id];
+			productionCounts[lefts[i]]++;
+			int[] right = new int[production.rightSize()];
+			for (int j = 0; j < right.length; j++){
+				Symbol symbol = production.right.get(j);
+				if (symbol instanceof Terminal){
+					terminals[((Terminal) symbol).id] = (Terminal)symbol;
+					right[j] = ((Terminal) symbol).id;
+				} else {
+					right[j] = encodeNonTerminal(nonTerminalIndexes[((NonTerminal) symbol).id]);
+				}
+			}
+			rights[i] = right;
+		}
+		productionsOf = new int[nonTerminals.length][];
+		for (int i = 0; i < nonTerminals.length; i++){
+			productionsOf[i] = new int[productionCounts[i]];
+			productionCounts[i] = 0;
+		}
+		for (int i = 0; i < productions.length; i++){
+			productionsOf[lefts[i]][productionCounts[lefts[i]]++] = i;
+		}
+		nullable = calculateNullable();
+		first = calculateFirst();
+		follow = calculateFollow();
+		suffixFirst = new BitSet[productions.length][];
+		for (int i = 0; i < productions.length; i++){
+			suffixFirst[i] = calculateSuffixFirst(rights[i]);
+		}
+		itemOffsets = new int[productions.length];
+		int items = 0;
+		for (int i = 0; i < productions.length; i++){
+			itemOffsets[i] = items;
+			items += rights[i].length + 1;
+		}
+		itemCount = items;
+	}
+
+	private boolean[] calculateNullable(){
+		boolean[] nullable = new boolean[nonTerminals.length];
+		boolean somethingChanged;
+		do {
+			somethingChanged = false;
+			for (int i = 0; i < productions.length; i++){
+				if (!nullable[lefts[i]] && isNullable(rights[i], 0, nullable)){
+					nullable[lefts[i]] = true;
+					somethingChanged = true;
+				}
+			}
+		} while (somethingChanged);
+		return nullable;
+	}
+
+	private static boolean isNullable(int[] right, int position, boolean[] nullable){
+		for (int i = position; i < right.length; i++){
+			if (isTerminal(right[i]) || !nullable[~right[i]]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private BitSet[] calculateFirst(){
+		BitSet[] first = new BitSet[nonTerminals.length];
+		for (int i = 0; i < first.length; i++){
+			first[i] = new BitSet();
+		}
+		boolean somethingChanged;
+		do {
+			somethingChanged = false;
+			for (int i = 0; i < productions.length; i++){
+				BitSet set = first[lefts[i]];
+				int oldSize = set.cardinality();
+				for (int symbol : rights[i]){
+					if (isTerminal(symbol)){
+						set.set(symbol);
+						break;
+					}
+					set.or(first[~symbol]);
+					if (!nullable[~symbol]){
+						break;
+					}
+				}
+				somethingChanged |= set.cardinality() != oldSize;
+			}
+		} while (somethingChanged);
+		return first;
+	}
+
+	private BitSet[] calculateFollow(){
+		BitSet[] follow = new BitSet[nonTerminals.length];
+		for (int i = 0; i < follow.length; i++){
+			follow[i] = new BitSet();
+		}
+		follow[start].set(grammar.eof.id);
+		boolean somethingChanged;
+		do {
+			somethingChanged = false;
+			for (int i = 0; i < productions.length; i++){
+				BitSet trailer = (BitSet)follow[lefts[i]].clone();
+				int[] right = rights[i];
+				for (int j = right.length - 1; j >= 0; j--){
+					int symbol = right[j];
+					if (isTerminal(symbol)){
+						trailer.clear();
+						trailer.set(symbol);
+						continue;
+					}
+					int index = ~symbol;
+					int oldSize = follow[index].cardinality();
+					follow[index].or(trailer);
+					somethingChanged |= follow[index].cardinality() != oldSize;
+					if (!nullable[index]){
+						trailer.clear();
+					}
+					trailer.or(first[index]);
+				}
+			}
+		} while (somethingChanged);
+		return follow;
+	}
+
+	private BitSet[] calculateSuffixFirst(int[] right){
+		BitSet[] sets = new BitSet[right.length + 1];
+		sets[right.length] = new BitSet();
+		sets[right.length].set(terminals.length);
+		for (int j = right.length - 1; j >= 0; j--){
+			BitSet set = new BitSet();
+			if (isTerminal(right[j])){
+				set.set(right[j]);
+			} else {
+				set.or(first[~right[j]]);
+				if (nullable[~right[j]]){
+					set.or(sets[j + 1]);
+				}
+			}
+			sets[j] = set;
+		}
+		return sets;
+	}
+
+	public static boolean isTerminal(int symbol){
+		return symbol >= 0;
+	}
+
+	public static int encodeNonTerminal(int index){
+		return ~index;
+	}
+
+	/**
+	 * Returns the index of the passed non terminal, -1 if it isn't part of the grammar
+	 */
+	public int indexOf(NonTerminal nonTerminal){
+		return nonTerminal.id < nonTerminalIndexes.length ? nonTerminalIndexes[nonTerminal.id] : -1;
+	}
+
+	/**
+	 * Returns the index of the passed production, -1 if it isn't part of the grammar
+	 */
+	public int indexOf(Production production){
+		return production.id < productionIndexes.length ? productionIndexes[production.id] : -1;
+	}
+
+	/**
+	 * Returns the dense index of the LR(0) item of the production (index) at the passed position
+	 */
+	public int itemIndex(int production, int position){
+		return itemOffsets[production] + Math.min(position, rights[production].length);
+	}
+
+	/**
+	 * Is the right hand side of the production behind the passed position nullable?
+	 */
+	public boolean isSuffixNullable(int production, int position){
+		return suffixFirst[production][Math.min(position, rights[production].length)].get(terminals.length);
+	}
+
+	/**
+	 * Calculate the first 1 set of the right hand side of the production behind the passed position, followed
+	 * by the passed terminals.
+	 *
+	 * @param production production index
+	 * @return ids of the terminals in the set (a new bit set)
+	 */
+	public BitSet firstOfSuffix(int production, int position, Collection<Terminal> suffix){
+		BitSet set = (BitSet)suffixFirst[production][Math.min(position, rights[production].length)].clone();
+		if (set.get(terminals.length)){
+			set.clear(terminals.length);
+			for (Terminal terminal : suffix){
+				set.set(terminal.id);
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * Calculate the first 1 set of the right hand side of the production behind the passed position, followed
+	 * by the follow set of its left hand side.
+	 *
+	 * @param production production index
+	 * @return ids of the terminals in the set (a new bit set)
+	 */
+	public BitSet firstFollowOfSuffix(int production, int position){
+		BitSet set = (BitSet)suffixFirst[production][Math.min(position, rights[production].length)].clone();
+		if (set.get(terminals.length)){
+			set.clear(terminals.length);
+			set.or(follow[lefts[production]]);
+		}
+		return set;
+	}
+}
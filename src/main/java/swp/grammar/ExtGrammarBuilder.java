@@ -17,6 +17,7 @@ import swp.lexer.automata.LexerDescriptionParser;
 import swp.lexer.automata.Table;
 import swp.parser.lr.BaseAST;
 import swp.parser.lr.Graph;
+import swp.parser.lr.LRAlgorithm;
 import swp.parser.lr.LRParser;
 import swp.parser.lr.LRParserTable;
 import swp.parser.lr.ListAST;
@@ -33,41 +34,99 @@ import swp.util.SerializableFunction;
  * WS          = [\s]+       # ignored
  * COMMENT     = \#[^\\n]*   # ignored
  *
- * statement   = expression | EOF
- * expression  = expr*
- * expr        = term \* | term \? | term \+ | term
+ * statement   = expression | definition+ | EOF
+ * definition  = ID \= expression \;
+ * expression  = expr \| expression | expr
+ * expr        = expr expression | term \* | term \? | term \+ | term
  * term        = ID | TOKEN_ID | \( expression \)
  * </pre>
+ *
+ * In a single rule (addRule) a sequence binds the alternatives behind it, "a b | c" means "a (b | c)".
+ * The definitions passed to addRules use the BNF meaning, "a b | c" are the alternatives "a b" and "c".
+ *
+ * Equal sub expressions that need a helper non terminal (like two occurrences of (COMMA expr)*)
+ * share the same helper non terminal.
  */
 public class ExtGrammarBuilder extends GrammarBuilder implements Serializable {
 
-	private LRParserTable basicParserTable = null;
-	private static Table lexerTable;
+	private LRAlgorithm[] lrAlgorithms = null;
+
+	/**
+	 * Lexer, grammar and parser table for rule descriptions, they are created once per JVM and shared by all
+	 * builders (token names are resolved by the builder that the rule belongs to, @see TokenNode)
+	 */
+	private static class Bootstrap {
+
+		static final Table lexerTable = new LexerDescriptionParser().eval("TOKEN_ID = [A-Z]([A-Z0-9_]*)\n" +
+				"ID = [a-z]([a-z0-9_]*)\n" +
+				"L_BRACE = \\(\n R_BRACE = \\)\n" +
+				"OR = \\|; PLUS = \\+; STAR = \\*; WS = [\\s]+; COMMENT = \\#([^\\n]*); MAYBE = \\?\n" +
+				"DEFINE = \\=\n SEMICOLON = \\;");
+
+		static final Grammar grammar = createBasicGrammar();
+
+		static final LRParserTable parserTable = Graph.createFromGrammar(grammar, LRAlgorithm.LALR).toParserTable();
+	}
 
 	public ExtGrammarBuilder(TerminalSet alphabet) {
 		super(alphabet);
-		initParser();
 	}
 
-	private void initParser(){
-		if (lexerTable == null) {
-			LexerDescriptionParser lexerBuilder = new LexerDescriptionParser();
-			String lexerGrammar = "TOKEN_ID = [A-Z]([A-Z0-9_]*)\n" +
-					"ID = [a-z]([a-z0-9_]*)\n" +
-					"L_BRACE = \\(\n R_BRACE = \\)\n" +
-					"OR = \\|; PLUS = \\+; STAR = \\*; WS = [\\s]+; COMMENT = \\#([^\\n]*); MAYBE = \\?";
-			lexerTable = lexerBuilder.eval(lexerGrammar);
+	/**
+	 * Sets the algorithms that the Generator tries to build the LR automaton of this grammar with, it uses the
+	 * first one whose parser table has no conflicts (@see Graph#createWithoutConflicts)
+	 *
+	 * @return self
+	 */
+	public ExtGrammarBuilder lrAlgorithm(LRAlgorithm... algorithms){
+		if (algorithms.length == 0){
+			throw new SWPException("At least one LR algorithm is required");
 		}
-		GrammarBuilder b = new GrammarBuilder(lexerTable.terminalSet);
+		lrAlgorithms = algorithms;
+		return this;
+	}
+
+	/**
+	 * Returns the algorithms set via lrAlgorithm, null if none have been set
+	 */
+	public LRAlgorithm[] getLRAlgorithms(){
+		return lrAlgorithms;
+	}
+
+	private static Grammar createBasicGrammar(){
+		GrammarBuilder b = new GrammarBuilder(Bootstrap.lexerTable.terminalSet);
 		b.add("statement",  b.orWithActions(
 				new Pair<Object[], SerializableFunction<ListAST, BaseAST>>(b.combine("expression", "EOF"),
 						list -> list.get(0)
 				),
+				new Pair<Object[], SerializableFunction<ListAST, BaseAST>>(b.combine("definitions", "EOF"),
+						list -> list.get(0)
+				),
 				new Pair<Object[], SerializableFunction<ListAST, BaseAST>>(b.combine(""),
 						list -> new ASTNode()
 				)
 		));
 
+		b.add("definitions", b.orWithActions(
+				new Pair<Object[], SerializableFunction<ListAST, BaseAST>>(b.combine("definitions", "definition"),
+						list -> {
+							DefinitionsNode definitions = (DefinitionsNode) list.get(0);
+							definitions.definitions.add((DefinitionNode) list.get(1));
+							return definitions;
+						}
+				),
+				new Pair<Object[], SerializableFunction<ListAST, BaseAST>>(b.combine("definition"),
+						list -> {
+							DefinitionsNode definitions = new DefinitionsNode();
+							definitions.definitions.add((DefinitionNode) list.get(0));
+							return definitions;
+						}
+				)
+		));
+
+		b.add("definition", b.combine("ID", "DEFINE", "expression", "SEMICOLON"))
+				.action(list -> new DefinitionNode(list.get(0).getMatchedString(), (ASTNode) list.get(2)));
+
 		b.add("expression", b.orWithActions(
 				new Pair<Object[], SerializableFunction<ListAST, BaseAST>>(b.combine("expr", "OR", "expression"),
 						list -> new OrNode((ASTNode) list.get(0), (ASTNode) list.get(2))
@@ -100,26 +159,21 @@ public class ExtGrammarBuilder extends GrammarBuilder implements Serializable {
 						list -> new IDNode(list.getMatchedString())
 				),
 				new Pair<Object[], SerializableFunction<ListAST, BaseAST>>(b.combine("TOKEN_ID"),
-						list -> {
-							String tokenName = list.getMatchedString();
-							if (!alphabet.isValidTypeName(tokenName)){
-								throw new SWPException(String.format("No such token %s in grammar description",
-										tokenName));
-							}
-							return new TokenNode(alphabet.stringToType(tokenName));
-						}
+						list -> new TokenNode(list.getMatchedString())
 				),
 				new Pair<Object[], SerializableFunction<ListAST, BaseAST>>(
 						b.combine("L_BRACE", "expression", "R_BRACE"),
-						list -> list.get(1)
+						list -> {
+							ASTNode node = (ASTNode) list.get(1);
+							node.parenthesized = true;
+							return node;
+						}
 				)
 		));
-		Graph.isLALR = true;
-		Grammar grammar = b.toGrammar("statement");
-		basicParserTable = Graph.createFromGrammar(grammar).toParserTable();
 		//Utils.repl(input -> createLexer(input));
 		//new DiffGraph(grammar, "/tmp/test_").createMP4(1);
 		//Utils.parserRepl(s -> addRule("A", s));
+		return b.toGrammar("statement");
 	}
 
 	/**
@@ -134,8 +188,12 @@ public class ExtGrammarBuilder extends GrammarBuilder implements Serializable {
 		Lexer lex = createLexer(rule);
 		//Utils.repl(this::createLexer);
 		try {
-			LRParser parser = new LRParser(basicParserTable.grammar, lex, basicParserTable);
-			Object[] rhs = ((ASTNode) parser.parse()).toObjectArr(this);
+			LRParser parser = new LRParser(Bootstrap.grammar, lex, Bootstrap.parserTable);
+			BaseAST ast = parser.parse();
+			if (ast instanceof DefinitionsNode){
+				throw new SWPException("Unexpected definition in rule, use addRules to add several definitions");
+			}
+			Object[] rhs = ((ASTNode) ast).toObjectArr(this);
 			add(nonTerminal, rhs);
 		} catch (Exception ex){
 			System.err.println(String.format("Error at rule %s → %s", nonTerminal, rule));
@@ -144,10 +202,93 @@ public class ExtGrammarBuilder extends GrammarBuilder implements Serializable {
 		return this;
 	}
 
+	/**
+	 * Add the rules of a grammar description in one pass, without actions.
+	 *
+	 * The description consists of definitions of the form "nonTerminal = rule;". Unlike in addRule,
+	 * the top level | separates whole sequences (like in BNF), every alternative becomes a separate production.
+	 * Inside of parentheses | keeps the meaning that it has in addRule:
+	 *
+	 * <pre>
+	 * call = ID L_PAREN args? R_PAREN;
+	 * args = expr (COMMA expr)*;
+	 * expr = expr PLUS term | term;
+	 * term = ID | call;
+	 * </pre>
+	 *
+	 * @param grammar grammar description
+	 * @return self
+	 */
+	public ExtGrammarBuilder addRules(String grammar){
+		Lexer lex = createLexer(grammar);
+		BaseAST ast = new LRParser(Bootstrap.grammar, lex, Bootstrap.parserTable).parse();
+		if (!(ast instanceof DefinitionsNode)){
+			if (ast.getClass() == ASTNode.class){
+				return this;
+			}
+			throw new SWPException("Expected rule definitions of the form \"nonTerminal = rule;\"");
+		}
+		for (DefinitionNode definition : ((DefinitionsNode) ast).definitions){
+			addAlternatives(definition.nonTerminal, definition.rule);
+		}
+		return this;
+	}
+
+	/**
+	 * Add several rules (pairs of left and right hand side) in one pass, without actions
+	 *
+	 * @param rules rules (@see ExtGrammarBuilder class comment for a format description of the right hand sides)
+	 * @return self
+	 */
+	public ExtGrammarBuilder addRules(List<Pair<String, String>> rules){
+		StringBuilder builder = new StringBuilder();
+		for (Pair<String, String> rule : rules){
+			// the line break ends a possible comment in the rule
+			builder.append(rule.first).append(" = ").append(rule.second).append("\n;\n");
+		}
+		return addRules(builder.toString());
+	}
+
+	private void addAlternatives(String nonTerminal, ASTNode rule){
+		List<List<ASTNode>> alternatives = new ArrayList<>();
+		alternatives.add(new ArrayList<>());
+		splitAlternatives(rule, alternatives);
+		for (List<ASTNode> sequence : alternatives){
+			Object[][] parts = new Object[sequence.size()][];
+			for (int i = 0; i < parts.length; i++){
+				parts[i] = sequence.get(i).toObjectArr(this);
+			}
+			add(nonTerminal, parts.length == 1 ? parts[0] : combine((Object[]) parts));
+		}
+	}
+
+	/**
+	 * Splits the rule at its top level | (the ones outside of parentheses) into sequences,
+	 * the nodes are appended in the order of the rule description
+	 *
+	 * @param alternatives the sequences found so far, the last one is extended
+	 */
+	private static void splitAlternatives(ASTNode rule, List<List<ASTNode>> alternatives){
+		if (!rule.parenthesized && rule instanceof BinaryASTNode){
+			splitAlternatives(((BinaryASTNode) rule).left, alternatives);
+			if (rule instanceof OrNode){
+				alternatives.add(new ArrayList<>());
+			}
+			splitAlternatives(((BinaryASTNode) rule).right, alternatives);
+		} else {
+			alternatives.get(alternatives.size() - 1).add(rule);
+		}
+	}
+
 	public ExtGrammarBuilder addEitherRule(String nonTerminal, String... subNonTerminals){
 		//System.out.println(nonTerminal + " → " + rule);
 		for (String rule : subNonTerminals){
-			addRule(nonTerminal, rule).action(asts -> asts.get(0));
+			addRule(nonTerminal, rule);
+			// unit productions without an action return the AST of their symbol anyway,
+			// only they can be removed from the parser table (@see LRParserTable#eliminateUnitReductions)
+			if (!isLastProductionUnit()){
+				action(asts -> asts.get(0));
+			}
 		}
 		return this;
 	}
@@ -189,7 +330,10 @@ public class ExtGrammarBuilder extends GrammarBuilder implements Serializable {
 
 	/**
 	 * Simplifies the operator precedence grammar construction.
-	 * The first declared layer has the lowest precedence
+	 * The first declared layer has the lowest precedence.
+	 *
+	 * By default every layer gets its own non terminal. In flat mode (@see flat()) all operators use
+	 * the start non terminal and the layers are declared as precedences (@see Precedence).
 	 */
 	public static class Operators implements Serializable {
 
@@ -256,6 +400,7 @@ public class ExtGrammarBuilder extends GrammarBuilder implements Serializable {
 		private Stack<Layer> layers = new Stack<>();
 		private SerializableBiFunction<ListAST, Integer, BaseAST> defaultBinaryAction = null;
 		private SerializableBiFunction<ListAST, Integer, BaseAST> defaultUnaryAction = null;
+		private boolean flat = false;
 
 		public Operators(String startNonTerminal, String endNonTerminal, TerminalSet terminalSet){
 			this.startNonTerminal = startNonTerminal;
@@ -488,6 +633,24 @@ public class ExtGrammarBuilder extends GrammarBuilder implements Serializable {
 			return this;
 		}
 
+		/**
+		 * Use a single non terminal for all operators instead of a non terminal per precedence layer.
+		 * The layers are declared as precedences of the operator terminals and productions, that resolve
+		 * the conflicts in the LR parser table. This saves the chain of unit reductions through all
+		 * layers for every operand.
+		 *
+		 * In custom rules "$current" and "$next" are both replaced by the start non terminal. They get the
+		 * precedence of their layer, they are left associative if they start with "$current" (like in the
+		 * layered grammar) and right associative otherwise. Their terminals that don't have a precedence
+		 * get the same.
+		 *
+		 * @return self
+		 */
+		public Operators flat(){
+			this.flat = true;
+			return this;
+		}
+
 		private void addNewLayer(){
 			layers.add(new Layer(null, null));
 		}
@@ -500,6 +663,10 @@ public class ExtGrammarBuilder extends GrammarBuilder implements Serializable {
 		}
 
 		private void accept(ExtGrammarBuilder builder) {
+			if (flat){
+				acceptFlat(builder);
+				return;
+			}
 			builder.addRule(startNonTerminal, nonTerminalForLayer(0));
 			for (int layerId = 0; layerId < layers.size(); layerId++) {
 				String layerNonTerminal = nonTerminalForLayer(layerId);
@@ -568,6 +735,50 @@ public class ExtGrammarBuilder extends GrammarBuilder implements Serializable {
 					op.action);
 		}
 
+		private void acceptFlat(ExtGrammarBuilder builder){
+			for (Layer layer : layers) {
+				int level = builder.newPrecedenceLevel();
+				for (OperatorInfo operatorInfo : layer.ops) {
+					if (operatorInfo instanceof StandardOperatorInfo){
+						acceptFlat(builder, (StandardOperatorInfo)operatorInfo, level, layer);
+					} else {
+						CustomOperatorInfo op = (CustomOperatorInfo)operatorInfo;
+						Precedence precedence = new Precedence(level, op.rule.trim().startsWith("$current") ?
+								Precedence.Associativity.LEFT : Precedence.Associativity.RIGHT);
+						accept(builder, op, startNonTerminal, startNonTerminal, layer);
+						builder.rulePrecedence(precedence);
+						for (String part : op.rule.split("[^A-Za-z0-9_]+")){
+							if (builder.alphabet.isValidTypeName(part)
+									&& builder.getPrecedence(builder.alphabet.stringToType(part)) == null){
+								builder.precedence(builder.alphabet.stringToType(part), precedence);
+							}
+						}
+					}
+				}
+			}
+			builder.addRule(startNonTerminal, endNonTerminal);
+		}
+
+		private void acceptFlat(ExtGrammarBuilder builder, StandardOperatorInfo op, int level, Layer layer){
+			if (op.isBinary){
+				Precedence precedence = new Precedence(level, op.associativity == LEFT_OR_RIGHT.LEFT ?
+						Precedence.Associativity.LEFT : Precedence.Associativity.RIGHT);
+				accept(builder, op, startNonTerminal, startNonTerminal, layer);
+				builder.rulePrecedence(precedence);
+				builder.precedence(op.terminal, precedence);
+			} else {
+				// a prefix operator can't be shifted after an operand, therefore its terminal doesn't need
+				// a precedence (it might be a binary operator too)
+				Precedence precedence = new Precedence(level, op.associativity == LEFT_OR_RIGHT.LEFT ?
+						Precedence.Associativity.RIGHT : Precedence.Associativity.LEFT);
+				accept(builder, op, startNonTerminal, startNonTerminal, layer);
+				builder.rulePrecedence(precedence);
+				if (op.associativity == LEFT_OR_RIGHT.RIGHT && builder.getPrecedence(op.terminal) == null){
+					builder.precedence(op.terminal, precedence);
+				}
+			}
+		}
+
 		private String nonTerminalForLayer(int layerId){
 			return startNonTerminal + "__p" + precedenceForLayer(layerId);
 		}
@@ -591,7 +802,7 @@ public class ExtGrammarBuilder extends GrammarBuilder implements Serializable {
 	}
 
 	private Lexer createLexer(String input){
-		return new AutomatonLexer(lexerTable, input, new int[]{}, new String[]{"COMMENT", "WS"});
+		return new AutomatonLexer(Bootstrap.lexerTable, input, new int[]{}, new String[]{"COMMENT", "WS"});
 	}
 
 	private RulesForNonTerminal create(String nonTerminal){
@@ -621,6 +832,11 @@ public class ExtGrammarBuilder extends GrammarBuilder implements Serializable {
 
 	public static class ASTNode extends BaseAST {
 
+		/**
+		 * Is the node enclosed in parentheses in the rule description?
+		 */
+		boolean parenthesized = false;
+
 		public Object[] toObjectArr(GrammarBuilder builder){
 			return new Object[]{""};
 		}
@@ -705,15 +921,38 @@ public class ExtGrammarBuilder extends GrammarBuilder implements Serializable {
 	}
 
 	public static class TokenNode extends ASTNode {
-		public final int tokenID;
+		public final String tokenName;
 
-		public TokenNode(int tokenID){
-			this.tokenID = tokenID;
+		public TokenNode(String tokenName){
+			this.tokenName = tokenName;
 		}
 
+		/**
+		 * Resolves the token name with the alphabet of the passed builder
+		 */
 		@Override
 		public Object[] toObjectArr(GrammarBuilder builder) {
-			return builder.combine(tokenID);
+			if (!builder.alphabet.isValidTypeName(tokenName)){
+				throw new SWPException(String.format("No such token %s in grammar description", tokenName));
+			}
+			return builder.combine(builder.alphabet.stringToType(tokenName));
 		}
 	}
+
+	/**
+	 * Definition "nonTerminal = rule;" of a grammar description
+	 */
+	public static class DefinitionNode extends ASTNode {
+		public final String nonTerminal;
+		public final ASTNode rule;
+
+		public DefinitionNode(String nonTerminal, ASTNode rule) {
+			this.nonTerminal = nonTerminal;
+			this.rule = rule;
+		}
+	}
+
+	public static class DefinitionsNode extends ASTNode {
+		public final List<DefinitionNode> definitions = new ArrayList<>();
+	}
 }
@@ -2,6 +2,7 @@ package swp.grammar;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -55,8 +56,25 @@ public class Grammar implements Serializable {
 	private Map<NonTerminal, Set<Terminal>> follow1Sets;
 	private Set<NonTerminal> epsilonableNonTerminals;
 
+	/**
+	 * Integer interned form of this grammar, see compile()
+	 */
+	private transient CompiledGrammar compiled;
+
+	private transient Map<NonTerminal, List<Production>> productionsPerNonTerminal;
+
 	protected Map<Integer, SerializableFunction<ListAST, BaseAST>> reduceActions = new HashMap<>();
 
+	/**
+	 * Terminal id => declared precedence
+	 */
+	private Map<Integer, Precedence> terminalPrecedences = new HashMap<>();
+
+	/**
+	 * Production id => explicitly set precedence
+	 */
+	private Map<Integer, Precedence> productionPrecedences = new HashMap<>();
+
 	/**
 	 * Create a new Grammar object
 	 *
@@ -80,13 +98,17 @@ public class Grammar implements Serializable {
 	}
 
 	public List<Production> getProductionOfNonTerminal(NonTerminal nonTerminal) {
-		List<Production> productions = new ArrayList<>();
-		for (Production production : this.productions) {
-			if (production.left == nonTerminal) {
-				productions.add(production);
+		if (productionsPerNonTerminal == null){
+			Map<NonTerminal, List<Production>> map = new HashMap<>();
+			for (Production production : this.productions) {
+				if (!map.containsKey(production.left)){
+					map.put(production.left, new ArrayList<>());
+				}
+				map.get(production.left).add(production);
 			}
+			productionsPerNonTerminal = map;
 		}
-		return productions;
+		return Collections.unmodifiableList(productionsPerNonTerminal.getOrDefault(nonTerminal, Collections.emptyList()));
 	}
 
 	/**
@@ -199,6 +221,66 @@ public class Grammar implements Serializable {
 		reduceActions.put(productionId, action);
 	}
 
+	/**
+	 * Returns the reduce action of the production with the passed id or null if it has none
+	 */
+	SerializableFunction<ListAST, BaseAST> getReduceAction(int productionId){
+		return reduceActions.get(productionId);
+	}
+
+	/**
+	 * Has the production with the passed id a reduce action? Productions without a reduce action and with
+	 * a single right hand side symbol just return the AST of this symbol.
+	 */
+	public boolean hasReduceAction(int productionId){
+		return reduceActions.containsKey(productionId);
+	}
+
+	protected void setPrecedences(Map<Integer, Precedence> terminalPrecedences,
+	                              Map<Integer, Precedence> productionPrecedences){
+		this.terminalPrecedences = new HashMap<>(terminalPrecedences);
+		this.productionPrecedences = new HashMap<>(productionPrecedences);
+	}
+
+	Map<Integer, Precedence> getTerminalPrecedences(){
+		return terminalPrecedences;
+	}
+
+	/**
+	 * Returns the explicitly set precedences (production id => precedence)
+	 */
+	Map<Integer, Precedence> getProductionPrecedences(){
+		return productionPrecedences;
+	}
+
+	public boolean hasPrecedences(){
+		return !terminalPrecedences.isEmpty() || !productionPrecedences.isEmpty();
+	}
+
+	/**
+	 * Returns the precedence of the terminal with the passed id or null if it has none
+	 */
+	public Precedence getPrecedence(int terminal){
+		return terminalPrecedences.get(terminal);
+	}
+
+	/**
+	 * Returns the precedence of the passed production: the explicitly set one or the precedence of its
+	 * last terminal that has a precedence (null if there's no such terminal)
+	 */
+	public Precedence getPrecedence(Production production){
+		if (productionPrecedences.containsKey(production.id)){
+			return productionPrecedences.get(production.id);
+		}
+		for (int i = production.right.size() - 1; i >= 0; i--){
+			Symbol symbol = production.right.get(i);
+			if (symbol instanceof Terminal && terminalPrecedences.containsKey(((Terminal) symbol).id)){
+				return terminalPrecedences.get(((Terminal) symbol).id);
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Reduce the passed production with the passed expression asts
 	 *
@@ -216,16 +298,23 @@ public class Grammar implements Serializable {
 				}
 			}
 			return new ListAST(flattenedASTs);*/
-			if (asts.size() != 1) {
-				return new ListAST(asts);
-			} else {
-				return asts.get(0);
-			}
+			return reduceWithoutAction(asts);
 		} else {
 			return reduceActions.get(productionId).apply(new ListAST(asts));
 		}
 	}
 
+	/**
+	 * Result of the reduction of a production without an action
+	 */
+	static BaseAST reduceWithoutAction(List<BaseAST> asts){
+		if (asts.size() != 1) {
+			return new ListAST(asts);
+		} else {
+			return asts.get(0);
+		}
+	}
+
 	/**
 	 * Calculate the non terminals that can produce an epsilon.
 	 */
@@ -337,6 +426,46 @@ public class Grammar implements Serializable {
 		return firstSets;
 	}
 
+	/**
+	 * Returns the frozen, integer interned form of this grammar with its nullable, first 1 and follow 1 sets.
+	 * It's created only once per grammar.
+	 */
+	public CompiledGrammar compile(){
+		if (compiled == null){
+			compiled = new CompiledGrammar(this);
+		}
+		return compiled;
+	}
+
+	/**
+	 * Calculate the first 1 set of the right hand side of the production behind the passed position, followed
+	 * by the passed terminals. Uses the compiled grammar.
+	 *
+	 * @return ids of the terminals in the set
+	 */
+	public BitSet calculateFirst1SetForSuffix(Production production, int position, Collection<Terminal> suffix){
+		return compile().firstOfSuffix(compile().indexOf(production), position, suffix);
+	}
+
+	/**
+	 * Calculate the follow 1 set of the passed non terminal as a bit set of terminal ids (cached)
+	 */
+	public BitSet calculateFollow1BitSet(NonTerminal nonTerminal){
+		int index = compile().indexOf(nonTerminal);
+		return index != -1 ? compiled.follow[index] : new BitSet();
+	}
+
+	/**
+	 * Returns the terminal of this grammar with the passed id
+	 */
+	public Terminal getTerminalForId(int id){
+		Terminal[] terminals = compile().terminals;
+		if (id < terminals.length && terminals[id] != null){
+			return terminals[id];
+		}
+		return new Terminal(id, alphabet);
+	}
+
 	public List<Terminal> calculateFirst1SetForTerm(List<Symbol> term, Collection<Terminal> suffix){
 		Set<TerminalOrEpsilon> set = calculateFirst1SetForTerm(term);
 		if (isTermEpsilonable(term)){
@@ -677,8 +806,102 @@ public class Grammar implements Serializable {
 		return sets.get(nonTerminal);
 	}
 
+	/**
+	 * Calculate the first k set for all non terminals: the terminal sequences of length k that a non terminal
+	 * can start with (or shorter sequences, if the derivation ends before).
+	 */
+	public Map<NonTerminal, Set<List<Terminal>>> calculateFirstKSet(int k){
+		Map<NonTerminal, Set<List<Terminal>>> first = new HashMap<>();
+		for (NonTerminal nonTerminal : nonTerminals){
+			first.put(nonTerminal, new HashSet<>());
+		}
+		boolean firstChanged;
+		do {
+			firstChanged = false;
+			for (Production production : productions){
+				if (first.get(production.left).addAll(calculateFirstKSetForTerm(k, production.right, first))){
+					firstChanged = true;
+				}
+			}
+		} while (firstChanged);
+		return first;
+	}
+
+	/**
+	 * Calculate the first k set of a list of symbols
+	 *
+	 * @param first first k sets of the non terminals
+	 */
+	public Set<List<Terminal>> calculateFirstKSetForTerm(int k, List<Symbol> term, Map<NonTerminal, Set<List<Terminal>>> first){
+		Set<List<Terminal>> set = new HashSet<>();
+		set.add(new ArrayList<>());
+		for (Symbol symbol : term){
+			if (symbol instanceof NonTerminal){
+				set = concatenateK(k, set, first.get(symbol));
+			} else if (symbol instanceof Terminal){
+				set = concatenateK(k, set, Collections.singleton(Collections.singletonList((Terminal)symbol)));
+			}
+		}
+		return set;
+	}
+
+	/**
+	 * Calculate the follow k set for all non terminals: the terminal sequences of length k that can follow a non
+	 * terminal (or shorter sequences, if the input ends before).
+	 */
+	public Map<NonTerminal, Set<List<Terminal>>> calculateFollowKSet(int k, Map<NonTerminal, Set<List<Terminal>>> first){
+		Map<NonTerminal, Set<List<Terminal>>> follow = new HashMap<>();
+		for (NonTerminal nonTerminal : nonTerminals){
+			follow.put(nonTerminal, new HashSet<>());
+		}
+		follow.get(start).add(new ArrayList<>());
+		boolean followChanged;
+		do {
+			followChanged = false;
+			for (Production production : productions){
+				for (int i = 0; i < production.right.size(); i++){
+					Symbol symbol = production.right.get(i);
+					if (symbol instanceof NonTerminal){
+						Set<List<Terminal>> rest = calculateFirstKSetForTerm(k, production.right.subList(i + 1, production.right.size()), first);
+						if (follow.get(symbol).addAll(concatenateK(k, rest, follow.get(production.left)))){
+							followChanged = true;
+						}
+					}
+				}
+			}
+		} while (followChanged);
+		return follow;
+	}
+
+	/**
+	 * Concatenates every sequence of the first set with every sequence of the second set
+	 * and cuts the results after k terminals
+	 */
+	public static Set<List<Terminal>> concatenateK(int k, Set<List<Terminal>> first, Set<List<Terminal>> second){
+		Set<List<Terminal>> result = new HashSet<>();
+		for (List<Terminal> prefix : first){
+			if (prefix.size() >= k){
+				result.add(prefix);
+				continue;
+			}
+			for (List<Terminal> suffix : second){
+				List<Terminal> sequence = new ArrayList<>(prefix);
+				for (int i = 0; i < suffix.size() && sequence.size() < k; i++){
+					sequence.add(suffix.get(i));
+				}
+				result.add(sequence);
+			}
+		}
+		return result;
+	}
+
 	public Set<Terminal> calculateFirstFollowForProduction(Production production) {
-		return new HashSet<>(calculateFirst1SetForTerm(production.right, calculateFollow1SetForNonTerminal(production.left)));
+		BitSet set = compile().firstFollowOfSuffix(compile().indexOf(production), 0);
+		Set<Terminal> terminals = new HashSet<>();
+		for (int id = set.nextSetBit(0); id >= 0; id = set.nextSetBit(id + 1)){
+			terminals.add(getTerminalForId(id));
+		}
+		return terminals;
 	}
 
 	public Set<TerminalOrEpsilon> calculateFirst1ForProduction(List<Symbol> prod){
@@ -793,7 +1016,15 @@ public class Grammar implements Serializable {
 	}
 
 	public Production getProductionForId(int id){
-		return productions.get(id);
+		if (id < productions.size() && productions.get(id).id == id){
+			return productions.get(id);
+		}
+		for (Production production : productions){
+			if (production.id == id){
+				return production;
+			}
+		}
+		return null;
 	}
 /*
 	public Set<List<Terminal>> firstSetForNonTerminal(int k, NonTerminal nonTerminal){
@@ -887,6 +1118,10 @@ public class Grammar implements Serializable {
 		return start;
 	}
 
+	public TerminalSet getAlphabet(){
+		return alphabet;
+	}
+
 	private NonTerminal getNonTerminal(String name){
 		for (NonTerminal nonTerminal : nonTerminals){
 			if (Objects.equals(nonTerminal.name, name)){
@@ -10,6 +10,7 @@ import swp.util.Utils;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * Allows the simple creation of grammars.
@@ -22,6 +23,15 @@ public class GrammarBuilder implements Serializable {
 	private Set<Integer> usedTerminals = new HashSet<>();
 	private List<Object[]> productions = new ArrayList<>();
 	private Map<Integer, SerializableFunction<ListAST, BaseAST>> reduceActions = new HashMap<>();
+	/**
+	 * Declared precedences of terminals (terminal id => precedence)
+	 */
+	private Map<Integer, Precedence> terminalPrecedences = new HashMap<>();
+	/**
+	 * Explicit precedences of productions (production number => precedence)
+	 */
+	private Map<Integer, Precedence> productionPrecedences = new HashMap<>();
+	private int precedenceLevel = 0;
 	public final TerminalSet alphabet;
 	/**
 	 * For each non terminal A the last number of the additional non terminal A#NUMBER.
@@ -30,6 +40,11 @@ public class GrammarBuilder implements Serializable {
 	private Map<String, Integer> currentNumForNonTerminal = new HashMap<>();
 	private static final String additionalNumSeparator = "#";
 	private int additionalNonTerminalCounter = 0;
+	/**
+	 * Symbols of the helper non terminals created by star, minimal, maybe, or and range, keyed by the
+	 * kind of the construct and its normalized arguments. Equal constructs share one helper non terminal.
+	 */
+	private Map<List<Object>, Object[]> helperNonTerminals = new HashMap<>();
 
 	public GrammarBuilder(TerminalSet alphabet) {
 		this.alphabet = alphabet;
@@ -84,6 +99,10 @@ public class GrammarBuilder implements Serializable {
 	 * @return new symbols that represent this construct
 	 */
 	public Object[] minimal(int minAppearances, Object... args){
+		return helperNonTerminal(helperKey("minimal", minAppearances, args), () -> createMinimal(minAppearances, args));
+	}
+
+	private Object[] createMinimal(int minAppearances, Object... args){
 		String newNonTerminal = createNewNonTerminal();
 		Object[] arr_ = Utils.appendToArray(args, newNonTerminal);
 		add(newNonTerminal, arr_).action(asts -> {
@@ -115,11 +134,18 @@ public class GrammarBuilder implements Serializable {
 	}
 
 	public Object[] or(Object... args){
-		String newNonTerminal = createNewNonTerminal();
+		List<Object> key = new ArrayList<>();
+		key.add("or");
 		for (Object arg : args){
-			add(newNonTerminal, arg);
+			key.add(helperKey("alternative", 0, arg));
 		}
-		return new Object[]{newNonTerminal};
+		return helperNonTerminal(key, () -> {
+			String newNonTerminal = createNewNonTerminal();
+			for (Object arg : args){
+				add(newNonTerminal, arg);
+			}
+			return new Object[]{newNonTerminal};
+		});
 	}
 
 	public Object[] orWithActions(Pair<Object[], SerializableFunction<ListAST, BaseAST>>... parts){
@@ -134,10 +160,12 @@ public class GrammarBuilder implements Serializable {
 	}
 
 	public Object[] maybe(Object... args){
-		String newNonTerminal = createNewNonTerminal();
-		add(newNonTerminal, args).action(ListAST::new);
-		add(newNonTerminal, "").action(asts -> new ListAST());
-		return new Object[]{newNonTerminal};
+		return helperNonTerminal(helperKey("maybe", 0, args), () -> {
+			String newNonTerminal = createNewNonTerminal();
+			add(newNonTerminal, args).action(ListAST::new);
+			add(newNonTerminal, "").action(asts -> new ListAST());
+			return new Object[]{newNonTerminal};
+		});
 	}
 
 	public Object[] string(String str){
@@ -156,11 +184,46 @@ public class GrammarBuilder implements Serializable {
 	 * @return
 	 */
 	public Object[] range(int start, int end){
-		String newNonTerminal = createNewNonTerminal();
-		for (int i = start; i <= end; i++){
-			add(newNonTerminal, i);
+		return helperNonTerminal(Arrays.asList("range", start, end), () -> {
+			String newNonTerminal = createNewNonTerminal();
+			for (int i = start; i <= end; i++){
+				add(newNonTerminal, i);
+			}
+			return new Object[]{newNonTerminal};
+		});
+	}
+
+	/**
+	 * Returns the symbols of the helper non terminal for the passed key, creates them only
+	 * for the first construct with this key
+	 */
+	private Object[] helperNonTerminal(List<Object> key, Supplier<Object[]> creator){
+		Object[] symbols = helperNonTerminals.get(key);
+		if (symbols == null){
+			symbols = creator.get();
+			helperNonTerminals.put(key, symbols);
 		}
-		return new Object[]{newNonTerminal};
+		return symbols;
+	}
+
+	/**
+	 * Creates the key of an EBNF construct: its kind, a number parameter and its flattened symbols,
+	 * with characters and terminal names replaced by terminal ids
+	 */
+	private List<Object> helperKey(String kind, int number, Object... args){
+		List<Object> key = new ArrayList<>();
+		key.add(kind);
+		key.add(number);
+		for (Object symbol : flatten(args)){
+			if (symbol instanceof Character){
+				key.add((int)(char)symbol);
+			} else if (symbol instanceof String && alphabet.isValidTypeName((String) symbol)){
+				key.add(alphabet.stringToType((String) symbol));
+			} else {
+				key.add(symbol);
+			}
+		}
+		return key;
 	}
 
 	public Object[] single(int type){
@@ -253,6 +316,100 @@ public class GrammarBuilder implements Serializable {
 		return this;
 	}
 
+	/**
+	 * Has the last added production exactly one right hand side symbol?
+	 */
+	protected boolean isLastProductionUnit(){
+		Object[] production = productions.get(productions.size() - 1);
+		return production.length == 2 && production[1] != null && !"".equals(production[1]);
+	}
+
+	/**
+	 * Declares the passed terminals with the same precedence and associativity, the precedence is higher
+	 * than the precedences of the terminals declared before (like a yacc %left, %right or %nonassoc line).
+	 *
+	 * Productions get the precedence of their last terminal that has a precedence (if not set explicitly
+	 * via rulePrecedence). Shift reduce conflicts between productions and terminals with precedences
+	 * are resolved in the parser table.
+	 *
+	 * @param associativity associativity of the terminals
+	 * @param terminals terminal ids
+	 * @return self
+	 */
+	public GrammarBuilder precedence(Precedence.Associativity associativity, int... terminals){
+		Precedence precedence = new Precedence(newPrecedenceLevel(), associativity);
+		for (int terminal : terminals){
+			precedence(terminal, precedence);
+		}
+		return this;
+	}
+
+	/**
+	 * Declares the passed terminals with the same precedence and associativity (@see precedence(Associativity, int...))
+	 *
+	 * @param associativity associativity of the terminals
+	 * @param terminals terminal names
+	 * @return self
+	 */
+	public GrammarBuilder precedence(Precedence.Associativity associativity, String... terminals){
+		int[] ids = new int[terminals.length];
+		for (int i = 0; i < terminals.length; i++){
+			if (!alphabet.isValidTypeName(terminals[i])){
+				throw new SWPException(String.format("No such terminal %s", terminals[i]));
+			}
+			ids[i] = alphabet.stringToType(terminals[i]);
+		}
+		return precedence(associativity, ids);
+	}
+
+	/**
+	 * Sets the precedence of the passed terminal
+	 *
+	 * @param terminal terminal id
+	 * @return self
+	 */
+	public GrammarBuilder precedence(int terminal, Precedence precedence){
+		terminalPrecedences.put(terminal, precedence);
+		return this;
+	}
+
+	/**
+	 * Returns a precedence level that is higher than all levels used before
+	 */
+	public int newPrecedenceLevel(){
+		return ++precedenceLevel;
+	}
+
+	/**
+	 * Returns the declared precedence of the passed terminal or null
+	 */
+	public Precedence getPrecedence(int terminal){
+		return terminalPrecedences.get(terminal);
+	}
+
+	/**
+	 * Sets the precedence of the last added production
+	 *
+	 * @return self
+	 */
+	public GrammarBuilder rulePrecedence(Precedence precedence){
+		productionPrecedences.put(productions.size() - 1, precedence);
+		return this;
+	}
+
+	/**
+	 * Sets the precedence of the last added production to the one of the passed terminal (like yacc's %prec)
+	 *
+	 * @param terminal terminal id
+	 * @return self
+	 */
+	public GrammarBuilder rulePrecedence(int terminal){
+		if (!terminalPrecedences.containsKey(terminal)){
+			throw new SWPException(String.format("Terminal %s has no precedence", alphabet.typeToString(terminal)));
+		}
+		return rulePrecedence(terminalPrecedences.get(terminal));
+	}
+
 	private boolean isTerminal(Object obj){
 		return obj instanceof String && ((String)obj).length() > 0;
 	}
@@ -297,6 +454,7 @@ public class GrammarBuilder implements Serializable {
 		for (int prod : reduceActions.keySet()) {
 			g.setReduceAction(prod, reduceActions.get(prod));
 		}
+		g.setPrecedences(terminalPrecedences, productionPrecedences);
 		return g;
 	}
 
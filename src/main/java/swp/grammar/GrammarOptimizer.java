@@ -0,0 +1,583 @@
+package swp.grammar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import swp.lexer.Token;
+import swp.parser.lr.BaseAST;
+import swp.parser.lr.ListAST;
+import swp.util.SerializableFunction;
+
+/**
+ * Optimization passes that are applied to a grammar before its parser table is built.
+ *
+ * Each pass returns a new grammar that produces the same ASTs as the passed one (the reduce actions
+ * of changed productions are composed accordingly) and reports its changes.
+ */
+public class GrammarOptimizer {
+
+	public enum Pass {
+		/**
+		 * Remove the unproductive and the unreachable non terminals
+		 */
+		REMOVE_USELESS,
+		/**
+		 * Remove duplicate productions and merge non terminals with the same productions
+		 */
+		MERGE_DUPLICATES,
+		/**
+		 * Inline non terminals that are used once and have a single production without an action
+		 */
+		INLINE_SINGLE_USE,
+		/**
+		 * Factor the common prefixes of the productions of a non terminal out into a new non terminal,
+		 * isn't applied to grammars with precedences
+		 */
+		LEFT_FACTOR
+	}
+
+	/**
+	 * Production of the grammar under construction, its right hand side doesn't contain epsilons
+	 */
+	private static class Rule {
+		final int id;
+		final NonTerminal left;
+		final List<Symbol> right;
+		final SerializableFunction<ListAST, BaseAST> action;
+		final boolean hasPrecedence;
+		final Precedence precedence;
+
+		Rule(int id, NonTerminal left, List<Symbol> right, SerializableFunction<ListAST, BaseAST> action,
+		     boolean hasPrecedence, Precedence precedence) {
+			this.id = id;
+			this.left = left;
+			this.right = right;
+			this.action = action;
+			this.hasPrecedence = hasPrecedence;
+			this.precedence = precedence;
+		}
+
+		@Override
+		public String toString() {
+			return left + " → " + (right.isEmpty() ? "ε" : join(right));
+		}
+	}
+
+	private final List<Pass> passes;
+	private final Map<Pass, List<String>> changes = new EnumMap<>(Pass.class);
+
+	/**
+	 * Uses all passes besides the left factoring
+	 */
+	public GrammarOptimizer() {
+		this(Pass.REMOVE_USELESS, Pass.MERGE_DUPLICATES, Pass.INLINE_SINGLE_USE);
+	}
+
+	public GrammarOptimizer(Pass... passes) {
+		this.passes = new ArrayList<>();
+		Collections.addAll(this.passes, passes);
+	}
+
+	/**
+	 * Applies the passes in their order
+	 *
+	 * @return optimized grammar
+	 */
+	public Grammar optimize(Grammar grammar){
+		for (Pass pass : passes){
+			List<String> report = changes.computeIfAbsent(pass, p -> new ArrayList<>());
+			switch (pass){
+				case REMOVE_USELESS:
+					grammar = removeUseless(grammar, report);
+					break;
+				case MERGE_DUPLICATES:
+					grammar = mergeDuplicates(grammar, report);
+					break;
+				case INLINE_SINGLE_USE:
+					grammar = inlineSingleUse(grammar, report);
+					break;
+				case LEFT_FACTOR:
+					grammar = leftFactor(grammar, report);
+					break;
+			}
+		}
+		return grammar;
+	}
+
+	/**
+	 * Returns the changes of the passed pass
+	 */
+	public List<String> getChanges(Pass pass){
+		return Collections.unmodifiableList(changes.getOrDefault(pass, Collections.emptyList()));
+	}
+
+	/**
+	 * Returns the changes of all passes, one per line
+	 */
+	public String report(){
+		StringBuilder builder = new StringBuilder();
+		for (Map.Entry<Pass, List<String>> entry : changes.entrySet()){
+			for (String change : entry.getValue()){
+				builder.append(entry.getKey()).append(": ").append(change).append("\n");
+			}
+		}
+		return builder.toString();
+	}
+
+	private static Grammar removeUseless(Grammar grammar, List<String> report){
+		List<Rule> rules = rules(grammar);
+		Set<NonTerminal> productive = new HashSet<>();
+		boolean somethingChanged = true;
+		while (somethingChanged){
+			somethingChanged = false;
+			for (Rule rule : rules){
+				if (!productive.contains(rule.left) && isProductive(rule, productive)){
+					productive.add(rule.left);
+					somethingChanged = true;
+				}
+			}
+		}
+		if (!productive.contains(grammar.getStart())){
+			report.add(String.format("start non terminal %s is unproductive, nothing removed", grammar.getStart()));
+			return grammar;
+		}
+		Set<NonTerminal> unproductive = new HashSet<>();
+		List<Rule> productiveRules = new ArrayList<>();
+		for (Rule rule : rules){
+			if (isProductive(rule, productive)){
+				productiveRules.add(rule);
+			} else if (!productive.contains(rule.left) && unproductive.add(rule.left)){
+				report.add(String.format("removed unproductive non terminal %s", rule.left));
+			}
+		}
+		Set<NonTerminal> reachable = new HashSet<>();
+		reachable.add(grammar.getStart());
+		somethingChanged = true;
+		while (somethingChanged){
+			somethingChanged = false;
+			for (Rule rule : productiveRules){
+				if (reachable.contains(rule.left)){
+					for (Symbol symbol : rule.right){
+						if (symbol instanceof NonTerminal && reachable.add((NonTerminal) symbol)){
+							somethingChanged = true;
+						}
+					}
+				}
+			}
+		}
+		List<Rule> usefulRules = new ArrayList<>();
+		Set<NonTerminal> unreachable = new HashSet<>();
+		for (Rule rule : productiveRules){
+			if (reachable.contains(rule.left)){
+				usefulRules.add(rule);
+			} else if (unreachable.add(rule.left)){
+				report.add(String.format("removed unreachable non terminal %s", rule.left));
+			}
+		}
+		if (usefulRules.size() == rules.size()){
+			return grammar;
+		}
+		return build(grammar, usefulRules);
+	}
+
+	private static boolean isProductive(Rule rule, Set<NonTerminal> productive){
+		for (Symbol symbol : rule.right){
+			if (symbol instanceof NonTerminal && !productive.contains(symbol)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Grammar mergeDuplicates(Grammar grammar, List<String> report){
+		List<Rule> rules = rules(grammar);
+		boolean changed = false;
+		boolean somethingChanged = true;
+		while (somethingChanged){
+			somethingChanged = false;
+			// duplicate productions
+			Map<List<Object>, Rule> seen = new HashMap<>();
+			List<Rule> uniqueRules = new ArrayList<>();
+			for (Rule rule : rules){
+				Rule first = seen.putIfAbsent(key(rule, null), rule);
+				if (first == null){
+					uniqueRules.add(rule);
+				} else {
+					report.add(String.format("removed production %d %s (duplicate of production %d)",
+							rule.id, rule, first.id));
+				}
+			}
+			if (uniqueRules.size() != rules.size()){
+				rules = uniqueRules;
+				changed = true;
+			}
+			// non terminals with the same productions, references to the non terminal itself are compared as such
+			Map<NonTerminal, Set<List<Object>>> signatures = new LinkedHashMap<>();
+			for (Rule rule : rules){
+				signatures.computeIfAbsent(rule.left, n -> new HashSet<>()).add(key(rule, rule.left));
+			}
+			Map<Set<List<Object>>, NonTerminal> representatives = new HashMap<>();
+			Map<NonTerminal, NonTerminal> replacements = new HashMap<>();
+			for (Map.Entry<NonTerminal, Set<List<Object>>> entry : signatures.entrySet()){
+				if (entry.getKey().equals(grammar.getStart())){
+					continue;
+				}
+				NonTerminal representative = representatives.putIfAbsent(entry.getValue(), entry.getKey());
+				if (representative != null){
+					replacements.put(entry.getKey(), representative);
+					report.add(String.format("merged non terminal %s into %s", entry.getKey(), representative));
+				}
+			}
+			if (!replacements.isEmpty()){
+				List<Rule> newRules = new ArrayList<>();
+				for (Rule rule : rules){
+					if (replacements.containsKey(rule.left)){
+						continue;
+					}
+					List<Symbol> right = new ArrayList<>();
+					for (Symbol symbol : rule.right){
+						NonTerminal replacement = replacements.get(symbol);
+						right.add(replacement != null ? replacement : symbol);
+					}
+					newRules.add(new Rule(rule.id, rule.left, right, rule.action, rule.hasPrecedence, rule.precedence));
+				}
+				rules = newRules;
+				changed = true;
+				somethingChanged = true;
+			}
+		}
+		return changed ? build(grammar, rules) : grammar;
+	}
+
+	/**
+	 * Key of a production for the comparison with other productions (actions and precedences are compared by identity)
+	 *
+	 * @param self non terminal whose occurrences are replaced by a marker, null if they shouldn't be replaced
+	 */
+	private static List<Object> key(Rule rule, NonTerminal self){
+		List<Object> key = new ArrayList<>();
+		key.add(self == null ? rule.left : "self");
+		key.add(rule.action == null ? "" : new IdentityKey(rule.action));
+		key.add(rule.hasPrecedence ? new IdentityKey(rule.precedence) : "");
+		for (Symbol symbol : rule.right){
+			key.add(symbol.equals(self) ? "self" : symbol);
+		}
+		return key;
+	}
+
+	private static class IdentityKey {
+		final Object object;
+
+		IdentityKey(Object object) {
+			this.object = object;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof IdentityKey && ((IdentityKey) obj).object == object;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(object);
+		}
+	}
+
+	private static Grammar inlineSingleUse(Grammar grammar, List<String> report){
+		List<Rule> rules = rules(grammar);
+		boolean changed = false;
+		boolean somethingChanged = true;
+		while (somethingChanged){
+			somethingChanged = false;
+			Map<NonTerminal, Integer> uses = new HashMap<>();
+			Map<NonTerminal, List<Rule>> rulesPerNonTerminal = new HashMap<>();
+			for (Rule rule : rules){
+				rulesPerNonTerminal.computeIfAbsent(rule.left, n -> new ArrayList<>()).add(rule);
+				for (Symbol symbol : rule.right){
+					if (symbol instanceof NonTerminal){
+						uses.merge((NonTerminal) symbol, 1, Integer::sum);
+					}
+				}
+			}
+			for (int i = 0; i < rules.size() && !somethingChanged; i++){
+				Rule user = rules.get(i);
+				// the parser returns the AST of the symbol in front of the EOF of the start production
+				if (user.left.equals(grammar.getStart())){
+					continue;
+				}
+				for (int position = 0; position < user.right.size(); position++){
+					Symbol symbol = user.right.get(position);
+					if (!(symbol instanceof NonTerminal) || uses.get(symbol) != 1
+							|| rulesPerNonTerminal.get(symbol).size() != 1){
+						continue;
+					}
+					Rule inlined = rulesPerNonTerminal.get(symbol).get(0);
+					if (inlined.action != null || inlined.hasPrecedence || inlined == user){
+						continue;
+					}
+					List<Symbol> right = new ArrayList<>(user.right.subList(0, position));
+					right.addAll(inlined.right);
+					right.addAll(user.right.subList(position + 1, user.right.size()));
+					// the precedence of a production depends on its terminals
+					boolean keepPrecedence = grammar.hasPrecedences() || user.hasPrecedence;
+					Rule newRule = new Rule(user.id, user.left, right,
+							inlinedAction(user.action, position, inlined.right.size()),
+							keepPrecedence, user.hasPrecedence ? user.precedence : precedence(grammar, user));
+					report.add(String.format("inlined non terminal %s into production %d %s", symbol, user.id, newRule));
+					rules.set(i, newRule);
+					rules.remove(inlined);
+					somethingChanged = true;
+					changed = true;
+					break;
+				}
+			}
+		}
+		return changed ? build(grammar, rules) : grammar;
+	}
+
+	private static Precedence precedence(Grammar grammar, Rule rule){
+		for (int i = rule.right.size() - 1; i >= 0; i--){
+			Symbol symbol = rule.right.get(i);
+			if (symbol instanceof Terminal && grammar.getPrecedence(((Terminal) symbol).id) != null){
+				return grammar.getPrecedence(((Terminal) symbol).id);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates the action of a production into which the right hand side of a production without an action
+	 * has been inlined: it reduces the inlined symbols first and then applies the original action
+	 *
+	 * @param action original action, null if the production had none
+	 * @param position position of the inlined right hand side
+	 * @param length length of the inlined right hand side
+	 */
+	private static SerializableFunction<ListAST, BaseAST> inlinedAction(SerializableFunction<ListAST, BaseAST> action,
+	                                                                    int position, int length){
+		return asts -> {
+			List<BaseAST> children = new ArrayList<>(asts.size() - length + 1);
+			for (int i = 0; i < position; i++){
+				children.add(asts.get(i));
+			}
+			List<BaseAST> inlinedASTs = new ArrayList<>(length);
+			for (int i = position; i < position + length; i++){
+				inlinedASTs.add(asts.get(i));
+			}
+			children.add(Grammar.reduceWithoutAction(inlinedASTs));
+			for (int i = position + length; i < asts.size(); i++){
+				children.add(asts.get(i));
+			}
+			return action == null ? Grammar.reduceWithoutAction(children) : action.apply(new ListAST(children));
+		};
+	}
+
+	private static Grammar leftFactor(Grammar grammar, List<String> report){
+		if (grammar.hasPrecedences()){
+			report.add("skipped, the grammar has precedences");
+			return grammar;
+		}
+		List<Rule> rules = rules(grammar);
+		Set<String> names = new HashSet<>();
+		int nextNonTerminalId = 0;
+		int nextProductionId = 0;
+		for (Rule rule : rules){
+			names.add(rule.left.name);
+			nextNonTerminalId = Math.max(nextNonTerminalId, rule.left.id + 1);
+			nextProductionId = Math.max(nextProductionId, rule.id + 1);
+		}
+		boolean changed = false;
+		boolean somethingChanged = true;
+		while (somethingChanged){
+			somethingChanged = false;
+			Map<NonTerminal, List<Rule>> rulesPerNonTerminal = new LinkedHashMap<>();
+			for (Rule rule : rules){
+				rulesPerNonTerminal.computeIfAbsent(rule.left, n -> new ArrayList<>()).add(rule);
+			}
+			for (Map.Entry<NonTerminal, List<Rule>> entry : rulesPerNonTerminal.entrySet()){
+				if (entry.getKey().equals(grammar.getStart())){
+					continue;
+				}
+				List<Rule> group = largestGroupWithCommonFirstSymbol(entry.getValue());
+				if (group == null){
+					continue;
+				}
+				int prefixLength = commonPrefixLength(group);
+				NonTerminal left = entry.getKey();
+				String name = left.name + "'";
+				while (names.contains(name)){
+					name += "'";
+				}
+				names.add(name);
+				NonTerminal rest = new NonTerminal(nextNonTerminalId++, name);
+				List<Symbol> right = new ArrayList<>(group.get(0).right.subList(0, prefixLength));
+				right.add(rest);
+				Rule factored = new Rule(nextProductionId++, left, right, factoredAction(), false, null);
+				int index = rules.indexOf(group.get(0));
+				rules.removeAll(group);
+				rules.add(index, factored);
+				for (Rule rule : group){
+					rules.add(new Rule(nextProductionId++, rest, new ArrayList<>(rule.right.subList(prefixLength, rule.right.size())),
+							restAction(rule.action), false, null));
+				}
+				report.add(String.format("factored %s out of %d productions of %s into %s",
+						join(right.subList(0, prefixLength)), group.size(), left, name));
+				somethingChanged = true;
+				changed = true;
+				break;
+			}
+		}
+		return changed ? build(grammar, rules) : grammar;
+	}
+
+	/**
+	 * Returns the largest group of at least two productions without explicit precedences that start with the same symbol
+	 */
+	private static List<Rule> largestGroupWithCommonFirstSymbol(List<Rule> rules){
+		Map<Symbol, List<Rule>> groups = new LinkedHashMap<>();
+		for (Rule rule : rules){
+			if (!rule.right.isEmpty() && !rule.hasPrecedence){
+				groups.computeIfAbsent(rule.right.get(0), s -> new ArrayList<>()).add(rule);
+			}
+		}
+		List<Rule> largest = null;
+		for (List<Rule> group : groups.values()){
+			if (group.size() > 1 && (largest == null || group.size() > largest.size())){
+				largest = group;
+			}
+		}
+		return largest;
+	}
+
+	private static int commonPrefixLength(List<Rule> rules){
+		int length = 1;
+		while (true){
+			for (Rule rule : rules){
+				if (rule.right.size() <= length || !rule.right.get(length).equals(rules.get(0).right.get(length))){
+					return length;
+				}
+			}
+			length++;
+		}
+	}
+
+	/**
+	 * Result of a production of a factored out non terminal: the ASTs of its symbols and the action
+	 * of the original production
+	 */
+	private static class FactoredAST extends BaseAST {
+		final SerializableFunction<ListAST, BaseAST> action;
+		final List<BaseAST> asts;
+
+		FactoredAST(SerializableFunction<ListAST, BaseAST> action, List<BaseAST> asts) {
+			this.action = action;
+			this.asts = asts;
+		}
+
+		@Override
+		public List<Token> getMatchedTokens() {
+			List<Token> tokens = new ArrayList<>();
+			for (BaseAST ast : asts){
+				tokens.addAll(ast.getMatchedTokens());
+			}
+			return tokens;
+		}
+
+		@Override
+		public List<BaseAST> children() {
+			return asts;
+		}
+	}
+
+	private static SerializableFunction<ListAST, BaseAST> restAction(SerializableFunction<ListAST, BaseAST> action){
+		return asts -> {
+			List<BaseAST> children = new ArrayList<>(asts.size());
+			for (Object ast : asts){
+				children.add((BaseAST) ast);
+			}
+			return new FactoredAST(action, children);
+		};
+	}
+
+	/**
+	 * Action of the production with the common prefix, applies the action of the original production
+	 */
+	private static SerializableFunction<ListAST, BaseAST> factoredAction(){
+		return asts -> {
+			FactoredAST rest = (FactoredAST) asts.get(asts.size() - 1);
+			List<BaseAST> children = new ArrayList<>(asts.size() - 1 + rest.asts.size());
+			for (int i = 0; i < asts.size() - 1; i++){
+				children.add(asts.get(i));
+			}
+			children.addAll(rest.asts);
+			return rest.action == null ? Grammar.reduceWithoutAction(children) : rest.action.apply(new ListAST(children));
+		};
+	}
+
+	private static List<Rule> rules(Grammar grammar){
+		List<Rule> rules = new ArrayList<>();
+		Map<Integer, Precedence> precedences = grammar.getProductionPrecedences();
+		for (Production production : grammar.getProductions()){
+			List<Symbol> right = production.isEpsilonProduction() ? new ArrayList<>() : new ArrayList<>(production.right);
+			rules.add(new Rule(production.id, production.left, right, grammar.getReduceAction(production.id),
+					precedences.containsKey(production.id), precedences.get(production.id)));
+		}
+		return rules;
+	}
+
+	/**
+	 * Creates a grammar with the passed productions, the non terminals are copied
+	 */
+	private static Grammar build(Grammar grammar, List<Rule> rules){
+		Map<NonTerminal, NonTerminal> nonTerminals = new HashMap<>();
+		List<Production> productions = new ArrayList<>();
+		Map<Integer, Precedence> precedences = new HashMap<>();
+		for (Rule rule : rules){
+			List<Symbol> right = new ArrayList<>();
+			for (Symbol symbol : rule.right){
+				right.add(symbol instanceof NonTerminal ? copy(nonTerminals, (NonTerminal) symbol) : symbol);
+			}
+			if (right.isEmpty()){
+				right.add(new Epsilon());
+			}
+			NonTerminal left = copy(nonTerminals, rule.left);
+			Production production = new Production(rule.id, left, right);
+			left.addProduction(production);
+			productions.add(production);
+			if (rule.hasPrecedence){
+				precedences.put(rule.id, rule.precedence);
+			}
+		}
+		Grammar newGrammar = new Grammar(grammar.getAlphabet(), new HashSet<>(nonTerminals.values()),
+				copy(nonTerminals, grammar.getStart()), productions);
+		for (Rule rule : rules){
+			if (rule.action != null){
+				newGrammar.setReduceAction(rule.id, rule.action);
+			}
+		}
+		newGrammar.setPrecedences(grammar.getTerminalPrecedences(), precedences);
+		return newGrammar;
+	}
+
+	private static NonTerminal copy(Map<NonTerminal, NonTerminal> copies, NonTerminal nonTerminal){
+		return copies.computeIfAbsent(nonTerminal, n -> new NonTerminal(n.id, n.name));
+	}
+
+	private static String join(List<Symbol> symbols){
+		StringBuilder builder = new StringBuilder();
+		for (Symbol symbol : symbols){
+			if (builder.length() > 0){
+				builder.append(" ");
+			}
+			builder.append(symbol);
+		}
+		return builder.toString();
+	}
+}
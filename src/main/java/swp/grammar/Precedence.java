@@ -0,0 +1,46 @@
+package swp.grammar;
+
+import java.io.Serializable;
+
+/**
+ * Precedence and associativity of a terminal or a production, used to resolve shift reduce conflicts
+ * in the LR parser table (like the yacc declarations %left, %right and %nonassoc).
+ *
+ * A conflict between shifting a terminal and reducing a production (that both have a precedence) is resolved
+ * in favour of the higher level. If both have the same level, the associativity of the production decides:
+ * left associative productions are reduced, right associative ones shift and non associative ones yield an error.
+ */
+public class Precedence implements Serializable {
+
+	public static enum Associativity {
+		LEFT, RIGHT, NON_ASSOC
+	}
+
+	/**
+	 * Higher levels bind tighter
+	 */
+	public final int level;
+
+	public final Associativity associativity;
+
+	public Precedence(int level, Associativity associativity) {
+		this.level = level;
+		this.associativity = associativity;
+	}
+
+	@Override
+	public String toString() {
+		return associativity.name().toLowerCase() + "(" + level + ")";
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof Precedence && ((Precedence) obj).level == level
+				&& ((Precedence) obj).associativity == associativity;
+	}
+
+	@Override
+	public int hashCode() {
+		return level * 3 + associativity.ordinal();
+	}
+}
@@ -0,0 +1,142 @@
+package swp.grammar;
+
+import swp.parser.lr.BaseAST;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Profiles the reductions of a grammar (and therefore its semantic actions) per production.
+ *
+ * It counts the reductions and the AST nodes they create (results that aren't one of the reduced ASTs) and
+ * measures the time of every sampleInterval-th reduction. The total time per production is extrapolated from
+ * the sampled reductions. Use it via the setProfiler methods of the parsers, it isn't thread safe.
+ */
+public class ReductionProfiler {
+
+	public final Grammar grammar;
+
+	/**
+	 * Every sampleInterval-th reduction of a production is timed, 1 times every reduction
+	 */
+	public final int sampleInterval;
+
+	/**
+	 * [production id] => number of reductions
+	 */
+	private long[] counts = new long[0];
+
+	/**
+	 * [production id] => number of timed reductions
+	 */
+	private long[] samples = new long[0];
+
+	/**
+	 * [production id] => summed up time of the timed reductions in nanoseconds
+	 */
+	private long[] times = new long[0];
+
+	/**
+	 * [production id] => number of created AST nodes
+	 */
+	private long[] nodes = new long[0];
+
+	public ReductionProfiler(Grammar grammar, int sampleInterval) {
+		if (sampleInterval < 1){
+			throw new IllegalArgumentException("The sample interval has to be positive");
+		}
+		this.grammar = grammar;
+		this.sampleInterval = sampleInterval;
+	}
+
+	public ReductionProfiler(Grammar grammar) {
+		this(grammar, 1);
+	}
+
+	/**
+	 * Reduces the ASTs with the grammar (see Grammar.reduce) and records the reduction
+	 */
+	public BaseAST reduce(int productionId, List<BaseAST> asts){
+		if (productionId >= counts.length){
+			int length = Math.max(productionId + 1, counts.length * 2);
+			counts = Arrays.copyOf(counts, length);
+			samples = Arrays.copyOf(samples, length);
+			times = Arrays.copyOf(times, length);
+			nodes = Arrays.copyOf(nodes, length);
+		}
+		BaseAST result;
+		if (counts[productionId]++ % sampleInterval == 0){
+			long start = System.nanoTime();
+			result = grammar.reduce(productionId, asts);
+			times[productionId] += System.nanoTime() - start;
+			samples[productionId]++;
+		} else {
+			result = grammar.reduce(productionId, asts);
+		}
+		if (isCreated(result, asts)){
+			nodes[productionId]++;
+		}
+		return result;
+	}
+
+	private static boolean isCreated(BaseAST result, List<BaseAST> asts){
+		for (BaseAST ast : asts){
+			if (ast == result){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public long getCount(int productionId){
+		return productionId < counts.length ? counts[productionId] : 0;
+	}
+
+	/**
+	 * Returns the (extrapolated) total time of the reductions of the production in nanoseconds
+	 */
+	public long getTime(int productionId){
+		if (productionId >= counts.length || samples[productionId] == 0){
+			return 0;
+		}
+		return times[productionId] * counts[productionId] / samples[productionId];
+	}
+
+	public long getCreatedNodes(int productionId){
+		return productionId < nodes.length ? nodes[productionId] : 0;
+	}
+
+	public void clear(){
+		Arrays.fill(counts, 0);
+		Arrays.fill(samples, 0);
+		Arrays.fill(times, 0);
+		Arrays.fill(nodes, 0);
+	}
+
+	/**
+	 * Returns a report of the reduced productions, sorted by their total time
+	 */
+	public String report(){
+		List<Integer> ids = new ArrayList<>();
+		for (int id = 0; id < counts.length; id++){
+			if (counts[id] > 0){
+				ids.add(id);
+			}
+		}
+		ids.sort((id1, id2) -> Long.compare(getTime(id2), getTime(id1)));
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("%12s %10s %10s %10s  %s\n", "time [ms]", "count", "ns/call", "nodes", "production"));
+		for (int id : ids){
+			Production production = grammar.getProductionForId(id);
+			builder.append(String.format("%12.3f %10d %10d %10d  %s\n", getTime(id) / 1e6, counts[id],
+					getTime(id) / counts[id], nodes[id], production == null ? "#" + id : production));
+		}
+		return builder.toString();
+	}
+
+	@Override
+	public String toString() {
+		return report();
+	}
+}
@@ -8,6 +8,10 @@ import java.util.Set;
 public abstract class BaseLexer implements Lexer {
 
 	private Token curToken = null;
+	/**
+	 * Has the lexer been reset without lexing the token at the checkpoint yet?
+	 */
+	private boolean resetPending = false;
 	protected TerminalSet terminalSet;
 	private Set<Integer> ignoredTypes = new HashSet<>();
 	protected InputStream inputStream;
@@ -34,6 +38,7 @@ public abstract class BaseLexer implements Lexer {
 	@Override
 	public Token cur() {
 		if (curToken == null){
+			resetPending = false;
 			return next();
 		}
 		return curToken;
@@ -43,6 +48,11 @@ public abstract class BaseLexer implements Lexer {
 
 	@Override
 	public Token next() {
+		if (resetPending){
+			// the token at the checkpoint is the current one, the next token follows it
+			resetPending = false;
+			next();
+		}
 		if (curToken != null && curToken.type == 0){
 			return curToken;
 		}
@@ -56,9 +66,30 @@ public abstract class BaseLexer implements Lexer {
 		ignoredTypes.add(tokenType);
 	}
 
+	public boolean isIgnored(int tokenType){
+		return ignoredTypes.contains(tokenType);
+	}
+
 	@Override
 	public TerminalSet getTerminalSet(){
 		return terminalSet;
 	}
 
+	@Override
+	public Checkpoint mark() {
+		return new Checkpoint(0, cur().location);
+	}
+
+	@Override
+	public void reset(Checkpoint checkpoint) {
+		seek(checkpoint);
+		curToken = null;
+		resetPending = true;
+	}
+
+	/**
+	 * Continue lexing at the passed checkpoint.
+	 */
+	protected abstract void seek(Checkpoint checkpoint);
+
 }
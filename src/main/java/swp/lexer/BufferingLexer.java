@@ -12,6 +12,10 @@ public abstract class BufferingLexer implements Lexer {
 	private List<Token> tokens = new ArrayList<>();
 	private int index = 0;
 	private Token curToken = null;
+	/**
+	 * Has the lexer been reset without lexing the token at the checkpoint yet?
+	 */
+	private boolean resetPending = false;
 	protected TerminalSet terminalSet;
 	private Set<Integer> ignoredTypes = new HashSet<>();
 	protected InputStream inputStream;
@@ -47,6 +51,7 @@ public abstract class BufferingLexer implements Lexer {
 	@Override
 	public Token cur() {
 		if (curToken == null){
+			resetPending = false;
 			return next();
 		}
 		return curToken;
@@ -54,6 +59,11 @@ public abstract class BufferingLexer implements Lexer {
 
 	@Override
 	public Token next() {
+		if (resetPending){
+			// the token at the checkpoint is the current one, the next token follows it
+			resetPending = false;
+			next();
+		}
 		if (index < tokens.size()){
 			curToken = tokens.get(index++);
 		}
@@ -71,4 +81,17 @@ public abstract class BufferingLexer implements Lexer {
 		return terminalSet;
 	}
 
+	@Override
+	public Checkpoint mark() {
+		Token token = cur();
+		return new Checkpoint(index - 1, token.location);
+	}
+
+	@Override
+	public void reset(Checkpoint checkpoint) {
+		index = checkpoint.state;
+		curToken = null;
+		resetPending = true;
+	}
+
 }
@@ -0,0 +1,38 @@
+package swp.lexer;
+
+/**
+ * Immutable snapshot of a lexer position.
+ *
+ * Checkpoints are created by {@link Lexer#mark()} and only valid for the lexer that created them.
+ */
+public class Checkpoint {
+
+	/**
+	 * Lexer specific state (e.g. the automaton state or the token index)
+	 */
+	public final int state;
+
+	/**
+	 * Offset in the input
+	 */
+	public final int offset;
+
+	public final int line;
+	public final int column;
+
+	public Checkpoint(int state, int offset, int line, int column) {
+		this.state = state;
+		this.offset = offset;
+		this.line = line;
+		this.column = column;
+	}
+
+	public Checkpoint(int state, Location location){
+		this(state, location.offset, location.line, location.column);
+	}
+
+	@Override
+	public String toString() {
+		return "[" + line + ":" + column + " offset " + offset + " state " + state + "]";
+	}
+}
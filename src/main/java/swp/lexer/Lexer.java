@@ -25,4 +25,17 @@ public interface Lexer {
 	 * Returns the used terminal set, the end of input token (EOF) can't be ignored.
 	 */
 	TerminalSet getTerminalSet();
+
+	/**
+	 * Creates a checkpoint at the start of the current token.
+	 */
+	Checkpoint mark();
+
+	/**
+	 * Resets the lexer to the passed checkpoint (created by this lexer),
+	 * the token at the checkpoint is the current token afterwards and next() returns the token behind it.
+	 * The token at the checkpoint is lexed lazily by the next call of cur() or next(), therefore lexer errors
+	 * are thrown by these calls and not by reset.
+	 */
+	void reset(Checkpoint checkpoint);
 }
@@ -1,31 +1,104 @@
 package swp.lexer;
 
 import swp.SWPException;
+import swp.parser.Diagnostic;
 import swp.util.Utils;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Created by parttimenerd on 03.08.16.
  */
 public class LexerError extends SWPException {
+
+	/**
+	 * Token of the unexpected character, null if the error isn't caused by the input
+	 */
+	public final Token errorToken;
+
+	/**
+	 * Supplies the expected characters, only used if they are requested
+	 */
+	private final Supplier<Collection<Integer>> expectedSupplier;
+	private BitSet expected;
+	private String message;
+
 	public LexerError(String message) {
 		super(message);
+		this.errorToken = null;
+		this.expectedSupplier = null;
+	}
+
+	private LexerError(Token errorToken, Supplier<Collection<Integer>> expectedSupplier){
+		super(null);
+		this.errorToken = errorToken;
+		this.expectedSupplier = expectedSupplier;
 	}
 
 	public static LexerError create(Token errorToken, Collection<Integer> expectedTokens){
-		StringBuilder builder = new StringBuilder();
+		return new LexerError(errorToken, () -> expectedTokens);
+	}
+
+	/**
+	 * Creates an error whose expected characters (and message) are only calculated when they are requested
+	 */
+	public static LexerError create(Token errorToken, Supplier<Collection<Integer>> expectedTokens){
+		return new LexerError(errorToken, expectedTokens);
+	}
+
+	/**
+	 * Returns the expected characters, null if the error isn't caused by the input
+	 */
+	public BitSet getExpected(){
+		if (expected == null && expectedSupplier != null){
+			expected = new BitSet();
+			for (int type : expectedSupplier.get()){
+				expected.set(type);
+			}
+		}
+		return expected;
+	}
+
+	@Override
+	public String getMessage() {
+		if (errorToken == null){
+			return super.getMessage();
+		}
+		if (message == null){
+			message = formatMessage();
+		}
+		return message;
+	}
+
+	private String formatMessage(){
 		List<Integer> list = new ArrayList<>();
-		list.addAll(expectedTokens);
-		builder.append(errorToken.terminalSet.typesToString(list));
+		BitSet expected = getExpected();
+		for (int type = expected.nextSetBit(0); type >= 0; type = expected.nextSetBit(type + 1)){
+			list.add(type);
+		}
 		String errorTokenStr = "";
 		if (errorToken.type >= Utils.MIN_CHAR && errorToken.type <= Utils.MAX_CHAR) {
 			errorTokenStr = errorToken.terminalSet.typeToString(errorToken.type);
 		} else {
 			errorTokenStr = "<unsupported character " + Character.toString((char)(errorToken.type + Utils.MIN_CHAR)) + ">";
 		}
-		return new LexerError(String.format("Expected one of %s but got %s at %s", builder.toString(), errorTokenStr, errorToken.location));
+		return String.format("Expected one of %s but got %s at %s", errorToken.terminalSet.typesToString(list),
+				errorTokenStr, errorToken.location);
+	}
+
+	/**
+	 * Creates a diagnostic for this error, only valid for errors that are caused by the input
+	 */
+	public Diagnostic toDiagnostic(){
+		return new Diagnostic(errorToken, getExpected()){
+			@Override
+			protected String formatMessage() {
+				return LexerError.this.getMessage();
+			}
+		};
 	}
 }
@@ -4,10 +4,19 @@ public class Location {
 
 	public final int line;
 	public final int column;
+	/**
+	 * Offset in the input, -1 if unknown
+	 */
+	public final int offset;
 
 	public Location(int line, int column){
+		this(line, column, -1);
+	}
+
+	public Location(int line, int column, int offset){
 		this.line = line;
 		this.column = column;
+		this.offset = offset;
 	}
 
 	@Override
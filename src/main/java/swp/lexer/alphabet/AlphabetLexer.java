@@ -1,9 +1,11 @@
 package swp.lexer.alphabet;
 
 import swp.lexer.BaseLexer;
+import swp.lexer.Checkpoint;
 import swp.lexer.Location;
 import swp.lexer.Token;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -14,29 +16,50 @@ import java.io.InputStream;
  */
 public class AlphabetLexer extends BaseLexer {
 
+	private final byte[] input;
+	private int offset = 0;
 	private int line = 1;
 	private int column = 0;
-	private int cur;
 
 	public AlphabetLexer(String input, int[] ignoredTokenTypes){
 		super(new AlphabetTerminals(), input, ignoredTokenTypes);
+		this.input = readInput();
 	}
 
 	public AlphabetLexer(InputStream input, int[] ignoredTokenTypes) {
 		super(new AlphabetTerminals(), input, ignoredTokenTypes);
+		this.input = readInput();
 	}
 
-	@Override
-	protected Token parseNextToken() {
+	private byte[] readInput(){
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
 		try {
-			cur = inputStream.read();
+			int read;
+			while ((read = inputStream.read(buffer)) != -1){
+				stream.write(buffer, 0, read);
+			}
 		} catch (IOException e) {
-			cur = -1;
+			// use the input that could be read
 		}
-		if (cur == -1){
-			return new Token(0, terminalSet, "", new Location(line, column));
+		return stream.toByteArray();
+	}
+
+	/**
+	 * Returns the whole (buffered) input
+	 */
+	public byte[] getInput(){
+		return input;
+	}
+
+	@Override
+	protected Token parseNextToken() {
+		if (offset >= input.length){
+			return new Token(0, terminalSet, "", new Location(line, column, offset));
 		}
-		Token newToken = new Token(cur, terminalSet, Character.toString((char) cur), new Location(line, column));
+		int cur = input[offset] & 0xff;
+		Token newToken = new Token(cur, terminalSet, Character.toString((char) cur), new Location(line, column, offset));
+		offset++;
 		if (cur == '\n') {
 			line++;
 			column = 0;
@@ -45,4 +68,11 @@ public class AlphabetLexer extends BaseLexer {
 		}
 		return newToken;
 	}
+
+	@Override
+	protected void seek(Checkpoint checkpoint) {
+		offset = checkpoint.offset;
+		line = checkpoint.line;
+		column = checkpoint.column;
+	}
 }
@@ -6,26 +6,42 @@ import swp.lexer.alphabet.AlphabetLexer;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.BitSet;
 
 /**
- * Created by parttimenerd on 03.08.16.
+ * Lexer that uses a lexer table (a deterministic automaton) to lex the longest matching token.
  */
-public class AutomatonLexer implements Lexer {
+public class AutomatonLexer extends BaseAutomatonLexer {
 
-	private final AlphabetLexer alphabetLexer;
 	private final Table table;
-	private Token current;
-	private List<Token> lookaheadFromLast = new ArrayList<>();
-	private boolean[] ignoredTokens;
-	private boolean usesCompressedTable;
+	/**
+	 * Transitions and final types of a plain Table, null for its subclasses. The inner loop reads them
+	 * directly instead of calling the overridden next and finalType methods of the other table types.
+	 */
+	private final int[][] transitions;
+	private final int[] finalTypes;
+	private final BitSet ignoredTokenSet = new BitSet();
+	private boolean hasIgnoredTokens = false;
+	/**
+	 * [state] => scanner that skips the characters the state loops on, only for the states of ignored tokens,
+	 * null if not yet computed or if there are ignored characters
+	 */
+	private RunScanner[] loopScanners;
+	/**
+	 * Bounds and start location of the last lexed token
+	 */
+	private int tokenStart;
+	private int tokenEnd;
+	private int tokenLine;
+	private int tokenColumn;
+	private boolean tokenSkippedCharacters;
 
 	public AutomatonLexer(Table table, AlphabetLexer alphabetLexer) {
-		this.alphabetLexer = alphabetLexer;
-		this.table = table;
-		this.ignoredTokens = new boolean[table.terminalSet.getValidTypes().size()];
-		this.usesCompressedTable = table instanceof CompressedTable;
+		super(table.terminalSet, alphabetLexer);
+		this.table = table.forLexer();
+		boolean plainTable = table.getClass() == Table.class;
+		this.transitions = plainTable ? table.transitions : null;
+		this.finalTypes = plainTable ? table.finalTypes : null;
 	}
 
 	public AutomatonLexer(Table table, String input, int[] ignoredTokenTypes){
@@ -41,104 +57,147 @@ public class AutomatonLexer implements Lexer {
 
 	public AutomatonLexer(Table table, String input, int[] ignoredTokenTypes, String[] ignoredResultingTokenTypes){
 		this(table, new ByteArrayInputStream(input.getBytes()), ignoredTokenTypes);
-		for (String i : ignoredResultingTokenTypes){
-			ignore(table.terminalSet.stringToType(i));
-		}
+		ignore(ignoredResultingTokenTypes);
 	}
 
 	public AutomatonLexer(Table table, InputStream input, int[] ignoredTokenTypes) {
 		this(table, new AlphabetLexer(input, ignoredTokenTypes));
 	}
 
-	private Token parseNextToken(){
-		CompressedTable compressedTable = null;
-		if (usesCompressedTable){
-			compressedTable = (CompressedTable)table;
+	/**
+	 * Lexes the next token, without creating it
+	 *
+	 * @return type of the token, its bounds and start location are stored in the token fields
+	 */
+	private int lexToken(){
+		if (hasIgnoredCharacters){
+			skipIgnoredCharacters();
 		}
+		int start = offset;
+		tokenStart = start;
+		tokenLine = line;
+		tokenColumn = column;
 		int currentState = table.initialState;
-		StringBuilder builder = new StringBuilder();
-		Location location = alphabetLexer.cur().location;
-		if (!lookaheadFromLast.isEmpty()){
-			location = lookaheadFromLast.get(0).location;
-		}
-		List<Token> readTokens = new ArrayList<>();
-		int rtPosition = 0;
-		int lastRtPosition = 0;
-		readTokens.addAll(lookaheadFromLast);
-		Token lastToken = null;
+		// position, line and column after the current character
+		int pos = offset;
+		int curLine = line;
+		int curColumn = column;
+		// end of the last accepted token
+		int lastType = -1;
+		int lastEnd = start;
+		int lastLine = line;
+		int lastColumn = column;
+		boolean skippedCharacters = false;
 		while (true){
 			int cur;
-			if (rtPosition >= readTokens.size()){
-				readTokens.add(alphabetLexer.cur());
-				alphabetLexer.next();
+			if (pos < input.length){
+				cur = input[pos] & 0xff;
+				if (ignoredCharacters[cur]){
+					skippedCharacters = true;
+					if (cur == '\n') {
+						curLine++;
+						curColumn = 0;
+					} else {
+						curColumn++;
+					}
+					pos++;
+					continue;
+				}
+			} else if (pos == input.length){
+				cur = 0;
+			} else {
+				// behind the end of input character
+				cur = -1;
 			}
-			cur = readTokens.get(rtPosition).type;
 			int prevState = currentState;
 			if (cur >= Utils.MIN_CHAR && cur <= Utils.MAX_CHAR) {
-				int index = cur;
-				if (usesCompressedTable){
-					index = compressedTable.tokenTypeTranslations[cur];
-				}
-				currentState = table.transitions[currentState][index];
+				currentState = transitions != null ? transitions[currentState][cur] : table.next(currentState, cur);
 			} else {
 				currentState = -1;
 			}
-			builder.appendCodePoint(cur);
-			rtPosition++;
 			if (currentState == -1){
-				lookaheadFromLast = readTokens.subList(lastRtPosition, readTokens.size());
-				if (lastToken != null) {
-					return lastToken;
+				if (lastType != -1) {
+					offset = Math.min(lastEnd, input.length);
+					line = lastLine;
+					column = lastColumn;
+					tokenEnd = lastEnd;
+					tokenSkippedCharacters = skippedCharacters;
+					if (table.keywords != null && table.keywords.isHostType(lastType)){
+						return skippedCharacters ?
+								table.keywords.classify(tokenValue(start, lastEnd, true), lastType) :
+								table.keywords.classify(input, start, Math.min(lastEnd, input.length), lastType);
+					}
+					return lastType;
+				}
+				if (pos >= input.length){
+					cur = 0;
 				}
-				StringBuilder errorBuilder = new StringBuilder();
-				int[] row = table.transitions[prevState];
-				List<Integer> expected = new ArrayList<>();
-				for (int i = 0; i < row.length; i++){
-					if (row[i] != -1){
-						if (usesCompressedTable){
-							for (int c : compressedTable.reverseTranslations.get(i)){
-								expected.add(c);
-							}
-						} else {
-							expected.add(i);
-						}
+				Token errorToken = new Token(cur, alphabetTerminals,
+						pos >= input.length ? "" : Character.toString((char) cur), new Location(curLine, curColumn, pos));
+				int errorState = prevState;
+				throw LexerError.create(errorToken, () -> table.expectedCharacters(errorState));
+			}
+			pos++;
+			if (cur == '\n') {
+				curLine++;
+				curColumn = 0;
+			} else if (pos <= input.length) {
+				curColumn++;
+			}
+			if (loopScanners != null && loopScanners[currentState] != null && pos < input.length){
+				// the state stays the same for the whole run
+				long run = loopScanners[currentState].scan(input, pos);
+				int runEnd = RunScanner.end(run);
+				int newlines = RunScanner.newlines(run);
+				if (newlines > 0){
+					curLine += newlines;
+					int lastNewline = runEnd - 1;
+					while (input[lastNewline] != '\n'){
+						lastNewline--;
 					}
+					curColumn = runEnd - lastNewline - 1;
+				} else {
+					curColumn += runEnd - pos;
 				}
-				throw LexerError.create(readTokens.get(rtPosition - 1), expected);
+				pos = runEnd;
 			}
-			if (table.finalTypes[currentState] != -1){
-				lastRtPosition = rtPosition;
-				lastToken = new Token(table.finalTypes[currentState], table.terminalSet, builder.toString(), location);
+			int finalType = finalTypes != null ? finalTypes[currentState] : table.finalType(currentState);
+			if (finalType != -1){
+				lastType = finalType;
+				lastEnd = pos;
+				lastLine = curLine;
+				lastColumn = curColumn;
 			}
 		}
 	}
 
-	@Override
-	public Token cur() {
-		if (current == null){
-			next();
-		}
-		return current;
+	private Token createToken(int type){
+		return new Token(type, table.terminalSet, tokenValue(tokenStart, tokenEnd, tokenSkippedCharacters),
+				new Location(tokenLine, tokenColumn, tokenStart));
 	}
 
 	@Override
-	public Token next() {
-		if (current != null && current.id == 0){
-			return current;
+	protected Token lexNextToken() {
+		if (loopScanners == null && hasIgnoredTokens && !hasIgnoredCharacters){
+			loopScanners = table.loopScanners(ignoredTokenSet);
 		}
+		int type;
 		do {
-			current = parseNextToken();
-		} while (current != null && ignoredTokens[current.type]);
-		return current;
+			type = lexToken();
+		} while (ignoredTokens[type]);
+		return createToken(type);
 	}
 
 	@Override
 	public void ignore(int tokenType) {
-		ignoredTokens[tokenType] = true;
+		super.ignore(tokenType);
+		ignoredTokenSet.set(tokenType);
+		hasIgnoredTokens = true;
+		loopScanners = null;
 	}
 
 	@Override
-	public TerminalSet getTerminalSet() {
-		return table.terminalSet;
+	public Checkpoint mark() {
+		return new Checkpoint(table.initialState, cur().location);
 	}
 }
@@ -0,0 +1,141 @@
+package swp.lexer.automata;
+
+import swp.util.Metrics;
+import swp.lexer.*;
+import swp.lexer.alphabet.AlphabetLexer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Base of the lexers that work directly on the buffered input and lex the longest matching token:
+ * if the automaton fails, they rewind the input offset to the end of the last accepted token.
+ */
+public abstract class BaseAutomatonLexer implements Lexer {
+
+	private final TerminalSet terminalSet;
+	protected final byte[] input;
+	/**
+	 * Characters that are ignored on the character level (like in the AlphabetLexer)
+	 */
+	protected final boolean[] ignoredCharacters = new boolean[256];
+	protected final boolean hasIgnoredCharacters;
+	protected final TerminalSet alphabetTerminals;
+	protected int offset = 0;
+	protected int line = 1;
+	protected int column = 0;
+	private Token current;
+	/**
+	 * Has the lexer been reset without lexing the token at the checkpoint yet?
+	 */
+	private boolean resetPending = false;
+	protected final boolean[] ignoredTokens;
+	/**
+	 * Hook for the counters of the lexed tokens and bytes, null if disabled
+	 */
+	private final Metrics metrics = Metrics.get();
+
+	protected BaseAutomatonLexer(TerminalSet terminalSet, AlphabetLexer alphabetLexer) {
+		this.terminalSet = terminalSet;
+		this.input = alphabetLexer.getInput();
+		this.alphabetTerminals = alphabetLexer.getTerminalSet();
+		boolean hasIgnored = false;
+		for (int i = 0; i < ignoredCharacters.length; i++){
+			if (alphabetLexer.isIgnored(i)){
+				ignoredCharacters[i] = true;
+				hasIgnored = true;
+			}
+		}
+		this.hasIgnoredCharacters = hasIgnored;
+		this.ignoredTokens = new boolean[terminalSet.getValidTypes().size()];
+	}
+
+	/**
+	 * Ignores the tokens of the passed terminals
+	 */
+	protected void ignore(String[] tokenTypes){
+		for (String type : tokenTypes){
+			ignore(terminalSet.stringToType(type));
+		}
+	}
+
+	/**
+	 * Lexes the next token whose type isn't ignored
+	 */
+	protected abstract Token lexNextToken();
+
+	protected void skipIgnoredCharacters(){
+		while (offset < input.length && ignoredCharacters[input[offset] & 0xff]){
+			if (input[offset] == '\n') {
+				line++;
+				column = 0;
+			} else {
+				column++;
+			}
+			offset++;
+		}
+	}
+
+	/**
+	 * Matched text, an end behind the input signals that the end of input character has been matched
+	 */
+	protected String tokenValue(int start, int end, boolean skippedCharacters){
+		if (!skippedCharacters && end <= input.length){
+			return new String(input, start, end - start, StandardCharsets.ISO_8859_1);
+		}
+		StringBuilder builder = new StringBuilder();
+		for (int i = start; i < end; i++){
+			int cur = i < input.length ? input[i] & 0xff : 0;
+			if (i >= input.length || !ignoredCharacters[cur]){
+				builder.appendCodePoint(cur);
+			}
+		}
+		return builder.toString();
+	}
+
+	@Override
+	public Token cur() {
+		if (current == null){
+			resetPending = false;
+			next();
+		}
+		return current;
+	}
+
+	@Override
+	public Token next() {
+		if (resetPending){
+			// the token at the checkpoint is the current one, the next token follows it
+			resetPending = false;
+			next();
+		}
+		if (current != null && current.type == 0){
+			return current;
+		}
+		int start = offset;
+		current = lexNextToken();
+		if (metrics != null){
+			metrics.count("lexer.tokens", 1);
+			metrics.count("lexer.bytes", offset - start);
+		}
+		return current;
+	}
+
+	@Override
+	public void ignore(int tokenType) {
+		ignoredTokens[tokenType] = true;
+	}
+
+	@Override
+	public TerminalSet getTerminalSet() {
+		return terminalSet;
+	}
+
+	@Override
+	public void reset(Checkpoint checkpoint) {
+		offset = checkpoint.offset;
+		line = checkpoint.line;
+		column = checkpoint.column;
+		current = null;
+		resetPending = true;
+	}
+}
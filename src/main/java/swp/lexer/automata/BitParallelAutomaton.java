@@ -0,0 +1,206 @@
+package swp.lexer.automata;
+
+import swp.SWPException;
+import swp.lexer.TerminalSet;
+import swp.util.Utils;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Position automaton (like a Glushkov automaton) of a non deterministic automaton, for the bit parallel
+ * simulation in the BitParallelLexer. It doesn't need a subset construction.
+ *
+ * A position is a pair of automaton states (source, target) that are connected by character transitions,
+ * all transitions into a position have the same characters. The set of active positions is stored in two
+ * longs, therefore the automaton can have at most 128 positions. After reading the character c the
+ * active positions are follow(active positions) &amp; positions(c), where follow is computed with a table
+ * lookup per byte of the active positions.
+ */
+public class BitParallelAutomaton implements Serializable {
+
+	public static final int MAX_POSITIONS = 128;
+
+	public final TerminalSet terminalSet;
+	public final int positionCount;
+	/**
+	 * Positions that can be active after reading the first character (low and high word)
+	 */
+	final long firstLow;
+	final long firstHigh;
+	/**
+	 * [character] => positions that are reached by the character (low and high words)
+	 */
+	final long[] characterLow;
+	final long[] characterHigh;
+	/**
+	 * [(byte index * 256 + byte of the active positions) * 2 (+ 1)] => positions that follow them (low and high word)
+	 */
+	final long[] follow;
+	final int byteCount;
+	/**
+	 * Positions that end a token (low and high word)
+	 */
+	final long finalLow;
+	final long finalHigh;
+	/**
+	 * [position] => terminal type if the position ends a token, -1 otherwise
+	 */
+	private final int[] finalTypes;
+
+	public BitParallelAutomaton(Automaton automaton) {
+		assert !automaton.isDeterministic;
+		this.terminalSet = automaton.terminalSet;
+		// positions and their incoming characters
+		List<State> sources = new ArrayList<>();
+		List<State> targets = new ArrayList<>();
+		List<List<Integer>> characters = new ArrayList<>();
+		for (State state : automaton.states){
+			Map<State, List<Integer>> charactersPerTarget = new TreeMap<>();
+			for (Map.Entry<Integer, State> entry : state.neighbors.entrySet()){
+				charactersPerTarget.computeIfAbsent(entry.getValue(), s -> new ArrayList<>()).add(entry.getKey());
+			}
+			for (Map.Entry<State, List<Integer>> entry : charactersPerTarget.entrySet()){
+				sources.add(state);
+				targets.add(entry.getKey());
+				characters.add(entry.getValue());
+			}
+		}
+		positionCount = sources.size();
+		if (positionCount > MAX_POSITIONS){
+			throw new SWPException(String.format("The automaton has %d positions, a bit parallel automaton supports " +
+					"at most %d", positionCount, MAX_POSITIONS));
+		}
+		// [state] => positions that start at the state
+		Map<State, long[]> outgoing = new HashMap<>();
+		for (int position = 0; position < positionCount; position++){
+			set(outgoing.computeIfAbsent(sources.get(position), s -> new long[2]), position);
+		}
+		long[] first = positionsAfter(automaton.initialState, outgoing);
+		firstLow = first[0];
+		firstHigh = first[1];
+		characterLow = new long[Utils.MAX_CHAR + 1];
+		characterHigh = new long[Utils.MAX_CHAR + 1];
+		finalTypes = new int[positionCount];
+		long[] followOfPosition = new long[positionCount * 2];
+		long[] finals = new long[2];
+		for (int position = 0; position < positionCount; position++){
+			for (int c : characters.get(position)){
+				if (c >= Utils.MIN_CHAR && c <= Utils.MAX_CHAR){
+					if (position < 64){
+						characterLow[c] |= 1L << position;
+					} else {
+						characterHigh[c] |= 1L << (position - 64);
+					}
+				}
+			}
+			long[] positions = positionsAfter(targets.get(position), outgoing);
+			followOfPosition[position * 2] = positions[0];
+			followOfPosition[position * 2 + 1] = positions[1];
+			finalTypes[position] = finalType(targets.get(position), automaton);
+			if (finalTypes[position] != -1){
+				set(finals, position);
+			}
+		}
+		finalLow = finals[0];
+		finalHigh = finals[1];
+		byteCount = Math.max(1, (positionCount + 7) / 8);
+		follow = new long[byteCount * 256 * 2];
+		for (int byteIndex = 0; byteIndex < byteCount; byteIndex++){
+			for (int value = 0; value < 256; value++){
+				int index = (byteIndex * 256 + value) * 2;
+				for (int bit = 0; bit < 8; bit++){
+					int position = byteIndex * 8 + bit;
+					if ((value & (1 << bit)) != 0 && position < positionCount){
+						follow[index] |= followOfPosition[position * 2];
+						follow[index + 1] |= followOfPosition[position * 2 + 1];
+					}
+				}
+			}
+		}
+	}
+
+	private static void set(long[] words, int position){
+		words[position / 64] |= 1L << (position % 64);
+	}
+
+	/**
+	 * Positions that start at a state that is reachable from the passed state via epsilon transitions
+	 */
+	private static long[] positionsAfter(State state, Map<State, long[]> outgoing){
+		Set<State> closure = state.epsilonReachableStates();
+		closure.add(state);
+		long[] positions = new long[2];
+		for (State reachable : closure){
+			if (outgoing.containsKey(reachable)){
+				positions[0] |= outgoing.get(reachable)[0];
+				positions[1] |= outgoing.get(reachable)[1];
+			}
+		}
+		return positions;
+	}
+
+	/**
+	 * Type of the terminal that is matched when the state is reached, the terminal declared first wins
+	 */
+	private static int finalType(State state, Automaton automaton){
+		Set<State> closure = state.epsilonReachableStates();
+		closure.add(state);
+		int type = -1;
+		for (State reachable : closure){
+			Integer reachableType = automaton.finalNodes.get(reachable.id);
+			if (reachableType != null && (type == -1 || reachableType < type)){
+				type = reachableType;
+			}
+		}
+		return type;
+	}
+
+	/**
+	 * Number of positions of the passed automaton
+	 */
+	public static int countPositions(Automaton automaton){
+		int count = 0;
+		for (State state : automaton.states){
+			count += new HashSet<>(state.neighbors.values()).size();
+		}
+		return count;
+	}
+
+	/**
+	 * Type of the token that ends at the passed active positions, -1 if none ends there
+	 */
+	int finalType(long low, long high){
+		long finalPositions = low & finalLow;
+		int type = -1;
+		while (finalPositions != 0){
+			int position = Long.numberOfTrailingZeros(finalPositions);
+			if (type == -1 || finalTypes[position] < type){
+				type = finalTypes[position];
+			}
+			finalPositions &= finalPositions - 1;
+		}
+		finalPositions = high & finalHigh;
+		while (finalPositions != 0){
+			int position = 64 + Long.numberOfTrailingZeros(finalPositions);
+			if (type == -1 || finalTypes[position] < type){
+				type = finalTypes[position];
+			}
+			finalPositions &= finalPositions - 1;
+		}
+		return type;
+	}
+
+	/**
+	 * Characters that lead from the passed following positions to an active position
+	 */
+	List<Integer> expectedCharacters(long followLow, long followHigh){
+		List<Integer> expected = new ArrayList<>();
+		for (int c = Utils.MIN_CHAR; c <= Utils.MAX_CHAR; c++){
+			if ((followLow & characterLow[c]) != 0 || (followHigh & characterHigh[c]) != 0){
+				expected.add(c);
+			}
+		}
+		return expected;
+	}
+}
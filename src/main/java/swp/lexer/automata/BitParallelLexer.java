@@ -0,0 +1,146 @@
+package swp.lexer.automata;
+
+import swp.util.Utils;
+import swp.lexer.*;
+import swp.lexer.alphabet.AlphabetLexer;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * Lexer that simulates a non deterministic automaton with bit operations to lex the longest matching token,
+ * @see BitParallelAutomaton
+ *
+ * It needs no deterministic automaton and therefore suits automata with few states (at most 128 positions)
+ * whose deterministic version would be large.
+ */
+public class BitParallelLexer extends BaseAutomatonLexer {
+
+	private final BitParallelAutomaton automaton;
+
+	public BitParallelLexer(BitParallelAutomaton automaton, AlphabetLexer alphabetLexer) {
+		super(automaton.terminalSet, alphabetLexer);
+		this.automaton = automaton;
+	}
+
+	public BitParallelLexer(BitParallelAutomaton automaton, String input, int[] ignoredTokenTypes){
+		this(automaton, new ByteArrayInputStream(input.getBytes()), ignoredTokenTypes);
+	}
+
+	public BitParallelLexer(BitParallelAutomaton automaton, String input, int[] ignoredTokenTypes,
+	                        String[] ignoredResultingTokenTypes){
+		this(automaton, new ByteArrayInputStream(input.getBytes()), ignoredTokenTypes);
+		ignore(ignoredResultingTokenTypes);
+	}
+
+	public BitParallelLexer(BitParallelAutomaton automaton, InputStream input, int[] ignoredTokenTypes) {
+		this(automaton, new AlphabetLexer(input, ignoredTokenTypes));
+	}
+
+	private Token lexToken(){
+		if (hasIgnoredCharacters){
+			skipIgnoredCharacters();
+		}
+		int start = offset;
+		int startLine = line;
+		int startColumn = column;
+		// positions that the next character can activate
+		long followLow = automaton.firstLow;
+		long followHigh = automaton.firstHigh;
+		final long[] follow = automaton.follow;
+		final int byteCount = automaton.byteCount;
+		// position, line and column after the current character
+		int pos = offset;
+		int curLine = line;
+		int curColumn = column;
+		// end of the last accepted token
+		int lastType = -1;
+		int lastEnd = start;
+		int lastLine = line;
+		int lastColumn = column;
+		boolean skippedCharacters = false;
+		while (true){
+			int cur;
+			if (pos < input.length){
+				cur = input[pos] & 0xff;
+				if (ignoredCharacters[cur]){
+					skippedCharacters = true;
+					if (cur == '\n') {
+						curLine++;
+						curColumn = 0;
+					} else {
+						curColumn++;
+					}
+					pos++;
+					continue;
+				}
+			} else if (pos == input.length){
+				cur = 0;
+			} else {
+				// behind the end of input character
+				cur = -1;
+			}
+			long low = 0;
+			long high = 0;
+			if (cur >= Utils.MIN_CHAR && cur <= Utils.MAX_CHAR) {
+				low = followLow & automaton.characterLow[cur];
+				high = followHigh & automaton.characterHigh[cur];
+			}
+			if (low == 0 && high == 0){
+				if (lastType != -1) {
+					offset = Math.min(lastEnd, input.length);
+					line = lastLine;
+					column = lastColumn;
+					return new Token(lastType, automaton.terminalSet, tokenValue(start, lastEnd, skippedCharacters),
+							new Location(startLine, startColumn, start));
+				}
+				if (pos >= input.length){
+					cur = 0;
+				}
+				Token errorToken = new Token(cur, alphabetTerminals,
+						pos >= input.length ? "" : Character.toString((char) cur), new Location(curLine, curColumn, pos));
+				long errorLow = followLow;
+				long errorHigh = followHigh;
+				throw LexerError.create(errorToken, () -> automaton.expectedCharacters(errorLow, errorHigh));
+			}
+			pos++;
+			if (cur == '\n') {
+				curLine++;
+				curColumn = 0;
+			} else if (pos <= input.length) {
+				curColumn++;
+			}
+			if (((low & automaton.finalLow) | (high & automaton.finalHigh)) != 0){
+				lastType = automaton.finalType(low, high);
+				lastEnd = pos;
+				lastLine = curLine;
+				lastColumn = curColumn;
+			}
+			// union of the followers of the active positions, one table lookup per byte
+			followLow = 0;
+			followHigh = 0;
+			for (int i = 0; i < byteCount; i++){
+				int value = (int)((i < 8 ? low >>> (i * 8) : high >>> ((i - 8) * 8)) & 0xff);
+				if (value != 0){
+					int index = (i * 256 + value) * 2;
+					followLow |= follow[index];
+					followHigh |= follow[index + 1];
+				}
+			}
+		}
+	}
+
+	@Override
+	protected Token lexNextToken() {
+		Token token;
+		do {
+			token = lexToken();
+		} while (ignoredTokens[token.type]);
+		return token;
+	}
+
+	@Override
+	public Checkpoint mark() {
+		return new Checkpoint(0, cur().location);
+	}
+}
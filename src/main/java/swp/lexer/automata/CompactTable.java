@@ -0,0 +1,243 @@
+package swp.lexer.automata;
+
+import swp.lexer.alphabet.AlphabetTerminals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lexer table that stores only the transitions of a state that differ from the state's default transition.
+ *
+ * The characters are grouped into classes (like in the CompressedTable). The non default transitions of all
+ * states are packed into a single array with row displacement: the transition of state s for the class c is
+ * stored at base[s] + c if the entry there belongs to s, the default transition of s is used otherwise.
+ * An entry combines the owning state and the next state, using bytes or shorts for both if the state count
+ * allows it, therefore a lookup reads a single array element.
+ */
+public class CompactTable extends Table {
+
+	/**
+	 * character => character class
+	 */
+	private final byte[] classes;
+	private final int[] tokenTypeTranslations;
+	public final ArrayList<ArrayList<Integer>> reverseTranslations;
+	/**
+	 * [state] => offset of the state's row in the entries
+	 */
+	private final int[] base;
+	/**
+	 * [state] => next state for all classes without an entry
+	 */
+	private final int[] defaults;
+	/**
+	 * Entries (owning state << 8 | next state) for less than 129 states, null otherwise
+	 */
+	private final short[] byteEntries;
+	/**
+	 * Entries (owning state << 16 | next state) for less than 32769 states, null otherwise
+	 */
+	private final int[] shortEntries;
+	/**
+	 * Entries (owning state << 32 | next state), null if one of the smaller encodings is used
+	 */
+	private final long[] intEntries;
+	private final int classCount;
+	private final int entryCount;
+
+	public CompactTable(Table table) {
+		super(table.terminalSet, null, table.finalTypes, table.initialState);
+		CompressedTable compressed = table.compress();
+		keywords = table.keywords;
+		tokenTypeTranslations = compressed.tokenTypeTranslations;
+		reverseTranslations = compressed.reverseTranslations;
+		classCount = reverseTranslations.size();
+		classes = new byte[tokenTypeTranslations.length];
+		for (int i = 0; i < classes.length; i++){
+			classes[i] = (byte)tokenTypeTranslations[i];
+		}
+		int stateCount = finalTypes.length;
+		defaults = new int[stateCount];
+		base = new int[stateCount];
+		// [state] => classes whose transition differs from the default one
+		int[][] exceptions = new int[stateCount][];
+		for (int state = 0; state < stateCount; state++){
+			int[] row = compressed.transitions[state];
+			defaults[state] = mostCommonTarget(row);
+			int[] stateExceptions = new int[row.length];
+			int count = 0;
+			for (int col = 0; col < row.length; col++){
+				if (row[col] != defaults[state]){
+					stateExceptions[count++] = col;
+				}
+			}
+			exceptions[state] = Arrays.copyOf(stateExceptions, count);
+		}
+		// place the rows with the most exceptions first, they are the hardest to fit
+		Integer[] order = new Integer[stateCount];
+		for (int i = 0; i < stateCount; i++){
+			order[i] = i;
+		}
+		Arrays.sort(order, (s1, s2) -> exceptions[s2].length != exceptions[s1].length ?
+				Integer.compare(exceptions[s2].length, exceptions[s1].length) : Integer.compare(s1, s2));
+		// [index] => owning state, -1 if the entry is free
+		int[] owners = new int[stateCount * classCount + classCount];
+		Arrays.fill(owners, -1);
+		int maxBase = 0;
+		for (int state : order){
+			int offset = 0;
+			while (!fits(owners, offset, exceptions[state])){
+				offset++;
+			}
+			for (int col : exceptions[state]){
+				owners[offset + col] = state;
+			}
+			base[state] = offset;
+			maxBase = Math.max(maxBase, offset);
+		}
+		// the entries behind the last base cover every class, the lookup needs no range check
+		entryCount = maxBase + classCount;
+		short[] byteEntries = null;
+		int[] shortEntries = null;
+		long[] intEntries = null;
+		if (stateCount <= Byte.MAX_VALUE + 1){
+			byteEntries = new short[entryCount];
+			Arrays.fill(byteEntries, (short)-1);
+		} else if (stateCount <= Short.MAX_VALUE + 1){
+			shortEntries = new int[entryCount];
+			Arrays.fill(shortEntries, -1);
+		} else {
+			intEntries = new long[entryCount];
+			Arrays.fill(intEntries, -1);
+		}
+		for (int state = 0; state < stateCount; state++){
+			for (int col : exceptions[state]){
+				int index = base[state] + col;
+				int next = compressed.transitions[state][col];
+				if (byteEntries != null){
+					byteEntries[index] = (short)(state << 8 | (next & 0xff));
+				} else if (shortEntries != null){
+					shortEntries[index] = state << 16 | (next & 0xffff);
+				} else {
+					intEntries[index] = (long)state << 32 | (next & 0xffffffffL);
+				}
+			}
+		}
+		this.byteEntries = byteEntries;
+		this.shortEntries = shortEntries;
+		this.intEntries = intEntries;
+	}
+
+	private static int mostCommonTarget(int[] row){
+		Map<Integer, Integer> counts = new HashMap<>();
+		int target = -1;
+		int maxCount = 0;
+		for (int next : row){
+			int count = counts.merge(next, 1, Integer::sum);
+			if (count > maxCount || (count == maxCount && next < target)){
+				target = next;
+				maxCount = count;
+			}
+		}
+		return target;
+	}
+
+	private static boolean fits(int[] owners, int offset, int[] columns){
+		for (int col : columns){
+			if (owners[offset + col] != -1){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int next(int state, int character) {
+		int index = base[state] + classes[character];
+		if (byteEntries != null){
+			int entry = byteEntries[index];
+			return entry >> 8 == state ? (byte)entry : defaults[state];
+		}
+		if (shortEntries != null){
+			int entry = shortEntries[index];
+			return entry >> 16 == state ? (short)entry : defaults[state];
+		}
+		long entry = intEntries[index];
+		return (int)(entry >> 32) == state ? (int)entry : defaults[state];
+	}
+
+	private int nextForClass(int state, int characterClass){
+		return next(state, reverseTranslations.get(characterClass).get(0));
+	}
+
+	@Override
+	public List<Integer> expectedCharacters(int state) {
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < classCount; i++){
+			if (nextForClass(state, i) != -1){
+				expected.addAll(reverseTranslations.get(i));
+			}
+		}
+		return expected;
+	}
+
+	/**
+	 * Approximate size of the transition data in bytes
+	 */
+	public int sizeInBytes(){
+		int entrySize = byteEntries != null ? 2 : (shortEntries != null ? 4 : 8);
+		return classes.length + (base.length + defaults.length) * 4 + entryCount * entrySize;
+	}
+
+	/**
+	 * Expands the table into a CompressedTable with the same character classes
+	 */
+	@Override
+	public CompressedTable compress() {
+		int[][] transitions = new int[finalTypes.length][classCount];
+		for (int state = 0; state < transitions.length; state++){
+			for (int i = 0; i < classCount; i++){
+				transitions[state][i] = nextForClass(state, i);
+			}
+		}
+		return new CompressedTable(terminalSet, transitions, finalTypes, initialState,
+				tokenTypeTranslations, reverseTranslations);
+	}
+
+	@Override
+	public CompactTable compact() {
+		return this;
+	}
+
+	@Override
+	public String toTableClass(List<EnumTableGenerator.TerminalDescription> descriptions, String enumClassName,
+	                           Path templateFile, String packageName, String className) throws IOException {
+		return compress().toTableClass(descriptions, enumClassName, templateFile, packageName, className);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		AlphabetTerminals alphabetTerminals = new AlphabetTerminals();
+		for (int state = 0; state < finalTypes.length; state++){
+			if (state != 0){
+				builder.append("\n");
+			}
+			builder.append(String.format("State %3d = %3d {default => %3d ", state, finalTypes[state], defaults[state]));
+			for (int i = 0; i < classCount; i++){
+				int next = nextForClass(state, i);
+				if (next != defaults[state]){
+					builder.append(alphabetTerminals.typesToString(reverseTranslations.get(i)));
+					builder.append(" => ").append(String.format("%3d  ", next));
+				}
+			}
+			builder.append(" }");
+		}
+		return builder.toString();
+	}
+}
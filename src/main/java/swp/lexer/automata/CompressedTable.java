@@ -1,5 +1,6 @@
 package swp.lexer.automata;
 
+import swp.SWPException;
 import swp.lexer.TerminalSet;
 import swp.lexer.alphabet.AlphabetTerminals;
 
@@ -27,6 +28,23 @@ public class CompressedTable extends Table {
 		this.reverseTranslations = reverseTranslations;
 	}
 
+	@Override
+	public int next(int state, int character) {
+		return transitions[state][tokenTypeTranslations[character]];
+	}
+
+	@Override
+	public List<Integer> expectedCharacters(int state) {
+		List<Integer> expected = new ArrayList<>();
+		int[] row = transitions[state];
+		for (int i = 0; i < row.length; i++){
+			if (row[i] != -1){
+				expected.addAll(reverseTranslations.get(i));
+			}
+		}
+		return expected;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
@@ -56,6 +74,9 @@ public class CompressedTable extends Table {
 	public String toTableClass(List<EnumTableGenerator.TerminalDescription> descriptions,
 							   String enumClassName,
 							   Path templateFile, String packageName, String className) throws IOException {
+		if (keywords != null){
+			throw new SWPException("Lexer tables with a keyword table can't be converted into a class");
+		}
 		List<String> finalTypesStrings = new ArrayList<>();
 		for (int i = 0; i < finalTypes.length; i++) {
 			int finalType = finalTypes[i];
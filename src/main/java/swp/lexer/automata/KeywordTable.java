@@ -0,0 +1,176 @@
+package swp.lexer.automata;
+
+import swp.SWPException;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Keywords that the lexer automaton lexes as tokens of other terminals (usually identifiers), the lexer
+ * replaces the type of such a token by the keyword's type.
+ *
+ * The keywords are found with a minimal perfect hash function (hash and displace): a first hash assigns each
+ * keyword a bucket, every bucket stores a displacement that maps its keywords to distinct slots of a table
+ * with one slot per keyword.
+ */
+public class KeywordTable implements Serializable {
+
+	/**
+	 * [slot] => keyword
+	 */
+	private final byte[][] keywords;
+	/**
+	 * [slot] => terminal type of the keyword
+	 */
+	private final int[] types;
+	/**
+	 * [bucket] => displacement d, the slot of a keyword is (f1 + (d / size) * f2 + d % size) % size
+	 */
+	private final int[] displacements;
+	/**
+	 * [terminal type] => can tokens of this type be keywords?
+	 */
+	private final boolean[] hostTypes;
+
+	/**
+	 * @param keywords keyword => terminal type
+	 * @param hostTypes terminal types that the automaton assigns to the keywords
+	 */
+	public KeywordTable(Map<String, Integer> keywords, Collection<Integer> hostTypes) {
+		int size = keywords.size();
+		this.keywords = new byte[size][];
+		this.types = new int[size];
+		this.hostTypes = new boolean[hostTypes.isEmpty() ? 0 : Collections.max(hostTypes) + 1];
+		for (int hostType : hostTypes){
+			this.hostTypes[hostType] = true;
+		}
+		int bucketCount = Math.max(1, size / 2);
+		displacements = new int[bucketCount];
+		List<List<byte[]>> buckets = new ArrayList<>();
+		for (int i = 0; i < bucketCount; i++){
+			buckets.add(new ArrayList<>());
+		}
+		Map<byte[], Integer> typesOfKeywords = new IdentityHashMap<>();
+		List<String> sortedKeywords = new ArrayList<>(keywords.keySet());
+		Collections.sort(sortedKeywords);
+		for (String keyword : sortedKeywords){
+			byte[] bytes = keyword.getBytes(StandardCharsets.ISO_8859_1);
+			typesOfKeywords.put(bytes, keywords.get(keyword));
+			buckets.get(bucket(hash(bytes, 0, bytes.length))).add(bytes);
+		}
+		// place the largest buckets first, they are the hardest to place
+		Integer[] order = new Integer[bucketCount];
+		for (int i = 0; i < bucketCount; i++){
+			order[i] = i;
+		}
+		Arrays.sort(order, (b1, b2) -> buckets.get(b2).size() != buckets.get(b1).size() ?
+				Integer.compare(buckets.get(b2).size(), buckets.get(b1).size()) : Integer.compare(b1, b2));
+		boolean[] used = new boolean[size];
+		for (int bucket : order){
+			List<byte[]> bucketKeywords = buckets.get(bucket);
+			if (bucketKeywords.isEmpty()){
+				continue;
+			}
+			int[] slots = new int[bucketKeywords.size()];
+			int displacement = 0;
+			while (!placeable(bucketKeywords, displacement, used, slots)){
+				displacement++;
+				if (displacement == Integer.MAX_VALUE || displacement / size > size){
+					throw new SWPException("Can't find a perfect hash function for the keywords " + sortedKeywords);
+				}
+			}
+			displacements[bucket] = displacement;
+			for (int i = 0; i < slots.length; i++){
+				used[slots[i]] = true;
+				this.keywords[slots[i]] = bucketKeywords.get(i);
+				types[slots[i]] = typesOfKeywords.get(bucketKeywords.get(i));
+			}
+		}
+	}
+
+	private boolean placeable(List<byte[]> bucketKeywords, int displacement, boolean[] used, int[] slots){
+		for (int i = 0; i < slots.length; i++){
+			byte[] keyword = bucketKeywords.get(i);
+			int slot = slot(hash(keyword, 0, keyword.length), displacement);
+			if (used[slot]){
+				return false;
+			}
+			for (int j = 0; j < i; j++){
+				if (slots[j] == slot){
+					return false;
+				}
+			}
+			slots[i] = slot;
+		}
+		return true;
+	}
+
+	/**
+	 * FNV-1a hash with a final mixing step
+	 */
+	private static long hash(byte[] input, int start, int end){
+		long hash = 0xcbf29ce484222325L;
+		for (int i = start; i < end; i++){
+			hash = (hash ^ (input[i] & 0xff)) * 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	private int bucket(long hash){
+		return (int)((hash >>> 32) & 0x7fffffff) % displacements.length;
+	}
+
+	private int slot(long hash, int displacement){
+		long f1 = hash & 0xffff;
+		long f2 = (hash >>> 16) & 0xffff;
+		return (int)((f1 + (displacement / keywords.length) * f2 + displacement % keywords.length) % keywords.length);
+	}
+
+	public boolean isHostType(int type){
+		return type < hostTypes.length && hostTypes[type];
+	}
+
+	/**
+	 * Returns the keyword type of the token between start (inclusive) and end (exclusive),
+	 * or the passed type if it isn't a keyword
+	 */
+	public int classify(byte[] input, int start, int end, int type){
+		if (keywords.length == 0 || !isHostType(type)){
+			return type;
+		}
+		long hash = hash(input, start, end);
+		int slot = slot(hash, displacements[bucket(hash)]);
+		byte[] keyword = keywords[slot];
+		if (keyword.length != end - start){
+			return type;
+		}
+		for (int i = 0; i < keyword.length; i++){
+			if (keyword[i] != input[start + i]){
+				return type;
+			}
+		}
+		return types[slot];
+	}
+
+	public int classify(String token, int type){
+		byte[] bytes = token.getBytes(StandardCharsets.ISO_8859_1);
+		return classify(bytes, 0, bytes.length, type);
+	}
+
+	public int size(){
+		return keywords.length;
+	}
+
+	@Override
+	public String toString() {
+		List<String> strings = new ArrayList<>();
+		for (int i = 0; i < keywords.length; i++){
+			strings.add(new String(keywords[i], StandardCharsets.ISO_8859_1) + " => " + types[i]);
+		}
+		return "{" + String.join(", ", strings) + "}";
+	}
+}
@@ -0,0 +1,354 @@
+package swp.lexer.automata;
+
+import swp.util.Utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Lexer table that determinizes the non deterministic automaton on demand while lexing (like RE2's lazy DFA).
+ *
+ * A state of this table is a set of automaton states, its transitions are computed when they are used first.
+ * The table caches at most maxStates states. If the cache is full, it is flushed and only the initial state is
+ * kept. If the cache is flushed more than maxFlushes times, the table stops to store the transitions
+ * and simulates the non deterministic automaton instead (still caching the states).
+ *
+ * The cache changes while lexing and a flush invalidates the state ids that a lexer holds, therefore every lexer
+ * uses its own copy of the table (@see #forLexer()), the copies share the non deterministic automaton.
+ */
+public class LazyTable extends Table {
+
+	public static final int DEFAULT_MAX_STATES = 4096;
+	public static final int DEFAULT_MAX_FLUSHES = 16;
+
+	private static final int UNKNOWN = -2;
+	private static final int CHARACTER_COUNT = Utils.MAX_CHAR - Utils.MIN_CHAR + 1;
+
+	/**
+	 * [automaton state] => states reachable via epsilon transitions (including the state itself), sorted
+	 */
+	private final int[][] closures;
+	/**
+	 * [automaton state] => characters of its transitions
+	 */
+	private final int[][] transitionCharacters;
+	/**
+	 * [automaton state] => targets of its transitions
+	 */
+	private final int[][] transitionTargets;
+	/**
+	 * [automaton state] => terminal type, -1 if not final
+	 */
+	private final int[] automatonFinalTypes;
+	private final int[] initialSet;
+
+	public final int maxStates;
+	public final int maxFlushes;
+
+	private transient Map<StateSet, Integer> ids;
+	/**
+	 * [state] => automaton states
+	 */
+	private transient int[][] sets;
+	/**
+	 * [state] => [character] => next state, UNKNOWN if not computed yet, null if not computed yet or if the
+	 * table simulates the automaton
+	 */
+	private transient int[][] rows;
+	private transient int[] types;
+	private transient int size;
+	private transient int flushCount;
+
+	public LazyTable(Automaton automaton, int maxStates, int maxFlushes) {
+		super(automaton.terminalSet, null, new int[0], 0);
+		assert !automaton.isDeterministic;
+		assert maxStates > 1;
+		this.maxStates = maxStates;
+		this.maxFlushes = maxFlushes;
+		int stateCount = automaton.states.size();
+		closures = new int[stateCount][];
+		transitionCharacters = new int[stateCount][];
+		transitionTargets = new int[stateCount][];
+		automatonFinalTypes = new int[stateCount];
+		for (State state : automaton.states){
+			Set<State> closure = state.epsilonReachableStates();
+			closure.add(state);
+			closures[state.id] = toSortedArray(closure);
+			transitionCharacters[state.id] = new int[state.neighbors.size()];
+			transitionTargets[state.id] = new int[state.neighbors.size()];
+			int i = 0;
+			for (Map.Entry<Integer, State> entry : state.neighbors.entrySet()){
+				transitionCharacters[state.id][i] = entry.getKey();
+				transitionTargets[state.id][i] = entry.getValue().id;
+				i++;
+			}
+			automatonFinalTypes[state.id] = automaton.finalNodes.getOrDefault(state.id, -1);
+		}
+		initialSet = closures[automaton.initialState.id];
+		initCache();
+	}
+
+	public LazyTable(Automaton automaton) {
+		this(automaton, DEFAULT_MAX_STATES, DEFAULT_MAX_FLUSHES);
+	}
+
+	/**
+	 * Copy with an empty cache
+	 */
+	private LazyTable(LazyTable table) {
+		super(table.terminalSet, null, new int[0], 0);
+		maxStates = table.maxStates;
+		maxFlushes = table.maxFlushes;
+		closures = table.closures;
+		transitionCharacters = table.transitionCharacters;
+		transitionTargets = table.transitionTargets;
+		automatonFinalTypes = table.automatonFinalTypes;
+		initialSet = table.initialSet;
+		keywords = table.keywords;
+		initCache();
+	}
+
+	/**
+	 * Copy with its own cache
+	 */
+	@Override
+	public LazyTable forLexer() {
+		return new LazyTable(this);
+	}
+
+	private static int[] toSortedArray(Collection<State> states){
+		int[] ids = new int[states.size()];
+		int i = 0;
+		for (State state : states){
+			ids[i++] = state.id;
+		}
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	private void initCache(){
+		ids = new HashMap<>();
+		sets = new int[maxStates][];
+		rows = new int[maxStates][];
+		types = new int[maxStates];
+		size = 0;
+		addState(initialSet);
+	}
+
+	private Object readResolve(){
+		initCache();
+		return this;
+	}
+
+	private int addState(int[] set){
+		int id = size++;
+		sets[id] = set;
+		int type = -1;
+		for (int state : set){
+			// the terminal declared first wins
+			if (automatonFinalTypes[state] != -1 && (type == -1 || automatonFinalTypes[state] < type)){
+				type = automatonFinalTypes[state];
+			}
+		}
+		types[id] = type;
+		ids.put(new StateSet(set), id);
+		return id;
+	}
+
+	/**
+	 * Automaton states that follow the passed states for the character, null if there are none
+	 */
+	private int[] step(int[] set, int character){
+		BitSet next = new BitSet();
+		for (int state : set){
+			int[] characters = transitionCharacters[state];
+			for (int i = 0; i < characters.length; i++){
+				if (characters[i] == character){
+					for (int reachable : closures[transitionTargets[state][i]]){
+						next.set(reachable);
+					}
+				}
+			}
+		}
+		return next.isEmpty() ? null : next.stream().toArray();
+	}
+
+	@Override
+	public int next(int state, int character) {
+		int[] row = rows[state];
+		if (row != null){
+			int next = row[character];
+			if (next != UNKNOWN){
+				return next;
+			}
+		}
+		return computeNext(state, character);
+	}
+
+	private int computeNext(int state, int character){
+		int[] set = step(sets[state], character);
+		int next = -1;
+		boolean flushed = false;
+		if (set != null){
+			StateSet key = new StateSet(set);
+			Integer id = ids.get(key);
+			if (id == null && size == maxStates){
+				flush();
+				flushed = true;
+				// the flush keeps the initial state, it mustn't get a second id
+				id = ids.get(key);
+			}
+			if (id == null){
+				id = addState(set);
+			}
+			next = id;
+		}
+		// only the initial state keeps its id when the cache is flushed
+		if (flushCount <= maxFlushes && (!flushed || state == initialState)){
+			if (rows[state] == null){
+				int[] row = new int[CHARACTER_COUNT];
+				Arrays.fill(row, UNKNOWN);
+				rows[state] = row;
+			}
+			rows[state][character] = next;
+		}
+		return next;
+	}
+
+	/**
+	 * Drops all states besides the initial state
+	 */
+	private void flush(){
+		flushCount++;
+		initCache();
+	}
+
+	@Override
+	public int finalType(int state) {
+		return types[state];
+	}
+
+	@Override
+	public List<Integer> expectedCharacters(int state) {
+		List<Integer> expected = new ArrayList<>();
+		for (int c = Utils.MIN_CHAR; c <= Utils.MAX_CHAR; c++){
+			if (step(sets[state], c) != null){
+				expected.add(c);
+			}
+		}
+		return expected;
+	}
+
+	/**
+	 * Number of currently cached states
+	 */
+	@Override
+	public int stateCount() {
+		return size;
+	}
+
+	public int getFlushCount(){
+		return flushCount;
+	}
+
+	/**
+	 * Does the table simulate the non deterministic automaton, as it has been flushed too often?
+	 */
+	public boolean simulatesAutomaton(){
+		return flushCount > maxFlushes;
+	}
+
+	/**
+	 * The lexers don't skip runs, as their states might be flushed
+	 */
+	@Override
+	public RunScanner[] loopScanners(BitSet skippedTypes) {
+		return null;
+	}
+
+	/**
+	 * Determinizes the whole automaton (regardless of the cache size)
+	 */
+	public Table toTable(){
+		Map<StateSet, Integer> tableIds = new HashMap<>();
+		List<int[]> tableSets = new ArrayList<>();
+		List<int[]> transitions = new ArrayList<>();
+		tableIds.put(new StateSet(initialSet), 0);
+		tableSets.add(initialSet);
+		for (int i = 0; i < tableSets.size(); i++){
+			int[] row = new int[CHARACTER_COUNT];
+			for (int c = Utils.MIN_CHAR; c <= Utils.MAX_CHAR; c++){
+				int[] set = step(tableSets.get(i), c);
+				if (set == null){
+					row[c - Utils.MIN_CHAR] = -1;
+				} else {
+					StateSet key = new StateSet(set);
+					if (!tableIds.containsKey(key)){
+						tableIds.put(key, tableSets.size());
+						tableSets.add(set);
+					}
+					row[c - Utils.MIN_CHAR] = tableIds.get(key);
+				}
+			}
+			transitions.add(row);
+		}
+		int[] finalTypes = new int[tableSets.size()];
+		for (int i = 0; i < finalTypes.length; i++){
+			finalTypes[i] = -1;
+			for (int state : tableSets.get(i)){
+				if (automatonFinalTypes[state] != -1 && (finalTypes[i] == -1 || automatonFinalTypes[state] < finalTypes[i])){
+					finalTypes[i] = automatonFinalTypes[state];
+				}
+			}
+		}
+		Table table = new Table(terminalSet, transitions.toArray(new int[0][]), finalTypes, 0);
+		table.keywords = keywords;
+		return table;
+	}
+
+	@Override
+	public CompressedTable compress() {
+		return toTable().compress();
+	}
+
+	@Override
+	public CompactTable compact() {
+		return toTable().compact();
+	}
+
+	@Override
+	public String toTableClass(List<EnumTableGenerator.TerminalDescription> descriptions, String enumClassName,
+	                           Path templateFile, String packageName, String className) throws IOException {
+		return toTable().toTableClass(descriptions, enumClassName, templateFile, packageName, className);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LazyTable(%d of %d states cached, %d flushes)", size, maxStates, flushCount);
+	}
+
+	/**
+	 * Sorted set of automaton states, used as a key
+	 */
+	private static class StateSet {
+
+		final int[] states;
+		final int hash;
+
+		StateSet(int[] states) {
+			this.states = states;
+			this.hash = Arrays.hashCode(states);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof StateSet && Arrays.equals(states, ((StateSet) obj).states);
+		}
+	}
+}
@@ -1,11 +1,13 @@
 package swp.lexer.automata;
 
+import swp.Config;
 import swp.SWPException;
 import swp.grammar.Grammar;
 import swp.grammar.GrammarBuilder;
 import swp.lexer.Lexer;
 import swp.lexer.Token;
 import swp.parser.lr.*;
+import swp.util.Metrics;
 import swp.util.Pair;
 import swp.util.SerializableFunction;
 import swp.util.Utils;
@@ -14,8 +16,11 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.stream.IntStream;
@@ -25,19 +30,37 @@ import java.util.stream.IntStream;
  */
 public class LexerDescriptionParser {
 
-	private LRParserTable parserTable = null;
-	private Table basicLexerTable;
+	/**
+	 * Grammar of the lexer descriptions, its actions build up the automaton
+	 */
+	private final Grammar grammar;
 	public Automaton automaton = new Automaton();
 
+	/**
+	 * Lexer and parser table for lexer descriptions, they are created once per JVM and shared by all instances
+	 * (only the grammar with its actions belongs to an instance)
+	 */
+	private static class Bootstrap {
+
+		static final Table lexerTable = createLexerTable();
+
+		static final LRParserTable parserTable;
+
+		static {
+			parserTable = Graph.createFromGrammar(new LexerDescriptionParser(lexerTable).grammar, LRAlgorithm.LALR)
+					.toParserTable();
+		}
+	}
 
 	public LexerDescriptionParser() {
-		init();
+		this(Bootstrap.lexerTable);
 	}
 
-	private void init(){
-		if (parserTable != null){
-			return;
-		}
+	private LexerDescriptionParser(Table lexerTable) {
+		grammar = createGrammar(lexerTable);
+	}
+
+	private static Table createLexerTable(){
 		Automaton a = new Automaton();
 
 		// basic
@@ -77,7 +100,10 @@ public class LexerDescriptionParser {
 		//a.toImage("lexer_description_lexer_automaton", "svg");
 		Automaton determ = a.toDeterministicVersion();
 		//determ.toImage("lexer_description_lexer_determ_automaton", "svg");
-		basicLexerTable = determ.toTable().compress();
+		return determ.toTable().compress();
+	}
+
+	private Grammar createGrammar(Table basicLexerTable){
 		//System.out.println(basicLexerTable);
 		GrammarBuilder builder = new GrammarBuilder(basicLexerTable.terminalSet);
 
@@ -180,18 +206,12 @@ public class LexerDescriptionParser {
 				)
 		));
 		//builder.add("A", "B", "C").add("B", '4').add("C", "").add("C", '3');
-		Graph.isLALR = true;
 		Grammar g = builder.toGrammar("code");
 		//System.out.println(g.longDescription());
-		//System.out.println(g.longDescription());
-		//System.out.println(g.longDescription());
 		//System.out.println("First_1 set = " + g.calculateFirst1Set());
-		Graph graph = Graph.createFromGrammar(g);
-		//System.out.println(graph);
-		//graph.toImage("lexer_description_parser", "svg");
-		parserTable = graph.toParserTable();
-
+		//Graph.createFromGrammar(g, LRAlgorithm.LALR).toImage("lexer_description_parser", "svg");
 		//Utils.repl(str -> createLexer(str));
+		return g;
 	}
 
 	private MetaState parseEscaped(String st){
@@ -417,7 +437,7 @@ public class LexerDescriptionParser {
 	}
 
 	private Lexer createLexer(String input){
-		return new AutomatonLexer(basicLexerTable, input, new int[]{' '}, new int[]{basicLexerTable.terminalSet.stringToType("WS")});
+		return new AutomatonLexer(Bootstrap.lexerTable, input, new int[]{' '}, new int[]{Bootstrap.lexerTable.terminalSet.stringToType("WS")});
 	}
 
 	public void toImage(String lexerGrammar, String name, String type){
@@ -426,9 +446,9 @@ public class LexerDescriptionParser {
 	}
 
 	public Table eval(String input){
-		toAutomaton(input);
+		Metrics.measure("generator.nfa", () -> toAutomaton(input));
 		//automaton.toImage("lexer_eval_non_determ", "svg");
-		return automaton.toDeterministicVersion().toTable().compress();
+		return compress(createDeterministicTable());
 	}
 
 	public Table eval(List<Pair<String, String>> terminals){
@@ -436,31 +456,143 @@ public class LexerDescriptionParser {
 	}
 
 	public Table eval(List<Pair<String, String>> terminals, boolean compress){
-		automaton.clear();
-		automaton.addTerminal("EOF", "\0");
-		for (Pair<String, String> terminal : terminals) {
-			try {
-				Lexer lex = createLexer(terminal.first + " = " + terminal.second);
-				LRParser parser = new LRParser(parserTable.grammar, lex, parserTable);
-				parser.parse();
-			} catch (SWPException exp){
-				throw new SWPException(String.format("In description of terminal %s (%s): %s",
-						terminal.first, Utils.toPrintableRepresentation(terminal.second),
-						exp.getMessage()));
+		return eval(terminals, compress, Config.hashKeywords());
+	}
+
+	/**
+	 * @param hashKeywords lex keywords (terminals described by lower case letters) that a terminal declared after
+	 *                     them matches too (like an identifier terminal) as tokens of this terminal
+	 *                     and find them with a perfect hash table instead of automaton states, @see KeywordTable
+	 */
+	public Table eval(List<Pair<String, String>> terminals, boolean compress, boolean hashKeywords){
+		Map<String, String> keywords = new HashMap<>();
+		if (hashKeywords){
+			for (Pair<String, String> terminal : terminals){
+				if (terminal.second.matches("[a-z_]+")){
+					keywords.put(terminal.first, terminal.second);
+				}
+			}
+		}
+		Table table = createTable(terminals, keywords.keySet());
+		if (!keywords.isEmpty()){
+			Map<String, Integer> hashedKeywords = new HashMap<>();
+			Set<String> hashedNames = new HashSet<>();
+			Set<Integer> hostTypes = new HashSet<>();
+			List<String> names = new ArrayList<>(keywords.keySet());
+			Table keywordlessTable = table;
+			names.sort((n1, n2) -> Integer.compare(keywordlessTable.terminalSet.stringToType(n1),
+					keywordlessTable.terminalSet.stringToType(n2)));
+			for (String name : names){
+				int type = table.terminalSet.stringToType(name);
+				int hostType = lexWhole(table, keywords.get(name));
+				// the keyword has to take precedence over the terminal that the automaton matches instead,
+				// a keyword that is declared twice is only matched as the first terminal
+				if (hostType > type){
+					hashedKeywords.putIfAbsent(keywords.get(name), type);
+					hashedNames.add(name);
+					hostTypes.add(hostType);
+				}
+			}
+			if (hashedNames.size() < keywords.size()){
+				table = createTable(terminals, hashedNames);
+			}
+			if (!hashedKeywords.isEmpty()){
+				table.keywords = new KeywordTable(hashedKeywords, hostTypes);
 			}
 		}
-		Table table = automaton.toDeterministicVersion().toTable();
 		if (compress){
-			return table.compress();
+			return compress(table);
 		}
 		return table;
 	}
 
+	/**
+	 * @param skippedTerminals terminals that only get a type, but no automaton states
+	 */
+	private Table createTable(List<Pair<String, String>> terminals, Set<String> skippedTerminals){
+		createAutomaton(terminals, skippedTerminals);
+		return createDeterministicTable();
+	}
+
+	/**
+	 * Creates the non deterministic automaton
+	 *
+	 * @param skippedTerminals terminals that only get a type, but no automaton states
+	 */
+	private Automaton createAutomaton(List<Pair<String, String>> terminals, Set<String> skippedTerminals){
+		return Metrics.measure("generator.nfa", () -> {
+			automaton.clear();
+			automaton.addTerminal("EOF", "\0");
+			for (Pair<String, String> terminal : terminals) {
+				if (skippedTerminals.contains(terminal.first)){
+					automaton.terminalSet.addTerminal(terminal.first);
+					continue;
+				}
+				try {
+					Lexer lex = createLexer(terminal.first + " = " + terminal.second);
+					LRParser parser = new LRParser(grammar, lex, Bootstrap.parserTable);
+					parser.parse();
+				} catch (SWPException exp){
+					throw new SWPException(String.format("In description of terminal %s (%s): %s",
+							terminal.first, Utils.toPrintableRepresentation(terminal.second),
+							exp.getMessage()));
+				}
+			}
+			return automaton;
+		});
+	}
+
+	/**
+	 * Creates a bit parallel automaton that the BitParallelLexer simulates, it needs no deterministic automaton,
+	 * but the automaton must not have more than BitParallelAutomaton.MAX_POSITIONS positions
+	 */
+	public BitParallelAutomaton evalBitParallel(String input){
+		Metrics.measure("generator.nfa", () -> toAutomaton(input));
+		return Metrics.measure("generator.bitparallel", () -> new BitParallelAutomaton(automaton));
+	}
+
+	/**
+	 * @see #evalBitParallel(String)
+	 */
+	public BitParallelAutomaton evalBitParallel(List<Pair<String, String>> terminals){
+		createAutomaton(terminals, Collections.emptySet());
+		return Metrics.measure("generator.bitparallel", () -> new BitParallelAutomaton(automaton));
+	}
+
+	private Table createDeterministicTable(){
+		if (Config.lazyLexerTables()){
+			return Metrics.measure("generator.dfa", () -> new LazyTable(automaton));
+		}
+		return Metrics.measure("generator.dfa", () -> automaton.toDeterministicVersion().toTable());
+	}
+
+	/**
+	 * @return type of the token that consists of the whole passed string, -1 if there's no such token
+	 */
+	private static int lexWhole(Table table, String string){
+		int state = table.initialState;
+		for (int i = 0; i < string.length() && state != -1; i++){
+			state = table.next(state, string.charAt(i));
+		}
+		return state == -1 ? -1 : table.finalType(state);
+	}
+
+	private static Table compress(Table table){
+		if (table instanceof LazyTable){
+			// compressing would determinize the whole automaton
+			return table;
+		}
+		if (Config.compactLexerTables()){
+			return Metrics.measure("generator.compression", table::compact);
+		}
+		return Metrics.measure("generator.compression", table::compress);
+	}
+
 	private Automaton toAutomaton(String lexerGrammar){
 		automaton.clear();
 		automaton.addTerminal("EOF", "\0");
 		Lexer lex = createLexer(lexerGrammar);
-		LRParser parser = new LRParser(parserTable.grammar, lex, parserTable);
+		LRParser parser = new LRParser(grammar, lex, Bootstrap.parserTable);
 		parser.parse();
 		return automaton;
 	}
@@ -481,7 +613,7 @@ public class LexerDescriptionParser {
 					} while (lex.cur().type != 0);
 					System.out.println("\n");
 					lex = createLexer(line);
-					LRParser parser = new LRParser(parserTable.grammar, lex, parserTable);
+					LRParser parser = new LRParser(grammar, lex, Bootstrap.parserTable);
 					parser.parse();
 					automaton.toDeterministicVersion().toImage("lexer_repl", "svg");
 					System.out.print("=> " + automaton.toTable().compress());
@@ -0,0 +1,448 @@
+package swp.lexer.automata;
+
+import swp.SWPException;
+import swp.lexer.*;
+import swp.lexer.alphabet.AlphabetTerminals;
+import swp.util.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Lexer that lexes a single (large) input in parallel.
+ *
+ * The input is split into chunks. Every chunk is lexed speculatively starting
+ * in the initial state at its first character, as most token boundaries don't depend
+ * on the text before them. The speculative token boundaries are afterwards stitched
+ * together sequentially: the lexer adopts the rest of a chunk as soon as the end of
+ * the previous token equals a speculative token start and re-lexes sequentially
+ * until this is the case otherwise. The resulting token stream is therefore the same
+ * as the one produced by the AutomatonLexer.
+ *
+ * Tokens are only created when they are requested and a lexing error is thrown
+ * when the erroneous token is reached.
+ *
+ * The whole input is kept in memory and addressed with int offsets (like the offsets of Location),
+ * therefore inputs are limited to MAX_INPUT_LENGTH bytes. Besides the input (and its copy without
+ * the ignored characters), the lexer needs 8 bytes per token, 4 bytes per line and 8 bytes per run
+ * of ignored characters.
+ */
+public class ParallelAutomatonLexer implements Lexer {
+
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	/**
+	 * Maximum length of the input in bytes (the maximum array size of most JVMs)
+	 */
+	public static final int MAX_INPUT_LENGTH = Integer.MAX_VALUE - 8;
+
+	private final Table table;
+	/**
+	 * Input without the ignored characters
+	 */
+	private final byte[] input;
+	/**
+	 * Runs of ignored characters: [run] => index in input of the character behind the run,
+	 * ascending, empty if no characters are ignored
+	 */
+	private final int[] ignoredRunIndexes;
+	/**
+	 * [run] => number of ignored characters in this and all previous runs
+	 */
+	private final int[] ignoredRunTotals;
+	/**
+	 * Offsets of the first character of every line (in the original input)
+	 */
+	private final int[] lineStarts;
+	private final boolean[] ignoredTokens;
+
+	private final IntList tokenStarts = new IntList();
+	private final IntList tokenTypes = new IntList();
+	/**
+	 * Start of the first token that couldn't be lexed, -1 if there's no such token
+	 */
+	private int errorStart = -1;
+	/**
+	 * Erroneous character and the state before it
+	 */
+	private int errorIndex;
+	private int errorState;
+
+	private int tokenIndex = -1;
+	private Token current;
+	/**
+	 * Has the lexer been reset without lexing the token at the checkpoint yet?
+	 */
+	private boolean resetPending = false;
+
+	public ParallelAutomatonLexer(Table table, String input, int[] ignoredTokenTypes){
+		this(table, input.getBytes(), ignoredTokenTypes, DEFAULT_CHUNK_SIZE);
+	}
+
+	public ParallelAutomatonLexer(Table table, String input, int[] ignoredTokenTypes, int[] ignoredResultingTokenTypes){
+		this(table, input, ignoredTokenTypes);
+		for (int i : ignoredResultingTokenTypes){
+			ignore(i);
+		}
+	}
+
+	public ParallelAutomatonLexer(Table table, InputStream input, int[] ignoredTokenTypes) {
+		this(table, readFully(input), ignoredTokenTypes, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param table lexer table
+	 * @param input input bytes
+	 * @param ignoredTokenTypes characters that are ignored (like in the AlphabetLexer)
+	 * @param chunkSize approximate number of characters per chunk
+	 */
+	public ParallelAutomatonLexer(Table table, byte[] input, int[] ignoredTokenTypes, int chunkSize) {
+		assert chunkSize > 0;
+		this.table = table.forLexer();
+		this.ignoredTokens = new boolean[table.terminalSet.getValidTypes().size()];
+		IntList lines = new IntList();
+		lines.add(0);
+		for (int i = 0; i < input.length; i++){
+			if (input[i] == '\n'){
+				lines.add(i + 1);
+			}
+		}
+		this.lineStarts = lines.toArray();
+		if (ignoredTokenTypes.length > 0){
+			boolean[] ignoredChars = new boolean[256];
+			for (int c : ignoredTokenTypes){
+				ignoredChars[c & 0xff] = true;
+			}
+			// only the runs of ignored characters are recorded, they are needed to map the offsets back
+			IntList runIndexes = new IntList();
+			IntList runTotals = new IntList();
+			int ignored = 0;
+			for (int i = 0; i < input.length; i++){
+				if (ignoredChars[input[i] & 0xff]){
+					if (i == 0 || !ignoredChars[input[i - 1] & 0xff]){
+						runIndexes.add(i - ignored);
+						runTotals.add(ignored);
+					}
+					ignored++;
+					runTotals.set(runTotals.size() - 1, ignored);
+				}
+			}
+			byte[] filtered = new byte[input.length - ignored];
+			for (int i = 0, length = 0; i < input.length; i++){
+				if (!ignoredChars[input[i] & 0xff]){
+					filtered[length++] = input[i];
+				}
+			}
+			this.input = filtered;
+			this.ignoredRunIndexes = runIndexes.toArray();
+			this.ignoredRunTotals = runTotals.toArray();
+		} else {
+			this.input = input;
+			this.ignoredRunIndexes = new int[0];
+			this.ignoredRunTotals = new int[0];
+		}
+		lex(chunkSize);
+	}
+
+	/**
+	 * Result of speculatively lexing a chunk
+	 */
+	private static class Chunk {
+		final int start;
+		final int end;
+		final IntList tokenStarts = new IntList();
+		final IntList tokenTypes = new IntList();
+		/**
+		 * Start of the first token that doesn't belong to this chunk
+		 * (or that couldn't be lexed)
+		 */
+		int nextStart;
+
+		Chunk(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * State of a single token lexing run
+	 */
+	private static class Cursor {
+		int end;
+		int type;
+		/**
+		 * Index of the erroneous character and the state before it, if type == -1
+		 */
+		int errorIndex;
+		int errorState;
+	}
+
+	private void lex(int chunkSize){
+		// long arithmetic, the chunk boundaries of inputs near MAX_INPUT_LENGTH overflow ints
+		int chunkCount = (int) Math.max(1, ((long) input.length + chunkSize - 1) / chunkSize);
+		Chunk[] chunks = new Chunk[chunkCount];
+		IntStream chunkIndexes = IntStream.range(0, chunkCount);
+		if (!(table instanceof LazyTable)){
+			// lazy tables change while lexing, the chunks share the cache of this lexer
+			chunkIndexes = chunkIndexes.parallel();
+		}
+		chunkIndexes.forEach(i ->
+				chunks[i] = lexChunk((int) ((long) i * chunkSize), (int) Math.min(input.length, (long) (i + 1) * chunkSize)));
+		Cursor cursor = new Cursor();
+		int pos = 0;
+		for (Chunk chunk : chunks){
+			if (pos >= chunk.end){
+				continue;
+			}
+			int index = chunk.tokenStarts.binarySearch(pos);
+			while (index < 0 && pos < chunk.end){
+				if (!lexToken(pos, cursor)){
+					setError(pos, cursor);
+					return;
+				}
+				tokenStarts.add(pos);
+				tokenTypes.add(cursor.type);
+				pos = cursor.end;
+				index = chunk.tokenStarts.binarySearch(pos);
+			}
+			if (index >= 0){
+				for (int i = index; i < chunk.tokenStarts.size(); i++){
+					tokenStarts.add(chunk.tokenStarts.get(i));
+					tokenTypes.add(chunk.tokenTypes.get(i));
+				}
+				pos = chunk.nextStart;
+			}
+		}
+		while (pos < input.length){
+			if (!lexToken(pos, cursor)){
+				setError(pos, cursor);
+				return;
+			}
+			tokenStarts.add(pos);
+			tokenTypes.add(cursor.type);
+			pos = cursor.end;
+		}
+		if (!lexToken(pos, cursor)){
+			setError(pos, cursor);
+			return;
+		}
+		tokenStarts.add(pos);
+		tokenTypes.add(cursor.type);
+	}
+
+	private void setError(int tokenStart, Cursor cursor){
+		errorStart = tokenStart;
+		errorIndex = cursor.errorIndex;
+		errorState = cursor.errorState;
+	}
+
+	/**
+	 * Lexes the tokens that start in the passed range, assuming that a token starts at its beginning
+	 */
+	private Chunk lexChunk(int start, int end){
+		Chunk chunk = new Chunk(start, end);
+		Cursor cursor = new Cursor();
+		int pos = start;
+		while (pos < end && lexToken(pos, cursor)){
+			chunk.tokenStarts.add(pos);
+			chunk.tokenTypes.add(cursor.type);
+			pos = cursor.end;
+		}
+		chunk.nextStart = pos;
+		return chunk;
+	}
+
+	/**
+	 * Lexes the longest token that starts at the passed position.
+	 * The end of the input is represented by the character 0.
+	 *
+	 * @return false on error
+	 */
+	private boolean lexToken(int start, Cursor cursor){
+		int state = table.initialState;
+		int lastType = -1;
+		int lastEnd = start;
+		for (int i = start; i <= input.length; i++){
+			int cur = i == input.length ? 0 : input[i] & 0xff;
+			int prevState = state;
+			if (cur >= Utils.MIN_CHAR && cur <= Utils.MAX_CHAR){
+				state = table.next(state, cur);
+			} else {
+				state = -1;
+			}
+			if (state == -1){
+				if (lastType == -1){
+					cursor.type = -1;
+					cursor.errorIndex = i;
+					cursor.errorState = prevState;
+					return false;
+				}
+				break;
+			}
+			if (table.finalType(state) != -1){
+				lastType = table.finalType(state);
+				lastEnd = Math.min(i + 1, input.length);
+			}
+		}
+		if (table.keywords != null){
+			lastType = table.keywords.classify(input, start, lastEnd, lastType);
+		}
+		cursor.type = lastType;
+		cursor.end = lastEnd;
+		return true;
+	}
+
+	private Location location(int index){
+		int offset = originalOffset(index);
+		int line = Arrays.binarySearch(lineStarts, offset);
+		if (line < 0){
+			line = -line - 2;
+		}
+		return new Location(line + 1, offset - lineStarts[line], offset);
+	}
+
+	/**
+	 * Offset in the original input of the passed index in the input without the ignored characters
+	 */
+	private int originalOffset(int index){
+		// last run that lies before the character
+		int run = Arrays.binarySearch(ignoredRunIndexes, index);
+		if (run < 0){
+			run = -run - 2;
+		}
+		return run < 0 ? index : index + ignoredRunTotals[run];
+	}
+
+	private Token createToken(int index){
+		int start = tokenStarts.get(index);
+		int type = tokenTypes.get(index);
+		String value;
+		if (type == 0){
+			value = "\0";
+		} else {
+			int end = index + 1 < tokenStarts.size() ? tokenStarts.get(index + 1) : errorStart;
+			value = new String(input, start, end - start, StandardCharsets.ISO_8859_1);
+		}
+		return new Token(type, table.terminalSet, value, location(start));
+	}
+
+	private LexerError createError(){
+		int cur = errorIndex == input.length ? 0 : input[errorIndex] & 0xff;
+		Token errorToken = new Token(cur, AlphabetTerminals.getInstance(), Character.toString((char)cur), location(errorIndex));
+		int state = errorState;
+		return LexerError.create(errorToken, () -> table.expectedCharacters(state));
+	}
+
+	@Override
+	public Token cur() {
+		if (current == null){
+			resetPending = false;
+			next();
+		}
+		return current;
+	}
+
+	@Override
+	public Token next() {
+		if (resetPending){
+			// the token at the checkpoint is the current one, the next token follows it
+			resetPending = false;
+			next();
+		}
+		if (current != null && current.type == 0){
+			return current;
+		}
+		do {
+			tokenIndex++;
+			if (tokenIndex >= tokenStarts.size()){
+				throw createError();
+			}
+		} while (ignoredTokens[tokenTypes.get(tokenIndex)]);
+		current = createToken(tokenIndex);
+		return current;
+	}
+
+	@Override
+	public void ignore(int tokenType) {
+		ignoredTokens[tokenType] = true;
+	}
+
+	@Override
+	public TerminalSet getTerminalSet() {
+		return table.terminalSet;
+	}
+
+	/**
+	 * The state of the checkpoint is the index of the current token.
+	 */
+	@Override
+	public Checkpoint mark() {
+		Token token = cur();
+		return new Checkpoint(tokenIndex, token.location);
+	}
+
+	@Override
+	public void reset(Checkpoint checkpoint) {
+		tokenIndex = checkpoint.state - 1;
+		current = null;
+		resetPending = true;
+	}
+
+	private static byte[] readFully(InputStream input){
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		try {
+			int read;
+			while ((read = input.read(buffer)) != -1){
+				if (stream.size() > MAX_INPUT_LENGTH - read){
+					throw new SWPException(String.format("The input is longer than %d bytes, the maximum that the " +
+							"parallel lexer supports", MAX_INPUT_LENGTH));
+				}
+				stream.write(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return stream.toByteArray();
+	}
+
+	/**
+	 * Growable int array
+	 */
+	private static class IntList {
+		private int[] values = new int[16];
+		private int size = 0;
+
+		void add(int value){
+			if (size == values.length){
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		int get(int index){
+			return values[index];
+		}
+
+		void set(int index, int value){
+			values[index] = value;
+		}
+
+		int size(){
+			return size;
+		}
+
+		int binarySearch(int value){
+			return Arrays.binarySearch(values, 0, size, value);
+		}
+
+		int[] toArray(){
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
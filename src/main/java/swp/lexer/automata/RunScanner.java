@@ -0,0 +1,153 @@
+package swp.lexer.automata;
+
+/**
+ * Finds the end of a run of characters that belong to a character class.
+ *
+ * If the class or its complement consists of only a few characters, the scanner tests eight bytes
+ * at once with bit operations on longs (SWAR), otherwise it tests the bytes one by one.
+ * It also counts the line breaks in the run.
+ *
+ * A scanner is immutable and can be shared by lexers in different threads.
+ */
+public class RunScanner {
+
+	private static final long LOW_BITS = 0x7f7f7f7f7f7f7f7fL;
+	private static final long HIGH_BITS = 0x8080808080808080L;
+	private static final long NEWLINES = broadcast('\n');
+	/**
+	 * Maximum number of characters that are compared per word
+	 */
+	private static final int MAX_SWAR_CHARACTERS = 6;
+
+	/**
+	 * [byte] => belongs to the class?
+	 */
+	private final boolean[] members;
+	/**
+	 * Broadcasted members (or non members if negated), null if the bytes are tested one by one
+	 */
+	private final long[] patterns;
+	/**
+	 * Do the patterns contain the characters that end the run?
+	 */
+	private final boolean negated;
+	private final boolean containsNewline;
+
+	/**
+	 * @param members [byte] => belongs to the class? (bytes above 127 never belong to it)
+	 */
+	public RunScanner(boolean[] members) {
+		this.members = new boolean[256];
+		int memberCount = 0;
+		for (int i = 0; i < 128 && i < members.length; i++){
+			if (members[i]){
+				this.members[i] = true;
+				memberCount++;
+			}
+		}
+		containsNewline = this.members['\n'];
+		negated = memberCount > 128 - memberCount;
+		int patternCount = negated ? 128 - memberCount : memberCount;
+		if (patternCount <= MAX_SWAR_CHARACTERS){
+			patterns = new long[patternCount];
+			int j = 0;
+			for (int i = 0; i < 128; i++){
+				if (this.members[i] != negated){
+					patterns[j++] = broadcast(i);
+				}
+			}
+		} else {
+			patterns = null;
+		}
+	}
+
+	private static long broadcast(int character){
+		return (character & 0xffL) * 0x0101010101010101L;
+	}
+
+	/**
+	 * @return high bit of each byte of the word that equals the byte of the pattern
+	 */
+	private static long equalBytes(long word, long pattern){
+		long diff = word ^ pattern;
+		return ~(((diff & LOW_BITS) + LOW_BITS) | diff) & HIGH_BITS;
+	}
+
+	/**
+	 * @return high bit of each byte of the word that doesn't belong to the class
+	 */
+	private long stops(long word){
+		long matches = 0;
+		for (long pattern : patterns){
+			matches |= equalBytes(word, pattern);
+		}
+		if (negated){
+			// bytes above 127 aren't characters of the lexer
+			return matches | (word & HIGH_BITS);
+		}
+		return ~matches & HIGH_BITS;
+	}
+
+	private static long readLong(byte[] input, int index){
+		return (input[index] & 0xffL)
+				| (input[index + 1] & 0xffL) << 8
+				| (input[index + 2] & 0xffL) << 16
+				| (input[index + 3] & 0xffL) << 24
+				| (input[index + 4] & 0xffL) << 32
+				| (input[index + 5] & 0xffL) << 40
+				| (input[index + 6] & 0xffL) << 48
+				| (input[index + 7] & 0xffL) << 56;
+	}
+
+	/**
+	 * Scans the run that starts at the passed index
+	 *
+	 * @return index of the first character behind the run and number of line breaks in the run,
+	 *         use end(long) and newlines(long) to get them
+	 */
+	public long scan(byte[] input, int start){
+		int newlines = 0;
+		int pos = start;
+		if (patterns != null){
+			for (; pos + 8 <= input.length; pos += 8){
+				long word = readLong(input, pos);
+				long stops = stops(word);
+				if (containsNewline){
+					long newlineBytes = equalBytes(word, NEWLINES);
+					if (stops != 0){
+						// only the line breaks before the first stop belong to the run
+						newlineBytes &= (stops & -stops) - 1;
+					}
+					newlines += Long.bitCount(newlineBytes);
+				}
+				if (stops != 0){
+					return run(pos + Long.numberOfTrailingZeros(stops) / 8, newlines);
+				}
+			}
+		}
+		for (; pos < input.length && members[input[pos] & 0xff]; pos++){
+			if (input[pos] == '\n'){
+				newlines++;
+			}
+		}
+		return run(pos, newlines);
+	}
+
+	private static long run(int end, int newlines){
+		return ((long) newlines << 32) | end;
+	}
+
+	/**
+	 * @return index of the first character behind the passed run
+	 */
+	public static int end(long run){
+		return (int) run;
+	}
+
+	/**
+	 * @return number of line breaks in the passed run
+	 */
+	public static int newlines(long run){
+		return (int) (run >>> 32);
+	}
+}
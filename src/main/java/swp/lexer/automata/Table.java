@@ -1,5 +1,6 @@
 package swp.lexer.automata;
 
+import swp.SWPException;
 import swp.lexer.TerminalSet;
 import swp.util.Utils;
 
@@ -8,7 +9,10 @@ import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A lexer state transition table
@@ -17,7 +21,7 @@ public class Table implements Serializable {
 
 	public final TerminalSet terminalSet;
 	/**
-	 * [current state][character] => next state, -1 for error state
+	 * [current state][character] => next state, -1 for error state (null for compact tables, use next)
 	 */
 	public final int[][] transitions;
 	/**
@@ -27,6 +31,16 @@ public class Table implements Serializable {
 
 	public final int initialState;
 
+	/**
+	 * Keywords that the automaton lexes as tokens of other types, null if the automaton lexes all keywords itself
+	 */
+	public KeywordTable keywords;
+
+	/**
+	 * [skipped types] => loop scanners, @see loopScanners
+	 */
+	private transient Map<BitSet, RunScanner[]> loopScanners;
+
 	public Table(TerminalSet terminalSet, int[][] transitions, int[] finalTypes, int initialState) {
 		this.terminalSet = terminalSet;
 		this.transitions = transitions;
@@ -34,6 +48,104 @@ public class Table implements Serializable {
 		this.initialState = initialState;
 	}
 
+	/**
+	 * Next state for the character (between Utils.MIN_CHAR and Utils.MAX_CHAR), -1 for the error state
+	 */
+	public int next(int state, int character){
+		return transitions[state][character];
+	}
+
+	/**
+	 * Terminal type of the passed state, -1 if it isn't final
+	 */
+	public int finalType(int state){
+		return finalTypes[state];
+	}
+
+	/**
+	 * Characters that have a transition in the passed state
+	 */
+	public List<Integer> expectedCharacters(int state){
+		List<Integer> expected = new ArrayList<>();
+		int[] row = transitions[state];
+		for (int i = 0; i < row.length; i++){
+			if (row[i] != -1){
+				expected.add(i);
+			}
+		}
+		return expected;
+	}
+
+	public int stateCount(){
+		return finalTypes.length;
+	}
+
+	/**
+	 * Table that a single lexer uses, tables that change while lexing return a copy with their own state
+	 */
+	public Table forLexer(){
+		return this;
+	}
+
+	/**
+	 * Scanners for the characters that a state loops on, for the states that only lead to final states
+	 * of the passed (skipped) types. A lexer can skip the runs of these characters at once.
+	 *
+	 * @return [state] => scanner, null for all other states and the states without loops
+	 */
+	public synchronized RunScanner[] loopScanners(BitSet skippedTypes){
+		if (loopScanners == null){
+			loopScanners = new HashMap<>();
+		}
+		return loopScanners.computeIfAbsent((BitSet)skippedTypes.clone(), this::createLoopScanners);
+	}
+
+	private RunScanner[] createLoopScanners(BitSet skippedTypes){
+		int stateCount = stateCount();
+		// [state] => leads to a final state whose type isn't skipped
+		boolean[] leadsToOtherTypes = new boolean[stateCount];
+		for (int state = 0; state < stateCount; state++){
+			leadsToOtherTypes[state] = finalTypes[state] != -1 && !skippedTypes.get(finalTypes[state]);
+		}
+		boolean somethingChanged = true;
+		while (somethingChanged){
+			somethingChanged = false;
+			for (int state = 0; state < stateCount; state++){
+				for (int c = Utils.MIN_CHAR; c <= Utils.MAX_CHAR && !leadsToOtherTypes[state]; c++){
+					int next = next(state, c);
+					if (next != -1 && leadsToOtherTypes[next]){
+						leadsToOtherTypes[state] = true;
+						somethingChanged = true;
+					}
+				}
+			}
+		}
+		RunScanner[] scanners = new RunScanner[stateCount];
+		for (int state = 0; state < stateCount; state++){
+			if (!leadsToOtherTypes[state]){
+				boolean[] loop = new boolean[Utils.MAX_CHAR + 1];
+				boolean hasLoop = false;
+				for (int c = Utils.MIN_CHAR; c <= Utils.MAX_CHAR; c++){
+					if (next(state, c) == state){
+						loop[c] = true;
+						hasLoop = true;
+					}
+				}
+				if (hasLoop){
+					scanners[state] = new RunScanner(loop);
+				}
+			}
+		}
+		return scanners;
+	}
+
+	/**
+	 * Encodes the table with per state default transitions and row displacement
+	 */
+	public CompactTable compact(){
+		return new CompactTable(this);
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
@@ -92,7 +204,10 @@ public class Table implements Serializable {
 				newTransition[state][i] = transitions[state][oldTerminal];
 			}
 		}
-		return new CompressedTable(terminalSet, newTransition, finalTypes, initialState, translations, reverseTranslation);
+		CompressedTable table = new CompressedTable(terminalSet, newTransition, finalTypes, initialState,
+				translations, reverseTranslation);
+		table.keywords = keywords;
+		return table;
 	}
 
 	private class TerminalAttribute {
@@ -148,6 +263,9 @@ public class Table implements Serializable {
 	public String toTableClass(List<EnumTableGenerator.TerminalDescription> descriptions,
 							   String enumClassName,
 							   Path templateFile, String packageName, String className) throws IOException {
+		if (keywords != null){
+			throw new SWPException("Lexer tables with a keyword table can't be converted into a class");
+		}
 		List<String> finalTypesStrings = new ArrayList<>();
 		for (int i = 0; i < finalTypes.length; i++) {
 			int finalType = finalTypes[i];
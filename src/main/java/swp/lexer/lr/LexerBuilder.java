@@ -62,10 +62,9 @@ public class LexerBuilder {
 	}
 
 	public ListLexer toLexer(String input, String[] ignoredTokenTypes){
-		Graph.isLALR = false;
 		Grammar grammar = grammarBuilder.toGrammar(grammarStartNonTerminal);
 		//System.out.println(grammar.longDescription());
-		Graph graph = Graph.createFromGrammar(grammar);
+		Graph graph = Graph.createFromGrammar(grammar, LRAlgorithm.LR1);
 		//System.out.println(graph);
 		graph.toImage("lexer_graph", "svg");
 		LRParserTable parserTable = graph.toParserTable();
@@ -0,0 +1,104 @@
+package swp.parser;
+
+import swp.lexer.Location;
+import swp.lexer.Token;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A syntax error reported by a parser or lexer.
+ *
+ * The message and the description of the repair are only formatted when they are requested.
+ */
+public class Diagnostic {
+
+	/**
+	 * Token at which the error has been detected
+	 */
+	public final Token token;
+
+	/**
+	 * Ids of the terminals that were expected instead of the token
+	 */
+	public final BitSet expected;
+
+	/**
+	 * State of the parser, -1 if it isn't known
+	 */
+	public final int state;
+
+	private final Supplier<String> repairSupplier;
+	private String repair;
+	private String message;
+
+	public Diagnostic(Token token, BitSet expected, int state, Supplier<String> repair) {
+		this.token = token;
+		this.expected = expected;
+		this.state = state;
+		this.repairSupplier = repair;
+	}
+
+	public Diagnostic(Token token, BitSet expected) {
+		this(token, expected, -1, null);
+	}
+
+	public Location getLocation(){
+		return token.location;
+	}
+
+	/**
+	 * Offset of the token in the input, -1 if unknown
+	 */
+	public int getOffset(){
+		return token.location.offset;
+	}
+
+	/**
+	 * Returns the sorted names of the expected terminals
+	 */
+	public List<String> getExpectedNames(){
+		List<String> names = new ArrayList<>();
+		for (int type = expected.nextSetBit(0); type >= 0; type = expected.nextSetBit(type + 1)){
+			names.add(token.terminalSet.typeToString(type));
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	public String getMessage(){
+		if (message == null){
+			message = formatMessage();
+		}
+		return message;
+	}
+
+	protected String formatMessage(){
+		if (state == -1){
+			return String.format("Unexpected %s, expected %s", token, getExpectedNames());
+		}
+		return String.format("Unexpected %s, expected %s at state %d", token, getExpectedNames(), state);
+	}
+
+	/**
+	 * Description of the repair the parser used to continue, null if it couldn't recover
+	 */
+	public String getRepair(){
+		if (repair == null && repairSupplier != null){
+			repair = repairSupplier.get();
+		}
+		return repair;
+	}
+
+	public boolean isRecovered(){
+		return repairSupplier != null;
+	}
+
+	@Override
+	public String toString() {
+		return isRecovered() ? getMessage() + ", " + getRepair() : getMessage();
+	}
+}
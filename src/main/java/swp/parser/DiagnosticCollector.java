@@ -0,0 +1,17 @@
+package swp.parser;
+
+/**
+ * Receives the syntax errors of a parser that recovers from errors instead of throwing them
+ */
+@FunctionalInterface
+public interface DiagnosticCollector {
+
+	void report(Diagnostic diagnostic);
+
+	/**
+	 * Should the parser stop after the last reported error?
+	 */
+	default boolean shouldStop(){
+		return false;
+	}
+}
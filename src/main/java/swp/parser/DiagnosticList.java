@@ -0,0 +1,54 @@
+package swp.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the reported diagnostics in a list, the parser stops after the maximum number of errors
+ */
+public class DiagnosticList implements DiagnosticCollector {
+
+	private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+	public final int maxErrors;
+
+	public DiagnosticList(int maxErrors) {
+		this.maxErrors = maxErrors;
+	}
+
+	public DiagnosticList() {
+		this(Integer.MAX_VALUE);
+	}
+
+	@Override
+	public void report(Diagnostic diagnostic) {
+		diagnostics.add(diagnostic);
+	}
+
+	@Override
+	public boolean shouldStop() {
+		return diagnostics.size() >= maxErrors;
+	}
+
+	public List<Diagnostic> getDiagnostics(){
+		return Collections.unmodifiableList(diagnostics);
+	}
+
+	public boolean isEmpty(){
+		return diagnostics.isEmpty();
+	}
+
+	public int size(){
+		return diagnostics.size();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Diagnostic diagnostic : diagnostics){
+			builder.append(diagnostic).append("\n");
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,21 @@
+package swp.parser;
+
+import swp.SWPException;
+
+/**
+ * Thrown by a parser for a syntax error if no diagnostic collector is used, the message is formatted lazily
+ */
+public class SyntaxError extends SWPException {
+
+	public final Diagnostic diagnostic;
+
+	public SyntaxError(Diagnostic diagnostic) {
+		super(null);
+		this.diagnostic = diagnostic;
+	}
+
+	@Override
+	public String getMessage() {
+		return diagnostic.getMessage();
+	}
+}
@@ -1,19 +1,91 @@
 package swp.parser.early;
 
-import java.util.ArrayList;
+import swp.grammar.NonTerminal;
+import swp.grammar.Terminal;
+
+import java.util.*;
 
 /**
- * Created by parttimenerd on 07.07.16.
+ * An Earley set, its items are indexed by the symbol after the dot.
  */
 public class Closure extends ArrayList<EarlyItem> {
 
 	public final int i;
 
+	private final Set<EarlyItem> itemSet = new HashSet<>();
+
+	/**
+	 * Non terminal after the dot => items
+	 */
+	final Map<NonTerminal, List<EarlyItem>> waitingItems = new HashMap<>();
+
+	/**
+	 * Terminal id after the dot => items
+	 */
+	final Map<Integer, List<EarlyItem>> scannableItems = new HashMap<>();
+
+	/**
+	 * Left hand side => complete items
+	 */
+	final Map<NonTerminal, List<EarlyItem>> completeItems = new HashMap<>();
+
+	/**
+	 * Non terminal => topmost item of its deterministic reduction path (Leo item), null if there is none
+	 */
+	final Map<NonTerminal, EarlyItem> leoItems = new HashMap<>();
+
+	/**
+	 * Complete items whose completion used a Leo item, the skipped intermediate complete items are added lazily
+	 */
+	final List<EarlyItem> leoCompletions = new ArrayList<>();
+
 	public Closure(int i){
 		super();
 		this.i = i;
 	}
 
+	/**
+	 * Adds the item if it isn't already part of this set
+	 *
+	 * @return true if the item has been added
+	 */
+	public boolean addItem(EarlyItem item){
+		if (!itemSet.add(item)){
+			return false;
+		}
+		add(item);
+		if (item.isComplete()){
+			addToIndex(completeItems, item.production.left, item);
+		} else if (item.nextSymbol instanceof NonTerminal){
+			addToIndex(waitingItems, (NonTerminal)item.nextSymbol, item);
+		} else {
+			addToIndex(scannableItems, ((Terminal)item.nextSymbol).id, item);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a complete item without processing it further
+	 */
+	void addCompleteItem(EarlyItem item){
+		if (itemSet.add(item)){
+			addToIndex(completeItems, item.production.left, item);
+		}
+	}
+
+	private <T> void addToIndex(Map<T, List<EarlyItem>> index, T key, EarlyItem item){
+		List<EarlyItem> items = index.get(key);
+		if (items == null){
+			items = new ArrayList<>(2);
+			index.put(key, items);
+		}
+		items.add(item);
+	}
+
+	public boolean containsItem(EarlyItem item){
+		return itemSet.contains(item);
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
@@ -1,137 +1,369 @@
 package swp.parser.early;
 
+import swp.SWPException;
 import swp.grammar.Grammar;
 import swp.grammar.NonTerminal;
 import swp.grammar.Production;
+import swp.grammar.Symbol;
 import swp.grammar.Terminal;
 import swp.lexer.Lexer;
 import swp.lexer.Token;
+import swp.parser.glr.SPPFNode;
+import swp.parser.lr.BaseAST;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
+/**
+ * Earley parser that works with every context free grammar.
+ *
+ * The items of every Earley set are indexed by the symbol after the dot. Completions along
+ * right recursive deterministic reduction paths use Leo items, nullable non terminals are skipped
+ * during the prediction (Aycock and Horspool). The shared packed parse forest is built from the
+ * Earley sets after the recognition.
+ */
 public class EarleyParser {
 
 	Lexer lexer;
 	Grammar grammar;
 	List<Closure> table = new ArrayList<>();
 	List<Token> tokens = new ArrayList<>();
-	int currentTokenNum = 0;
-	Token current;
-	boolean somethingChanged = true;
-	boolean logSteps = true;
+	boolean logSteps = false;
+
+	private final Set<NonTerminal> nullable;
+	private final Map<NonTerminal, List<Production>> productions = new HashMap<>();
+	private Map<Long, SPPFNode> forestNodes = new HashMap<>();
+	private Map<Integer, SPPFNode> tokenNodes = new HashMap<>();
+	private Deque<SPPFNode> unexpandedNodes = new ArrayDeque<>();
 
 	public EarleyParser(Grammar grammar, Lexer lexer){
-		this.grammar = grammar.insertStartNonTerminal();
+		this.grammar = grammar;
 		this.lexer = lexer;
-		List<Production> startProds = grammar.getProductionOfNonTerminal(grammar.getStart());
-		addToS(0, new EarlyItem(startProds.get(0)));
+		this.nullable = grammar.calculateEpsilonable();
+		for (Production production : grammar.getProductions()){
+			if (!productions.containsKey(production.left)){
+				productions.put(production.left, new ArrayList<>());
+			}
+			productions.get(production.left).add(production);
+		}
 		tokens.add(lexer.cur());
-		do {
+		while (lexer.cur().type != 0){
 			tokens.add(lexer.next());
-		} while (lexer.cur().type != 0);
-		current = tokens.get(0);
+		}
+	}
+
+	/**
+	 * Parses the input and returns the root of the parse forest
+	 */
+	public SPPFNode parseForest(){
+		if (table.isEmpty()){
+			recognize();
+		}
+		NonTerminal start = grammar.getStart();
+		// only a start item that spans the whole input is accepted
+		int end = table.size() - 1;
+		for (EarlyItem item : completeItems(table.get(end), start)){
+			if (item.startTokenId == 0){
+				SPPFNode root = forestNode(start, 0, end);
+				while (!unexpandedNodes.isEmpty()){
+					expand(unexpandedNodes.poll());
+				}
+				return root;
+			}
+		}
+		Token last = tokens.get(table.size() - 1);
+		throw new SWPException(String.format("Unexpected %s, expected %s", last, expectedTokens(table.get(table.size() - 1))));
 	}
 
-	public void advanceTokenNum(){
-		if (currentTokenNum >= tokens.size() - 1){
-			current = tokens.get(tokens.size() - 1);
-		} else {
-			currentTokenNum++;
-			current = tokens.get(currentTokenNum);
+	/**
+	 * Parses the input and creates an AST (choosing the first alternative at every ambiguity).
+	 *
+	 * If the used production of the start non terminal ends with the EOF terminal,
+	 * the AST of the symbol in front of it is returned, like the LRParser does.
+	 */
+	public BaseAST parse(){
+		SPPFNode root = parseForest();
+		SPPFNode.Alternative alternative = root.alternatives.get(0);
+		List<SPPFNode> children = alternative.children;
+		if (children.size() > 1 && children.get(children.size() - 1).isTerminal()
+				&& children.get(children.size() - 1).token.type == 0){
+			return children.get(children.size() - 2).toAST(grammar);
 		}
+		return root.toAST(grammar);
 	}
 
-	public void parse(){
+	private void recognize(){
+		Closure first = closure(0);
+		for (Production production : productionsOf(grammar.getStart())){
+			first.addItem(new EarlyItem(production, 0));
+		}
 		for (int i = 0; i < tokens.size(); i++){
-			while (somethingChanged){
-				somethingChanged = false;
-				for (int j = 0; j < table.size(); j++) {
-					prediction(j);
-					completion(j);
+			Closure set = table.get(i);
+			process(set);
+			Token token = tokens.get(i);
+			List<EarlyItem> scannable = set.scannableItems.get(token.type);
+			if (scannable == null){
+				if (token.type == 0){
+					return;
+				}
+				throw new SWPException(String.format("Unexpected %s, expected %s", token, expectedTokens(set)));
+			}
+			Closure next = closure(i + 1);
+			for (EarlyItem item : scannable){
+				EarlyItem newItem = item.advance();
+				if (next.addItem(newItem)){
+					logStep("scanning", item, i, newItem, i + 1);
 				}
 			}
-			scanning(i);
-			advanceTokenNum();
-			somethingChanged = true;
 		}
+		process(table.get(tokens.size()));
 	}
 
-	private void logStep(String method, EarlyItem source, int source_s, EarlyItem result, int result_s){
-		if (logSteps){
-			System.out.println(String.format("log %10s S_%d %30s to S_%d %.30s", method + ":", source_s, source,
-					result_s, result));
+	private Closure closure(int i){
+		while (i >= table.size()){
+			table.add(new Closure(table.size()));
 		}
+		return table.get(i);
 	}
 
-	public void prediction(int i){
-		List<EarlyItem> S_i = table.get(i);
-		for (int index = 0; index < S_i.size(); index++){
-			EarlyItem item = S_i.get(index);
-			if (item.currentSituation.inFrontOfNonTerminal()){
-				NonTerminal n = (NonTerminal)item.currentSituation.nextSymbol();
-				for (Production prod : grammar.getProductionOfNonTerminal(n)){
-					EarlyItem newItem = new EarlyItem(prod, i);
-					if (addToS(i, newItem)) {
-						logStep("prediction", item, i, newItem, i);
-					}
+	private void process(Closure set){
+		for (int index = 0; index < set.size(); index++){
+			EarlyItem item = set.get(index);
+			if (item.isComplete()){
+				completion(set, item);
+			} else if (item.inFrontOfNonTerminal()){
+				prediction(set, item);
+			}
+		}
+	}
+
+	private void prediction(Closure set, EarlyItem item){
+		NonTerminal nonTerminal = (NonTerminal)item.nextSymbol;
+		for (Production production : productionsOf(nonTerminal)){
+			EarlyItem newItem = new EarlyItem(production, set.i);
+			if (set.addItem(newItem)){
+				logStep("prediction", item, set.i, newItem, set.i);
+			}
+		}
+		if (nullable.contains(nonTerminal)){
+			EarlyItem newItem = item.advance();
+			if (set.addItem(newItem)){
+				logStep("nullable", item, set.i, newItem, set.i);
+			}
+		}
+	}
+
+	private void completion(Closure set, EarlyItem item){
+		NonTerminal nonTerminal = item.production.left;
+		Closure startSet = table.get(item.startTokenId);
+		if (startSet != set){
+			EarlyItem leoItem = leoItem(startSet, nonTerminal);
+			if (leoItem != null){
+				set.leoCompletions.add(item);
+				if (set.addItem(leoItem)){
+					logStep("leo", item, set.i, leoItem, set.i);
 				}
+				return;
+			}
+		}
+		List<EarlyItem> waiting = startSet.waitingItems.get(nonTerminal);
+		if (waiting == null){
+			return;
+		}
+		for (int i = 0; i < waiting.size(); i++){
+			EarlyItem newItem = waiting.get(i).advance();
+			if (set.addItem(newItem)){
+				logStep("completion", item, set.i, newItem, set.i);
+			}
+		}
+	}
+
+	/**
+	 * Returns the topmost complete item of the deterministic reduction path for the non terminal
+	 * in the passed (already processed) set, or null if there is no such path.
+	 */
+	private EarlyItem leoItem(Closure set, NonTerminal nonTerminal){
+		List<Closure> sets = new ArrayList<>();
+		List<NonTerminal> nonTerminals = new ArrayList<>();
+		List<EarlyItem> completedItems = new ArrayList<>();
+		EarlyItem topmost = null;
+		while (true){
+			if (set.leoItems.containsKey(nonTerminal)){
+				topmost = set.leoItems.get(nonTerminal);
+				break;
+			}
+			EarlyItem item = uniquePenultimateItem(set, nonTerminal);
+			sets.add(set);
+			nonTerminals.add(nonTerminal);
+			completedItems.add(item == null ? null : item.advance());
+			if (item == null || item.startTokenId == set.i){
+				break;
+			}
+			set = table.get(item.startTokenId);
+			nonTerminal = item.production.left;
+		}
+		for (int i = sets.size() - 1; i >= 0; i--){
+			if (completedItems.get(i) == null){
+				topmost = null;
+			} else if (topmost == null){
+				topmost = completedItems.get(i);
 			}
+			sets.get(i).leoItems.put(nonTerminals.get(i), topmost);
 		}
+		return topmost;
 	}
 
-	public void completion(int i){
-		List<EarlyItem> S_i = table.get(i);
-		for (int index = 0; index < S_i.size(); index++){
-			EarlyItem item = S_i.get(index);
-			NonTerminal A = item.currentSituation.left;
-			if (item.currentSituation.atEnd()){ // item = [X -> \gamma . , j]
-				for (int S_j_index = 0; S_j_index < table.size(); S_j_index++){
-					Closure S_j = table.get(S_j_index);
-					for (int index_ = 0; index_ < S_j.size(); index_++){
-						EarlyItem item_ = S_j.get(index_);
-						int k = item_.startTokenId;
-						if (item_.currentSituation.inFrontOfNonTerminal(A)){ // X -> a . A ß
-							Situation newSituation = item_.currentSituation.advance();
-							EarlyItem newItem = new EarlyItem(newSituation, k);
-							if(addToS(i, newItem)){
-								logStep("completion", item, i, newItem, index);
-							}
-						}
-					}
+	/**
+	 * Returns the only item of the set that waits for the passed non terminal, if the non terminal is its last symbol
+	 */
+	private EarlyItem uniquePenultimateItem(Closure set, NonTerminal nonTerminal){
+		List<EarlyItem> waiting = set.waitingItems.get(nonTerminal);
+		if (waiting != null && waiting.size() == 1 && waiting.get(0).isPenultimate()){
+			return waiting.get(0);
+		}
+		return null;
+	}
+
+	private List<Production> productionsOf(NonTerminal nonTerminal){
+		return productions.getOrDefault(nonTerminal, Collections.emptyList());
+	}
+
+	private List<String> expectedTokens(Closure set){
+		List<String> expected = new ArrayList<>();
+		for (int type : new TreeSet<>(set.scannableItems.keySet())){
+			expected.add(lexer.getTerminalSet().typeToString(type));
+		}
+		return expected;
+	}
+
+	/**
+	 * Returns the complete items of the passed set for the passed non terminal,
+	 * including the ones skipped by using Leo items
+	 */
+	private List<EarlyItem> completeItems(Closure set, NonTerminal nonTerminal){
+		for (EarlyItem completed : set.leoCompletions){
+			Closure startSet = table.get(completed.startTokenId);
+			NonTerminal current = completed.production.left;
+			while (true){
+				EarlyItem item = uniquePenultimateItem(startSet, current);
+				if (item == null){
+					break;
 				}
+				set.addCompleteItem(item.advance());
+				if (item.startTokenId == startSet.i){
+					break;
+				}
+				startSet = table.get(item.startTokenId);
+				current = item.production.left;
+			}
+		}
+		set.leoCompletions.clear();
+		return set.completeItems.getOrDefault(nonTerminal, Collections.emptyList());
+	}
+
+	private SPPFNode forestNode(NonTerminal nonTerminal, int start, int end){
+		long key = (((long)nonTerminal.id * table.size()) + start) * table.size() + end;
+		SPPFNode node = forestNodes.get(key);
+		if (node == null){
+			node = new SPPFNode(nonTerminal, start, end);
+			forestNodes.put(key, node);
+			unexpandedNodes.add(node);
+		}
+		return node;
+	}
+
+	private SPPFNode tokenNode(int index){
+		SPPFNode node = tokenNodes.get(index);
+		if (node == null){
+			node = new SPPFNode(tokens.get(index), index);
+			tokenNodes.put(index, node);
+		}
+		return node;
+	}
+
+	/**
+	 * Adds all alternatives to the passed forest node
+	 */
+	private void expand(SPPFNode node){
+		for (Production production : productionsOf(node.nonTerminal)){
+			if (containsCompleteItem(node.end, production, node.start)){
+				int length = production.rightSize();
+				addAlternatives(node, production, length, node.end, new SPPFNode[length]);
 			}
 		}
 	}
 
-	public void scanning(int i){
-		List<EarlyItem> S_i = table.get(i);
-		for (EarlyItem item : S_i){
-			int j = item.startTokenId;  // [X -> ß . a ß', j]
-			if (item.currentSituation.inFrontOfTerminal()){
-				Terminal terminal = (Terminal)item.currentSituation.nextSymbol();
-				if (terminal.id == current.type){
-					EarlyItem newItem = new EarlyItem(item.currentSituation.advance(), j);
-					if(addToS(i + 1, newItem)){
-						logStep("scanning", item, i, newItem, i + 1);
-					}
+	/**
+	 * Does the set contain the complete item of the production with the passed start (including the items skipped
+	 * by using Leo items)?
+	 */
+	private boolean containsCompleteItem(int set, Production production, int start){
+		Closure closure = table.get(set);
+		completeItems(closure, production.left);
+		return closure.containsItem(new EarlyItem(production, production.rightSize(), start));
+	}
+
+	/**
+	 * Finds the derivations of the symbols in front of the passed position that end at the passed token index
+	 */
+	private void addAlternatives(SPPFNode node, Production production, int position, int end, SPPFNode[] children){
+		if (position == 0){
+			if (end == node.start){
+				node.addAlternative(production, children);
+			}
+			return;
+		}
+		Symbol symbol = production.right.get(position - 1);
+		EarlyItem prefix = new EarlyItem(production, position - 1, node.start);
+		if (symbol instanceof Terminal){
+			if (end > node.start && tokens.get(end - 1).type == ((Terminal) symbol).id
+					&& table.get(end - 1).containsItem(prefix)){
+				children[position - 1] = tokenNode(end - 1);
+				addAlternatives(node, production, position - 1, end - 1, children);
+			}
+			return;
+		}
+		NonTerminal nonTerminal = (NonTerminal)symbol;
+		if (onlyTerminalsBefore(production, position - 1)){
+			// the start of the symbol is fixed, this avoids iterating over all complete items in right recursions
+			int start = node.start + position - 1;
+			if (start > end){
+				return;
+			}
+			for (Production symbolProduction : productionsOf(nonTerminal)){
+				if (containsCompleteItem(end, symbolProduction, start)){
+					children[position - 1] = forestNode(nonTerminal, start, end);
+					addAlternatives(node, production, position - 1, start, children);
+					return;
 				}
 			}
+			return;
+		}
+		Set<Integer> starts = new TreeSet<>();
+		for (EarlyItem item : completeItems(table.get(end), nonTerminal)){
+			if (item.startTokenId >= node.start && table.get(item.startTokenId).containsItem(prefix)){
+				starts.add(item.startTokenId);
+			}
+		}
+		for (int start : starts){
+			children[position - 1] = forestNode(nonTerminal, start, end);
+			addAlternatives(node, production, position - 1, start, children);
 		}
 	}
 
-	public boolean addToS(int i, EarlyItem item){
-		while (i >= table.size()){
-			table.add(new Closure(table.size()));
-			somethingChanged = true;
+	private boolean onlyTerminalsBefore(Production production, int position){
+		for (int i = 0; i < position; i++){
+			if (!(production.right.get(i) instanceof Terminal)){
+				return false;
+			}
 		}
-		List<EarlyItem> S_i = table.get(i);
-		if (!S_i.contains(item)){
-			S_i.add(item);
-			somethingChanged = true;
-			return true;
+		return true;
+	}
+
+	private void logStep(String method, EarlyItem source, int source_s, EarlyItem result, int result_s){
+		if (logSteps){
+			System.out.println(String.format("log %10s S_%d %30s to S_%d %.30s", method + ":", source_s, source,
+					result_s, result));
 		}
-		return false;
 	}
 
 	@Override
@@ -1,39 +1,79 @@
 package swp.parser.early;
 
+import swp.grammar.NonTerminal;
 import swp.grammar.Production;
+import swp.grammar.Symbol;
 
 /**
- * Created by parttimenerd on 07.07.16.
+ * An Earley item: a production with a dot and the index of the set it has been predicted in.
  */
 public class EarlyItem {
 
-	public Situation currentSituation;
+	public final Production production;
+	/**
+	 * The dot is before the $position.th right hand side symbol
+	 */
+	public final int position;
 	public final int startTokenId;
+	/**
+	 * Symbol after the dot, null if the item is complete
+	 */
+	public final Symbol nextSymbol;
 
-	public EarlyItem(Situation currentSituation, int startTokenId){
-		this.currentSituation = currentSituation;
+	public EarlyItem(Production production, int position, int startTokenId){
+		this.production = production;
+		this.position = position;
 		this.startTokenId = startTokenId;
+		this.nextSymbol = position < production.rightSize() ? production.right.get(position) : null;
 	}
 
-	public EarlyItem(Production production){
-		this(new Situation(production), 0);
+	public EarlyItem(Production production, int startTokenId){
+		this(production, 0, startTokenId);
 	}
 
-	public EarlyItem(Production production, int startTokenId){
-		this(new Situation(production), startTokenId);
+	public EarlyItem advance(){
+		return new EarlyItem(production, position + 1, startTokenId);
+	}
+
+	public boolean isComplete(){
+		return nextSymbol == null;
+	}
+
+	/**
+	 * Is the dot in front of the last symbol?
+	 */
+	public boolean isPenultimate(){
+		return position == production.rightSize() - 1;
+	}
+
+	public boolean inFrontOfNonTerminal(){
+		return nextSymbol instanceof NonTerminal;
 	}
 
 	@Override
 	public String toString() {
-		return "[" + currentSituation + ", " + startTokenId + "]";
+		StringBuilder builder = new StringBuilder();
+		builder.append("[").append(production.left).append(" →");
+		for (int i = 0; i < production.rightSize(); i++){
+			builder.append(i == position ? " · " : " ").append(production.right.get(i));
+		}
+		if (isComplete()){
+			builder.append(" ·");
+		}
+		return builder.append(", ").append(startTokenId).append("]").toString();
 	}
 
 	@Override
 	public boolean equals(Object obj) {
 		if (obj instanceof EarlyItem){
 			EarlyItem item = (EarlyItem)obj;
-			return item.startTokenId == startTokenId && this.currentSituation.equals(item.currentSituation);
+			return item.startTokenId == startTokenId && item.position == position && item.production.id == production.id;
 		}
 		return false;
 	}
+
+	@Override
+	public int hashCode() {
+		return (production.id * 31 + position) * 31 + startTokenId;
+	}
 }
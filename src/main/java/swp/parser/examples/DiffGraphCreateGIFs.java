@@ -22,8 +22,6 @@ public class DiffGraphCreateGIFs {
 
 		new DiffGraph(g2, "/tmp/lalr").createPNGs();//.createGIF(1).createMP4(1);
 
-		//Graph.isLALR = false; // Create an LR automaton
-
-	//	new DiffGraph(g2, "/tmp/lr").createPNGs().createGIF(1).createMP4(1);
+	//	new DiffGraph(g2, LRAlgorithm.LR1, "/tmp/lr").createPNGs().createGIF(1).createMP4(1); // Create an LR automaton
 	}
 }
@@ -232,7 +232,7 @@ public class MiniJava {
                             return new ReturnStatementNode((ExpressionNode)asts.get(1));
                         })
                         .addOperators("expression", "postfix_expression", operators -> {
-                            operators.defaultBinaryAction((asts, op) -> {
+                            operators.flat().defaultBinaryAction((asts, op) -> {
                                         return new BinaryOperatorNode((ExpressionNode)asts.get(0), (ExpressionNode)asts.get(2), LexerTerminal.valueOf(op));
                                     })
                                     .defaultUnaryAction((asts, op) -> {
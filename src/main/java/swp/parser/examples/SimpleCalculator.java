@@ -55,12 +55,11 @@ public class SimpleCalculator {
 				.add("int", builder.minimal(1, builder.range('0', '9')))
 				.add("+-", builder.or("plus", "minus"));
 		//builder.add("A", "B", "C").add("B", '4').add("C", "").add("C", '3');
-		Graph.isLALR = true;
 		Grammar g = builder.toGrammar("E");
 		//System.out.println(g.longDescription());
 		//System.out.println(g.longDescription());
 		//System.out.println("First_1 set = " + g.calculateFirst1Set());
-		Graph graph = Graph.createFromGrammar(g);
+		Graph graph = Graph.createFromGrammar(g, LRAlgorithm.LALR);
 		//System.out.println(graph);
 		graph.toImage("simple_calculator", "svg");
 		parserTable = graph.toParserTable();
@@ -0,0 +1,247 @@
+package swp.parser.glr;
+
+import swp.SWPException;
+import swp.grammar.Grammar;
+import swp.grammar.NonTerminal;
+import swp.grammar.Production;
+import swp.lexer.Lexer;
+import swp.lexer.Token;
+import swp.parser.lr.BaseAST;
+import swp.parser.lr.LRParserTable;
+import swp.util.Pair;
+
+import java.util.*;
+
+/**
+ * Implements a generalized LR parser (Tomita style) that uses all conflicting actions of a LR parser table.
+ *
+ * The parser stacks are combined into a graph structured stack (GSS) and the parser builds a shared
+ * packed parse forest. On deterministic parts of the input the GSS is a simple list and the parser
+ * works like a normal LR parser.
+ */
+public class GLRParser {
+
+	private final Grammar grammar;
+	private final Lexer lexer;
+	private final LRParserTable table;
+	private final Map<Integer, Production> productions = new HashMap<>();
+
+	/**
+	 * Number of tokens shifted so far
+	 */
+	private int level;
+	private Token token;
+	/**
+	 * State => GSS node of the current level
+	 */
+	private Map<Integer, Node> active = new HashMap<>();
+	private ArrayDeque<Node> pending = new ArrayDeque<>();
+	private List<Node> processed = new ArrayList<>();
+	/**
+	 * (non terminal id, start level) => node, for nodes that end at the current level
+	 */
+	private Map<Long, SPPFNode> symbolNodes = new HashMap<>();
+	private List<Pair<Node, Integer>> shifts = new ArrayList<>();
+	private Node acceptingNode;
+
+	/**
+	 * Node of the graph structured stack
+	 */
+	private static class Node {
+		final int state;
+		final int level;
+		final List<Edge> edges = new ArrayList<>(1);
+
+		Node(int state, int level) {
+			this.state = state;
+			this.level = level;
+		}
+
+		Edge findEdge(Node target){
+			for (Edge edge : edges){
+				if (edge.target == target){
+					return edge;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Edge to a node below, labeled with the forest node of the symbol between both
+	 */
+	private static class Edge {
+		final Node target;
+		final SPPFNode node;
+
+		Edge(Node target, SPPFNode node) {
+			this.target = target;
+			this.node = node;
+		}
+	}
+
+	public GLRParser(Lexer lexer, LRParserTable table){
+		this(table.grammar, lexer, table);
+	}
+
+	public GLRParser(Grammar grammar, Lexer lexer, LRParserTable table){
+		this.grammar = grammar;
+		this.lexer = lexer;
+		this.table = table;
+		for (Production production : grammar.getProductions()){
+			productions.put(production.id, production);
+		}
+	}
+
+	/**
+	 * Parses the input and returns the root of the resulting parse forest
+	 */
+	public SPPFNode parseForest(){
+		Node root = new Node(0, 0);
+		active.put(0, root);
+		pending.add(root);
+		while (true){
+			token = lexer.cur();
+			while (!pending.isEmpty()){
+				Node node = pending.poll();
+				processed.add(node);
+				act(node);
+			}
+			if (acceptingNode != null){
+				for (Edge edge : acceptingNode.edges){
+					if (edge.target == root){
+						return edge.node;
+					}
+				}
+			}
+			if (shifts.isEmpty()){
+				throw new SWPException(String.format("Unexpected %s, expected %s", token, expectedTokens()));
+			}
+			shift();
+			lexer.next();
+		}
+	}
+
+	/**
+	 * Parses the input and creates an AST (choosing the first alternative at every ambiguity)
+	 */
+	public BaseAST parse(){
+		return parseForest().toAST(grammar);
+	}
+
+	private void act(Node node){
+		for (LRParserTable.Action action : table.getActions(node.state, token.type)){
+			switch (action.name()){
+				case "shift":
+					shifts.add(new Pair<>(node, ((LRParserTable.ShiftAction) action).stateToBeShifted));
+					break;
+				case "reduce":
+					int productionId = ((LRParserTable.ReduceAction) action).productionId;
+					reduce(node, productionId, table.productionInformation.get(productionId).second, null);
+					break;
+				case "accept":
+					acceptingNode = node;
+			}
+		}
+	}
+
+	/**
+	 * Reduces along all paths of the passed length that start at the passed node
+	 *
+	 * @param requiredEdge only reduce along paths that contain this edge, if not null
+	 */
+	private void reduce(Node node, int productionId, int length, Edge requiredEdge){
+		walk(node, productionId, length, new SPPFNode[length], requiredEdge == null, requiredEdge);
+	}
+
+	private void walk(Node node, int productionId, int remaining, SPPFNode[] children, boolean containsRequiredEdge,
+	                  Edge requiredEdge){
+		if (remaining == 0){
+			if (containsRequiredEdge){
+				reducePath(node, productionId, children);
+			}
+			return;
+		}
+		int edgeCount = node.edges.size();
+		for (int i = 0; i < edgeCount; i++){
+			Edge edge = node.edges.get(i);
+			children[remaining - 1] = edge.node;
+			walk(edge.target, productionId, remaining - 1, children, containsRequiredEdge || edge == requiredEdge,
+					requiredEdge);
+		}
+	}
+
+	private void reducePath(Node base, int productionId, SPPFNode[] children){
+		NonTerminal left = table.productionInformation.get(productionId).first;
+		int gotoState = table.gotoTable.get(base.state).get(left);
+		SPPFNode symbolNode = symbolNode(left, base.level);
+		symbolNode.addAlternative(productions.get(productionId), children);
+		Node node = active.get(gotoState);
+		if (node == null){
+			node = new Node(gotoState, level);
+			node.edges.add(new Edge(base, symbolNode));
+			active.put(gotoState, node);
+			pending.add(node);
+			return;
+		}
+		if (node.findEdge(base) != null){
+			return;
+		}
+		Edge edge = new Edge(base, symbolNode);
+		node.edges.add(edge);
+		// already processed nodes might have new reduction paths that use the new edge
+		for (int i = 0; i < processed.size(); i++){
+			Node processedNode = processed.get(i);
+			for (LRParserTable.Action action : table.getActions(processedNode.state, token.type)){
+				if (action instanceof LRParserTable.ReduceAction){
+					int id = ((LRParserTable.ReduceAction) action).productionId;
+					int length = table.productionInformation.get(id).second;
+					if (length > 0){
+						reduce(processedNode, id, length, edge);
+					}
+				}
+			}
+		}
+	}
+
+	private SPPFNode symbolNode(NonTerminal nonTerminal, int start){
+		long key = ((long) nonTerminal.id << 32) | start;
+		SPPFNode node = symbolNodes.get(key);
+		if (node == null){
+			node = new SPPFNode(nonTerminal, start, level);
+			symbolNodes.put(key, node);
+		}
+		return node;
+	}
+
+	private void shift(){
+		SPPFNode tokenNode = new SPPFNode(token, level);
+		Map<Integer, Node> newActive = new HashMap<>();
+		for (Pair<Node, Integer> shift : shifts){
+			Node node = newActive.get(shift.second);
+			if (node == null){
+				node = new Node(shift.second, level + 1);
+				newActive.put(shift.second, node);
+				pending.add(node);
+			}
+			if (node.findEdge(shift.first) == null){
+				node.edges.add(new Edge(shift.first, tokenNode));
+			}
+		}
+		level++;
+		active = newActive;
+		processed.clear();
+		symbolNodes.clear();
+		shifts.clear();
+	}
+
+	private List<String> expectedTokens(){
+		Set<String> expected = new TreeSet<>();
+		for (Node node : processed){
+			for (int type : table.actionTable.get(node.state).keySet()){
+				expected.add(lexer.getTerminalSet().typeToString(type));
+			}
+		}
+		return new ArrayList<>(expected);
+	}
+}
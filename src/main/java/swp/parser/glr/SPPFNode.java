@@ -0,0 +1,165 @@
+package swp.parser.glr;
+
+import swp.SWPException;
+import swp.grammar.Grammar;
+import swp.grammar.NonTerminal;
+import swp.grammar.Production;
+import swp.lexer.Token;
+import swp.parser.lr.ASTLeaf;
+import swp.parser.lr.BaseAST;
+
+import java.util.*;
+
+/**
+ * Node of a shared packed parse forest (SPPF).
+ *
+ * A non terminal node is shared by all derivations of its non terminal for the same range of tokens,
+ * every distinct way to derive it is stored as a packed alternative.
+ */
+public class SPPFNode {
+
+	/**
+	 * Derived non terminal, null for terminal nodes
+	 */
+	public final NonTerminal nonTerminal;
+
+	/**
+	 * Matched token, null for non terminal nodes
+	 */
+	public final Token token;
+
+	/**
+	 * Index of the first token that is covered by this node
+	 */
+	public final int start;
+
+	/**
+	 * Index of the first token that isn't covered by this node
+	 */
+	public final int end;
+
+	/**
+	 * Packed alternatives (only for non terminal nodes)
+	 */
+	public final List<Alternative> alternatives = new ArrayList<>();
+
+	public static class Alternative {
+
+		public final Production production;
+		public final List<SPPFNode> children;
+
+		public Alternative(Production production, List<SPPFNode> children) {
+			this.production = production;
+			this.children = children;
+		}
+
+		@Override
+		public String toString() {
+			return production + " " + children;
+		}
+	}
+
+	public SPPFNode(NonTerminal nonTerminal, int start, int end) {
+		this.nonTerminal = nonTerminal;
+		this.token = null;
+		this.start = start;
+		this.end = end;
+	}
+
+	public SPPFNode(Token token, int start) {
+		this.nonTerminal = null;
+		this.token = token;
+		this.start = start;
+		this.end = start + 1;
+	}
+
+	/**
+	 * Adds the alternative if it isn't already present
+	 */
+	public void addAlternative(Production production, SPPFNode[] children){
+		for (Alternative alternative : alternatives){
+			if (alternative.production == production && alternative.children.size() == children.length){
+				boolean same = true;
+				for (int i = 0; i < children.length && same; i++){
+					same = alternative.children.get(i) == children[i];
+				}
+				if (same){
+					return;
+				}
+			}
+		}
+		alternatives.add(new Alternative(production, Arrays.asList(children.clone())));
+	}
+
+	public boolean isTerminal(){
+		return token != null;
+	}
+
+	/**
+	 * Does this node have more than one alternative?
+	 */
+	public boolean isAmbiguous(){
+		return alternatives.size() > 1;
+	}
+
+	/**
+	 * Does this node or any of its descendants have more than one alternative?
+	 */
+	public boolean containsAmbiguities(){
+		Set<SPPFNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		Deque<SPPFNode> stack = new ArrayDeque<>();
+		stack.push(this);
+		while (!stack.isEmpty()){
+			SPPFNode node = stack.pop();
+			if (!visited.add(node)){
+				continue;
+			}
+			if (node.isAmbiguous()){
+				return true;
+			}
+			for (Alternative alternative : node.alternatives){
+				alternative.children.forEach(stack::push);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Creates an AST using the reduce actions of the passed grammar.
+	 * Ambiguities are resolved by choosing the first alternative that isn't directly cyclic.
+	 */
+	public BaseAST toAST(Grammar grammar){
+		return toAST(grammar, Collections.newSetFromMap(new IdentityHashMap<>()));
+	}
+
+	private BaseAST toAST(Grammar grammar, Set<SPPFNode> currentPath){
+		if (isTerminal()){
+			return new ASTLeaf(token);
+		}
+		currentPath.add(this);
+		Alternative alternative = null;
+		for (Alternative possibleAlternative : alternatives){
+			if (possibleAlternative.children.stream().noneMatch(currentPath::contains)){
+				alternative = possibleAlternative;
+				break;
+			}
+		}
+		if (alternative == null){
+			throw new SWPException(String.format("Cyclic derivation of %s", this));
+		}
+		List<BaseAST> asts = new ArrayList<>();
+		for (SPPFNode child : alternative.children){
+			asts.add(child.toAST(grammar, currentPath));
+		}
+		currentPath.remove(this);
+		return grammar.reduce(alternative.production.id, asts);
+	}
+
+	@Override
+	public String toString() {
+		if (isTerminal()){
+			return token.toString();
+		}
+		return nonTerminal + "[" + start + ":" + end + "]";
+	}
+}
@@ -0,0 +1,352 @@
+package swp.parser.ll;
+
+import swp.lexer.Checkpoint;
+import swp.lexer.Lexer;
+import swp.lexer.Token;
+import swp.parser.Diagnostic;
+import swp.parser.SyntaxError;
+
+import java.util.*;
+
+import static swp.parser.ll.LLParserTable.*;
+
+/**
+ * Adaptive prediction (in the style of ALL(*)) for the decisions of a LL parser that can't be made with
+ * the lookahead tokens of the parser table.
+ *
+ * All alternatives of the non terminal are simulated in parallel on the following tokens until only one of
+ * them remains. The simulation first ignores the parser stack and continues with every possible follower of
+ * a finished non terminal (SLL), its states are cached per non terminal as a lookahead DFA. If the SLL
+ * simulation can't decide, it's repeated with the actual parser stack (LL) without caching. Real
+ * ambiguities are resolved in favour of the production with the lowest id.
+ *
+ * The parser table must not change after the creation of the predictor. The cached states change
+ * while predicting, therefore every parser uses its own predictor.
+ */
+class AdaptivePredictor {
+
+	/**
+	 * Symbol kind that marks the end of a non terminal in SLL stacks
+	 */
+	private static final int END = 3;
+
+	private final LLParserTable table;
+
+	/**
+	 * [non terminal index] => (production index, position behind the non terminal) pairs of its occurrences
+	 */
+	private final int[][] occurrences;
+
+	private final int startIndex;
+
+	private final DFAState[] startStates;
+
+	/**
+	 * Cached states per non terminal, used to find existing states
+	 */
+	private final List<Map<Set<Config>, DFAState>> states = new ArrayList<>();
+
+	/**
+	 * A simulated alternative: the alternative (production index) and the stack of symbols that still have
+	 * to be matched. An empty stack continues in the parser stack below the passed position in LL mode.
+	 */
+	private static class Config {
+		final int alternative;
+		/**
+		 * Encoded symbols, top is the last element
+		 */
+		final int[] stack;
+		/**
+		 * Size of the parser stack below this stack, -1 in SLL mode
+		 */
+		final int context;
+		private final int hash;
+
+		Config(int alternative, int[] stack, int context) {
+			this.alternative = alternative;
+			this.stack = stack;
+			this.context = context;
+			this.hash = (alternative * 31 + Arrays.hashCode(stack)) * 31 + context;
+		}
+
+		int top(){
+			return stack[stack.length - 1];
+		}
+
+		/**
+		 * Creates a config with the top symbol replaced by the passed symbols (in reverse order)
+		 */
+		Config replaceTop(int[] symbols, int start, int end){
+			int[] newStack = Arrays.copyOf(stack, stack.length - 1 + end - start);
+			for (int i = end - 1, j = stack.length - 1; i >= start; i--, j++){
+				newStack[j] = symbols[i];
+			}
+			return new Config(alternative, newStack, context);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Config)){
+				return false;
+			}
+			Config config = (Config)obj;
+			return hash == config.hash && alternative == config.alternative && context == config.context
+					&& Arrays.equals(stack, config.stack);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	private static class DFAState {
+		final Set<Config> configs;
+		/**
+		 * Predicted production index, -1 if the state doesn't decide
+		 */
+		final int prediction;
+		/**
+		 * Do the configs conflict? The SLL simulation can't decide then.
+		 */
+		final boolean conflict;
+		/**
+		 * [token type] => next state, lazily created
+		 */
+		DFAState[] edges;
+
+		DFAState(Set<Config> configs, int prediction, boolean conflict) {
+			this.configs = configs;
+			this.prediction = prediction;
+			this.conflict = conflict;
+		}
+	}
+
+	AdaptivePredictor(LLParserTable table){
+		this.table = table;
+		this.startIndex = table.nonTerminalIndexes[table.grammar.getStart().id];
+		List<List<Integer>> occurrenceLists = new ArrayList<>();
+		for (int i = 0; i < table.nonTerminals.length; i++){
+			occurrenceLists.add(new ArrayList<>());
+			states.add(new HashMap<>());
+		}
+		for (int production = 0; production < table.productionIds.length; production++){
+			for (int i = table.rightHandSideStarts[production]; i < table.rightHandSideStarts[production + 1]; i++){
+				int symbol = table.rightHandSides[i];
+				if ((symbol & 3) == NON_TERMINAL){
+					occurrenceLists.get(symbol >> 2).add(production);
+					occurrenceLists.get(symbol >> 2).add(i + 1);
+				}
+			}
+		}
+		occurrences = new int[occurrenceLists.size()][];
+		for (int i = 0; i < occurrences.length; i++){
+			occurrences[i] = occurrenceLists.get(i).stream().mapToInt(Integer::intValue).toArray();
+		}
+		startStates = new DFAState[table.nonTerminals.length];
+	}
+
+	/**
+	 * Predicts the production for the passed non terminal, the lexer is reset to its current token afterwards
+	 *
+	 * @param nonTerminal non terminal index
+	 * @param parserStack stack of the parser (without the non terminal)
+	 * @param parserStackSize size of the stack
+	 * @return production index
+	 */
+	int predict(int nonTerminal, Lexer lexer, int[] parserStack, int parserStackSize){
+		Checkpoint checkpoint = lexer.mark();
+		try {
+			DFAState state = startState(nonTerminal);
+			Token token = lexer.cur();
+			int eofCount = 0;
+			while (state.prediction == -1 && !state.conflict && eofCount < 2){
+				DFAState next = nextState(nonTerminal, state, token.type);
+				if (next.configs.isEmpty()){
+					throw error(token, state.configs);
+				}
+				state = next;
+				eofCount += token.type == 0 ? 1 : 0;
+				token = lexer.next();
+			}
+			if (state.prediction != -1){
+				return state.prediction;
+			}
+			lexer.reset(checkpoint);
+			return predictWithFullContext(nonTerminal, lexer, parserStack, parserStackSize);
+		} finally {
+			lexer.reset(checkpoint);
+		}
+	}
+
+	private DFAState startState(int nonTerminal){
+		if (startStates[nonTerminal] == null){
+			Set<Config> configs = new LinkedHashSet<>();
+			for (int alternative : table.alternatives[nonTerminal]){
+				int[] stack = {encode(nonTerminal, END), encode(nonTerminal, NON_TERMINAL)};
+				closure(expand(new Config(alternative, stack, -1), alternative), configs, null);
+			}
+			startStates[nonTerminal] = createState(nonTerminal, configs);
+		}
+		return startStates[nonTerminal];
+	}
+
+	private DFAState nextState(int nonTerminal, DFAState state, int tokenType){
+		if (state.edges == null){
+			state.edges = new DFAState[table.terminalCount];
+		}
+		if (tokenType >= state.edges.length){
+			return createState(nonTerminal, Collections.emptySet());
+		}
+		if (state.edges[tokenType] == null){
+			state.edges[tokenType] = createState(nonTerminal, move(state.configs, tokenType, null));
+		}
+		return state.edges[tokenType];
+	}
+
+	private DFAState createState(int nonTerminal, Set<Config> configs){
+		DFAState state = states.get(nonTerminal).get(configs);
+		if (state == null){
+			Set<Integer> alternatives = alternatives(configs);
+			state = new DFAState(configs, alternatives.size() == 1 ? alternatives.iterator().next() : -1,
+					alternatives.size() > 1 && isConflicting(configs));
+			states.get(nonTerminal).put(configs, state);
+		}
+		return state;
+	}
+
+	private int predictWithFullContext(int nonTerminal, Lexer lexer, int[] parserStack, int parserStackSize){
+		Set<Config> configs = new LinkedHashSet<>();
+		for (int alternative : table.alternatives[nonTerminal]){
+			int[] stack = {encode(nonTerminal, NON_TERMINAL)};
+			closure(expand(new Config(alternative, stack, parserStackSize), alternative), configs, parserStack);
+		}
+		Token token = lexer.cur();
+		int eofCount = 0;
+		while (true){
+			Set<Integer> alternatives = alternatives(configs);
+			if (alternatives.isEmpty()){
+				throw error(token, configs);
+			}
+			if (alternatives.size() == 1 || isConflicting(configs) || eofCount == 2){
+				return Collections.min(alternatives);
+			}
+			Set<Config> next = move(configs, token.type, parserStack);
+			if (next.isEmpty()){
+				throw error(token, configs);
+			}
+			configs = next;
+			eofCount += token.type == 0 ? 1 : 0;
+			token = lexer.next();
+		}
+	}
+
+	/**
+	 * Matches the passed token with the configs that have it on top of their stacks
+	 */
+	private Set<Config> move(Set<Config> configs, int tokenType, int[] parserStack){
+		Set<Config> result = new LinkedHashSet<>();
+		int symbol = encode(tokenType, TERMINAL);
+		for (Config config : configs){
+			if (config.top() == symbol){
+				closure(new Config(config.alternative, Arrays.copyOf(config.stack, config.stack.length - 1), config.context),
+						result, parserStack);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Adds all configs reachable without matching a token, that have a terminal on top of their stacks
+	 */
+	private void closure(Config start, Set<Config> result, int[] parserStack){
+		Set<Config> visited = new HashSet<>();
+		Deque<Config> queue = new ArrayDeque<>();
+		queue.add(start);
+		while (!queue.isEmpty()){
+			Config config = queue.poll();
+			if (!visited.add(config)){
+				continue;
+			}
+			if (config.stack.length == 0){
+				// LL mode: continue with the parser stack
+				int position = config.context - 1;
+				while (position >= 0 && (parserStack[position] & 3) == REDUCE){
+					position -= 2;
+				}
+				int[] stack = {position >= 0 ? parserStack[position] : encode(0, TERMINAL)};
+				queue.add(new Config(config.alternative, stack, Math.max(position, 0)));
+				continue;
+			}
+			int top = config.top();
+			int value = top >> 2;
+			switch (top & 3){
+				case TERMINAL:
+					result.add(config);
+					break;
+				case NON_TERMINAL:
+					for (int production : table.alternatives[value]){
+						queue.add(expand(config, production));
+					}
+					break;
+				case END:
+					// SLL mode: continue with all symbols that can follow the non terminal
+					int[] symbols = occurrences[value];
+					for (int i = 0; i < symbols.length; i += 2){
+						int production = symbols[i];
+						int[] newTop = Arrays.copyOfRange(table.rightHandSides, symbols[i + 1],
+								table.rightHandSideStarts[production + 1] + 1);
+						newTop[newTop.length - 1] = encode(table.productionLefts[production], END);
+						queue.add(config.replaceTop(newTop, 0, newTop.length));
+					}
+					if (value == startIndex || symbols.length == 0){
+						queue.add(config.replaceTop(new int[]{encode(0, TERMINAL), top}, 0, 2));
+					}
+			}
+		}
+	}
+
+	/**
+	 * Replaces the top non terminal of the config with the right hand side of the passed production
+	 */
+	private Config expand(Config config, int production){
+		return config.replaceTop(table.rightHandSides, table.rightHandSideStarts[production],
+				table.rightHandSideStarts[production + 1]);
+	}
+
+	private static Set<Integer> alternatives(Set<Config> configs){
+		Set<Integer> alternatives = new HashSet<>();
+		for (Config config : configs){
+			alternatives.add(config.alternative);
+		}
+		return alternatives;
+	}
+
+	/**
+	 * Does every stack belong to multiple alternatives? The simulation can't distinguish the alternatives then.
+	 */
+	private static boolean isConflicting(Set<Config> configs){
+		Map<Config, Set<Integer>> alternativesPerStack = new HashMap<>();
+		for (Config config : configs){
+			Config key = new Config(0, config.stack, config.context);
+			if (!alternativesPerStack.containsKey(key)){
+				alternativesPerStack.put(key, new HashSet<>());
+			}
+			alternativesPerStack.get(key).add(config.alternative);
+		}
+		for (Set<Integer> alternatives : alternativesPerStack.values()){
+			if (alternatives.size() == 1){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private SyntaxError error(Token token, Set<Config> configs){
+		BitSet expected = new BitSet();
+		for (Config config : configs){
+			expected.set(config.top() >> 2);
+		}
+		return new SyntaxError(new Diagnostic(token, expected));
+	}
+}
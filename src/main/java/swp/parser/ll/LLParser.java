@@ -5,32 +5,47 @@ package swp.parser.ll;
  */
 
 import swp.grammar.Grammar;
-import swp.grammar.NonTerminal;
-import swp.grammar.Symbol;
-import swp.grammar.Terminal;
+import swp.grammar.ReductionProfiler;
+import swp.lexer.Checkpoint;
 import swp.lexer.Lexer;
 import swp.lexer.Token;
+import swp.parser.Diagnostic;
+import swp.parser.SyntaxError;
 import swp.parser.lr.ASTLeaf;
 import swp.parser.lr.BaseAST;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
+
+import static swp.parser.ll.LLParserTable.*;
 
 /**
- * Implements an LL(1) parser. Might or might not work properly. It's useless for almost every real world grammar.
+ * Implements an LL(k) parser. Decisions that can't be made with the lookahead of the parser table
+ * use an adaptive prediction (see AdaptivePredictor).
+ *
+ * The parser works on the array based version of the parser table. It uses an int stack of encoded
+ * symbols: the expansion of a production pushes its right hand side symbols in reverse order on top
+ * of a reduce marker (and the size of the AST stack), the reduce marker creates the AST of the production
+ * from the ASTs on top of the AST stack. Besides the created ASTs, nothing is allocated while parsing.
  */
 public class LLParser {
 
 	private final Grammar grammar;
 	private final Lexer lexer;
 	private final LLParserTable table;
-	Token current;
-	List<Token> tokens = new ArrayList<>();
-	int currentTokenNum = 0;
-	private ArrayList<StackFrame> stack = new ArrayList<>();
+	private int[] stack = new int[64];
+	private int stackSize = 0;
+	private BaseAST[] asts = new BaseAST[64];
+	private int astsSize = 0;
 	private boolean includeEOFToken = false;
+	private ReductionProfiler profiler;
+	/**
+	 * Adaptive prediction of this parser, its lookahead DFA cache changes while parsing, therefore
+	 * the parsers don't share it. Created when it's first needed.
+	 */
+	private AdaptivePredictor predictor;
 
 	public LLParser(Lexer lexer, LLParserTable table, boolean includeEOFToken){
 		this(table.grammar, lexer, table);
@@ -45,92 +60,130 @@ public class LLParser {
 		this.grammar = grammar;
 		this.lexer = lexer;
 		this.table = table;
-		tokens.add(lexer.cur());
-		do {
-			tokens.add(lexer.next());
-		} while (lexer.cur().type != 0);
-		current = tokens.get(0);
-	}
-
-	public void advanceTokenNum(){
-		if (currentTokenNum >= tokens.size() - 1){
-			current = tokens.get(tokens.size() - 1);
-		} else {
-			currentTokenNum++;
-			current = tokens.get(currentTokenNum);
-		}
+		table.compile();
 	}
 
+	/**
+	 * Parses the input
+	 *
+	 * @return AST of the start non terminal (the EOF token is omitted if includeEOFToken is false)
+	 */
 	public BaseAST parse(){
-		stack.add(new StackFrame(grammar.getStart(), null, new ArrayList<BaseAST>(), -1, true));
-		while (true) {
-			int tokenType = current.type;
-
-			StackFrame topStack = pop();
-			Symbol topStackSymbol = topStack.symbol;
-
-			if (topStackSymbol instanceof Terminal) {
-				if (tokenType != ((Terminal) topStackSymbol).id) {
-					throw new Error("Expected " + topStackSymbol + " but got " + current);
-				}
-				topStack.subAstsOfParent.add(new ASTLeaf(current));
-				if (topStack.isLastSymbolOfProduction) {
-					StackFrame elem = topStack;
-					while (elem.parent != null && elem.isLastSymbolOfProduction) {
-						elem.parent.ast = grammar.reduce(elem.productionId, elem.subAstsOfParent);
-						if (elem.parent.parent != null) {
-							elem.parent.parent.subAstsOfParent.add(elem.parent.ast);
-						}
-						elem = elem.parent;
+		stackSize = 0;
+		astsSize = 0;
+		push(encode(table.nonTerminalIndexes[grammar.getStart().id], NON_TERMINAL));
+		Token current = lexer.cur();
+		while (stackSize > 0) {
+			int symbol = stack[--stackSize];
+			int value = symbol >> 2;
+			switch (symbol & 3){
+				case TERMINAL:
+					if (current.type != value) {
+						BitSet expected = new BitSet();
+						expected.set(value);
+						throw new SyntaxError(new Diagnostic(current, expected));
 					}
-					if (elem.parent == null){
-						return elem.ast;
+					if (value != 0 || includeEOFToken){
+						pushAST(new ASTLeaf(current));
 					}
-				}
-				advanceTokenNum();
-			} else {
-				Map<Integer, Integer> row = table.table.get((NonTerminal) topStackSymbol);
-				if (!row.containsKey(tokenType)) {
-					ArrayList<String> arr = new ArrayList<>();
-					for (int t : row.keySet()) {
-						arr.add(lexer.getTerminalSet().typeToString(t));
+					if (value != 0){
+						current = lexer.next();
 					}
-					Collections.sort(arr);
-					throw new Error(String.format("Unexpected %s, expected %s", current, arr));
-				}
-				addToStack(topStack, row.get(tokenType), table.productions.get(row.get(tokenType)));
+					break;
+				case NON_TERMINAL:
+					int[] row = table.predictions[value];
+					int production = current.type < row.length ? row[current.type] : -1;
+					if (production == -1) {
+						throw new SyntaxError(new Diagnostic(current, expectedTokens(row)));
+					}
+					if (production < -1){
+						production = predict(value, production);
+					}
+					push(astsSize);
+					push(encode(production, REDUCE));
+					for (int i = table.rightHandSideStarts[production + 1] - 1; i >= table.rightHandSideStarts[production]; i--){
+						push(table.rightHandSides[i]);
+					}
+					break;
+				case REDUCE:
+					int start = stack[--stackSize];
+					List<BaseAST> children = new ArrayList<>(astsSize - start);
+					for (int i = start; i < astsSize; i++){
+						children.add(asts[i]);
+						asts[i] = null;
+					}
+					astsSize = start;
+					int productionId = table.productionIds[value];
+					pushAST(profiler == null ? grammar.reduce(productionId, children) : profiler.reduce(productionId, children));
 			}
 		}
+		if (current.type != 0){
+			BitSet expected = new BitSet();
+			expected.set(0);
+			throw new SyntaxError(new Diagnostic(current, expected));
+		}
+		return asts[0];
+	}
+
+	/**
+	 * Sets the profiler that all reductions are passed to, null disables the profiling
+	 */
+	public void setProfiler(ReductionProfiler profiler){
+		this.profiler = profiler;
 	}
 
-	private void addToStack(StackFrame parent, int productionId, List<Symbol> rightHandSide){
-		List<BaseAST> tmp = new ArrayList<>();
-		for (int i = rightHandSide.size() - 1; i >= 0; i--){
-			stack.add(new StackFrame(rightHandSide.get(i), parent, tmp, productionId, i == rightHandSide.size() - 1));
+	/**
+	 * Uses the following tokens to predict the production if the current token isn't sufficient
+	 *
+	 * @param nonTerminal non terminal index
+	 * @param entry entry of the prediction table for the current token
+	 * @return production index
+	 */
+	private int predict(int nonTerminal, int entry){
+		if (entry != ADAPTIVE){
+			Checkpoint checkpoint = lexer.mark();
+			Token token = lexer.cur();
+			while (entry < -1 && entry != ADAPTIVE){
+				token = lexer.next();
+				int[] row = table.lookaheadNodes[-2 - entry];
+				entry = token.type < row.length ? row[token.type] : -1;
+				if (entry == -1){
+					lexer.reset(checkpoint);
+					throw new SyntaxError(new Diagnostic(token, expectedTokens(row)));
+				}
+			}
+			lexer.reset(checkpoint);
+		}
+		if (entry == ADAPTIVE){
+			if (predictor == null){
+				predictor = new AdaptivePredictor(table);
+			}
+			return predictor.predict(nonTerminal, lexer, stack, stackSize);
 		}
+		return entry;
 	}
 
-	private StackFrame pop(){
-		StackFrame ret = stack.get(stack.size() - 1);
-		stack.remove(stack.size() - 1);
-		return ret;
+	private void push(int symbol){
+		if (stackSize == stack.length){
+			stack = Arrays.copyOf(stack, stackSize * 2);
+		}
+		stack[stackSize++] = symbol;
 	}
 
-	class StackFrame {
-		public final Symbol symbol;
-		public final List<BaseAST> subAstsOfParent;
-		public final StackFrame parent;
-		public final int productionId;
-		public final boolean isLastSymbolOfProduction;
-		public BaseAST ast;
+	private void pushAST(BaseAST ast){
+		if (astsSize == asts.length){
+			asts = Arrays.copyOf(asts, astsSize * 2);
+		}
+		asts[astsSize++] = ast;
+	}
 
-		public StackFrame(Symbol symbol, StackFrame parent, List<BaseAST> subAstsOfParent, int productionId, boolean isLastSymbolOfProduction) {
-			this.symbol = symbol;
-			this.subAstsOfParent = subAstsOfParent;
-			this.productionId = productionId;
-			this.isLastSymbolOfProduction = isLastSymbolOfProduction;
-			this.parent = parent;
+	private static BitSet expectedTokens(int[] row){
+		BitSet expected = new BitSet();
+		for (int t = 0; t < row.length; t++) {
+			if (row[t] != -1){
+				expected.set(t);
+			}
 		}
+		return expected;
 	}
 }
-
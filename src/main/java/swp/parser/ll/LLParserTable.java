@@ -1,5 +1,6 @@
 package swp.parser.ll;
 
+import swp.SWPException;
 import swp.grammar.*;
 import swp.lexer.TerminalSet;
 
@@ -24,6 +25,69 @@ public class LLParserTable {
 	 */
 	public Map<Integer, List<Symbol>> productions;
 
+	public static final int TERMINAL = 0;
+	public static final int NON_TERMINAL = 1;
+	public static final int REDUCE = 2;
+
+	/**
+	 * Prediction entry that signals that the adaptive prediction has to be used
+	 */
+	public static final int ADAPTIVE = Integer.MIN_VALUE;
+
+	/**
+	 * Number of lookahead tokens
+	 */
+	public int k = 1;
+
+	/**
+	 * Maps a non terminal and a lookahead sequence (token types, padded with EOFs to length k) to the possible
+	 * production ids, only used for tables created by fromGrammar(grammar, k)
+	 */
+	public Map<NonTerminal, Map<List<Integer>, Set<Integer>>> lookaheads;
+
+	/**
+	 * Maps non terminal ids to dense non terminal indexes (-1 for unused ids)
+	 */
+	int[] nonTerminalIndexes;
+
+	NonTerminal[] nonTerminals;
+
+	/**
+	 * [non terminal index][token type] => production index, -1 if there's no production,
+	 * -2 - node index if the next token has to be looked at (see lookaheadNodes) or ADAPTIVE
+	 */
+	int[][] predictions;
+
+	/**
+	 * Nodes of the lookahead tries (for k > 1), [node index][token type] => entry like in predictions
+	 */
+	int[][] lookaheadNodes;
+
+	int terminalCount;
+
+	/**
+	 * [production index] => non terminal index of its left hand side
+	 */
+	int[] productionLefts;
+
+	/**
+	 * [non terminal index] => production indexes
+	 */
+	int[][] alternatives;
+
+	/**
+	 * [production index] => production id
+	 */
+	int[] productionIds;
+
+	/**
+	 * Encoded right hand side symbols of all productions, the symbols of the production with the index i
+	 * are stored in the range [rightHandSideStarts[i], rightHandSideStarts[i + 1])
+	 */
+	int[] rightHandSides;
+
+	int[] rightHandSideStarts;
+
 	public LLParserTable(Grammar grammar){
 		this.grammar = grammar;
 		table = new HashMap<>();
@@ -38,9 +102,96 @@ public class LLParserTable {
 				llTable.insertAction(production.left, lookahead, production);
 			}
 		}
+		llTable.compile();
+		return llTable;
+	}
+
+	/**
+	 * Creates an LL(k) table with tries of lookahead tokens. Decisions that can't be made with k tokens
+	 * use the adaptive prediction of the parser, therefore the grammar only has to be free of left recursion.
+	 */
+	public static LLParserTable fromGrammar(Grammar grammar, int k){
+		checkForLeftRecursion(grammar);
+		LLParserTable llTable = new LLParserTable(grammar);
+		llTable.k = k;
+		llTable.terminalSet = grammar.eof.terminalSet;
+		llTable.lookaheads = new HashMap<>();
+		Map<NonTerminal, Set<List<Terminal>>> first = grammar.calculateFirstKSet(k);
+		Map<NonTerminal, Set<List<Terminal>>> follow = grammar.calculateFollowKSet(k, first);
+		for (Production production : grammar.getProductions()){
+			llTable.productions.put(production.id, production.right);
+			if (!llTable.lookaheads.containsKey(production.left)){
+				llTable.lookaheads.put(production.left, new HashMap<>());
+			}
+			Map<List<Integer>, Set<Integer>> sequences = llTable.lookaheads.get(production.left);
+			for (List<Terminal> sequence : Grammar.concatenateK(k,
+					grammar.calculateFirstKSetForTerm(k, production.right, first), follow.get(production.left))){
+				List<Integer> types = new ArrayList<>(k);
+				for (Terminal terminal : sequence){
+					types.add(terminal.id);
+				}
+				while (types.size() < k){
+					types.add(0);
+				}
+				if (!sequences.containsKey(types)){
+					sequences.put(types, new HashSet<>());
+				}
+				sequences.get(types).add(production.id);
+			}
+		}
+		// the first token is sufficient for some decisions
+		for (NonTerminal nonTerminal : llTable.lookaheads.keySet()){
+			Map<Integer, Set<Integer>> productionsPerToken = new HashMap<>();
+			for (Map.Entry<List<Integer>, Set<Integer>> entry : llTable.lookaheads.get(nonTerminal).entrySet()){
+				if (!productionsPerToken.containsKey(entry.getKey().get(0))){
+					productionsPerToken.put(entry.getKey().get(0), new HashSet<>());
+				}
+				productionsPerToken.get(entry.getKey().get(0)).addAll(entry.getValue());
+			}
+			Map<Integer, Integer> row = new HashMap<>();
+			for (Map.Entry<Integer, Set<Integer>> entry : productionsPerToken.entrySet()){
+				if (entry.getValue().size() == 1){
+					row.put(entry.getKey(), entry.getValue().iterator().next());
+				}
+			}
+			llTable.table.put(nonTerminal, row);
+		}
+		llTable.compile();
 		return llTable;
 	}
 
+	private static void checkForLeftRecursion(Grammar grammar){
+		Set<NonTerminal> epsilonable = grammar.calculateEpsilonable();
+		Map<NonTerminal, Set<NonTerminal>> leftCorners = new HashMap<>();
+		for (Production production : grammar.getProductions()){
+			if (!leftCorners.containsKey(production.left)){
+				leftCorners.put(production.left, new HashSet<>());
+			}
+			for (Symbol symbol : production.right){
+				if (!(symbol instanceof NonTerminal)){
+					break;
+				}
+				leftCorners.get(production.left).add((NonTerminal)symbol);
+				if (!epsilonable.contains(symbol)){
+					break;
+				}
+			}
+		}
+		for (NonTerminal nonTerminal : leftCorners.keySet()){
+			Set<NonTerminal> reachable = new HashSet<>();
+			Deque<NonTerminal> queue = new ArrayDeque<>(leftCorners.get(nonTerminal));
+			while (!queue.isEmpty()){
+				NonTerminal current = queue.poll();
+				if (current == nonTerminal){
+					throw new SWPException(String.format("Non terminal %s is left recursive", nonTerminal));
+				}
+				if (reachable.add(current) && leftCorners.containsKey(current)){
+					queue.addAll(leftCorners.get(current));
+				}
+			}
+		}
+	}
+
 	public void insertAction(NonTerminal nonTerminal, Terminal lookahead, Production executedProduction){
 		if (terminalSet == null) {
 			terminalSet = lookahead.terminalSet;
@@ -57,6 +208,120 @@ public class LLParserTable {
 					grammar.getProductionForId(row.get(lookahead.id)), executedProduction, lookahead);
 		}
 		row.put(lookahead.id, executedProduction.id);
+		predictions = null;
+	}
+
+	/**
+	 * Creates the array based version of this table that is used by the LLParser,
+	 * it's recreated after the table has been modified. The fromGrammar methods create it eagerly, the
+	 * parsers call this method (synchronized) before using the arrays, so that tables can be shared by threads.
+	 */
+	synchronized void compile(){
+		if (predictions != null){
+			return;
+		}
+		CompiledGrammar compiled = grammar.compile();
+		int terminalCount = compiled.terminals.length;
+		for (Map<Integer, Integer> row : table.values()){
+			for (int terminalId : row.keySet()){
+				terminalCount = Math.max(terminalCount, terminalId + 1);
+			}
+		}
+		if (lookaheads != null){
+			for (Map<List<Integer>, Set<Integer>> sequences : lookaheads.values()){
+				for (List<Integer> sequence : sequences.keySet()){
+					for (int terminalId : sequence){
+						terminalCount = Math.max(terminalCount, terminalId + 1);
+					}
+				}
+			}
+		}
+		nonTerminals = compiled.nonTerminals;
+		nonTerminalIndexes = compiled.nonTerminalIndexes;
+		Map<Integer, Integer> productionIndexes = new HashMap<>();
+		productionIds = new int[compiled.productions.length];
+		rightHandSideStarts = new int[productionIds.length + 1];
+		int symbolCount = 0;
+		for (int[] right : compiled.rights){
+			symbolCount += right.length;
+		}
+		rightHandSides = new int[symbolCount];
+		for (int i = 0, j = 0; i < productionIds.length; i++){
+			productionIndexes.put(compiled.productions[i].id, i);
+			productionIds[i] = compiled.productions[i].id;
+			rightHandSideStarts[i] = j;
+			for (int symbol : compiled.rights[i]){
+				rightHandSides[j++] = CompiledGrammar.isTerminal(symbol) ? encode(symbol, TERMINAL) : encode(~symbol, NON_TERMINAL);
+			}
+		}
+		rightHandSideStarts[productionIds.length] = symbolCount;
+		this.terminalCount = terminalCount;
+		int[][] predictions = new int[nonTerminals.length][terminalCount];
+		for (int i = 0; i < nonTerminals.length; i++){
+			Arrays.fill(predictions[i], -1);
+			Map<Integer, Integer> row = table.get(nonTerminals[i]);
+			if (row != null){
+				for (Map.Entry<Integer, Integer> entry : row.entrySet()){
+					predictions[i][entry.getKey()] = productionIndexes.get(entry.getValue());
+				}
+			}
+		}
+		productionLefts = compiled.lefts;
+		alternatives = compiled.productionsOf;
+		if (lookaheads != null){
+			List<int[]> nodes = new ArrayList<>();
+			for (int i = 0; i < nonTerminals.length; i++){
+				Map<List<Integer>, Set<Integer>> sequences = lookaheads.get(nonTerminals[i]);
+				if (sequences != null){
+					Arrays.fill(predictions[i], -1);
+					fillTrieRow(predictions[i], new ArrayList<>(sequences.entrySet()), 0, nodes, productionIndexes);
+				}
+			}
+			lookaheadNodes = nodes.toArray(new int[0][]);
+		}
+		this.predictions = predictions;
+	}
+
+	/**
+	 * Fills the passed trie node row with the entries for the token at the passed depth of the lookahead sequences
+	 */
+	private void fillTrieRow(int[] row, List<Map.Entry<List<Integer>, Set<Integer>>> sequences, int depth,
+	                         List<int[]> nodes, Map<Integer, Integer> productionIndexes){
+		Map<Integer, List<Map.Entry<List<Integer>, Set<Integer>>>> sequencesPerToken = new HashMap<>();
+		for (Map.Entry<List<Integer>, Set<Integer>> entry : sequences){
+			int type = entry.getKey().get(depth);
+			if (!sequencesPerToken.containsKey(type)){
+				sequencesPerToken.put(type, new ArrayList<>());
+			}
+			sequencesPerToken.get(type).add(entry);
+		}
+		for (Map.Entry<Integer, List<Map.Entry<List<Integer>, Set<Integer>>>> entry : sequencesPerToken.entrySet()){
+			Set<Integer> productionIds = new HashSet<>();
+			for (Map.Entry<List<Integer>, Set<Integer>> sequence : entry.getValue()){
+				productionIds.addAll(sequence.getValue());
+			}
+			if (productionIds.size() == 1){
+				row[entry.getKey()] = productionIndexes.get(productionIds.iterator().next());
+			} else if (depth + 1 == k){
+				row[entry.getKey()] = ADAPTIVE;
+			} else {
+				int[] node = new int[row.length];
+				Arrays.fill(node, -1);
+				nodes.add(node);
+				row[entry.getKey()] = -2 - (nodes.size() - 1);
+				fillTrieRow(node, entry.getValue(), depth + 1, nodes, productionIndexes);
+			}
+		}
+	}
+
+	/**
+	 * Encodes a symbol for the parser stack or the right hand side arrays
+	 *
+	 * @param value terminal id, non terminal index or production index
+	 * @param kind TERMINAL, NON_TERMINAL or REDUCE
+	 */
+	static int encode(int value, int kind){
+		return (value << 2) | kind;
 	}
 
 	@Override
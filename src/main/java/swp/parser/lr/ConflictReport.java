@@ -0,0 +1,218 @@
+package swp.parser.lr;
+
+import swp.grammar.Grammar;
+import swp.grammar.NonTerminal;
+import swp.grammar.Production;
+import swp.grammar.Symbol;
+import swp.grammar.Terminal;
+
+import java.util.*;
+
+/**
+ * Conflicts of an LR parser table, with the situations that cause them and example inputs that lead to them
+ */
+public class ConflictReport {
+
+	public static class Conflict {
+		public final int state;
+		public final Terminal terminal;
+		/**
+		 * Conflicting actions, the action table contains the first shift action or the first action
+		 */
+		public final List<LRParserTable.Action> actions;
+		/**
+		 * Situations of the state that cause the actions
+		 */
+		public final List<Situation> situations;
+		/**
+		 * Shortest sequence of symbols that leads from the start state to the state of the conflict
+		 */
+		public final List<Symbol> prefix;
+		/**
+		 * Terminals derived from the prefix, the parser reaches the conflict with the terminal as lookahead
+		 * after reading them
+		 */
+		public final List<Terminal> example;
+
+		Conflict(int state, Terminal terminal, List<LRParserTable.Action> actions, List<Situation> situations,
+		         List<Symbol> prefix, List<Terminal> example) {
+			this.state = state;
+			this.terminal = terminal;
+			this.actions = actions;
+			this.situations = situations;
+			this.prefix = prefix;
+			this.example = example;
+		}
+
+		/**
+		 * Kind of the conflict, like "shift/reduce"
+		 */
+		public String getKind(){
+			List<String> names = new ArrayList<>();
+			for (LRParserTable.Action action : actions){
+				names.add(action.name());
+			}
+			return String.join("/", names);
+		}
+
+		public boolean isShiftReduce(){
+			for (LRParserTable.Action action : actions){
+				if (action instanceof LRParserTable.ShiftAction){
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append(String.format("State %d at terminal %s: %s conflict %s\n", state,
+					terminal.terminalSet.typeToString(terminal.id), getKind(), actions));
+			for (Situation situation : situations){
+				builder.append("  ").append(situation).append("\n");
+			}
+			builder.append("  example: ");
+			for (Terminal exampleTerminal : example){
+				builder.append(exampleTerminal.terminalSet.typeToString(exampleTerminal.id)).append(" ");
+			}
+			builder.append("• ").append(terminal.terminalSet.typeToString(terminal.id)).append("\n");
+			return builder.toString();
+		}
+	}
+
+	public final List<Conflict> conflicts = new ArrayList<>();
+
+	/**
+	 * Shortest derivable terminal sequence of the non terminals (without the unproductive ones)
+	 */
+	private final Map<NonTerminal, List<Terminal>> shortestDerivations;
+
+	public ConflictReport(Graph graph, LRParserTable table) {
+		shortestDerivations = calculateShortestDerivations(graph.grammar);
+		Map<State, List<Symbol>> prefixes = calculatePrefixes(graph);
+		List<Integer> states = new ArrayList<>(table.conflicts.keySet());
+		Collections.sort(states);
+		for (int stateId : states){
+			State state = graph.states.get(stateId);
+			Map<Integer, List<LRParserTable.Action>> conflictRow = table.conflicts.get(stateId);
+			List<Integer> terminals = new ArrayList<>(conflictRow.keySet());
+			Collections.sort(terminals);
+			for (int terminalId : terminals){
+				Terminal terminal = graph.grammar.getTerminalForId(terminalId);
+				List<Symbol> prefix = prefixes.get(state);
+				conflicts.add(new Conflict(stateId, terminal, conflictRow.get(terminalId),
+						causingSituations(state, terminal, conflictRow.get(terminalId)), prefix, derive(prefix)));
+			}
+		}
+	}
+
+	public boolean isEmpty(){
+		return conflicts.isEmpty();
+	}
+
+	public int countShiftReduceConflicts(){
+		int count = 0;
+		for (Conflict conflict : conflicts){
+			if (conflict.isShiftReduce()){
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int countReduceReduceConflicts(){
+		return conflicts.size() - countShiftReduceConflicts();
+	}
+
+	private static List<Situation> causingSituations(State state, Terminal terminal, List<LRParserTable.Action> actions){
+		List<Situation> situations = new ArrayList<>();
+		for (Situation situation : state){
+			boolean complete = !situation.canAdvance() || situation.right.isEmpty();
+			for (LRParserTable.Action action : actions){
+				if (action instanceof LRParserTable.ReduceAction
+						? complete && situation.id == ((LRParserTable.ReduceAction) action).productionId
+						: situation.inFrontOfTerminal() && situation.nextSymbol().equals(terminal)){
+					situations.add(situation);
+					break;
+				}
+			}
+		}
+		return situations;
+	}
+
+	/**
+	 * Breadth first search for the shortest symbol sequence that leads to each state
+	 */
+	private static Map<State, List<Symbol>> calculatePrefixes(Graph graph){
+		// states are lists, therefore compare them by identity
+		Map<State, List<Symbol>> prefixes = new IdentityHashMap<>();
+		prefixes.put(graph.startState, new ArrayList<>());
+		Deque<State> worklist = new ArrayDeque<>();
+		worklist.add(graph.startState);
+		while (!worklist.isEmpty()){
+			State state = worklist.poll();
+			List<Symbol> symbols = new ArrayList<>(state.adjacentStates.keySet());
+			Collections.sort(symbols);
+			for (Symbol symbol : symbols){
+				State next = state.adjacentStates.get(symbol);
+				if (!prefixes.containsKey(next)){
+					List<Symbol> prefix = new ArrayList<>(prefixes.get(state));
+					prefix.add(symbol);
+					prefixes.put(next, prefix);
+					worklist.add(next);
+				}
+			}
+		}
+		return prefixes;
+	}
+
+	private static Map<NonTerminal, List<Terminal>> calculateShortestDerivations(Grammar grammar){
+		Map<NonTerminal, List<Terminal>> derivations = new HashMap<>();
+		boolean somethingChanged = true;
+		while (somethingChanged){
+			somethingChanged = false;
+			for (Production production : grammar.getProductions()){
+				List<Terminal> derivation = new ArrayList<>();
+				for (Symbol symbol : production.right){
+					if (symbol instanceof Terminal){
+						derivation.add((Terminal) symbol);
+					} else if (symbol instanceof NonTerminal){
+						if (!derivations.containsKey(symbol)){
+							derivation = null;
+							break;
+						}
+						derivation.addAll(derivations.get(symbol));
+					}
+				}
+				if (derivation != null && (!derivations.containsKey(production.left)
+						|| derivations.get(production.left).size() > derivation.size())){
+					derivations.put(production.left, derivation);
+					somethingChanged = true;
+				}
+			}
+		}
+		return derivations;
+	}
+
+	private List<Terminal> derive(List<Symbol> symbols){
+		List<Terminal> terminals = new ArrayList<>();
+		for (Symbol symbol : symbols){
+			if (symbol instanceof Terminal){
+				terminals.add((Terminal) symbol);
+			} else if (shortestDerivations.containsKey(symbol)){
+				terminals.addAll(shortestDerivations.get(symbol));
+			}
+		}
+		return terminals;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Conflict conflict : conflicts){
+			builder.append(conflict);
+		}
+		return builder.toString();
+	}
+}
@@ -1,8 +1,10 @@
 package swp.parser.lr;
 
+import swp.grammar.Grammar;
 import swp.grammar.Terminal;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -24,6 +26,16 @@ public class Context extends ArrayList<Terminal> {
 		}
 	}
 
+	/**
+	 * Creates a context from a set of terminal ids
+	 */
+	public Context(BitSet terminalIds, Grammar grammar){
+		for (int id = terminalIds.nextSetBit(0); id >= 0; id = terminalIds.nextSetBit(id + 1)){
+			super.add(grammar.getTerminalForId(id));
+			this.terminalIds.add(id);
+		}
+	}
+
 	public void addTerminal(Terminal terminal){
 		if (!contains(terminal)){
 			add(terminal);
@@ -93,6 +105,20 @@ public class Context extends ArrayList<Terminal> {
 		return newContext;
 	}
 
+	/**
+	 * Do both contexts contain a common terminal?
+	 */
+	public boolean intersects(Context other){
+		Context smaller = size() <= other.size() ? this : other;
+		Context larger = smaller == this ? other : this;
+		for (int id : smaller.terminalIds){
+			if (larger.terminalIds.contains(id)){
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public boolean isSubsetOf(Context other){
 		if (other.size() >= size()){
 			for (int i = 0; i < size(); i++) {
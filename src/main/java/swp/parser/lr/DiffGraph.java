@@ -30,24 +30,33 @@ public class DiffGraph {
 	public static Mode mode = Mode.SITUATION_LEVEL;
 
 	private Grammar grammar;
+	/**
+	 * LALR or LR1
+	 */
+	public final LRAlgorithm algorithm;
 	private String imageFilenamePrefix;
 	private List<String> pngs = null;
 
 	private Graph finishedGraph;
 	private int imageCounter = 0;
 
-	public DiffGraph(Grammar grammar, String imageFilenamePrefix) {
+	public DiffGraph(Grammar grammar, LRAlgorithm algorithm, String imageFilenamePrefix) {
 		this.grammar = grammar;
+		this.algorithm = algorithm;
 		this.imageFilenamePrefix = imageFilenamePrefix;
 	}
 
+	public DiffGraph(Grammar grammar, String imageFilenamePrefix) {
+		this(grammar, LRAlgorithm.LALR, imageFilenamePrefix);
+	}
+
 	public List<DiffState> loop(){
 		State.stateCounter = 0;
 		DiffState.stateCounter = 0;
 		DiffHistory.currentTime = 0;
 		List<DiffState> states = new ArrayList<>();
 		grammar.insertStartNonTerminal();
-		DiffState startState = new DiffState(grammar);
+		DiffState startState = new DiffState(grammar, algorithm);
 		Production startProduction = grammar.getProductionOfNonTerminal(grammar.getStart()).get(0);
 		startState.add(new Situation(startProduction, new Context(Utils.makeArrayList(grammar.eof))));
 		DiffHistory.ItemList list = new DiffHistory.ItemList();
@@ -12,8 +12,8 @@ public class DiffState extends State {
 
 	public DiffHistory diffHistory;
 
-	public DiffState(Grammar grammar){
-		super(grammar);
+	public DiffState(Grammar grammar, LRAlgorithm algorithm){
+		super(grammar, algorithm);
 		this.diffHistory = new DiffHistory(this);
 	}
 
@@ -122,7 +122,7 @@ public class DiffState extends State {
 
 	public Situation mergeableNotEqualSituation(List<Situation> currentSituations, Situation otherSituation){
 		for (Situation situation : currentSituations){
-			if (!situation.equals(otherSituation) && situation.canMergeRegardingContext(situation)){
+			if (!situation.equals(otherSituation) && situation.canMergeRegardingContext(situation, algorithm)){
 				return situation;
 			}
 		}
@@ -143,7 +143,7 @@ public class DiffState extends State {
 					//if (DiffGraph.mode == DiffGraph.Mode.SITUATION_LEVEL) {
 						storeInHistory();
 					//}
-					DiffState state = new DiffState(grammar);
+					DiffState state = new DiffState(grammar, algorithm);
 					adjacentStates.put(symbol, state);
 				}
 				adjacentStates.get(symbol).add(situation.advance());
@@ -193,6 +193,7 @@ public class DiffState extends State {
 	}
 
 	public boolean closure(DiffHistory.ItemList itemDestList){
+		CompiledGrammar compiled = grammar.compile();
 		DiffHistory.ItemList toBeAdded = new DiffHistory.ItemList();
 		if (diffHistory.didSomethingChange()) {
 			toBeAdded.add(diffHistory.createItemWOTimestamp());
@@ -206,11 +207,11 @@ public class DiffState extends State {
 				Situation situation = get(i);
 				if (situation.inFrontOfNonTerminal()){
 					//somethingChanged = true; // remove it??
-					List<Symbol> term = situation.right.subList(situation.position + 1, situation.right.size());
-					Context context = new Context(grammar.calculateFirst1SetForTerm(term, situation.context));
-					NonTerminal n = (NonTerminal)situation.nextSymbol();
-					for (Production prod : grammar.getProductionOfNonTerminal(n)){
-						boolean changed = add(new Situation(prod, (Context)context.clone()), false);
+					int production = compiled.indexOf(situation);
+					Context context = new Context(compiled.firstOfSuffix(production, situation.position + 1,
+							situation.context), grammar);
+					for (int alternative : compiled.productionsOf[~compiled.rights[production][situation.position]]){
+						boolean changed = add(new Situation(compiled.productions[alternative], (Context)context.clone()), false);
 						if (changed && DiffGraph.mode == DiffGraph.Mode.SITUATION_LEVEL){
 							toBeAdded.add(diffHistory.createItemWOTimestamp(situation));
 						}
@@ -257,7 +258,7 @@ public class DiffState extends State {
 		boolean somethingChanged = false;
 		for (Situation situation : this){
 			for (Situation otherSituation : other){
-				if (otherSituation.canMergeRegardingContext(situation)){
+				if (otherSituation.canMergeRegardingContext(situation, algorithm)){
 					boolean changed = situation.merge(otherSituation);
 					if (changed && DiffGraph.mode == DiffGraph.Mode.SITUATION_LEVEL){
 						toBeAdded.add(diffHistory.createItemWOTimestamp());
@@ -271,6 +272,7 @@ public class DiffState extends State {
 			}
 		}
 		if (somethingChanged){
+			changed();
 			itemDestList.addAll(toBeAdded);
 		}
 		return somethingChanged;
@@ -285,7 +287,7 @@ public class DiffState extends State {
 		for (Situation situation : this){
 			boolean mergeable = false;
 			for (Situation otherSituation : other){
-				if (otherSituation.canMergeRegardingContext(situation)){
+				if (otherSituation.canMergeRegardingContext(situation, algorithm)){
 					mergeable = true;
 				}
 			}
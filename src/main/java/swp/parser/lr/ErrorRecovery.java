@@ -0,0 +1,288 @@
+package swp.parser.lr;
+
+import swp.grammar.NonTerminal;
+import swp.lexer.Token;
+import swp.util.Pair;
+import swp.util.Utils;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Repairs syntax errors for the LR parser.
+ *
+ * It searches for the cheapest sequence of token insertions, deletions and replacements (in the spirit
+ * of Burke–Fisher and CPCT+), after which the parser can parse the next tokens without errors. The search
+ * simulates the parser on persistent stacks that share their tails with each other and with the parser
+ * stack, so that candidates are never copied. Its work is bounded by the maximum repair cost and the maximum
+ * number of explored candidates.
+ */
+public class ErrorRecovery {
+
+	public static final int INSERT = 0;
+	public static final int DELETE = 1;
+	public static final int REPLACE = 2;
+	public static final int SHIFT = 3;
+
+	/**
+	 * Maximum number of insertions, deletions and replacements per repair
+	 */
+	public int maxCost = 3;
+
+	/**
+	 * Number of tokens that the parser has to accept after a repair
+	 */
+	public int parseAhead = 3;
+
+	/**
+	 * Maximum number of candidates that are explored per repair search
+	 */
+	public int maxCandidates = 10000;
+
+	private final LRParserTable table;
+
+	/**
+	 * States of the parser stack that the search works on
+	 */
+	private int[] base;
+
+	/**
+	 * Persistent stack of parser states, its bottom part is a prefix of the parser stack
+	 */
+	static final class Stack {
+		final int state;
+		/**
+		 * Stack without the top state, null if this stack is the prefix of this size of the parser stack
+		 */
+		final Stack below;
+		final int size;
+
+		private Stack(int state, Stack below, int size) {
+			this.state = state;
+			this.below = below;
+			this.size = size;
+		}
+
+		Stack push(int state){
+			return new Stack(state, this, size + 1);
+		}
+
+		Stack pop(int[] base){
+			if (below != null){
+				return below;
+			}
+			return new Stack(base[size - 2], null, size - 1);
+		}
+
+		/**
+		 * Returns the states of the stack, bottom first
+		 */
+		int[] toArray(int[] base){
+			int[] states = new int[size];
+			Stack stack = this;
+			while (stack.below != null){
+				states[stack.size - 1] = stack.state;
+				stack = stack.below;
+			}
+			System.arraycopy(base, 0, states, 0, stack.size);
+			return states;
+		}
+	}
+
+	/**
+	 * Marks a successful parse of the end of the input
+	 */
+	private static final Stack ACCEPT = new Stack(-1, null, 0);
+
+	/**
+	 * Operation of a repair, linked to the previous operation
+	 */
+	public static class Operation {
+		/**
+		 * INSERT, DELETE, REPLACE or SHIFT (of an input token)
+		 */
+		public final int kind;
+		/**
+		 * Inserted terminal id (for INSERT and REPLACE)
+		 */
+		public final int type;
+		final Operation previous;
+		/**
+		 * Number of SHIFT operations at the end of the repair
+		 */
+		final int trailingShifts;
+
+		Operation(int kind, int type, Operation previous) {
+			this.kind = kind;
+			this.type = type;
+			this.previous = previous;
+			this.trailingShifts = kind != SHIFT ? 0 : (previous == null ? 0 : previous.trailingShifts) + 1;
+		}
+	}
+
+	private static class Candidate {
+		final Stack stack;
+		/**
+		 * Index of the current token in the lookahead buffer
+		 */
+		final int position;
+		final Operation operations;
+
+		Candidate(Stack stack, int position, Operation operations) {
+			this.stack = stack;
+			this.position = position;
+			this.operations = operations;
+		}
+	}
+
+	ErrorRecovery(LRParserTable table) {
+		this.table = table;
+	}
+
+	/**
+	 * Searches for the cheapest repair
+	 *
+	 * @param stack parser stack (states)
+	 * @param stackSize size of the parser stack
+	 * @param tokens lookahead buffer, tokens.apply(0) is the current token
+	 * @return operations of the repair, null if no repair has been found
+	 */
+	List<Operation> findRepair(int[] stack, int stackSize, IntFunction<Token> tokens){
+		base = stack;
+		List<ArrayDeque<Candidate>> queues = new ArrayList<>();
+		for (int i = 0; i <= maxCost; i++){
+			queues.add(new ArrayDeque<>());
+		}
+		queues.get(0).add(new Candidate(new Stack(stack[stackSize - 1], null, stackSize), 0, null));
+		int explored = 0;
+		for (int cost = 0; cost <= maxCost; cost++){
+			ArrayDeque<Candidate> queue = queues.get(cost);
+			while (!queue.isEmpty()){
+				if (explored++ == maxCandidates){
+					return null;
+				}
+				Candidate candidate = queue.poll();
+				// a repair that ends with shifts only succeeds if the repair without them succeeds
+				if (candidate.operations != null && candidate.operations.kind != SHIFT
+						&& canParseAhead(candidate.stack, candidate.position, tokens)){
+					return toList(candidate.operations);
+				}
+				Token token = tokens.apply(candidate.position);
+				if (candidate.operations != null && token.type != 0
+						&& candidate.operations.trailingShifts < parseAhead - 1){
+					Stack shifted = parse(candidate.stack, token.type);
+					if (shifted != null && shifted != ACCEPT){
+						queue.add(new Candidate(shifted, candidate.position + 1,
+								new Operation(SHIFT, token.type, candidate.operations)));
+					}
+				}
+				if (cost == maxCost){
+					continue;
+				}
+				// equally expensive repairs are preferred in the order insertion, replacement, deletion
+				ArrayDeque<Candidate> nextQueue = queues.get(cost + 1);
+				List<Candidate> replacements = new ArrayList<>();
+				for (int type : table.actionTable.get(candidate.stack.state).keySet()){
+					if (type == 0){
+						continue;
+					}
+					Stack shifted = parse(candidate.stack, type);
+					if (shifted == null){
+						continue;
+					}
+					nextQueue.add(new Candidate(shifted, candidate.position, new Operation(INSERT, type, candidate.operations)));
+					if (token.type != 0 && token.type != type){
+						replacements.add(new Candidate(shifted, candidate.position + 1,
+								new Operation(REPLACE, type, candidate.operations)));
+					}
+				}
+				nextQueue.addAll(replacements);
+				if (token.type != 0){
+					nextQueue.add(new Candidate(candidate.stack, candidate.position + 1,
+							new Operation(DELETE, token.type, candidate.operations)));
+				}
+			}
+		}
+		return null;
+	}
+
+	private boolean canParseAhead(Stack stack, int position, IntFunction<Token> tokens){
+		for (int i = 0; i < parseAhead; i++){
+			stack = parse(stack, tokens.apply(position + i).type);
+			if (stack == null){
+				return false;
+			}
+			if (stack == ACCEPT){
+				return true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Simulates the parser for the passed terminal: applies all reductions and shifts the terminal
+	 *
+	 * @return resulting stack, ACCEPT or null if the terminal isn't accepted
+	 */
+	private Stack parse(Stack stack, int type){
+		while (true){
+			LRParserTable.Action action = table.actionTable.get(stack.state).get(type);
+			if (action instanceof LRParserTable.ShiftAction){
+				return stack.push(((LRParserTable.ShiftAction) action).stateToBeShifted);
+			} else if (action instanceof LRParserTable.ReduceAction){
+				Pair<NonTerminal, Integer> info = table.productionInformation.get(((LRParserTable.ReduceAction) action).productionId);
+				for (int i = 0; i < info.second; i++){
+					stack = stack.pop(base);
+				}
+				stack = stack.push(table.gotoTable.get(stack.state).get(info.first));
+			} else if (action instanceof LRParserTable.Accept){
+				return ACCEPT;
+			} else {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Pops the symbols of the incomplete kernel items of the states until a state is reached that
+	 * accepts the passed terminal (phrase level recovery using the information of an ExtLRParserTable)
+	 *
+	 * @return new parser stack (states) or null if no such state has been found
+	 */
+	int[] reduceIncompleteItems(ExtLRParserTable table, int[] stack, int stackSize, int type){
+		base = stack;
+		ArrayDeque<Stack> queue = new ArrayDeque<>();
+		queue.add(new Stack(stack[stackSize - 1], null, stackSize));
+		int explored = 0;
+		while (!queue.isEmpty() && explored++ < maxCandidates){
+			Stack current = queue.poll();
+			for (Utils.Triple<Set<Integer>, NonTerminal, Integer> info : table.infoForStates.get(current.state)){
+				if (!info.first.contains(type) || info.third >= current.size){
+					continue;
+				}
+				Stack newStack = current;
+				for (int i = 0; i < info.third; i++){
+					newStack = newStack.pop(base);
+				}
+				Integer newState = table.gotoTable.get(newStack.state).get(info.second);
+				if (newState == null){
+					continue;
+				}
+				newStack = newStack.push(newState);
+				if (table.actionTable.get(newState).containsKey(type)){
+					return newStack.toArray(base);
+				}
+				queue.add(newStack);
+			}
+		}
+		return null;
+	}
+
+	private static List<Operation> toList(Operation operations){
+		LinkedList<Operation> list = new LinkedList<>();
+		for (Operation operation = operations; operation != null; operation = operation.previous){
+			list.addFirst(operation);
+		}
+		return list;
+	}
+}
@@ -16,12 +16,14 @@ public class ExtLRParserTable extends LRParserTable {
 	public Map<Integer, Set<Integer>> contextsOfStates = new HashMap<>();
 
 	/**
-	 * ({context}, left hand side symbol, |right hand side|)
+	 * ({context}, left hand side symbol, number of symbols before the dot) of the non closure items
 	 */
 	public Map<Integer, List<Utils.Triple<Set<Integer>, NonTerminal, Integer>>> infoForStates = new HashMap<>();
 
 	public ExtLRParserTable(LRParserTable table) {
 		super(table.grammar, table.actionTable, table.gotoTable, table.productionInformation);
+		conflicts = table.conflicts;
+		conflictReport = table.conflictReport;
 	}
 
 	public ExtLRParserTable(Grammar grammar) {
@@ -40,7 +42,7 @@ public class ExtLRParserTable extends LRParserTable {
 			for (Terminal terminal : situation.context){
 				types.add(terminal.id);
 			}
-			triples.add(new Utils.Triple<>(types, situation.left, situation.rightSize()));
+			triples.add(new Utils.Triple<>(types, situation.left, situation.position));
 		}
 		infoForStates.put(state.id, triples);
 	}
@@ -18,11 +18,17 @@ import swp.Config;
 import swp.SWPException;
 import swp.grammar.ExtGrammarBuilder;
 import swp.grammar.Grammar;
+import swp.grammar.GrammarOptimizer;
+import swp.grammar.ReductionProfiler;
 import swp.lexer.Lexer;
 import swp.lexer.automata.AutomatonLexer;
 import swp.lexer.automata.LexerDescriptionParser;
 import swp.lexer.automata.Table;
+import swp.parser.DiagnosticCollector;
+import swp.parser.glr.GLRParser;
+import swp.parser.glr.SPPFNode;
 import swp.util.Cache;
+import swp.util.Metrics;
 import swp.util.Pair;
 
 public class Generator {
@@ -89,16 +95,20 @@ public class Generator {
 					grammarConsumer));
 		}
 		Pair<Table, LRParserTable> pair = cache.getIfPresent(id);
-		if (pair == null){
+		if (pair != null){
+			Metrics.record("generator.cache_hits");
+		} else {
 			if (Config.cacheInFile() && !id.isEmpty()) {
 				if (doFilesForIdExist(id)) {
 					try {
 						pair = load(id);
+						Metrics.record("generator.file_cache_hits");
 					} catch (ClassNotFoundException | IOException e) {
 						pair = null;
 					}
 				}
 				if (pair == null){
+					Metrics.record("generator.cache_misses");
 					pair = generatePair(lexerBuilder, ignoredTerminals, parserBuilder, parserStartSymbol,
 							OUTPUT_GRAPHS_IF_CACHED, id, grammarConsumer);
 					try {
@@ -108,6 +118,7 @@ public class Generator {
 					}
 				}
 			} else {
+				Metrics.record("generator.cache_misses");
 				pair = generatePair(lexerBuilder, ignoredTerminals, parserBuilder, parserStartSymbol, grammarConsumer);
 			}
 			cache.put(id, pair);
@@ -140,13 +151,21 @@ public class Generator {
 		}
 		ExtGrammarBuilder extBuilder = new ExtGrammarBuilder(parser.automaton.terminalSet);
 		parserBuilder.accept(extBuilder);
-		Grammar grammar = extBuilder.toGrammar(parserStartSymbol);
+		Grammar builtGrammar = extBuilder.toGrammar(parserStartSymbol);
+		Grammar grammar = Config.optimizeGrammar()
+				? Metrics.measure("generator.grammar_optimization", () -> new GrammarOptimizer().optimize(builtGrammar))
+				: builtGrammar;
 		grammarConsumer.accept(grammar);
-		Graph lrGraph = Graph.createFromGrammar(grammar);
+		LRAlgorithm[] algorithms = extBuilder.getLRAlgorithms() != null ? extBuilder.getLRAlgorithms()
+				: new LRAlgorithm[]{Config.lrAlgorithm()};
+		Graph lrGraph = Metrics.measure("generator.lr_graph", () -> Graph.createWithoutConflicts(grammar, algorithms));
 		if (outputGraph) {
 			lrGraph.toImage(fileNames.second.getAbsolutePath(), "svg");
 		}
-		LRParserTable parserTable = lrGraph.toParserTable();
+		LRParserTable parserTable = Metrics.measure("generator.lr_table", lrGraph::toParserTable);
+		if (Config.eliminateUnitReductions()){
+			Metrics.measure("generator.unit_elimination", parserTable::eliminateUnitReductions);
+		}
 		parserTable._ignoredTerminals = new int[ignoredTerminals.length];
 		for (int i = 0; i < ignoredTerminals.length; i++) {
 			parserTable._ignoredTerminals[i] = table.terminalSet.stringToType(ignoredTerminals[i]);
@@ -209,6 +228,37 @@ public class Generator {
 		return parser.parse();
 	}
 
+	/**
+	 * Parses the input and reports syntax errors to the passed collector instead of throwing them
+	 *
+	 * @return AST or null if there were syntax errors
+	 */
+	public BaseAST parse(String input, DiagnosticCollector collector){
+		LRParser parser = new LRParser(createLexer(input), parserTable);
+		parser.setDiagnosticCollector(collector);
+		return parser.parse();
+	}
+
+	/**
+	 * Parses the input and passes all reductions to the profiler
+	 */
+	public BaseAST parse(String input, ReductionProfiler profiler){
+		LRParser parser = new LRParser(createLexer(input), parserTable);
+		parser.setProfiler(profiler);
+		return parser.parse();
+	}
+
+	public Grammar getGrammar(){
+		return parserTable.grammar;
+	}
+
+	/**
+	 * Parses the input with a GLR parser that uses all conflicting actions of the parser table
+	 */
+	public SPPFNode parseForest(String input){
+		return new GLRParser(createLexer(input), parserTable).parseForest();
+	}
+
 	public Lexer createLexer(String input){
 		return new AutomatonLexer(lexerTable, input, new int[]{}, parserTable._ignoredTerminals);
 	}
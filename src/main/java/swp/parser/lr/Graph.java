@@ -10,37 +10,68 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by parttimenerd on 15.07.16.
  */
 public class Graph {
 
-	public static boolean isLALR = true;
-
 	public Grammar grammar;
 	public List<State> states;
 	public State startState;
+	public final LRAlgorithm algorithm;
+	/**
+	 * Parser table that createWithoutConflicts built to check for conflicts, the next call
+	 * of toParserTable returns it instead of building it again
+	 */
+	private LRParserTable checkedTable;
 
-	public Graph(Grammar grammar, List<State> states, State startState) {
+	public Graph(Grammar grammar, List<State> states, State startState, LRAlgorithm algorithm) {
 		this.grammar = grammar;
 		this.states = states;
 		this.startState = startState;
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * Builds the automaton with the first of the passed algorithms whose parser table doesn't have conflicts
+	 * (conflicts resolved by precedences don't count), with the last algorithm if all tables have conflicts.
+	 * Pass the algorithms in the order of their automaton sizes (e.g. SLR, LALR, PAGER) to get the smallest
+	 * table without conflicts.
+	 */
+	public static Graph createWithoutConflicts(Grammar grammar, LRAlgorithm... algorithms){
+		for (int i = 0; i < algorithms.length - 1; i++){
+			Graph graph = createFromGrammar(grammar, algorithms[i]);
+			LRParserTable table = graph.toParserTable();
+			if (!table.hasConflicts()){
+				graph.checkedTable = table;
+				return graph;
+			}
+		}
+		return createFromGrammar(grammar, algorithms[algorithms.length - 1]);
 	}
 
-	public static Graph createFromGrammar(Grammar grammar){
-		//Graph.isLALR = isLALR;
+	public static Graph createFromGrammar(Grammar grammar, LRAlgorithm algorithm){
 		List<State> states = new ArrayList<>();
 		grammar.insertStartNonTerminal();
-		State startState = new State(grammar);
+		State startState = new State(grammar, algorithm);
 		Production startProduction = grammar.getProductionOfNonTerminal(grammar.getStart()).get(0);
 		startState.add(new Situation(startProduction, new Context(Utils.makeArrayList(grammar.eof))));
 		startState.closure();
 		states.add(startState);
+		// [core of the closed state] => states with this core, in the order of their creation
+		Map<BitSet, List<State>> statesWithCore = new HashMap<>();
+		statesWithCore.computeIfAbsent(startState.core(), c -> new ArrayList<>()).add(startState);
 		boolean somethingChanged = true;
 		while (somethingChanged){
 			somethingChanged = false;
@@ -53,8 +84,11 @@ public class Graph {
 					Collections.sort(symbols);
 					for (Symbol shiftSymbol : symbols){
 						State createdState = createdStates.get(shiftSymbol);
+						createdState.closure();
+						List<State> candidates = statesWithCore.computeIfAbsent(createdState.core(),
+								c -> new ArrayList<>());
 						boolean merged = false;
-						for (State oldState : states){
+						for (State oldState : candidates){
 							if (oldState.canMerge(createdState)){
 								if (oldState.merge(createdState)) {
 									somethingChanged = true;
@@ -67,25 +101,35 @@ public class Graph {
 						if (!merged){
 							currentState.adjacentStates.put(shiftSymbol, createdState);
 							states.add(createdState);
+							candidates.add(createdState);
 							somethingChanged = true;
 						}
 					}
 				}
 			}
 		}
+		// states whose lookaheads changed after they have been shifted may be replaced by new states
+		// (LR1 and PAGER), the old states aren't reachable anymore
+		Set<State> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+		Deque<State> worklist = new ArrayDeque<>();
+		reachable.add(startState);
+		worklist.add(startState);
+		while (!worklist.isEmpty()){
+			for (State next : worklist.poll().adjacentStates.values()){
+				if (reachable.add(next)){
+					worklist.add(next);
+				}
+			}
+		}
 		List<State> newStates = new ArrayList<>();
 		int idCounter = 0;
 		for (State state : states) {
-			boolean isUsed = state == startState;
-			//for (State state2 : states){
-			//	if (state2.adjacentStates.containsValue(state)){
-			newStates.add(state);
-			state.id = idCounter++;
-			//		break;
-			//	}
-			//}
+			if (reachable.contains(state)){
+				newStates.add(state);
+				state.id = idCounter++;
+			}
 		}
-		return new Graph(grammar, newStates, startState);
+		return new Graph(grammar, newStates, startState, algorithm);
 	}
 
 	@Override
@@ -139,7 +183,13 @@ public class Graph {
 	}
 
 	public LRParserTable toParserTable(){
+		if (checkedTable != null){
+			LRParserTable table = checkedTable;
+			checkedTable = null;
+			return table;
+		}
 		LRParserTable table = new LRParserTable(grammar);
+		Map<NonTerminal, List<Terminal>> followSets = new HashMap<>();
 		for (State state : states){
 			for (Symbol symbol : state.adjacentStates.keySet()){
 				State nextState = state.adjacentStates.get(symbol);
@@ -158,16 +208,32 @@ public class Graph {
 			for (Situation situation : state){
 				if (!situation.canAdvance() || situation.right.isEmpty()){
 					if (situation.left != grammar.getStart()){
-						for (Terminal terminal : situation.context){
+						List<Terminal> lookaheads = situation.context;
+						if (algorithm == LRAlgorithm.SLR){
+							lookaheads = followSets.computeIfAbsent(situation.left, this::followSet);
+						}
+						for (Terminal terminal : lookaheads){
 							table.addReduce(state, terminal, situation);
 						}
 					}
 				}
 			}
 		}
+		if (table.hasConflicts()){
+			table.conflictReport = new ConflictReport(this, table);
+		}
 		return table;
 	}
 
+	private List<Terminal> followSet(NonTerminal nonTerminal){
+		List<Terminal> terminals = new ArrayList<>();
+		BitSet ids = grammar.calculateFollow1BitSet(nonTerminal);
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)){
+			terminals.add(grammar.getTerminalForId(id));
+		}
+		return terminals;
+	}
+
 	public ExtLRParserTable toExtParserTable(){
 		ExtLRParserTable table = new ExtLRParserTable(toParserTable());
 		for (State state : states){
@@ -0,0 +1,26 @@
+package swp.parser.lr;
+
+/**
+ * Algorithm that builds the LR automaton. The algorithms differ in the number of states and in the grammars
+ * that they can handle without conflicts.
+ */
+public enum LRAlgorithm {
+	/**
+	 * LR(0) states, the follow sets of the non terminals are the lookaheads of the reductions
+	 */
+	SLR,
+	/**
+	 * LR(0) states with LR(1) lookaheads, states with the same core are always merged
+	 */
+	LALR,
+	/**
+	 * Canonical LR(1), states are only merged if the lookaheads of their items are equal
+	 */
+	LR1,
+	/**
+	 * Minimal LR(1) with Pager's weak compatibility test: states with the same core are only merged if this
+	 * doesn't introduce reduce/reduce conflicts that the canonical LR(1) automaton doesn't have. The automaton
+	 * usually has the size of the LALR(1) automaton.
+	 */
+	PAGER
+}
@@ -1,31 +1,66 @@
 package swp.parser.lr;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.function.Supplier;
 
 import swp.SWPException;
 import swp.grammar.Grammar;
 import swp.grammar.NonTerminal;
+import swp.grammar.ReductionProfiler;
 import swp.lexer.Lexer;
+import swp.lexer.LexerError;
 import swp.lexer.Token;
+import swp.parser.Diagnostic;
+import swp.parser.DiagnosticCollector;
+import swp.parser.DiagnosticList;
+import swp.parser.SyntaxError;
+import swp.util.Metrics;
 import swp.util.Pair;
-import swp.util.Utils;
 
 /**
  * Implements an LR(1) parser.
+ *
+ * Syntax errors are thrown as SyntaxErrors, unless a diagnostic collector is set (the default for an
+ * ExtLRParserTable). The parser reports them (and lexer errors) to the collector then and recovers with the
+ * repair found by its ErrorRecovery. If no repair can be found, it skips tokens until one can be found.
+ * No AST is created after the first error and the parser stops if the collector requests it.
  */
 public class LRParser {
 
 	private final Grammar grammar;
 	private final Lexer lexer;
 	private final LRParserTable table;
-	private ArrayList<StackFrame> stack = new ArrayList<>();
+	public final ErrorRecovery recovery;
+	private DiagnosticCollector collector;
+	private ReductionProfiler profiler;
+	/**
+	 * Stack of states
+	 */
+	private int[] stack = new int[64];
+	private int stackSize = 0;
 	private ArrayList<BaseAST> astStack = new ArrayList<>();
+	private Token current;
+	/**
+	 * Tokens that follow the current token, read ahead by the error recovery or created by a repair.
+	 * The last one is the current token of the lexer.
+	 */
+	private List<Token> pending = new ArrayList<>();
 	private boolean includeEOFToken = false;
 	private boolean hadError = false;
+	/**
+	 * Hook for the parser counters, null if disabled. The counts are summed up while parsing
+	 * and reported at the end.
+	 */
+	private final Metrics metrics = Metrics.get();
+	private long shifts = 0;
+	/**
+	 * [production id] => number of reductions
+	 */
+	private long[] reductions;
 
 	public LRParser(Lexer lexer, LRParserTable table, boolean includeEOFToken){
 		this(table.grammar, lexer, table);
@@ -40,153 +75,283 @@ public class LRParser {
 		this.grammar = grammar;
 		this.lexer = lexer;
 		this.table = table;
-		stack.add(new StackFrame(0));
+		this.recovery = new ErrorRecovery(table);
+		if (table instanceof ExtLRParserTable){
+			collector = new DiagnosticList();
+		}
+		stack[stackSize++] = 0;
 	}
 
+	/**
+	 * Parses the input
+	 *
+	 * @return AST of the start non terminal, null if a syntax error has been reported to the collector
+	 */
 	public BaseAST parse(){
+		try {
+			return parseTokens();
+		} catch (LexerError error){
+			if (collector == null || error.errorToken == null){
+				throw error;
+			}
+			hadError = true;
+			collector.report(error.toDiagnostic());
+			return null;
+		} finally {
+			if (metrics != null){
+				reportMetrics();
+			}
+		}
+	}
+
+	private BaseAST parseTokens(){
+		current = lexer.cur();
 		while (true){
-			int tokenId = lexer.cur().type;
 			Map<Integer, LRParserTable.Action> row = table.actionTable.get(currentState());
-			if (!row.containsKey(tokenId)){
-				if (table instanceof ExtLRParserTable && extTableRecover()){
-					continue;
+			LRParserTable.Action action = row.get(current.type);
+			if (action == null){
+				if (collector == null){
+					throw new SyntaxError(new Diagnostic(current, expectedTokens(row), currentState(), null));
 				}
-				ArrayList<String> arr = new ArrayList<>();
-				for (int t : row.keySet()){
-					arr.add(lexer.getTerminalSet().typeToString(t));
+				hadError = true;
+				boolean recovered = recover(expectedTokens(row));
+				if (metrics != null){
+					metrics.count("parser.errors", 1);
+					metrics.count("parser.recoveries", recovered ? 1 : 0);
 				}
-				Collections.sort(arr);
-				String errorMsg = String.format("Unexpected %s, expected %s at state %d", lexer.cur(), arr, currentState());
-				if (table instanceof ExtLRParserTable){
-					hadError = true;
-					System.err.println(errorMsg);
-				} else {
-					throw new Error(errorMsg);
+				if (!recovered || collector.shouldStop()){
+					return null;
 				}
+				continue;
 			}
-			LRParserTable.Action action = row.get(tokenId);
 			switch (action.name()){
 				case "shift":
-					stack.add(new StackFrame(((LRParserTable.ShiftAction) action).stateToBeShifted, lexer.cur()));
+					push(((LRParserTable.ShiftAction) action).stateToBeShifted);
+					if (metrics != null){
+						shifts++;
+					}
 					if (!hadError) {
-						astStack.add(new ASTLeaf(lexer.cur()));
+						astStack.add(new ASTLeaf(current));
 					}
-					lexer.next();
+					advance();
 					break;
 				case "reduce":
 					int prodId = ((LRParserTable.ReduceAction) action).productionId;
 					Pair<NonTerminal, Integer> prodInfo = table.productionInformation.get(prodId);
-					List<BaseAST> reducedASTs = new ArrayList<>();
-					for (int i = 0; i < prodInfo.second; i++){
-						if (!hadError) {
-							reducedASTs.add(0, astStack.get(astStack.size() - 1));
-							astStack.remove(astStack.size() - 1);
-						}
-						stack.remove(stack.size() - 1);
+					if (metrics != null){
+						countReduction(prodId);
 					}
+					stackSize -= prodInfo.second;
 					if (!hadError) {
+						List<BaseAST> reducedASTs = new ArrayList<>(astStack.subList(astStack.size() - prodInfo.second, astStack.size()));
+						astStack.subList(astStack.size() - prodInfo.second, astStack.size()).clear();
 						try {
-							astStack.add(grammar.reduce(prodId, reducedASTs));
+							astStack.add(profiler == null ? grammar.reduce(prodId, reducedASTs) : profiler.reduce(prodId, reducedASTs));
 						} catch (SWPException ex){
-							String newErrorMsg = String.format("Error around %s: %s", lexer.cur(), ex.getMessage());
+							String newErrorMsg = String.format("Error around %s: %s", current, ex.getMessage());
 							SWPException newEx = new SWPException(newErrorMsg);
 							newEx.setStackTrace(ex.getStackTrace());
 							throw newEx;
 						}
 					}
-					int newState = currentState();
-					stack.add(new StackFrame(table.gotoTable.get(newState).get(prodInfo.first)));
+					push(table.gotoTable.get(currentState()).get(prodInfo.first));
  				    break;
 				case "accept":
 					if (hadError){
 						return null;
 					}
 					if (includeEOFToken) {
-						astStack.get(astStack.size() - 1).<ListAST>as().add(new ASTLeaf(lexer.cur()));
+						astStack.get(astStack.size() - 1).<ListAST>as().add(new ASTLeaf(current));
 					}
 					return astStack.get(astStack.size() - 1);
 			}
 		}
 	}
 
-	private boolean extTableRecover(){
-		List<ExtTableRecoverState> recoverStates = new ArrayList<>();
-		ExtLRParserTable table = (ExtLRParserTable)this.table;
-		Set<Integer> terminals = table.contextsOfStates.get(currentState());
-		while (!terminals.contains(lexer.cur().type) && lexer.cur().type != 0){ //skip until the current character is in a situation context
-			System.out.println("skip " + lexer.cur());
-			lexer.next();
-		}
-		if (lexer.cur().type == 0){
-			return false;
+	/**
+	 * Reports the error and recovers from it
+	 *
+	 * @return false if the parser couldn't recover before the end of the input
+	 */
+	private boolean recover(BitSet expected){
+		Token errorToken = current;
+		int state = currentState();
+		int skipped = 0;
+		while (true){
+			List<ErrorRecovery.Operation> repair = recovery.findRepair(stack, stackSize, this::lookahead);
+			if (repair != null){
+				Supplier<String> description = applyRepair(repair);
+				int skippedTokens = skipped;
+				collector.report(new Diagnostic(errorToken, expected, state, skipped == 0 ? description :
+						() -> String.format("skipped %d tokens, %s", skippedTokens, description.get())));
+				return true;
+			}
+			if (table instanceof ExtLRParserTable){
+				int[] states = recovery.reduceIncompleteItems((ExtLRParserTable)table, stack, stackSize, current.type);
+				if (states != null){
+					stack = Arrays.copyOf(states, Math.max(states.length * 2, 64));
+					stackSize = states.length;
+					int skippedTokens = skipped;
+					Token token = current;
+					collector.report(new Diagnostic(errorToken, expected, state,
+							() -> String.format("skipped %d tokens and the incomplete phrases before %s", skippedTokens, token)));
+					return true;
+				}
+			}
+			if (current.type == 0){
+				collector.report(new Diagnostic(errorToken, expected, state, null));
+				return false;
+			}
+			advance();
+			skipped++;
 		}
-		for (Utils.Triple<Set<Integer>, NonTerminal, Integer> triple : table.infoForStates.get(currentState())) {
-			if (triple.first.contains(lexer.cur().type)) {
-				recoverStates.add(new ExtTableRecoverState(stack, triple));
+	}
+
+	/**
+	 * Replaces the buffered tokens with the repaired ones
+	 *
+	 * @return supplier of the description of the repair
+	 */
+	private Supplier<String> applyRepair(List<ErrorRecovery.Operation> repair){
+		List<Token> tokens = new ArrayList<>();
+		List<Pair<ErrorRecovery.Operation, Token>> changes = new ArrayList<>();
+		int position = 0;
+		for (ErrorRecovery.Operation operation : repair){
+			Token token = lookahead(position);
+			switch (operation.kind){
+				case ErrorRecovery.INSERT:
+					tokens.add(new Token(operation.type, token.terminalSet, "", token.location));
+					changes.add(new Pair<>(operation, token));
+					break;
+				case ErrorRecovery.DELETE:
+					changes.add(new Pair<>(operation, token));
+					position++;
+					break;
+				case ErrorRecovery.REPLACE:
+					tokens.add(new Token(operation.type, token.terminalSet, token.value, token.location));
+					changes.add(new Pair<>(operation, token));
+					position++;
+					break;
+				case ErrorRecovery.SHIFT:
+					tokens.add(token);
+					position++;
 			}
 		}
-		while (!recoverStates.isEmpty()){
-			List<ExtTableRecoverState> newRecoverStates = new ArrayList<>();
-			for (ExtTableRecoverState recoverState : recoverStates){
-				for (int i = 0; i < recoverState.info.third; i++){
-					recoverState.stackFrames.remove(recoverState.stackFrames.size() - 1);
+		lookahead(position);
+		for (int i = position; i <= pending.size(); i++){
+			tokens.add(lookahead(i));
+		}
+		current = tokens.get(0);
+		pending = new ArrayList<>(tokens.subList(1, tokens.size()));
+		return () -> {
+			List<String> descriptions = new ArrayList<>();
+			for (Pair<ErrorRecovery.Operation, Token> change : changes){
+				Token token = change.second;
+				String type = token.terminalSet.typeToString(change.first.type);
+				switch (change.first.kind){
+					case ErrorRecovery.INSERT:
+						descriptions.add(String.format("inserted %s before %s", type, token));
+						break;
+					case ErrorRecovery.DELETE:
+						descriptions.add("deleted " + token);
+						break;
+					case ErrorRecovery.REPLACE:
+						descriptions.add(String.format("replaced %s with %s", token, type));
 				}
-				int newTopState = table.gotoTable.get(recoverState.stackFrames.get(recoverState.stackFrames.size() - 1).state).get(recoverState.info.second);
-				recoverState.stackFrames.add(new StackFrame(newTopState, false));
+			}
+			return String.join(", ", descriptions);
+		};
+	}
 
-				if (table.actionTable.get(newTopState).containsKey(lexer.cur().type)){
-					stack = recoverState.stackFrames;
-					return true;
-				} else {
-					for (Utils.Triple<Set<Integer>, NonTerminal, Integer> triple : table.infoForStates.get(newTopState)) {
-						if (triple.first.contains(lexer.cur().type)) {
-							newRecoverStates.add(new ExtTableRecoverState(stack, triple));
-						}
-					}
-				}
+	/**
+	 * Returns the i-th token after the current token (the last token is repeated at the end of the input)
+	 */
+	private Token lookahead(int i){
+		if (i == 0){
+			return current;
+		}
+		while (pending.size() < i){
+			Token last = pending.isEmpty() ? current : pending.get(pending.size() - 1);
+			if (last.type == 0){
+				return last;
 			}
-			recoverStates = newRecoverStates;
+			pending.add(lexer.next());
 		}
-		return false;
+		return pending.get(i - 1);
 	}
 
-	class ExtTableRecoverState {
+	private void advance(){
+		current = pending.isEmpty() ? lexer.next() : pending.remove(0);
+	}
 
-		public ArrayList<StackFrame> stackFrames;
-		/**
-		 * (context, left hand side, |right hand side|) of non closure item
-		 */
-		public Utils.Triple<Set<Integer>, NonTerminal, Integer> info;
+	private void countReduction(int productionId){
+		if (reductions == null){
+			reductions = new long[grammar.getProductions().size() + 1];
+		}
+		if (productionId >= reductions.length){
+			reductions = Arrays.copyOf(reductions, productionId * 2);
+		}
+		reductions[productionId]++;
+	}
+
+	private void reportMetrics(){
+		metrics.count("parser.shifts", shifts);
+		shifts = 0;
+		if (reductions == null){
+			return;
+		}
+		long sum = 0;
+		for (int id = 0; id < reductions.length; id++){
+			if (reductions[id] > 0){
+				metrics.count("parser.reductions[" + grammar.getProductionForId(id) + "]", reductions[id]);
+				sum += reductions[id];
+			}
+		}
+		metrics.count("parser.reductions", sum);
+		reductions = null;
+	}
 
-		public ExtTableRecoverState(ArrayList<StackFrame> stackFrames, Utils.Triple<Set<Integer>, NonTerminal, Integer> info) {
-			this.stackFrames = (ArrayList<StackFrame>)stackFrames.clone();
-			this.info = info;
+	private void push(int state){
+		if (stackSize == stack.length){
+			stack = Arrays.copyOf(stack, stackSize * 2);
 		}
+		stack[stackSize++] = state;
 	}
 
+	private static BitSet expectedTokens(Map<Integer, LRParserTable.Action> row){
+		BitSet expected = new BitSet();
+		for (int t : row.keySet()){
+			expected.set(t);
+		}
+		return expected;
+	}
 
 	public int currentState(){
-		return stack.get(stack.size() - 1).state;
+		return stack[stackSize - 1];
 	}
 
-	class StackFrame {
-		public final int state;
-		public final boolean valid;
-		public BaseAST ast;
-		public List<BaseAST> temp = new ArrayList<>();
+	/**
+	 * Sets the collector that syntax errors are reported to, the parser throws them if it's null
+	 */
+	public void setDiagnosticCollector(DiagnosticCollector collector){
+		this.collector = collector;
+	}
 
-		public StackFrame(int state){
-			this(state, true);
-		}
+	public DiagnosticCollector getDiagnosticCollector(){
+		return collector;
+	}
 
-		public StackFrame(int state, boolean valid){
-			this.state = state;
-			this.valid = valid;
-		}
+	/**
+	 * Sets the profiler that all reductions are passed to, null disables the profiling
+	 */
+	public void setProfiler(ReductionProfiler profiler){
+		this.profiler = profiler;
+	}
 
-		public StackFrame(int state, Token token){
-			this(state, true);
-			this.ast = new ASTLeaf(token);
-		}
+	/**
+	 * Has a syntax error been reported?
+	 */
+	public boolean hadError(){
+		return hadError;
 	}
 }
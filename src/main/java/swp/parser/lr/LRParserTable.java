@@ -2,6 +2,7 @@ package swp.parser.lr;
 
 import swp.grammar.Grammar;
 import swp.grammar.NonTerminal;
+import swp.grammar.Precedence;
 import swp.grammar.Production;
 import swp.grammar.Terminal;
 import swp.lexer.TerminalSet;
@@ -29,8 +30,30 @@ public class LRParserTable implements Serializable {
 
 	public Map<Integer, Pair<NonTerminal, Integer>> productionInformation;
 
+	/**
+	 * All actions for each state and terminal that has more than one possible action.
+	 *
+	 * The action table only contains the action chosen by {@link #chooseAtError(List)}.
+	 */
+	public Map<Integer, Map<Integer, List<Action>>> conflicts = new HashMap<>();
+
+	/**
+	 * Report of the conflicts with example inputs, null if the table has no conflicts or has been deserialized
+	 */
+	public transient ConflictReport conflictReport;
+
 	public int[] _ignoredTerminals = new int[0];
 
+	/**
+	 * State => terminal id => actions that have been removed because of a non associative precedence
+	 */
+	private Map<Integer, Map<Integer, Set<Action>>> nonAssociativeErrors = new HashMap<>();
+
+	/**
+	 * Number of shift reduce conflicts that have been resolved using the precedences of the grammar
+	 */
+	public int resolvedConflicts = 0;
+
 
 	public LRParserTable(Grammar grammar, List<Map<Integer, Action>> actionTable,
 	                     List<Map<NonTerminal, Integer>> gotoTable, Map<Integer, Pair<NonTerminal, Integer>> productionInformation) {
@@ -69,6 +92,16 @@ public class LRParserTable implements Serializable {
 		public String name() {
 			return "shift";
 		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof ShiftAction && ((ShiftAction) obj).stateToBeShifted == stateToBeShifted;
+		}
+
+		@Override
+		public int hashCode() {
+			return stateToBeShifted;
+		}
 	}
 
 	public static class ReduceAction extends Action {
@@ -88,6 +121,16 @@ public class LRParserTable implements Serializable {
 		public String name() {
 			return "reduce";
 		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof ReduceAction && ((ReduceAction) obj).productionId == productionId;
+		}
+
+		@Override
+		public int hashCode() {
+			return -productionId - 1;
+		}
 	}
 
 	public static class Accept extends Action {
@@ -101,6 +144,16 @@ public class LRParserTable implements Serializable {
 		public String name() {
 			return "accept";
 		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Accept;
+		}
+
+		@Override
+		public int hashCode() {
+			return Integer.MIN_VALUE;
+		}
 	}
 
 	private void initState(int state){
@@ -114,28 +167,255 @@ public class LRParserTable implements Serializable {
 	private void insert(State state, Terminal terminal, Action action){
 		initState(state.id);
 		Map<Integer, Action> row = actionTable.get(state.id);
-		if (row.containsKey(terminal.id)){
-			Action cur = row.get(terminal.id);
-			printError(state, terminal, action, cur);
-			row.put(terminal.id, chooseAtError(cur, action));
-		} else {
+		if (nonAssociativeErrors.containsKey(state.id) && nonAssociativeErrors.get(state.id)
+				.getOrDefault(terminal.id, Collections.emptySet()).contains(action)){
+			return;
+		}
+		if (!row.containsKey(terminal.id)){
 			row.put(terminal.id, action);
+			return;
+		}
+		List<Action> actions = getActions(state.id, terminal.id);
+		if (actions.contains(action)){
+			return;
+		}
+		// resolve the new action against every action that is already possible
+		List<Action> remaining = new ArrayList<>();
+		boolean keepAction = true;
+		for (Action cur : actions){
+			Action resolved = resolveWithPrecedences(terminal, cur, action);
+			if (resolved == null){
+				remaining.add(cur);
+				continue;
+			}
+			resolvedConflicts++;
+			if (resolved instanceof ErrorAction){
+				// both actions are removed and can't be inserted again
+				Set<Action> removed = nonAssociativeErrors.computeIfAbsent(state.id, s -> new HashMap<>())
+						.computeIfAbsent(terminal.id, t -> new HashSet<>());
+				removed.add(cur);
+				removed.add(action);
+				keepAction = false;
+			} else if (resolved == cur){
+				remaining.add(cur);
+				keepAction = false;
+			}
+		}
+		if (keepAction){
+			remaining.add(action);
+		}
+		Map<Integer, List<Action>> conflictRow = conflicts.get(state.id);
+		if (conflictRow != null){
+			conflictRow.remove(terminal.id);
+			if (conflictRow.isEmpty()){
+				conflicts.remove(state.id);
+			}
 		}
+		if (remaining.isEmpty()){
+			row.remove(terminal.id);
+			return;
+		}
+		if (remaining.size() > 1){
+			if (!conflicts.containsKey(state.id)){
+				conflicts.put(state.id, new HashMap<>());
+			}
+			conflicts.get(state.id).put(terminal.id, remaining);
+		}
+		row.put(terminal.id, chooseAtError(remaining));
 	}
 
-	private void printError(State state, Terminal terminal, Action action1, Action action2){
-		//System.err.printf("Something is wrong in state %d at terminal %s: %s %s conflict\n", state.id, terminal, action1.name(),
-		//		action2.name());
+	/**
+	 * Marks an action table entry that is an error because of a non associative precedence,
+	 * it isn't stored in the table
+	 */
+	private static class ErrorAction extends Action {
 	}
 
-	private Action chooseAtError(Action action1, Action action2){
-		if (action1 instanceof ShiftAction){
-			return action1;
+	/**
+	 * Resolves a shift reduce conflict with the precedences of the shifted terminal and the reduced production
+	 * (@see Precedence)
+	 *
+	 * @return chosen action, an ErrorAction or null if the conflict can't be resolved this way
+	 */
+	private Action resolveWithPrecedences(Terminal terminal, Action action1, Action action2){
+		ReduceAction reduce;
+		Action shift;
+		if (action1 instanceof ShiftAction && action2 instanceof ReduceAction){
+			shift = action1;
+			reduce = (ReduceAction)action2;
+		} else if (action2 instanceof ShiftAction && action1 instanceof ReduceAction){
+			shift = action2;
+			reduce = (ReduceAction)action1;
+		} else {
+			return null;
+		}
+		if (!grammar.hasPrecedences()){
+			return null;
+		}
+		Precedence terminalPrecedence = grammar.getPrecedence(terminal.id);
+		Precedence productionPrecedence = grammar.getPrecedence(grammar.getProductionForId(reduce.productionId));
+		if (terminalPrecedence == null || productionPrecedence == null){
+			return null;
 		}
-		if (action2 instanceof ShiftAction){
-			return action2;
+		if (productionPrecedence.level != terminalPrecedence.level){
+			return productionPrecedence.level > terminalPrecedence.level ? reduce : shift;
+		}
+		switch (productionPrecedence.associativity){
+			case LEFT:
+				return reduce;
+			case RIGHT:
+				return shift;
+			default:
+				return new ErrorAction();
+		}
+	}
+
+	public boolean hasConflicts(){
+		return !conflicts.isEmpty();
+	}
+
+	/**
+	 * Returns all possible actions for the passed state and terminal (including the conflicting ones)
+	 */
+	public List<Action> getActions(int state, int terminal){
+		Map<Integer, List<Action>> conflictRow = conflicts.get(state);
+		if (conflictRow != null && conflictRow.containsKey(terminal)){
+			return conflictRow.get(terminal);
+		}
+		Action action = actionTable.get(state).get(terminal);
+		if (action == null){
+			return Collections.emptyList();
+		}
+		return Collections.singletonList(action);
+	}
+
+	public String conflictsToString(TerminalSet set){
+		StringBuilder builder = new StringBuilder();
+		List<Integer> states = new ArrayList<>(conflicts.keySet());
+		Collections.sort(states);
+		for (int state : states){
+			Map<Integer, List<Action>> conflictRow = conflicts.get(state);
+			List<Integer> terminals = new ArrayList<>(conflictRow.keySet());
+			Collections.sort(terminals);
+			for (int terminal : terminals){
+				List<Action> actions = conflictRow.get(terminal);
+				List<String> names = new ArrayList<>();
+				for (Action action : actions){
+					names.add(action.name());
+				}
+				builder.append(String.format("State %d at terminal %s: %s conflict %s\n", state, set.typeToString(terminal),
+						String.join("/", names), actions));
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Chooses the action of a conflict that the action table contains: the shift or the first action
+	 */
+	private Action chooseAtError(List<Action> actions){
+		for (Action action : actions){
+			if (action instanceof ShiftAction){
+				return action;
+			}
+		}
+		return actions.get(0);
+	}
+
+	/**
+	 * Removes the reductions of unit productions (A → B) that don't have a reduce action, if they are
+	 * the only actions of their state. Such a reduction just replaces B by A on the parse stack, therefore
+	 * the shift and goto entries that lead to its state are rewritten to lead to the goto state of A.
+	 * The skipped states stay in the table but become unreachable.
+	 *
+	 * The table can't report errors in the skipped states, it reports them in the following state instead
+	 * (before the next token is shifted).
+	 *
+	 * @return number of rewritten table entries
+	 */
+	public int eliminateUnitReductions(){
+		// state => unit production that is the only action of the state
+		Map<Integer, Integer> unitStates = new HashMap<>();
+		for (int state = 0; state < actionTable.size(); state++){
+			int production = getOnlyUnitReduction(state);
+			if (production != -1){
+				unitStates.put(state, production);
+			}
+		}
+		if (unitStates.isEmpty()){
+			return 0;
+		}
+		int rewritten = 0;
+		for (int state = 0; state < actionTable.size(); state++){
+			for (Map.Entry<Integer, Action> entry : actionTable.get(state).entrySet()){
+				Action action = rewriteShift(state, entry.getValue(), unitStates);
+				if (action != entry.getValue()){
+					entry.setValue(action);
+					rewritten++;
+				}
+			}
+			if (conflicts.containsKey(state)){
+				final int currentState = state;
+				for (List<Action> actions : conflicts.get(state).values()){
+					actions.replaceAll(action -> rewriteShift(currentState, action, unitStates));
+				}
+			}
+			for (Map.Entry<NonTerminal, Integer> entry : gotoTable.get(state).entrySet()){
+				int target = skipUnitStates(state, entry.getValue(), unitStates);
+				if (target != entry.getValue()){
+					entry.setValue(target);
+					rewritten++;
+				}
+			}
+		}
+		return rewritten;
+	}
+
+	/**
+	 * Returns the id of the unit production without reduce action that the passed state reduces with
+	 * every lookahead, -1 if the state has other actions
+	 */
+	private int getOnlyUnitReduction(int state){
+		if (actionTable.get(state).isEmpty() || !gotoTable.get(state).isEmpty() || conflicts.containsKey(state)){
+			return -1;
+		}
+		int production = -1;
+		for (Action action : actionTable.get(state).values()){
+			if (!(action instanceof ReduceAction)
+					|| (production != -1 && ((ReduceAction) action).productionId != production)){
+				return -1;
+			}
+			production = ((ReduceAction) action).productionId;
+		}
+		Pair<NonTerminal, Integer> info = productionInformation.get(production);
+		if (info.second != 1 || info.first == grammar.getStart() || grammar.hasReduceAction(production)){
+			return -1;
+		}
+		return production;
+	}
+
+	private Action rewriteShift(int state, Action action, Map<Integer, Integer> unitStates){
+		if (action instanceof ShiftAction){
+			int target = skipUnitStates(state, ((ShiftAction) action).stateToBeShifted, unitStates);
+			if (target != ((ShiftAction) action).stateToBeShifted){
+				return new ShiftAction(target);
+			}
+		}
+		return action;
+	}
+
+	/**
+	 * Follows the chain of unit reductions that start with the passed target state of the passed state
+	 */
+	private int skipUnitStates(int state, int target, Map<Integer, Integer> unitStates){
+		for (int i = 0; i < unitStates.size() && unitStates.containsKey(target); i++){
+			Integer next = gotoTable.get(state).get(productionInformation.get(unitStates.get(target)).first);
+			if (next == null){
+				break;
+			}
+			target = next;
 		}
-		return action1;
+		return target;
 	}
 
 	public void addShift(State state, Terminal terminal, State newState){
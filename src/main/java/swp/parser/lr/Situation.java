@@ -96,15 +96,15 @@ public class Situation extends swp.parser.early.Situation {
 		return !(situation.left != left || !situation.right.equals(right) || situation.position != position);
 	}
 
-	public boolean canMergeRegardingContext(Situation situation){
+	/**
+	 * Can the situations be merged in a state of an automaton that is built with the passed algorithm?
+	 * Only LR1 states need equal contexts.
+	 */
+	public boolean canMergeRegardingContext(Situation situation, LRAlgorithm algorithm){
 		if (!canMergeDisregardingContext(situation)){
 			return false;
 		}
-		if (Graph.isLALR){
-			return true;
-		} else {
-			return context.equals(situation.context);
-		}
+		return algorithm != LRAlgorithm.LR1 || context.equals(situation.context);
 	}
 
 	public boolean merge(Situation situation){
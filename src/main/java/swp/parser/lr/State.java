@@ -1,8 +1,7 @@
 package swp.parser.lr;
 
+import swp.grammar.CompiledGrammar;
 import swp.grammar.Grammar;
-import swp.grammar.NonTerminal;
-import swp.grammar.Production;
 import swp.grammar.Symbol;
 import swp.util.Utils;
 
@@ -17,13 +16,26 @@ public class State extends ArrayList<Situation> implements Comparable<State> {
 
 	public int id;
 	public final Grammar grammar;
+	public final LRAlgorithm algorithm;
 
 	public Map<Symbol, State> adjacentStates = new HashMap<>();
 	public List<Situation> nonClosureItems = new ArrayList<>();
 
-	public State(Grammar grammar){
+	/**
+	 * (production id, position) => situation of this state, used to find the situation that
+	 * a new situation can be merged into
+	 */
+	private final Map<Long, Situation> situationIndex = new HashMap<>();
+
+	/**
+	 * Hasn't the state changed since its last closure? Another closure wouldn't change anything then.
+	 */
+	private boolean closed = false;
+
+	public State(Grammar grammar, LRAlgorithm algorithm){
 		id = stateCounter++;
 		this.grammar = grammar;
+		this.algorithm = algorithm;
 	}
 
 	@Override
@@ -40,28 +52,48 @@ public class State extends ArrayList<Situation> implements Comparable<State> {
 		return "State " + id + "\n" + builder.toString();
 	}
 
+	/**
+	 * Adds the closure situations and propagates the contexts until nothing changes anymore
+	 *
+	 * @return did something change?
+	 */
 	public boolean closure(){
-		boolean somethingReallyChanged = false;
-		boolean somethingChanged = true;
-		int doneTill = 0;  // first index that isn't done yet
-		while (somethingChanged){
-			somethingChanged = false;
-			for (int i = doneTill; i < size(); i++){
-				Situation situation = get(i);
-				if (situation.inFrontOfNonTerminal()){
-					//somethingChanged = true; // remove it??
-					List<Symbol> term = situation.right.subList(situation.position + 1, situation.right.size());
-					Context context = new Context(grammar.calculateFirst1SetForTerm(term, situation.context));
-					NonTerminal n = (NonTerminal)situation.nextSymbol();
-					for (Production prod : grammar.getProductionOfNonTerminal(n)){
-						somethingChanged = add(new Situation(prod, (Context)context.clone()), false) || somethingChanged;
+		if (closed){
+			return false;
+		}
+		CompiledGrammar compiled = grammar.compile();
+		boolean somethingChanged = false;
+		// situations whose context has to be propagated
+		Deque<Situation> worklist = new ArrayDeque<>(this);
+		while (!worklist.isEmpty()){
+			Situation situation = worklist.poll();
+			if (situation.inFrontOfNonTerminal()){
+				int production = compiled.indexOf(situation);
+				Context context = new Context(compiled.firstOfSuffix(production, situation.position + 1,
+						situation.context), grammar);
+				for (int alternative : compiled.productionsOf[~compiled.rights[production][situation.position]]){
+					Situation newSituation = new Situation(compiled.productions[alternative], (Context)context.clone());
+					Situation existing = getMergeableSituation(newSituation);
+					if (existing == null){
+						add(newSituation, false);
+						worklist.add(newSituation);
+						somethingChanged = true;
+					} else if (existing.merge(newSituation)){
+						worklist.add(existing);
+						somethingChanged = true;
 					}
 				}
 			}
-			somethingReallyChanged = somethingReallyChanged || somethingChanged;
-			doneTill = size();
 		}
-		return somethingReallyChanged;
+		closed = true;
+		return somethingChanged;
+	}
+
+	/**
+	 * Has to be called if the situations of this state have been modified directly
+	 */
+	protected void changed(){
+		closed = false;
 	}
 
 	@Override
@@ -70,20 +102,38 @@ public class State extends ArrayList<Situation> implements Comparable<State> {
 	}
 
 	public boolean add(Situation situation, boolean isNotInClosure) {
-		boolean merged = false;
-		for (Situation situation1 : this){
-			if (situation1.canMergeDisregardingContext(situation)) {
-				return situation1.merge(situation);
+		Situation mergeable = getMergeableSituation(situation);
+		if (mergeable != null){
+			if (mergeable.merge(situation)){
+				closed = false;
+				return true;
 			}
+			return false;
+		}
+		closed = false;
+		super.add(situation);
+		situationIndex.put(indexKey(situation), situation);
+		if (isNotInClosure) {
+			nonClosureItems.add(situation);
 		}
-		if (!merged){
-			super.add(situation);
-			if (isNotInClosure) {
-				nonClosureItems.add(situation);
+		return true;
+	}
+
+	/**
+	 * Returns the situation of this state that only differs in its context from the passed one, or null
+	 */
+	private Situation getMergeableSituation(Situation situation){
+		if (situationIndex.size() != size()){
+			situationIndex.clear();
+			for (Situation situation1 : this){
+				situationIndex.put(indexKey(situation1), situation1);
 			}
-			return true;
 		}
-		return false;
+		return situationIndex.get(indexKey(situation));
+	}
+
+	private static long indexKey(Situation situation){
+		return ((long)situation.id << 32) | situation.position;
 	}
 
 	public boolean hasShiftableSituations(){
@@ -108,7 +158,7 @@ public class State extends ArrayList<Situation> implements Comparable<State> {
 				//	continue;
 				//}
 				if (!adjacentStates.containsKey(symbol)){
-					adjacentStates.put(symbol, new State(grammar));
+					adjacentStates.put(symbol, new State(grammar, algorithm));
 				}
 				adjacentStates.get(symbol).add(situation.advance());
 			}
@@ -143,21 +193,79 @@ public class State extends ArrayList<Situation> implements Comparable<State> {
 		return builder.toString();
 	}
 
+	/**
+	 * Returns the LR(0) items of this state (item indexes of the compiled grammar), only states with the same
+	 * core after their closure can be merged
+	 */
+	public BitSet core(){
+		CompiledGrammar compiled = grammar.compile();
+		BitSet core = new BitSet(compiled.itemCount);
+		for (Situation situation : this){
+			core.set(compiled.itemIndex(compiled.indexOf(situation), situation.position));
+		}
+		return core;
+	}
+
 	public boolean canMerge(State other){
+		// the closure only adds situations, therefore this state has to contain the current situations
+		// of the other state (regardless of their contexts)
+		for (Situation situation : other){
+			if (getMergeableSituation(situation) == null){
+				return false;
+			}
+		}
 		other.closure();
 		this.closure();
 		if (other.size() != size()){
 			return false;
 		}
+		// situations of the other state in the order of the situations of this state
+		List<Situation> otherSituations = new ArrayList<>(size());
 		for (Situation situation : this){
-			boolean mergeable = false;
-			for (Situation otherSituation : other){
-				if (otherSituation.canMergeRegardingContext(situation)){
-					mergeable = true;
+			Situation otherSituation = other.getMergeableSituation(situation);
+			if (otherSituation == null){
+				return false;
+			}
+			otherSituations.add(otherSituation);
+		}
+		switch (algorithm){
+			case LR1:
+				for (int i = 0; i < size(); i++){
+					if (!get(i).context.equals(otherSituations.get(i).context)){
+						return false;
+					}
 				}
+				return true;
+			case PAGER:
+				return isWeaklyCompatible(otherSituations);
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Pager's weak compatibility test: merging two states with the same core doesn't introduce
+	 * reduce/reduce conflicts (here or in the successor states) that aren't in the canonical LR(1) automaton, if
+	 * for all pairs of situations i ≠ j the contexts C_i (this state) and C'_i (other state) fulfill
+	 * (C_i ∩ C'_j = ∅ and C'_i ∩ C_j = ∅) or C_i ∩ C_j ≠ ∅ or C'_i ∩ C'_j ≠ ∅
+	 *
+	 * @param otherSituations situations of the other state in the order of the situations of this state
+	 */
+	private boolean isWeaklyCompatible(List<Situation> otherSituations){
+		for (int i = 0; i < size(); i++){
+			Context context = get(i).context;
+			Context otherContext = otherSituations.get(i).context;
+			if (context.equals(otherContext)){
+				// the condition holds for all j then, as C_i ∩ C'_j = C'_i ∩ C'_j
+				continue;
 			}
-			if (!mergeable){
-				return false;
+			for (int j = i + 1; j < size(); j++){
+				Context context2 = get(j).context;
+				Context otherContext2 = otherSituations.get(j).context;
+				if ((context.intersects(otherContext2) || otherContext.intersects(context2))
+						&& !context.intersects(context2) && !otherContext.intersects(otherContext2)){
+					return false;
+				}
 			}
 		}
 		return true;
@@ -166,13 +274,14 @@ public class State extends ArrayList<Situation> implements Comparable<State> {
 	public boolean merge(State other){
 		boolean somethingChanged = false;
 		for (Situation situation : this){
-			for (Situation otherSituation : other){
-				if (otherSituation.canMergeRegardingContext(situation)){
-					somethingChanged = situation.merge(otherSituation) || somethingChanged;
-					break;
-				}
+			Situation otherSituation = other.getMergeableSituation(situation);
+			if (otherSituation != null){
+				somethingChanged = situation.merge(otherSituation) || somethingChanged;
 			}
 		}
+		if (somethingChanged){
+			closed = false;
+		}
 		return somethingChanged;
 	}
 
@@ -0,0 +1,51 @@
+package swp.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Metrics hook that sums up the counters and timers
+ */
+public class CollectingMetrics extends Metrics {
+
+	private final Map<String, Long> counters = new TreeMap<>();
+	private final Map<String, Long> times = new TreeMap<>();
+
+	@Override
+	public synchronized void count(String counter, long amount) {
+		counters.put(counter, counters.getOrDefault(counter, 0L) + amount);
+	}
+
+	@Override
+	public synchronized void time(String timer, long nanoSeconds) {
+		times.put(timer, times.getOrDefault(timer, 0L) + nanoSeconds);
+	}
+
+	public synchronized long getCount(String counter){
+		return counters.getOrDefault(counter, 0L);
+	}
+
+	/**
+	 * Returns the summed up time in nanoseconds
+	 */
+	public synchronized long getTime(String timer){
+		return times.getOrDefault(timer, 0L);
+	}
+
+	public synchronized void clear(){
+		counters.clear();
+		times.clear();
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Map.Entry<String, Long> entry : counters.entrySet()){
+			builder.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+		}
+		for (Map.Entry<String, Long> entry : times.entrySet()){
+			builder.append(entry.getKey()).append(": ").append(String.format("%.3f ms", entry.getValue() / 1e6)).append("\n");
+		}
+		return builder.toString();
+	}
+}
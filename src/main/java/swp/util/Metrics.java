@@ -0,0 +1,61 @@
+package swp.util;
+
+import java.util.function.Supplier;
+
+/**
+ * Hook for the counters and timers of the lexers, parsers and the generator.
+ *
+ * It's disabled by default (get() returns null). Lexers and parsers look it up once when they are created,
+ * so that a disabled hook only costs a null check while lexing and parsing.
+ *
+ * Used counters: lexer.tokens, lexer.bytes, parser.shifts, parser.reductions, parser.reductions[production],
+ * parser.errors, parser.recoveries, generator.cache_hits, generator.file_cache_hits and generator.cache_misses.
+ * Used timers (in nanoseconds): generator.nfa, generator.dfa, generator.bitparallel, generator.compression,
+ * generator.grammar_optimization, generator.lr_graph, generator.lr_table and generator.unit_elimination.
+ */
+public abstract class Metrics {
+
+	private static volatile Metrics current = null;
+
+	/**
+	 * Returns the current hook, null if the metrics are disabled
+	 */
+	public static Metrics get(){
+		return current;
+	}
+
+	/**
+	 * Sets the hook, null disables the metrics
+	 */
+	public static void set(Metrics metrics){
+		current = metrics;
+	}
+
+	public abstract void count(String counter, long amount);
+
+	public abstract void time(String timer, long nanoSeconds);
+
+	/**
+	 * Increments the counter of the current hook if the metrics are enabled
+	 */
+	public static void record(String counter){
+		Metrics metrics = current;
+		if (metrics != null){
+			metrics.count(counter, 1);
+		}
+	}
+
+	/**
+	 * Calls the supplier and records its run time with the current hook if the metrics are enabled
+	 */
+	public static <T> T measure(String timer, Supplier<T> supplier){
+		Metrics metrics = current;
+		if (metrics == null){
+			return supplier.get();
+		}
+		long start = System.nanoTime();
+		T result = supplier.get();
+		metrics.time(timer, System.nanoTime() - start);
+		return result;
+	}
+}
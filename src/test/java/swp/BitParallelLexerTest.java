@@ -0,0 +1,109 @@
+package swp;
+
+import swp.lexer.Checkpoint;
+import swp.lexer.Lexer;
+import swp.lexer.automata.AutomatonLexer;
+import swp.lexer.automata.BitParallelAutomaton;
+import swp.lexer.automata.BitParallelLexer;
+import swp.lexer.automata.LexerDescriptionParser;
+import swp.lexer.automata.Table;
+import swp.util.CollectingMetrics;
+import swp.util.Metrics;
+import swp.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BitParallelLexerTest {
+
+	private static final String COMMENT = "/\\*([^*]|\\*[^/])*\\*/";
+
+	@org.junit.Test
+	public void sameTokens() throws Exception {
+		checkSameTokens(Arrays.asList(new Pair<>("A", "a+"), new Pair<>("B", "ab"), new Pair<>("WS", "[ \\n]+"),
+				new Pair<>("C", COMMENT)), "ab /*x\n", new int[0]);
+		// ignored characters
+		checkSameTokens(Arrays.asList(new Pair<>("A", "a+"), new Pair<>("B", "ab"), new Pair<>("WS", "[ \\n]+")),
+				"ab \n\t", new int[]{'\t'});
+		checkSameTokens(Arrays.asList(new Pair<>("IF", "if"), new Pair<>("INT", "int"), new Pair<>("ID", "[a-z][a-z0-9]*"),
+				new Pair<>("NUM", "[0-9]+"), new Pair<>("WS", " +")), "ifnt0 1", new int[0]);
+		// the deterministic automaton of (a|b)*a(a|b){10} has thousands of states
+		checkSameTokens(Arrays.asList(new Pair<>("X", "[ab]*a[ab]{10}"), new Pair<>("WS", " ")), "aab ", new int[0]);
+	}
+
+	/**
+	 * Automata with more than 64 positions use both words of the bit sets
+	 */
+	@org.junit.Test
+	public void manyPositions() throws Exception {
+		List<Pair<String, String>> terminals = new ArrayList<>();
+		for (String keyword : "if else while for class int boolean return this new true false public static void".split(" ")){
+			terminals.add(new Pair<>(keyword.toUpperCase(), keyword));
+		}
+		terminals.add(new Pair<>("ID", "[a-z][a-z0-9]*"));
+		terminals.add(new Pair<>("WS", " +"));
+		assertTrue(new LexerDescriptionParser().evalBitParallel(terminals).positionCount > 64);
+		checkSameTokens(terminals, "ifelswhtrunc ", new int[0]);
+		try {
+			new LexerDescriptionParser().evalBitParallel("X = [ab]*a[ab]{200}");
+			assertTrue("The automaton has too many positions", false);
+		} catch (SWPException exception){
+			assertTrue(exception.getMessage().startsWith("The automaton has"));
+		}
+	}
+
+	@org.junit.Test
+	public void checkpoints() throws Exception {
+		BitParallelAutomaton automaton = new LexerDescriptionParser().evalBitParallel("A = a+; B = b; WS = [\\s]+");
+		BitParallelLexer lexer = new BitParallelLexer(automaton, "aa b  a b", new int[0],
+				new String[]{"WS"});
+		assertEquals("A[1:0](aa)", lexer.next().toString());
+		Checkpoint checkpoint = lexer.mark();
+		assertEquals("B[1:3](b)", lexer.next().toString());
+		assertEquals("A[1:6](a)", lexer.next().toString());
+		lexer.reset(checkpoint);
+		assertEquals("A[1:0](aa)", lexer.cur().toString());
+		assertEquals("B[1:3](b)", lexer.next().toString());
+		assertEquals("A[1:6](a)", lexer.next().toString());
+		assertEquals("B[1:8](b)", lexer.next().toString());
+		assertEquals(0, lexer.next().type);
+	}
+
+	@org.junit.Test
+	public void metrics() throws Exception {
+		CollectingMetrics metrics = new CollectingMetrics();
+		Metrics.set(metrics);
+		try {
+			BitParallelAutomaton automaton = new LexerDescriptionParser().evalBitParallel("A = a+; WS = [\\s]+");
+			assertTrue(metrics.getTime("generator.bitparallel") > 0);
+			assertEquals(0, metrics.getTime("generator.dfa"));
+			metrics.clear();
+			Lexer lexer = new BitParallelLexer(automaton, "aa a", new int[0], new String[]{"WS"});
+			while (lexer.next().type != 0);
+			assertEquals(3, metrics.getCount("lexer.tokens"));
+			assertEquals(4, metrics.getCount("lexer.bytes"));
+		} finally {
+			Metrics.set(null);
+		}
+	}
+
+	private static void checkSameTokens(List<Pair<String, String>> terminals, String alphabet, int[] ignoredTokenTypes){
+		Table table = new LexerDescriptionParser().eval(terminals, false, false);
+		BitParallelAutomaton automaton = new LexerDescriptionParser().evalBitParallel(terminals);
+		Random random = new Random(7);
+		for (int i = 0; i < 300; i++){
+			StringBuilder input = new StringBuilder();
+			for (int j = random.nextInt(40); j > 0; j--){
+				input.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			assertEquals(input.toString(),
+					ParallelAutomatonLexerTest.formatTokens(new AutomatonLexer(table, input.toString(), ignoredTokenTypes)),
+					ParallelAutomatonLexerTest.formatTokens(new BitParallelLexer(automaton, input.toString(), ignoredTokenTypes)));
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package swp;
+
+import swp.lexer.automata.AutomatonLexer;
+import swp.lexer.automata.CompactTable;
+import swp.lexer.automata.LexerDescriptionParser;
+import swp.lexer.automata.Table;
+import swp.util.Utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompactTableTest {
+
+	@org.junit.Test
+	public void sameTransitions() throws Exception {
+		checkSameTransitions(new LexerDescriptionParser().eval(ParallelAutomatonLexerTest.GRAMMAR));
+		checkSameTransitions(ParallelAutomatonLexerTest.miniJavaTable());
+		// more than 128 states need wider entries
+		Table large = new LexerDescriptionParser().eval("A = a{200}; B = [a-c]+b");
+		assertTrue(large.stateCount() > 128);
+		checkSameTransitions(large);
+	}
+
+	@org.junit.Test
+	public void sameTokens() throws Exception {
+		Table table = new LexerDescriptionParser().eval(ParallelAutomatonLexerTest.GRAMMAR);
+		for (String input : new String[]{"", "aa b\n /* a\n */ b a", "aaaa /* a */ ab ba", "aa b c a", "a /* a"}){
+			checkSameTokens(table, input, new int[]{' '});
+		}
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 20; i++){
+			input.append(ParallelAutomatonLexerTest.MINI_JAVA_PROGRAM);
+		}
+		Table miniJava = ParallelAutomatonLexerTest.miniJavaTable();
+		checkSameTokens(miniJava, input.toString(), new int[0]);
+		checkSameTokens(miniJava, input + "class # x", new int[0]);
+	}
+
+	@org.junit.Test
+	public void smallerThanTable() throws Exception {
+		Table table = ParallelAutomatonLexerTest.miniJavaTable();
+		CompactTable compact = table.compact();
+		assertTrue(compact.sizeInBytes() < table.stateCount() * (Utils.MAX_CHAR + 1) * 4);
+		assertTrue(compact.compact() == compact);
+	}
+
+	private void checkSameTransitions(Table table){
+		CompactTable compact = table.compact();
+		assertEquals(table.stateCount(), compact.stateCount());
+		assertEquals(table.initialState, compact.initialState);
+		for (int state = 0; state < table.stateCount(); state++){
+			assertEquals(table.finalType(state), compact.finalType(state));
+			assertEquals(table.expectedCharacters(state), compact.expectedCharacters(state));
+			for (int character = Utils.MIN_CHAR; character <= Utils.MAX_CHAR; character++){
+				assertEquals(String.format("Transition of state %d at %d", state, character),
+						table.next(state, character), compact.next(state, character));
+			}
+		}
+	}
+
+	private void checkSameTokens(Table table, String input, int[] ignoredTokenTypes){
+		assertEquals(input, ParallelAutomatonLexerTest.formatTokens(new AutomatonLexer(table, input, ignoredTokenTypes)),
+				ParallelAutomatonLexerTest.formatTokens(new AutomatonLexer(table.compact(), input, ignoredTokenTypes)));
+	}
+}
@@ -0,0 +1,102 @@
+package swp;
+
+import swp.grammar.CompiledGrammar;
+import swp.grammar.Grammar;
+import swp.grammar.NonTerminal;
+import swp.grammar.Production;
+import swp.grammar.Symbol;
+import swp.grammar.Terminal;
+import swp.grammar.TerminalOrEpsilon;
+
+import java.util.BitSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledGrammarTest {
+
+	/**
+	 * Every non terminal, production and item has a dense index, the id tables map back to them
+	 */
+	@org.junit.Test
+	public void denseIndexes() throws Exception {
+		for (Grammar grammar : FirstFollowSetTest.grammars()){
+			CompiledGrammar compiled = grammar.compile();
+			assertTrue(compiled == grammar.compile());
+			assertEquals(grammar.getProductions().size(), compiled.productions.length);
+			for (int i = 0; i < compiled.nonTerminals.length; i++){
+				assertEquals(i, compiled.indexOf(compiled.nonTerminals[i]));
+				assertTrue(i == 0 || compiled.nonTerminals[i - 1].id < compiled.nonTerminals[i].id);
+			}
+			for (int id = 0; id < compiled.nonTerminalIndexes.length; id++){
+				int index = compiled.nonTerminalIndexes[id];
+				assertTrue(index == -1 || compiled.nonTerminals[index].id == id);
+			}
+			assertEquals(grammar.getStart(), compiled.nonTerminals[compiled.start]);
+			int productionCount = 0;
+			BitSet items = new BitSet();
+			for (int i = 0; i < compiled.productions.length; i++){
+				Production production = compiled.productions[i];
+				assertEquals(grammar.getProductions().get(i), production);
+				assertEquals(i, compiled.indexOf(production));
+				assertEquals(production.left, compiled.nonTerminals[compiled.lefts[i]]);
+				assertEquals(production.rightSize(), compiled.rights[i].length);
+				for (int j = 0; j < compiled.rights[i].length; j++){
+					assertEquals(production.right.get(j), decode(compiled, compiled.rights[i][j]));
+				}
+				for (int position = 0; position <= production.rightSize(); position++){
+					int item = compiled.itemIndex(i, position);
+					assertTrue(item < compiled.itemCount && !items.get(item));
+					items.set(item);
+				}
+			}
+			assertEquals(compiled.itemCount, items.cardinality());
+			for (int i = 0; i < compiled.nonTerminals.length; i++){
+				for (int production : compiled.productionsOf[i]){
+					assertEquals(i, compiled.lefts[production]);
+					productionCount++;
+				}
+			}
+			assertEquals(compiled.productions.length, productionCount);
+		}
+	}
+
+	@org.junit.Test
+	public void sameSetsAsGrammar() throws Exception {
+		for (Grammar grammar : FirstFollowSetTest.grammars()){
+			CompiledGrammar compiled = grammar.compile();
+			Set<NonTerminal> epsilonable = grammar.calculateEpsilonable();
+			for (NonTerminal nonTerminal : grammar.calculateFirst1Set().keySet()){
+				int index = compiled.indexOf(nonTerminal);
+				if (index == -1){
+					continue;
+				}
+				assertEquals(nonTerminal.toString(), epsilonable.contains(nonTerminal), compiled.nullable[index]);
+				BitSet first = new BitSet();
+				for (TerminalOrEpsilon terminal : grammar.calculateFirst1Set().get(nonTerminal)){
+					if (terminal instanceof Terminal){
+						first.set(((Terminal) terminal).id);
+					}
+				}
+				assertEquals(nonTerminal.toString(), first, compiled.first[index]);
+				BitSet follow = new BitSet();
+				for (Terminal terminal : grammar.calculateFollow1SetForNonTerminal(nonTerminal)){
+					follow.set(terminal.id);
+				}
+				assertEquals(nonTerminal.toString(), follow, compiled.follow[index]);
+			}
+			for (int i = 0; i < compiled.productions.length; i++){
+				for (int position = 0; position <= compiled.rights[i].length; position++){
+					assertEquals(grammar.isProductionEpsilonable(compiled.productions[i].right.subList(
+							Math.min(position, compiled.productions[i].right.size()), compiled.productions[i].right.size())),
+							compiled.isSuffixNullable(i, position));
+				}
+			}
+		}
+	}
+
+	private static Symbol decode(CompiledGrammar compiled, int symbol){
+		return CompiledGrammar.isTerminal(symbol) ? compiled.terminals[symbol] : compiled.nonTerminals[~symbol];
+	}
+}
@@ -0,0 +1,52 @@
+package swp;
+
+import swp.lexer.Lexer;
+import swp.lexer.Token;
+import swp.parser.Diagnostic;
+import swp.parser.SyntaxError;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DiagnosticTest {
+
+	/**
+	 * Neither the message nor the repair are formatted before they are requested, and both only once
+	 */
+	@org.junit.Test
+	public void lazyFormatting() throws Exception {
+		GLRParserTest.Parsers parsers = new GLRParserTest.Parsers(LLParserTest.LEXER, builder -> builder
+				.add("S", "A", "B"), "S");
+		Lexer lexer = parsers.lexer("a c");
+		lexer.next();
+		Token token = lexer.next();
+		BitSet expected = new BitSet();
+		expected.set(parsers.lexerTable.terminalSet.stringToType("B"));
+		AtomicInteger messages = new AtomicInteger();
+		AtomicInteger repairs = new AtomicInteger();
+		Diagnostic diagnostic = new Diagnostic(token, expected, 3, () -> {
+			repairs.incrementAndGet();
+			return "deleted " + token;
+		}) {
+			@Override
+			protected String formatMessage() {
+				messages.incrementAndGet();
+				return super.formatMessage();
+			}
+		};
+		SyntaxError error = new SyntaxError(diagnostic);
+		assertTrue(diagnostic.isRecovered());
+		assertEquals(2, diagnostic.getLocation().column);
+		assertEquals(0, messages.get());
+		assertEquals(0, repairs.get());
+		assertEquals("Unexpected C[1:2](c), expected [B] at state 3", error.getMessage());
+		assertEquals("Unexpected C[1:2](c), expected [B] at state 3, deleted C[1:2](c)", diagnostic.toString());
+		diagnostic.getMessage();
+		diagnostic.getRepair();
+		assertEquals(1, messages.get());
+		assertEquals(1, repairs.get());
+	}
+}
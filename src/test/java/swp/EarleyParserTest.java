@@ -0,0 +1,91 @@
+package swp;
+
+import swp.grammar.Grammar;
+import swp.grammar.NonTerminal;
+import swp.grammar.Production;
+import swp.grammar.Symbol;
+import swp.grammar.Terminal;
+import swp.lexer.TerminalSet;
+import swp.lexer.automata.AutomatonLexer;
+import swp.lexer.automata.LexerDescriptionParser;
+import swp.lexer.automata.Table;
+import swp.parser.early.EarleyParser;
+import swp.parser.examples.MiniJava;
+import swp.parser.glr.SPPFNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EarleyParserTest {
+
+	@org.junit.Test
+	public void sameAstAsLRParser() throws Exception {
+		GLRParserTest.Parsers parsers = new GLRParserTest.Parsers(GLRParserTest.CALCULATOR_LEXER, builder -> builder
+				.add("E", "E", "P", "T").add("E", "T")
+				.add("T", "T", "M", "F").add("T", "F")
+				.add("F", "N").add("F", "L", "E", "R"), "E");
+		for (String input : new String[]{"1", "1 + 2", "1 + 2 * 3 + 4", "(1 + 2) * 3", "((1))"}){
+			assertEquals(input, parsers.parseLR(input),
+					new EarleyParser(parsers.grammar, parsers.lexer(input)).parse().toString());
+		}
+	}
+
+	@org.junit.Test
+	public void sameAstAsLRParserForMiniJava() throws Exception {
+		MiniJava miniJava = new MiniJava();
+		String program = ParallelAutomatonLexerTest.MINI_JAVA_PROGRAM;
+		EarleyParser parser = new EarleyParser(miniJava.generator.getGrammar(), miniJava.generator.createLexer(program));
+		assertEquals(miniJava.generator.parse(program).toPrettyString(), parser.parse().toPrettyString());
+	}
+
+	@org.junit.Test
+	public void ambiguousGrammar() throws Exception {
+		GLRParserTest.Parsers parsers = new GLRParserTest.Parsers(GLRParserTest.CALCULATOR_LEXER, builder -> builder
+				.add("E", "E", "P", "E").add("E", "E", "M", "E").add("E", "N"), "E");
+		assertEquals(2L, GLRParserTest.countTrees(parseForest(parsers, "1 + 2 + 3")));
+		assertEquals(5L, GLRParserTest.countTrees(parseForest(parsers, "1 + 2 * 3 + 4")));
+		assertFalse(parseForest(parsers, "1 + 2").containsAmbiguities());
+	}
+
+	/**
+	 * A grammar without a <pre>S' -> S EOF</pre> start rule has to consume the whole input too
+	 */
+	@org.junit.Test
+	public void grammarWithoutEOFRule() throws Exception {
+		Table lexerTable = new LexerDescriptionParser().eval("A = a; B = b; C = c");
+		TerminalSet terminals = lexerTable.terminalSet;
+		NonTerminal start = new NonTerminal(0, "S");
+		List<Production> productions = new ArrayList<>();
+		productions.add(new Production(0, start, symbols(terminals, "A")));
+		productions.add(new Production(1, start, symbols(terminals, "A", "B", "C")));
+		Grammar grammar = new Grammar(terminals, new HashSet<>(Arrays.asList(start)), start, productions);
+		new EarleyParser(grammar, new AutomatonLexer(lexerTable, "a", new int[]{' '})).parseForest();
+		new EarleyParser(grammar, new AutomatonLexer(lexerTable, "a b c", new int[]{' '})).parseForest();
+		for (String input : new String[]{"a b", "", "a c"}){
+			try {
+				new EarleyParser(grammar, new AutomatonLexer(lexerTable, input, new int[]{' '})).parseForest();
+				assertTrue(String.format("Parsing \"%s\" shouldn't be possible", input), false);
+			} catch (SWPException exception){
+				assertTrue(exception.getMessage(), exception.getMessage().startsWith("Unexpected"));
+			}
+		}
+	}
+
+	private static List<Symbol> symbols(TerminalSet terminals, String... names){
+		List<Symbol> symbols = new ArrayList<>();
+		for (String name : names){
+			symbols.add(new Terminal(terminals.stringToType(name), terminals));
+		}
+		return symbols;
+	}
+
+	private static SPPFNode parseForest(GLRParserTest.Parsers parsers, String input){
+		return new EarleyParser(parsers.grammar, parsers.lexer(input)).parseForest();
+	}
+}
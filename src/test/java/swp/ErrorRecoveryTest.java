@@ -0,0 +1,74 @@
+package swp;
+
+import swp.parser.DiagnosticList;
+import swp.parser.examples.MiniJava;
+import swp.parser.lr.BaseAST;
+import swp.parser.lr.LRParser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ErrorRecoveryTest {
+
+	private final GLRParserTest.Parsers parsers = new GLRParserTest.Parsers(GLRParserTest.CALCULATOR_LEXER, builder -> builder
+			.add("E", "E", "P", "T").add("E", "T")
+			.add("T", "T", "M", "F").add("T", "F")
+			.add("F", "N").add("F", "L", "E", "R"), "E");
+
+	@org.junit.Test
+	public void insertion() throws Exception {
+		assertEquals("Unexpected P[1:4](+), expected [L, N] at state 7, inserted N before P[1:4](+)\n",
+				parseWithDiagnostics("1 + + 2", Integer.MAX_VALUE).toString());
+		assertEquals("Unexpected EOF[1:6](\0), expected [P, R] at state 9, inserted R before EOF[1:6](\0)\n",
+				parseWithDiagnostics("(1 + 2", Integer.MAX_VALUE).toString());
+	}
+
+	@org.junit.Test
+	public void deletion() throws Exception {
+		assertEquals("Unexpected R[1:5]()), expected [EOF, P] at state 1, deleted R[1:5]())\n",
+				parseWithDiagnostics("1 + 2)", Integer.MAX_VALUE).toString());
+	}
+
+	@org.junit.Test
+	public void multipleErrors() throws Exception {
+		DiagnosticList diagnostics = parseWithDiagnostics("1 + * 2 + + 3", Integer.MAX_VALUE);
+		assertEquals(2, diagnostics.size());
+		assertEquals(10, diagnostics.getDiagnostics().get(1).token.location.column);
+		assertTrue(diagnostics.getDiagnostics().get(1).isRecovered());
+		assertEquals("the parser stops after the maximum number of errors", 1,
+				parseWithDiagnostics("1 + * 2 + + 3", 1).size());
+		assertTrue(parseWithDiagnostics("1 + 2 * (3 + 4)", Integer.MAX_VALUE).isEmpty());
+	}
+
+	@org.junit.Test
+	public void withoutCollector() throws Exception {
+		try {
+			new LRParser(parsers.grammar, parsers.lexer("1 + + 2"), parsers.table).parse();
+			assertTrue("Syntax errors are thrown without a collector", false);
+		} catch (SWPException exception){
+			assertEquals("Unexpected P[1:4](+), expected [L, N] at state 7", exception.getMessage());
+		}
+	}
+
+	@org.junit.Test
+	public void miniJava() throws Exception {
+		MiniJava miniJava = new MiniJava();
+		String program = ParallelAutomatonLexerTest.MINI_JAVA_PROGRAM;
+		int semicolon = program.indexOf(';', program.indexOf("System.out.println"));
+		DiagnosticList diagnostics = new DiagnosticList();
+		assertNull(miniJava.generator.parse(program.substring(0, semicolon) + program.substring(semicolon + 1),
+				diagnostics));
+		assertEquals(diagnostics.toString(), 1, diagnostics.size());
+		assertTrue(diagnostics.getDiagnostics().get(0).isRecovered());
+	}
+
+	private DiagnosticList parseWithDiagnostics(String input, int maxErrors){
+		LRParser parser = new LRParser(parsers.grammar, parsers.lexer(input), parsers.table);
+		DiagnosticList diagnostics = new DiagnosticList(maxErrors);
+		parser.setDiagnosticCollector(diagnostics);
+		BaseAST ast = parser.parse();
+		assertEquals("No AST is created after an error", diagnostics.isEmpty(), ast != null);
+		return diagnostics;
+	}
+}
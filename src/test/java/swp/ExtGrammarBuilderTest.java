@@ -0,0 +1,95 @@
+package swp;
+
+import swp.grammar.ExtGrammarBuilder;
+import swp.grammar.Grammar;
+import swp.grammar.Production;
+import swp.grammar.Terminal;
+import swp.lexer.TerminalSet;
+import swp.lexer.automata.LexerDescriptionParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExtGrammarBuilderTest {
+
+	/**
+	 * The grammar of the rule descriptions is shared, the token names are resolved by each builder
+	 */
+	@org.junit.Test
+	public void buildersWithDifferentAlphabets() throws Exception {
+		TerminalSet first = new LexerDescriptionParser().eval("A = a; B = b").terminalSet;
+		TerminalSet second = new LexerDescriptionParser().eval("X = x; Y = y; B = b").terminalSet;
+		assertNotEquals(first.stringToType("B"), second.stringToType("B"));
+		assertEquals(first.stringToType("B"), firstTerminal(new ExtGrammarBuilder(first).addRule("s", "B")));
+		assertEquals(second.stringToType("B"), firstTerminal(new ExtGrammarBuilder(second).addRule("s", "B")));
+		try {
+			new ExtGrammarBuilder(second).addRule("s", "A");
+			assertTrue("The token A isn't part of the alphabet", false);
+		} catch (SWPException exception){
+			assertEquals("No such token A in grammar description", exception.getMessage());
+		}
+	}
+
+	/**
+	 * In addRule a sequence binds the alternatives behind it, addRules uses the BNF meaning of |
+	 */
+	@org.junit.Test
+	public void alternatives() throws Exception {
+		TerminalSet terminals = new LexerDescriptionParser().eval("A = a; B = b; C = c").terminalSet;
+		// A followed by the helper non terminal for B | C
+		assertEquals(2, productionsOf(new ExtGrammarBuilder(terminals).addRule("s", "A B | C"), "s").get(0).rightSize());
+		// addRules: the top level | separates whole sequences
+		List<Production> productions = productionsOf(new ExtGrammarBuilder(terminals).addRules("s = A B | C;"), "s");
+		assertEquals(2, productions.size());
+		assertEquals("<A> <B>", productions.get(0).formatRightSide());
+		assertEquals("<C>", productions.get(1).formatRightSide());
+		assertEquals(2, productionsOf(new ExtGrammarBuilder(terminals).addRules("s = (A B) | C;"), "s").size());
+		assertEquals(3, productionsOf(new ExtGrammarBuilder(terminals).addRules("s = A | B | C;"), "s").size());
+		productions = productionsOf(new ExtGrammarBuilder(terminals).addRules("s = s A B | C s | B;"), "s");
+		assertEquals(3, productions.size());
+		assertEquals("s <A> <B>", productions.get(0).formatRightSide());
+		assertEquals("<C> s", productions.get(1).formatRightSide());
+		// parenthesized alternatives stay in their sequence
+		productions = productionsOf(new ExtGrammarBuilder(terminals).addRules("s = A (B | C) | (B | C) C;"), "s");
+		assertEquals(2, productions.size());
+		assertEquals(2, productions.get(0).rightSize());
+		assertEquals(2, productions.get(1).rightSize());
+	}
+
+	/**
+	 * Equal sub expressions share their helper non terminal
+	 */
+	@org.junit.Test
+	public void sharedHelperNonTerminals() throws Exception {
+		TerminalSet terminals = new LexerDescriptionParser().eval("ID = a; COMMA = \\,").terminalSet;
+		ExtGrammarBuilder builder = new ExtGrammarBuilder(terminals)
+				.addRule("s", "ID (COMMA ID)*").addRule("t", "(COMMA ID)* ID");
+		List<Production> s = productionsOf(builder, "s");
+		List<Production> t = productionsOf(builder, "t");
+		assertEquals(s.get(0).right.get(1), t.get(0).right.get(0));
+	}
+
+	private static List<Production> productionsOf(ExtGrammarBuilder builder, String nonTerminal){
+		List<Production> productions = new ArrayList<>();
+		for (Production production : builder.toGrammar(nonTerminal).getProductions()){
+			if (production.left.name.equals(nonTerminal)){
+				productions.add(production);
+			}
+		}
+		return productions;
+	}
+
+	private static int firstTerminal(ExtGrammarBuilder builder){
+		Grammar grammar = builder.toGrammar("s");
+		for (Production production : grammar.getProductions()){
+			if (production.left.name.equals("s")){
+				return ((Terminal) production.right.get(0)).id;
+			}
+		}
+		throw new AssertionError("No production for s");
+	}
+}
@@ -0,0 +1,91 @@
+package swp;
+
+import swp.grammar.Grammar;
+import swp.grammar.NonTerminal;
+import swp.grammar.Production;
+import swp.grammar.Symbol;
+import swp.grammar.Terminal;
+import swp.parser.examples.MiniJava;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The bit set versions of the first and follow sets have to equal the ones of the set based calculations
+ */
+public class FirstFollowSetTest {
+
+	@org.junit.Test
+	public void follow() throws Exception {
+		for (Grammar grammar : grammars()){
+			for (NonTerminal nonTerminal : grammar.calculateFollow1Set().keySet()){
+				assertEquals(nonTerminal.toString(), ids(grammar.calculateFollow1SetForNonTerminal(nonTerminal)),
+						grammar.calculateFollow1BitSet(nonTerminal));
+			}
+		}
+	}
+
+	@org.junit.Test
+	public void firstOfSuffixes() throws Exception {
+		for (Grammar grammar : grammars()){
+			List<Collection<Terminal>> suffixes = Arrays.asList(Collections.emptyList(),
+					Collections.singletonList(grammar.eof), grammar.calculateFollow1SetForNonTerminal(grammar.getStart()));
+			for (Production production : grammar.getProductions()){
+				for (int position = 0; position <= production.rightSize(); position++){
+					List<Symbol> term = production.right.subList(Math.min(position, production.right.size()),
+							production.right.size());
+					for (Collection<Terminal> suffix : suffixes){
+						assertEquals(production + " at " + position, ids(grammar.calculateFirst1SetForTerm(term, suffix)),
+								grammar.calculateFirst1SetForSuffix(production, position, suffix));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * First set of the right hand side, with the follow set of the left hand side if it's nullable (used by the LL(1) table)
+	 */
+	@org.junit.Test
+	public void firstFollowOfProductions() throws Exception {
+		for (Grammar grammar : grammars()){
+			for (Production production : grammar.getProductions()){
+				Set<Terminal> expected = new HashSet<>(grammar.calculateFirst1SetForTerm(production.right,
+						grammar.calculateFollow1SetForNonTerminal(production.left)));
+				assertEquals(production.toString(), ids(expected), ids(grammar.calculateFirstFollowForProduction(production)));
+			}
+		}
+	}
+
+	/**
+	 * The calculator grammar, a grammar with epsilon productions and the MiniJava grammar
+	 */
+	static List<Grammar> grammars(){
+		List<Grammar> grammars = new ArrayList<>();
+		grammars.add(new GLRParserTest.Parsers(GLRParserTest.CALCULATOR_LEXER, builder -> builder
+				.add("E", "E", "P", "T").add("E", "T")
+				.add("T", "T", "M", "F").add("T", "F")
+				.add("F", "N").add("F", "L", "E", "R"), "E").grammar);
+		grammars.add(new GLRParserTest.Parsers(LLParserTest.LEXER, builder -> builder
+				.add("S", "I", "S").add("S", "").add("I", "L", "X").add("I", "L", "Y", "O")
+				.add("L", "A", "L").add("L", "").add("O", "B").add("O", ""), "S").grammar);
+		grammars.add(new MiniJava().generator.getGrammar());
+		return grammars;
+	}
+
+	private static BitSet ids(Collection<Terminal> terminals){
+		BitSet set = new BitSet();
+		for (Terminal terminal : terminals){
+			set.set(terminal.id);
+		}
+		return set;
+	}
+}
@@ -0,0 +1,142 @@
+package swp;
+
+import swp.grammar.Grammar;
+import swp.grammar.GrammarBuilder;
+import swp.lexer.automata.AutomatonLexer;
+import swp.lexer.automata.LexerDescriptionParser;
+import swp.lexer.automata.Table;
+import swp.parser.examples.MiniJava;
+import swp.parser.glr.GLRParser;
+import swp.parser.glr.SPPFNode;
+import swp.parser.lr.Graph;
+import swp.parser.lr.LRAlgorithm;
+import swp.parser.lr.LRParser;
+import swp.parser.lr.LRParserTable;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GLRParserTest {
+
+	static final String CALCULATOR_LEXER = "N = [0-9]+; P = \\+; M = \\*; L = \\(; R = \\)";
+
+	@org.junit.Test
+	public void sameAstAsLRParser() throws Exception {
+		Parsers parsers = new Parsers(CALCULATOR_LEXER, builder -> builder
+				.add("E", "E", "P", "T").add("E", "T")
+				.add("T", "T", "M", "F").add("T", "F")
+				.add("F", "N").add("F", "L", "E", "R"), "E");
+		assertTrue(parsers.table.conflicts.isEmpty());
+		for (String input : new String[]{"1", "1 + 2", "1 + 2 * 3 + 4", "(1 + 2) * 3", "((1))"}){
+			assertEquals(input, parsers.parseLR(input), parsers.parseGLR(input));
+			assertFalse(input, parsers.parseForest(input).containsAmbiguities());
+		}
+	}
+
+	@org.junit.Test
+	public void sameAstAsLRParserForMiniJava() throws Exception {
+		MiniJava miniJava = new MiniJava();
+		String program = ParallelAutomatonLexerTest.MINI_JAVA_PROGRAM;
+		SPPFNode forest = miniJava.generator.parseForest(program);
+		assertFalse(forest.containsAmbiguities());
+		assertEquals(miniJava.generator.parse(program).toPrettyString(),
+				forest.toAST(miniJava.generator.getGrammar()).toPrettyString());
+	}
+
+	@org.junit.Test
+	public void ambiguousGrammar() throws Exception {
+		Parsers parsers = new Parsers(CALCULATOR_LEXER, builder -> builder
+				.add("E", "E", "P", "E").add("E", "E", "M", "E").add("E", "N"), "E");
+		assertFalse(parsers.table.conflicts.isEmpty());
+		assertEquals(1L, countTrees(parsers.parseForest("1 + 2")));
+		assertEquals(2L, countTrees(parsers.parseForest("1 + 2 + 3")));
+		assertEquals(5L, countTrees(parsers.parseForest("1 + 2 * 3 + 4")));
+		assertTrue(parsers.parseForest("1 + 2 + 3").containsAmbiguities());
+	}
+
+	@org.junit.Test
+	public void emptyProductions() throws Exception {
+		Parsers parsers = new Parsers("A = a", builder -> builder
+				.add("S", "S", "S").add("S", "A").add("S", ""), "S");
+		parsers.parseForest("");
+		parsers.parseForest("a a a");
+	}
+
+	@org.junit.Test
+	public void syntaxError() throws Exception {
+		Parsers parsers = new Parsers(CALCULATOR_LEXER, builder -> builder
+				.add("E", "E", "P", "E").add("E", "N"), "E");
+		for (String input : new String[]{"1 +", "1 + + 2", "+"}){
+			try {
+				parsers.parseForest(input);
+				assertTrue(String.format("Parsing \"%s\" shouldn't be possible", input), false);
+			} catch (SWPException exception){
+				assertTrue(exception.getMessage(), exception.getMessage().startsWith("Unexpected"));
+			}
+		}
+	}
+
+	/**
+	 * Number of parse trees in the passed forest
+	 */
+	static long countTrees(SPPFNode node){
+		return countTrees(node, new IdentityHashMap<>());
+	}
+
+	private static long countTrees(SPPFNode node, Map<SPPFNode, Long> counts){
+		if (node.isTerminal()){
+			return 1;
+		}
+		if (!counts.containsKey(node)){
+			long count = 0;
+			for (SPPFNode.Alternative alternative : node.alternatives){
+				long product = 1;
+				for (SPPFNode child : alternative.children){
+					product *= countTrees(child, counts);
+				}
+				count += product;
+			}
+			counts.put(node, count);
+		}
+		return counts.get(node);
+	}
+
+	/**
+	 * Lexer and parser table of a small grammar
+	 */
+	static class Parsers {
+
+		final Table lexerTable;
+		final Grammar grammar;
+		final LRParserTable table;
+
+		Parsers(String lexerDescription, Consumer<GrammarBuilder> rules, String start){
+			lexerTable = new LexerDescriptionParser().eval(lexerDescription);
+			GrammarBuilder builder = new GrammarBuilder(lexerTable.terminalSet);
+			rules.accept(builder);
+			grammar = builder.toGrammar(start);
+			table = Graph.createFromGrammar(grammar, LRAlgorithm.LALR).toParserTable();
+		}
+
+		AutomatonLexer lexer(String input){
+			return new AutomatonLexer(lexerTable, input, new int[]{' '});
+		}
+
+		String parseLR(String input){
+			return new LRParser(grammar, lexer(input), table).parse().toString();
+		}
+
+		String parseGLR(String input){
+			return new GLRParser(grammar, lexer(input), table).parse().toString();
+		}
+
+		SPPFNode parseForest(String input){
+			return new GLRParser(grammar, lexer(input), table).parseForest();
+		}
+	}
+}
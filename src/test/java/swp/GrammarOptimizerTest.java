@@ -0,0 +1,87 @@
+package swp;
+
+import swp.grammar.ExtGrammarBuilder;
+import swp.grammar.Grammar;
+import swp.grammar.GrammarOptimizer;
+import swp.lexer.automata.AutomatonLexer;
+import swp.lexer.automata.LexerDescriptionParser;
+import swp.lexer.automata.Table;
+import swp.parser.examples.MiniJava;
+import swp.parser.lr.Graph;
+import swp.parser.lr.LRAlgorithm;
+import swp.parser.lr.LRParser;
+import swp.parser.lr.LRParserTable;
+import swp.parser.lr.ListAST;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GrammarOptimizerTest {
+
+	private final Table lexerTable = new LexerDescriptionParser().eval("A = a; B = b; C = c; D = d; E = e");
+
+	@org.junit.Test
+	public void sameAsts() throws Exception {
+		Grammar grammar = createGrammar();
+		int productions = grammar.getProductions().size();
+		GrammarOptimizer optimizer = new GrammarOptimizer(GrammarOptimizer.Pass.values());
+		Grammar optimized = optimizer.optimize(grammar);
+		assertEquals("the passed grammar isn't modified", productions, grammar.getProductions().size());
+		assertTrue(optimized.getProductions().size() < productions);
+		for (String input : new String[]{"d a b a b", "d c b c b", "e a b c", "e a b", "e a", "e a c"}){
+			assertEquals(input, parse(grammar, input), parse(optimized, input));
+		}
+	}
+
+	@org.junit.Test
+	public void changes() throws Exception {
+		GrammarOptimizer optimizer = new GrammarOptimizer(GrammarOptimizer.Pass.values());
+		optimizer.optimize(createGrammar());
+		assertTrue(optimizer.getChanges(GrammarOptimizer.Pass.REMOVE_USELESS)
+				.contains("removed unproductive non terminal dead"));
+		assertTrue(optimizer.getChanges(GrammarOptimizer.Pass.MERGE_DUPLICATES)
+				.contains("merged non terminal x2 into x"));
+		assertEquals(1, optimizer.getChanges(GrammarOptimizer.Pass.INLINE_SINGLE_USE).size());
+		assertTrue(optimizer.getChanges(GrammarOptimizer.Pass.INLINE_SINGLE_USE).get(0)
+				.startsWith("inlined non terminal y"));
+		assertEquals(2, optimizer.getChanges(GrammarOptimizer.Pass.LEFT_FACTOR).size());
+	}
+
+	@org.junit.Test
+	public void miniJava() throws Exception {
+		MiniJava miniJava = new MiniJava();
+		String program = ParallelAutomatonLexerTest.MINI_JAVA_PROGRAM;
+		Grammar grammar = miniJava.generator.getGrammar();
+		GrammarOptimizer optimizer = new GrammarOptimizer(GrammarOptimizer.Pass.values());
+		Grammar optimized = optimizer.optimize(grammar);
+		assertTrue(optimized.getProductions().size() < grammar.getProductions().size());
+		assertEquals(1, optimizer.getChanges(GrammarOptimizer.Pass.LEFT_FACTOR).size());
+		assertTrue(optimizer.getChanges(GrammarOptimizer.Pass.LEFT_FACTOR).get(0).startsWith("skipped"));
+		LRParserTable table = Graph.createFromGrammar(optimized, LRAlgorithm.LALR).toParserTable();
+		assertEquals(miniJava.generator.parse(program).toPrettyString(),
+				new LRParser(optimized, miniJava.generator.createLexer(program), table).parse().toPrettyString());
+	}
+
+	private Grammar createGrammar(){
+		ExtGrammarBuilder builder = new ExtGrammarBuilder(lexerTable.terminalSet);
+		builder.addRule("s", "D x y dead")
+				.addRule("s", "D x y")
+				.addRule("s", "E A B C", asts -> new ListAST(asts))
+				.addRule("s", "E A B", asts -> asts.get(1))
+				.addRule("s", "E A C?")
+				.addRule("s", "E A C?")
+				.addRule("x", "A")
+				.addRule("x", "C")
+				.addRule("x2", "A")
+				.addRule("x2", "C")
+				.addRule("y", "B x2 B")
+				.addRule("dead", "dead A")
+				.addRule("unused", "A");
+		return builder.toGrammar("s");
+	}
+
+	private String parse(Grammar grammar, String input){
+		LRParserTable table = Graph.createFromGrammar(grammar, LRAlgorithm.LALR).toParserTable();
+		return new LRParser(grammar, new AutomatonLexer(lexerTable, input, new int[]{' '}), table).parse().toString();
+	}
+}
@@ -0,0 +1,104 @@
+package swp;
+
+import swp.lexer.automata.AutomatonLexer;
+import swp.lexer.automata.KeywordTable;
+import swp.lexer.automata.LexerDescriptionParser;
+import swp.lexer.automata.ParallelAutomatonLexer;
+import swp.lexer.automata.Table;
+import swp.util.Pair;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class KeywordTableTest {
+
+	private static final String[] JAVA_KEYWORDS = ("abstract assert boolean break byte case catch char class const " +
+			"continue default do double else enum extends final finally float for goto if implements import " +
+			"instanceof int interface long native new package private protected public return short static " +
+			"strictfp super switch synchronized this throw throws transient try void volatile while").split(" ");
+
+	private static final int HOST_TYPE = 1;
+
+	@org.junit.Test
+	public void classify() throws Exception {
+		Map<String, Integer> keywords = new HashMap<>();
+		for (int i = 0; i < JAVA_KEYWORDS.length; i++){
+			keywords.put(JAVA_KEYWORDS[i], i + 10);
+		}
+		KeywordTable table = new KeywordTable(keywords, Arrays.asList(HOST_TYPE, 3));
+		assertEquals(JAVA_KEYWORDS.length, table.size());
+		assertTrue(table.isHostType(HOST_TYPE));
+		assertTrue(table.isHostType(3));
+		assertFalse(table.isHostType(2));
+		assertFalse(table.isHostType(100));
+		for (String keyword : keywords.keySet()){
+			assertEquals(keyword, (int) keywords.get(keyword), table.classify(keyword, HOST_TYPE));
+			assertEquals("only tokens of host types are keywords", 2, table.classify(keyword, 2));
+			// prefixes, extensions and variations of keywords aren't keywords
+			for (String identifier : new String[]{keyword.substring(1), keyword + "s", keyword + "_",
+					"_" + keyword, keyword.toUpperCase(), keyword.substring(0, keyword.length() - 1) + "x"}){
+				if (!keywords.containsKey(identifier)){
+					assertEquals(identifier, HOST_TYPE, table.classify(identifier, HOST_TYPE));
+				}
+			}
+		}
+		assertEquals(HOST_TYPE, table.classify("", HOST_TYPE));
+		// a keyword inside of a larger input
+		byte[] input = "x = new int".getBytes(StandardCharsets.ISO_8859_1);
+		assertEquals((int) keywords.get("new"), table.classify(input, 4, 7, HOST_TYPE));
+		assertEquals(HOST_TYPE, table.classify(input, 4, 8, HOST_TYPE));
+		assertEquals((int) keywords.get("int"), table.classify(input, 8, 11, HOST_TYPE));
+	}
+
+	@org.junit.Test
+	public void smallTables() throws Exception {
+		KeywordTable empty = new KeywordTable(new HashMap<>(), new ArrayList<>());
+		assertEquals(0, empty.size());
+		assertEquals(HOST_TYPE, empty.classify("if", HOST_TYPE));
+		Map<String, Integer> keywords = new HashMap<>();
+		keywords.put("if", 5);
+		KeywordTable single = new KeywordTable(keywords, Arrays.asList(HOST_TYPE));
+		assertEquals(5, single.classify("if", HOST_TYPE));
+		assertEquals(HOST_TYPE, single.classify("fi", HOST_TYPE));
+		assertEquals("{if => 5}", single.toString());
+	}
+
+	/**
+	 * The lexer produces the same tokens with and without hashed keywords
+	 */
+	@org.junit.Test
+	public void sameTokensAsAutomaton() throws Exception {
+		List<Pair<String, String>> terminals = new ArrayList<>();
+		terminals.add(new Pair<>("WS", "[\\s]+"));
+		for (String keyword : JAVA_KEYWORDS){
+			terminals.add(new Pair<>("KW_" + keyword.toUpperCase(), keyword));
+		}
+		// declared twice: only the first terminal is matched
+		terminals.add(new Pair<>("DUPLICATE_IF", "if"));
+		terminals.add(new Pair<>("ID", "[a-z_][a-z_0-9]*"));
+		// declared after the identifier: never matched
+		terminals.add(new Pair<>("LATE", "foo"));
+		Table automaton = new LexerDescriptionParser().eval(terminals, false, false);
+		Table hashed = new LexerDescriptionParser().eval(terminals, false, true);
+		assertNull(automaton.keywords);
+		assertEquals(JAVA_KEYWORDS.length, hashed.keywords.size());
+		assertTrue(hashed.stateCount() * 10 < automaton.stateCount());
+		String input = String.join(" ", JAVA_KEYWORDS) + " foo iff if_ x ifx if\n\tdo_ while1 _int int";
+		String expected = ParallelAutomatonLexerTest.formatTokens(new AutomatonLexer(automaton, input, new int[0]));
+		assertTrue(expected.contains("KW_IF[") && !expected.contains("DUPLICATE_IF") && !expected.contains("LATE"));
+		for (Table table : new Table[]{hashed, hashed.compress(), hashed.compact()}){
+			assertEquals(expected, ParallelAutomatonLexerTest.formatTokens(new AutomatonLexer(table, input, new int[0])));
+			assertEquals(expected, ParallelAutomatonLexerTest.formatTokens(
+					new ParallelAutomatonLexer(table, input.getBytes(StandardCharsets.ISO_8859_1), new int[0], 16)));
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package swp;
+
+import swp.parser.SyntaxError;
+import swp.parser.ll.LLParser;
+import swp.parser.ll.LLParserTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LLParserTest {
+
+	static final String LEXER = "A = a; B = b; C = c; X = x; Y = y";
+
+	@org.junit.Test
+	public void sameAstAsLRParser() throws Exception {
+		GLRParserTest.Parsers parsers = new GLRParserTest.Parsers(LEXER, builder -> builder
+				.add("S", "X", "T").add("S", "Y", "T", "B").add("T", "A").add("T", ""), "S");
+		for (int k = 1; k <= 3; k++){
+			checkSameAst(parsers, k, "x", "x a", "y b", "y a b");
+		}
+		checkSameAst(parsers, LLParserTable.fromGrammar(parsers.grammar), "x", "x a", "y b", "y a b");
+	}
+
+	@org.junit.Test
+	public void lookaheadOfTwoTokens() throws Exception {
+		GLRParserTest.Parsers parsers = new GLRParserTest.Parsers(LEXER, builder -> builder
+				.add("S", "A", "B").add("S", "A", "C"), "S");
+		for (int k = 1; k <= 3; k++){
+			checkSameAst(parsers, k, "a b", "a c");
+			checkSyntaxError(parsers, k, "a", "a x");
+		}
+	}
+
+	/**
+	 * The alternatives of S can't be distinguished with a fixed number of tokens
+	 */
+	@org.junit.Test
+	public void adaptivePrediction() throws Exception {
+		GLRParserTest.Parsers parsers = new GLRParserTest.Parsers(LEXER, builder -> builder
+				.add("S", "I", "S").add("S", "").add("I", "L", "X").add("I", "L", "Y")
+				.add("L", "A", "L").add("L", ""), "S");
+		for (int k = 1; k <= 2; k++){
+			checkSameAst(parsers, k, "", "x", "a a a x", "a a y a x", "a a a a a a y y x");
+			checkSyntaxError(parsers, k, "a a a", "a a b");
+		}
+	}
+
+	/**
+	 * Parsers on different threads share the table, each of them uses its own adaptive prediction cache
+	 */
+	@org.junit.Test
+	public void sharedByThreads() throws Exception {
+		GLRParserTest.Parsers parsers = new GLRParserTest.Parsers(LEXER, builder -> builder
+				.add("S", "I", "S").add("S", "").add("I", "L", "X").add("I", "L", "Y")
+				.add("L", "A", "L").add("L", ""), "S");
+		LLParserTable table = LLParserTable.fromGrammar(parsers.grammar, 1);
+		List<String> inputs = new ArrayList<>();
+		List<String> expected = new ArrayList<>();
+		Random random = new Random(3);
+		for (int i = 0; i < 40; i++){
+			StringBuilder input = new StringBuilder();
+			for (int j = random.nextInt(8); j > 0; j--){
+				input.append(random.nextInt(3) == 0 ? "x " : random.nextBoolean() ? "a " : "y ");
+			}
+			input.append("x");
+			inputs.add(input.toString());
+			expected.add(parsers.parseLR(input.toString()));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 4; i++){
+				futures.add(executor.submit(() -> {
+					for (int j = 0; j < 20; j++){
+						for (int l = 0; l < inputs.size(); l++){
+							assertEquals(expected.get(l), new LLParser(parsers.lexer(inputs.get(l)), table).parse().toString());
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures){
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * The syntax errors report the position of the unexpected token and the expected tokens
+	 */
+	@org.junit.Test
+	public void syntaxErrorDiagnostics() throws Exception {
+		GLRParserTest.Parsers parsers = new GLRParserTest.Parsers(LEXER, builder -> builder
+				.add("S", "X", "T").add("S", "Y", "T", "B").add("T", "A").add("T", ""), "S");
+		for (int k = 1; k <= 2; k++){
+			// no production for the token
+			checkDiagnostic(parsers, LLParserTable.fromGrammar(parsers.grammar, k), "y a c", 4, "[B]");
+			checkDiagnostic(parsers, LLParserTable.fromGrammar(parsers.grammar, k), "y c", 2, "[A, B, EOF]");
+			// unexpected terminal
+			checkDiagnostic(parsers, LLParserTable.fromGrammar(parsers.grammar, k), "x b", 2, "[EOF]");
+			checkDiagnostic(parsers, LLParserTable.fromGrammar(parsers.grammar, k), "y a a", 4, "[B]");
+			checkDiagnostic(parsers, LLParserTable.fromGrammar(parsers.grammar, k), "x a a", 4, "[EOF]");
+		}
+		// the second token of the lookahead doesn't match
+		GLRParserTest.Parsers twoTokens = new GLRParserTest.Parsers(LEXER, builder -> builder
+				.add("S", "A", "B").add("S", "A", "C"), "S");
+		checkDiagnostic(twoTokens, LLParserTable.fromGrammar(twoTokens.grammar, 2), "a x", 2, "[B, C]");
+	}
+
+	private void checkDiagnostic(GLRParserTest.Parsers parsers, LLParserTable table, String input, int column,
+	                             String expected){
+		try {
+			new LLParser(parsers.lexer(input), table).parse();
+			assertTrue(String.format("Parsing \"%s\" shouldn't be possible", input), false);
+		} catch (SyntaxError error){
+			assertEquals(input, 1, error.diagnostic.getLocation().line);
+			assertEquals(input, column, error.diagnostic.getLocation().column);
+			assertEquals(input, expected, error.diagnostic.getExpectedNames().toString());
+			assertEquals(input, -1, error.diagnostic.state);
+			assertTrue(error.getMessage(), error.getMessage().endsWith(", expected " + expected));
+		}
+	}
+
+	@org.junit.Test
+	public void leftRecursion() throws Exception {
+		GLRParserTest.Parsers parsers = new GLRParserTest.Parsers(LEXER, builder -> builder
+				.add("S", "S", "A").add("S", "A"), "S");
+		try {
+			LLParserTable.fromGrammar(parsers.grammar, 1);
+			assertTrue("Left recursive grammars aren't LL(k)", false);
+		} catch (SWPException exception){
+			assertEquals("Non terminal S is left recursive", exception.getMessage());
+		}
+	}
+
+	private void checkSameAst(GLRParserTest.Parsers parsers, int k, String... inputs){
+		checkSameAst(parsers, LLParserTable.fromGrammar(parsers.grammar, k), inputs);
+	}
+
+	private void checkSameAst(GLRParserTest.Parsers parsers, LLParserTable table, String... inputs){
+		for (String input : inputs){
+			assertEquals(String.format("Parsing \"%s\" with k = %d", input, table.k), parsers.parseLR(input),
+					new LLParser(parsers.lexer(input), table).parse().toString());
+		}
+	}
+
+	private void checkSyntaxError(GLRParserTest.Parsers parsers, int k, String... inputs){
+		LLParserTable table = LLParserTable.fromGrammar(parsers.grammar, k);
+		for (String input : inputs){
+			try {
+				new LLParser(parsers.lexer(input), table).parse();
+				assertTrue(String.format("Parsing \"%s\" shouldn't be possible", input), false);
+			} catch (SWPException exception){
+				assertTrue(exception.getMessage(), exception.getMessage().startsWith("Unexpected"));
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package swp;
+
+import swp.grammar.Grammar;
+import swp.parser.lr.ConflictReport;
+import swp.parser.lr.Graph;
+import swp.parser.lr.LRAlgorithm;
+import swp.parser.lr.LRParser;
+import swp.parser.lr.LRParserTable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LRGraphTest {
+
+	static final String LEXER = "A = a; B = b; C = c; D = d; E = e; EQ = \\=; STAR = \\*; ID = i; IF = f; ELSE = l";
+
+	/**
+	 * LR(1) grammar that isn't LALR(1)
+	 */
+	private final GLRParserTest.Parsers lr1 = new GLRParserTest.Parsers(LEXER, builder -> builder
+			.add("s", "A", "e", "C").add("s", "A", "f", "D").add("s", "B", "f", "C").add("s", "B", "e", "D")
+			.add("e", "E").add("f", "E"), "s");
+
+	/**
+	 * LALR(1) grammar that isn't SLR(1)
+	 */
+	private final GLRParserTest.Parsers lalr = new GLRParserTest.Parsers(LEXER, builder -> builder
+			.add("s", "l", "EQ", "r").add("s", "r").add("l", "STAR", "r").add("l", "ID").add("r", "l"), "s");
+
+	private final GLRParserTest.Parsers danglingElse = new GLRParserTest.Parsers(LEXER, builder -> builder
+			.add("s", "IF", "s").add("s", "IF", "s", "ELSE", "s").add("s", "A"), "s");
+
+	@org.junit.Test
+	public void algorithms() throws Exception {
+		assertTrue(hasConflicts(lr1.grammar, LRAlgorithm.SLR));
+		assertTrue(hasConflicts(lr1.grammar, LRAlgorithm.LALR));
+		assertFalse(hasConflicts(lr1.grammar, LRAlgorithm.LR1));
+		assertFalse(hasConflicts(lr1.grammar, LRAlgorithm.PAGER));
+		assertTrue(hasConflicts(lalr.grammar, LRAlgorithm.SLR));
+		assertFalse(hasConflicts(lalr.grammar, LRAlgorithm.LALR));
+		assertEquals(states(lalr.grammar, LRAlgorithm.SLR), states(lalr.grammar, LRAlgorithm.LALR));
+		assertEquals(states(lalr.grammar, LRAlgorithm.LALR), states(lalr.grammar, LRAlgorithm.PAGER));
+		assertTrue(states(lalr.grammar, LRAlgorithm.LALR) < states(lalr.grammar, LRAlgorithm.LR1));
+	}
+
+	@org.junit.Test
+	public void createWithoutConflicts() throws Exception {
+		LRAlgorithm[] algorithms = {LRAlgorithm.SLR, LRAlgorithm.LALR, LRAlgorithm.PAGER};
+		assertEquals(LRAlgorithm.LALR, Graph.createWithoutConflicts(lalr.grammar, algorithms).algorithm);
+		// the table that has been checked for conflicts is reused once, every call returns a table of its own
+		Graph lalrGraph = Graph.createWithoutConflicts(lalr.grammar, algorithms);
+		LRParserTable checked = lalrGraph.toParserTable();
+		LRParserTable rebuilt = lalrGraph.toParserTable();
+		assertTrue(checked != rebuilt);
+		assertEquals(rebuilt.actionTable, checked.actionTable);
+		assertEquals(rebuilt.gotoTable, checked.gotoTable);
+		Graph graph = Graph.createWithoutConflicts(lr1.grammar, algorithms);
+		assertEquals(LRAlgorithm.PAGER, graph.algorithm);
+		LRParserTable table = graph.toParserTable();
+		LRParserTable lr1Table = Graph.createFromGrammar(lr1.grammar, LRAlgorithm.LR1).toParserTable();
+		for (String input : new String[]{"a e c", "a e d", "b e c", "b e d"}){
+			assertEquals(input, new LRParser(lr1.grammar, lr1.lexer(input), lr1Table).parse().toString(),
+					new LRParser(lr1.grammar, lr1.lexer(input), table).parse().toString());
+		}
+		assertEquals("the last algorithm is used if all tables have conflicts", LRAlgorithm.LALR,
+				Graph.createWithoutConflicts(danglingElse.grammar, LRAlgorithm.SLR, LRAlgorithm.LALR).algorithm);
+	}
+
+	@org.junit.Test
+	public void conflictReport() throws Exception {
+		assertNull(Graph.createFromGrammar(lalr.grammar, LRAlgorithm.LALR).toParserTable().conflictReport);
+		ConflictReport report = Graph.createFromGrammar(danglingElse.grammar, LRAlgorithm.LALR).toParserTable().conflictReport;
+		assertEquals(1, report.conflicts.size());
+		assertEquals(1, report.countShiftReduceConflicts());
+		ConflictReport.Conflict conflict = report.conflicts.get(0);
+		assertEquals("shift/reduce", conflict.getKind());
+		assertEquals("ELSE", conflict.terminal.terminalSet.typeToString(conflict.terminal.id));
+		assertEquals(2, conflict.situations.size());
+		assertEquals("[<IF>, <A>]", conflict.example.toString());
+		report = Graph.createFromGrammar(lr1.grammar, LRAlgorithm.LALR).toParserTable().conflictReport;
+		assertEquals(2, report.countReduceReduceConflicts());
+		for (ConflictReport.Conflict reduceReduce : report.conflicts){
+			assertEquals("reduce/reduce", reduceReduce.getKind());
+			assertEquals(2, reduceReduce.situations.size());
+			assertEquals(2, reduceReduce.example.size());
+		}
+	}
+
+	private static boolean hasConflicts(Grammar grammar, LRAlgorithm algorithm){
+		return Graph.createFromGrammar(grammar, algorithm).toParserTable().hasConflicts();
+	}
+
+	private static int states(Grammar grammar, LRAlgorithm algorithm){
+		return Graph.createFromGrammar(grammar, algorithm).states.size();
+	}
+}
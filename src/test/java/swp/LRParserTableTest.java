@@ -0,0 +1,47 @@
+package swp;
+
+import swp.parser.examples.MiniJava;
+import swp.parser.lr.Graph;
+import swp.parser.lr.LRAlgorithm;
+import swp.parser.lr.LRParser;
+import swp.parser.lr.LRParserTable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LRParserTableTest {
+
+	@org.junit.Test
+	public void eliminateUnitReductions() throws Exception {
+		GLRParserTest.Parsers parsers = new GLRParserTest.Parsers(GLRParserTest.CALCULATOR_LEXER, builder -> builder
+				.add("E", "E", "P", "T").add("E", "T")
+				.add("T", "T", "M", "F").add("T", "F")
+				.add("F", "N").add("F", "L", "E", "R"), "E");
+		LRParserTable table = Graph.createFromGrammar(parsers.grammar, LRAlgorithm.LALR).toParserTable();
+		assertTrue(table.eliminateUnitReductions() > 0);
+		assertEquals("a second pass doesn't find anything to rewrite", 0, table.eliminateUnitReductions());
+		for (String input : new String[]{"1", "1 + 2", "1 + 2 * 3 + 4", "(1 + 2) * 3", "((1))"}){
+			assertEquals(input, parsers.parseLR(input),
+					new LRParser(parsers.grammar, parsers.lexer(input), table).parse().toString());
+		}
+		for (String input : new String[]{"1 +", "1 + + 2", "(1", "1 2 3 )"}){
+			try {
+				new LRParser(parsers.grammar, parsers.lexer(input), table).parse();
+				assertTrue(String.format("Parsing \"%s\" shouldn't be possible", input), false);
+			} catch (SWPException exception){
+				assertTrue(exception.getMessage(), exception.getMessage().startsWith("Unexpected"));
+			}
+		}
+	}
+
+	@org.junit.Test
+	public void eliminateUnitReductionsForMiniJava() throws Exception {
+		MiniJava miniJava = new MiniJava();
+		String program = ParallelAutomatonLexerTest.MINI_JAVA_PROGRAM;
+		LRParserTable table = Graph.createFromGrammar(miniJava.generator.getGrammar(), LRAlgorithm.LALR).toParserTable();
+		assertTrue(table.eliminateUnitReductions() > 0);
+		assertEquals(miniJava.generator.parse(program).toPrettyString(),
+				new LRParser(miniJava.generator.getGrammar(), miniJava.generator.createLexer(program), table)
+						.parse().toPrettyString());
+	}
+}
@@ -0,0 +1,116 @@
+package swp;
+
+import swp.lexer.automata.Automaton;
+import swp.lexer.automata.AutomatonLexer;
+import swp.lexer.automata.LazyTable;
+import swp.lexer.automata.ParallelAutomatonLexer;
+import swp.lexer.automata.Table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LazyTableTest {
+
+	private final Table eager = createAutomaton().toDeterministicVersion().toTable();
+
+	private final String input = createInput(new Random(42), 200);
+
+	@org.junit.Test
+	public void sameTokens() throws Exception {
+		String expected = ParallelAutomatonLexerTest.formatTokens(new AutomatonLexer(eager, input, new int[0]));
+		assertTrue(eager.stateCount() > 32 && expected.endsWith("EOF[1:" + input.length() + "](\0)"));
+		LazyTable large = new LazyTable(createAutomaton());
+		assertEquals(expected, ParallelAutomatonLexerTest.formatTokens(new AutomatonLexer(large, input, new int[0])));
+		assertEquals(expected, ParallelAutomatonLexerTest.formatTokens(new ParallelAutomatonLexer(large, input, new int[0])));
+		assertEquals(expected, ParallelAutomatonLexerTest.formatTokens(new AutomatonLexer(large.toTable(), input, new int[0])));
+		assertEquals(eager.stateCount(), large.toTable().stateCount());
+	}
+
+	/**
+	 * A small cache is flushed while lexing, after too many flushes the table simulates the automaton
+	 */
+	@org.junit.Test
+	public void flushes() throws Exception {
+		String expected = ParallelAutomatonLexerTest.formatTokens(new AutomatonLexer(eager, input, new int[0]));
+		for (int maxFlushes : new int[]{1000000, 2}){
+			LazyTable table = new LazyTable(createAutomaton(), 4, maxFlushes).forLexer();
+			int state = table.initialState;
+			for (int i = 0; i < input.length() && state != -1; i++){
+				state = input.charAt(i) == ' ' ? table.initialState : table.next(state, input.charAt(i));
+				assertTrue(state < 4 && table.stateCount() <= 4);
+			}
+			assertTrue(table.getFlushCount() > 2);
+			assertEquals(maxFlushes == 2, table.simulatesAutomaton());
+			assertEquals(expected, ParallelAutomatonLexerTest.formatTokens(new AutomatonLexer(table, input, new int[0])));
+		}
+	}
+
+	/**
+	 * Every lexer uses its own cache
+	 */
+	@org.junit.Test
+	public void sharedByThreads() throws Exception {
+		LazyTable table = new LazyTable(createAutomaton(), 4, 1000000);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 4; i++){
+				Random random = new Random(i);
+				futures.add(executor.submit(() -> {
+					for (int j = 0; j < 50; j++){
+						String threadInput = createInput(random, 20);
+						assertEquals(ParallelAutomatonLexerTest.formatTokens(new AutomatonLexer(eager, threadInput, new int[0])),
+								ParallelAutomatonLexerTest.formatTokens(new AutomatonLexer(table, threadInput, new int[0])));
+					}
+				}));
+			}
+			for (Future<?> future : futures){
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals("lexers don't change the shared table", 1, table.stateCount());
+		assertFalse(table.simulatesAutomaton());
+	}
+
+	/**
+	 * (a|b)*a(a|b)(a|b)(a|b)(a|b): the deterministic automaton has many states, most of them are rarely used
+	 */
+	private static Automaton createAutomaton(){
+		Automaton automaton = new Automaton();
+		automaton.addTerminal("EOF", mn -> mn.append('\0'));
+		automaton.addTerminal("WS", mn -> mn.append(' ').plus());
+		automaton.addTerminal("X", mn -> {
+			mn = mn.append(mn.create('a', 'b').star()).append('a');
+			for (int i = 0; i < 4; i++){
+				mn = mn.append('a', 'b');
+			}
+			return mn;
+		});
+		return automaton;
+	}
+
+	private static String createInput(Random random, int words){
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < words; i++){
+			for (int j = random.nextInt(20); j > 0; j--){
+				builder.append(random.nextBoolean() ? 'a' : 'b');
+			}
+			builder.append('a');
+			for (int j = 0; j < 4; j++){
+				builder.append(random.nextBoolean() ? 'a' : 'b');
+			}
+			builder.append(' ');
+		}
+		return builder.toString();
+	}
+}
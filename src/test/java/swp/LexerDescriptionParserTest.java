@@ -1,6 +1,8 @@
 package swp;
 
+import swp.lexer.Checkpoint;
 import swp.lexer.Lexer;
+import swp.lexer.LexerError;
 import swp.lexer.automata.AutomatonLexer;
 import swp.lexer.automata.LexerDescriptionParser;
 import swp.lexer.automata.Table;
@@ -110,6 +112,40 @@ public class LexerDescriptionParserTest {
 		checkLexable("A = a{1,}{2,}", "aa", "A");
 	}
 
+	@org.junit.Test
+	public void markAndReset() throws Exception {
+		Lexer lexer = createLexer("A = a+; B = b; N = [\\n]; C = /\\*([^*]|\\*[^/])*\\*/", "aa b\n /* a\n */ b a");
+		for (int i = 0; i < 4; i++){
+			lexer.next();
+		}
+		Checkpoint checkpoint = lexer.mark();
+		String tokens = formatLexerTokens(lexer);
+		lexer.reset(checkpoint);
+		assertEquals(checkpoint.line, lexer.cur().location.line);
+		assertEquals(checkpoint.column, lexer.cur().location.column);
+		assertEquals(tokens, formatLexerTokens(lexer));
+	}
+
+	@org.junit.Test
+	public void resetIsLazy() throws Exception {
+		Lexer lexer = createLexer("A = a+; B = b", "aa b aaa #");
+		lexer.next();
+		Checkpoint checkpoint = lexer.mark();
+		lexer.next();
+		lexer.reset(checkpoint);
+		assertEquals("B[1:3](b)", lexer.next().toString());
+		lexer.reset(checkpoint);
+		assertEquals("A[1:0](aa)", lexer.cur().toString());
+		// the token at the checkpoint can't be lexed, but reset doesn't lex it
+		lexer.reset(new Checkpoint(0, 9, 1, 9));
+		try {
+			lexer.cur();
+			assertTrue("The character # can't be lexed", false);
+		} catch (LexerError error){
+			assertEquals(9, error.errorToken.location.column);
+		}
+	}
+
 	public void checkInvalidLexerGrammar(String lexerGrammar){
 		try {
 			createLexer(lexerGrammar, "");
@@ -0,0 +1,119 @@
+package swp;
+
+import swp.grammar.Production;
+import swp.parser.DiagnosticList;
+import swp.parser.lr.Generator;
+import swp.parser.lr.LRParser;
+import swp.util.CollectingMetrics;
+import swp.util.Metrics;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+	private final GLRParserTest.Parsers parsers = new GLRParserTest.Parsers(GLRParserTest.CALCULATOR_LEXER, builder -> builder
+			.add("E", "E", "P", "T").add("E", "T")
+			.add("T", "T", "M", "F").add("T", "F")
+			.add("F", "N").add("F", "L", "E", "R"), "E");
+
+	private final CollectingMetrics metrics = new CollectingMetrics();
+
+	@org.junit.Test
+	public void parserCounters() throws Exception {
+		Metrics.set(metrics);
+		try {
+			metrics.clear();
+			new LRParser(parsers.grammar, parsers.lexer("1 + 2 * 3"), parsers.table).parse();
+			assertEquals(5, metrics.getCount("parser.shifts"));
+			// F -> N three times, T -> F twice, T -> T M F, E -> T and E -> E P T once
+			assertEquals(8, metrics.getCount("parser.reductions"));
+			assertEquals(3, metrics.getCount(reductionCounter("F", 1)));
+			assertEquals(2, metrics.getCount(reductionCounter("T", 1)));
+			assertEquals(1, metrics.getCount(reductionCounter("T", 3)));
+			assertEquals(1, metrics.getCount(reductionCounter("E", 3)));
+			assertEquals(0, metrics.getCount(reductionCounter("F", 3)));
+			assertEquals(0, metrics.getCount("parser.errors"));
+			assertEquals(6, metrics.getCount("lexer.tokens"));
+			metrics.clear();
+			LRParser parser = new LRParser(parsers.grammar, parsers.lexer("1 + * 2 + + 3"), parsers.table);
+			parser.setDiagnosticCollector(new DiagnosticList());
+			parser.parse();
+			assertEquals(2, metrics.getCount("parser.errors"));
+			assertEquals(2, metrics.getCount("parser.recoveries"));
+		} finally {
+			Metrics.set(null);
+		}
+	}
+
+	/**
+	 * The parsers and lexers look the hook up when they are created
+	 */
+	@org.junit.Test
+	public void disabled() throws Exception {
+		LRParser parser = new LRParser(parsers.grammar, parsers.lexer("1 + 2"), parsers.table);
+		Metrics.set(metrics);
+		try {
+			metrics.clear();
+			parser.parse();
+			Metrics.set(null);
+			new LRParser(parsers.grammar, parsers.lexer("1 + 2"), parsers.table).parse();
+			Metrics.record("generator.cache_hits");
+			assertEquals("", metrics.toString());
+		} finally {
+			Metrics.set(null);
+		}
+	}
+
+	@org.junit.Test
+	public void generatorCache() throws Exception {
+		String id = "metrics_test_" + System.nanoTime();
+		Metrics.set(metrics);
+		try {
+			metrics.clear();
+			assertNotNull(generator(id).parse("1 + 2"));
+			assertEquals(1, metrics.getCount("generator.cache_misses"));
+			assertTrue(metrics.getTime("generator.lr_graph") > 0);
+			generator(id);
+			assertEquals(1, metrics.getCount("generator.cache_hits"));
+			assertEquals(1, metrics.getCount("generator.cache_misses"));
+			// evict the generator from the in memory cache (it holds 10 generators)
+			for (int i = 0; i < 10; i++){
+				generator(id + "_" + i);
+			}
+			metrics.clear();
+			assertNotNull(generator(id).parse("1 + 2"));
+			assertEquals(0, metrics.getCount("generator.cache_hits"));
+			assertEquals(Config.cacheInFile() ? 1 : 0, metrics.getCount("generator.file_cache_hits"));
+			assertEquals(Config.cacheInFile() ? 0 : 1, metrics.getCount("generator.cache_misses"));
+		} finally {
+			Metrics.set(null);
+			deleteCacheFiles(id);
+			for (int i = 0; i < 10; i++){
+				deleteCacheFiles(id + "_" + i);
+			}
+		}
+	}
+
+	private static Generator generator(String id){
+		return Generator.getCachedIfPossible(id, "N = [0-9]+; P = \\+; WS = [\\s]+", new String[]{"WS"},
+				builder -> builder.addRules("e = e P N | N;"), "e");
+	}
+
+	private static void deleteCacheFiles(String id){
+		new File(Config.getTmpDir() + "/" + id + "_lexer.ser").delete();
+		new File(Config.getTmpDir() + "/" + id + "_parser.ser").delete();
+	}
+
+	private String reductionCounter(String left, int rightSize){
+		for (Production production : parsers.grammar.getProductions()){
+			if (production.left.name.equals(left) && production.right.size() == rightSize){
+				return "parser.reductions[" + production + "]";
+			}
+		}
+		throw new AssertionError("No production " + left);
+	}
+}
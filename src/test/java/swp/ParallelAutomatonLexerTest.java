@@ -0,0 +1,100 @@
+package swp;
+
+import swp.lexer.Lexer;
+import swp.lexer.LexerError;
+import swp.lexer.Token;
+import swp.lexer.automata.AutomatonLexer;
+import swp.lexer.automata.LexerDescriptionParser;
+import swp.lexer.automata.ParallelAutomatonLexer;
+import swp.lexer.automata.Table;
+import swp.parser.examples.MiniJava;
+import swp.util.Pair;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelAutomatonLexerTest {
+
+	static final String GRAMMAR = "A = a+; B = b; N = [\\n]; C = /\\*([^*]|\\*[^/])*\\*/";
+
+	static final String MINI_JAVA_PROGRAM = "class A {\n public int x; /* comment */\n" +
+			" public int f(int a, int b) { int c = a + b * 2; if (c < 3) { return c; } else return -c; }\n" +
+			" public static void main(String[] args) { System.out.println(new A().f(1)); }\n}\n";
+
+	@org.junit.Test
+	public void sameTokensAsAutomatonLexer() throws Exception {
+		Table table = new LexerDescriptionParser().eval(GRAMMAR);
+		for (String input : new String[]{"", "aa b\n /* a\n */ b a", "aaaa /* a */ ab ba", "aa b c a", "a /* a"}){
+			checkSameTokens(table, input, new int[]{' '});
+		}
+	}
+
+	@org.junit.Test
+	public void sameTokensForMiniJava() throws Exception {
+		Table table = miniJavaTable();
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 20; i++){
+			input.append(MINI_JAVA_PROGRAM);
+		}
+		checkSameTokens(table, input.toString(), new int[0]);
+		checkSameTokens(table, input + "class # x", new int[0]);
+	}
+
+	@org.junit.Test
+	public void nonAsciiCharacters() throws Exception {
+		Table table = new LexerDescriptionParser().eval(GRAMMAR);
+		checkSameTokens(table, "aa b \u00e4 a", new int[]{' '});
+	}
+
+	/**
+	 * Only the runs of ignored characters are stored, the locations have to be the same nonetheless
+	 */
+	@org.junit.Test
+	public void ignoredCharacterRuns() throws Exception {
+		Table table = new LexerDescriptionParser().eval(GRAMMAR);
+		for (String input : new String[]{"   ", "  aa   b\n  a /* a */  \n b  ", "a  b \n\n  a", " a c", "ab  \n a /*  "}){
+			checkSameTokens(table, input, new int[]{' '});
+			checkSameTokens(table, input, new int[]{' ', '\n'});
+		}
+	}
+
+	/**
+	 * Lexer table of the MiniJava terminals
+	 */
+	static Table miniJavaTable(){
+		List<Pair<String, String>> terminals = new ArrayList<>();
+		for (MiniJava.LexerTerminal terminal : MiniJava.LexerTerminal.values()){
+			if (terminal != MiniJava.LexerTerminal.EOF){
+				terminals.add(new Pair<>(terminal.name(), terminal.getTerminalDescription()));
+			}
+		}
+		return new LexerDescriptionParser().eval(terminals);
+	}
+
+	private void checkSameTokens(Table table, String input, int[] ignoredTokenTypes){
+		byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+		String expected = formatTokens(new AutomatonLexer(table, new ByteArrayInputStream(bytes), ignoredTokenTypes));
+		for (int chunkSize : new int[]{1, 3, 16, ParallelAutomatonLexer.DEFAULT_CHUNK_SIZE}){
+			assertEquals(String.format("Lexing \"%s\" with chunks of size %d", input, chunkSize), expected,
+					formatTokens(new ParallelAutomatonLexer(table, bytes, ignoredTokenTypes, chunkSize)));
+		}
+	}
+
+	static String formatTokens(Lexer lexer){
+		List<String> tokens = new ArrayList<>();
+		try {
+			Token token;
+			do {
+				token = lexer.next();
+				tokens.add(token.toString());
+			} while (token.type != 0);
+		} catch (LexerError error){
+			tokens.add(error.getMessage());
+		}
+		return String.join(" ", tokens);
+	}
+}
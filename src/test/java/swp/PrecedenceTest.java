@@ -0,0 +1,215 @@
+package swp;
+
+import swp.grammar.ExtGrammarBuilder;
+import swp.grammar.Grammar;
+import swp.grammar.GrammarBuilder;
+import swp.grammar.Precedence;
+import swp.lexer.TerminalSet;
+import swp.lexer.automata.AutomatonLexer;
+import swp.lexer.automata.LexerDescriptionParser;
+import swp.lexer.automata.Table;
+import swp.parser.lr.ASTLeaf;
+import swp.parser.lr.BaseAST;
+import swp.parser.lr.ConflictReport;
+import swp.parser.lr.CustomAST;
+import swp.parser.lr.Graph;
+import swp.parser.lr.LRAlgorithm;
+import swp.parser.lr.LRParser;
+import swp.parser.lr.LRParserTable;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrecedenceTest {
+
+	static final String LEXER = "N = [0-9]+; P = \\+; MI = \\-; M = \\*; E = \\^; LT = <; EQ = \\=; OR = \\|; " +
+			"AND = &; INV = \\!; F = \\?; L = \\(; R = \\); U = u; A = a; X = x; D = d";
+
+	private final Table lexerTable = new LexerDescriptionParser().eval(LEXER);
+
+	/**
+	 * Ambiguous expression grammar whose conflicts are resolved by precedences
+	 */
+	private final Grammar ambiguous = createAmbiguousGrammar();
+
+	@org.junit.Test
+	public void associativity() throws Exception {
+		LRParserTable table = table(ambiguous);
+		assertFalse(table.hasConflicts());
+		assertTrue(table.resolvedConflicts > 0);
+		checkConsistent(table);
+		assertEquals("((1 - 2) - 3)", parse(ambiguous, table, "1 - 2 - 3"));
+		assertEquals("(2 ^ (3 ^ 4))", parse(ambiguous, table, "2 ^ 3 ^ 4"));
+		assertEquals("((1 + (2 * 3)) + 4)", parse(ambiguous, table, "1 + 2 * 3 + 4"));
+		assertEquals("(1 < (2 + 3))", parse(ambiguous, table, "1 < 2 + 3"));
+	}
+
+	@org.junit.Test
+	public void nonAssociative() throws Exception {
+		LRParserTable table = table(ambiguous);
+		assertEquals("((1 + 2) < 3)", parse(ambiguous, table, "1 + 2 < 3"));
+		try {
+			parse(ambiguous, table, "1 < 2 < 3");
+			assertTrue("< is non associative", false);
+		} catch (SWPException exception){
+			assertTrue(exception.getMessage(), exception.getMessage().startsWith("Unexpected LT[1:6]"));
+		}
+	}
+
+	/**
+	 * The prefix minus uses the precedence of U (between * and ^) instead of the one of MI
+	 */
+	@org.junit.Test
+	public void rulePrecedence() throws Exception {
+		LRParserTable table = table(ambiguous);
+		assertEquals("((- 2) * 3)", parse(ambiguous, table, "- 2 * 3"));
+		assertEquals("(- (2 ^ 2))", parse(ambiguous, table, "- 2 ^ 2"));
+		assertEquals("(1 - (- 2))", parse(ambiguous, table, "1 - - 2"));
+	}
+
+	/**
+	 * After "a" the lookahead x allows a shift and the reductions a -> A and b -> A. Only the second reduction has
+	 * a precedence, it beats the shift (left associative) or removes it (non associative). The table and
+	 * the conflicts have to agree afterwards.
+	 */
+	@org.junit.Test
+	public void conflictsAfterResolution() throws Exception {
+		for (Precedence.Associativity associativity : new Precedence.Associativity[]{Precedence.Associativity.LEFT,
+				Precedence.Associativity.NON_ASSOC}){
+			GrammarBuilder builder = new GrammarBuilder(lexerTable.terminalSet);
+			builder.precedence(associativity, "X");
+			builder.add("s", "A", "X", "D").add("s", "a", "X", "s").add("s", "b", "X", "s").add("s", "D")
+					.add("a", "A").add("b", "A").rulePrecedence(lexerTable.terminalSet.stringToType("X"));
+			Grammar grammar = builder.toGrammar("s");
+			LRParserTable table = table(grammar);
+			checkConsistent(table);
+			assertTrue(table.resolvedConflicts > 0);
+			ConflictReport report = Graph.createFromGrammar(grammar, LRAlgorithm.LALR).toParserTable().conflictReport;
+			if (associativity == Precedence.Associativity.NON_ASSOC){
+				// only the reduction without precedence is left
+				assertFalse(table.hasConflicts());
+				new LRParser(grammar, new AutomatonLexer(lexerTable, "a x d", new int[]{' '}), table).parse();
+				continue;
+			}
+			assertEquals(1, table.conflicts.size());
+			Map<Integer, List<LRParserTable.Action>> conflictRow = table.conflicts.values().iterator().next();
+			assertEquals(1, conflictRow.size());
+			assertEquals((Integer) lexerTable.terminalSet.stringToType("X"), conflictRow.keySet().iterator().next());
+			for (LRParserTable.Action action : conflictRow.values().iterator().next()){
+				assertTrue(action.toString(), action instanceof LRParserTable.ReduceAction);
+			}
+			assertEquals(0, report.countShiftReduceConflicts());
+			assertEquals(1, report.countReduceReduceConflicts());
+		}
+	}
+
+	/**
+	 * The flat operator grammar (precedences) produces the same ASTs as the layered one (a non terminal per layer)
+	 */
+	@org.junit.Test
+	public void flatOperators() throws Exception {
+		Grammar layered = createOperatorGrammar(false);
+		Grammar flat = createOperatorGrammar(true);
+		assertTrue(flat.getProductions().size() < layered.getProductions().size());
+		LRParserTable layeredTable = table(layered);
+		LRParserTable flatTable = table(flat);
+		assertFalse(layeredTable.hasConflicts());
+		assertFalse(flatTable.hasConflicts());
+		checkConsistent(flatTable);
+		assertEquals("(1 = (2 = ((3 + (4 * 5)) - 6)))", parse(flat, flatTable, "1 = 2 = 3 + 4 * 5 - 6"));
+		assertEquals("(((- 1) * (! 2)) | ((3 < 4) & (5 ?)))", parse(flat, flatTable, "- 1 * ! 2 | 3 < 4 & 5 ?"));
+		for (String input : new String[]{"1", "1 + 2 + 3", "1 * 2 + 3 * 4", "1 = 2 | 3 & 4 = 5", "- - 1 ? ?",
+				"! 1 < 2 + - 3", "1 - 2 * 3 - 4", "(1 + 2) * 3 - 4", "1 < 2 = 3 | 4 & ! 5 * 6 ?",
+				"1 | 2 | 3 & 4 & 5", "- (1 = 2) ? * 3"}){
+			assertEquals(input, parse(layered, layeredTable, input), parse(flat, flatTable, input));
+		}
+	}
+
+	/**
+	 * Every action table entry is one of the possible actions, the conflicts contain only unresolved actions
+	 */
+	private static void checkConsistent(LRParserTable table){
+		for (int state = 0; state < table.actionTable.size(); state++){
+			for (Map.Entry<Integer, LRParserTable.Action> entry : table.actionTable.get(state).entrySet()){
+				List<LRParserTable.Action> actions = table.getActions(state, entry.getKey());
+				assertTrue(actions.contains(entry.getValue()));
+				assertTrue(actions.size() == 1 || table.conflicts.get(state).containsKey(entry.getKey()));
+			}
+		}
+		for (Map.Entry<Integer, Map<Integer, List<LRParserTable.Action>>> row : table.conflicts.entrySet()){
+			for (Map.Entry<Integer, List<LRParserTable.Action>> entry : row.getValue().entrySet()){
+				assertTrue(entry.getValue().size() > 1);
+				assertTrue(entry.getValue().contains(table.actionTable.get(row.getKey()).get(entry.getKey())));
+			}
+		}
+	}
+
+	private Grammar createAmbiguousGrammar(){
+		GrammarBuilder builder = new GrammarBuilder(lexerTable.terminalSet);
+		builder.precedence(Precedence.Associativity.NON_ASSOC, "LT")
+				.precedence(Precedence.Associativity.LEFT, "P", "MI")
+				.precedence(Precedence.Associativity.LEFT, "M")
+				.precedence(Precedence.Associativity.RIGHT, "U")
+				.precedence(Precedence.Associativity.RIGHT, "E");
+		for (String operator : new String[]{"LT", "P", "MI", "M", "E"}){
+			builder.add("e", "e", operator, "e").action(asts -> binary(asts.get(0), asts.get(1), asts.get(2)));
+		}
+		builder.add("e", "MI", "e").rulePrecedence(lexerTable.terminalSet.stringToType("U"))
+				.action(asts -> unary(asts.get(0), asts.get(1)));
+		builder.add("e", "N").action(asts -> number(asts.get(0)));
+		return builder.toGrammar("e");
+	}
+
+	/**
+	 * Operator layers like the ones of MiniJava, with an additional postfix operator
+	 */
+	private Grammar createOperatorGrammar(boolean flat){
+		TerminalSet terminals = lexerTable.terminalSet;
+		ExtGrammarBuilder builder = new ExtGrammarBuilder(terminals);
+		builder.addOperators("expression", "primary", operators -> {
+			if (flat){
+				operators.flat();
+			}
+			operators.defaultBinaryAction((asts, op) -> binary(asts.get(0), asts.get(1), asts.get(2)))
+					.defaultUnaryAction((asts, op) -> asts.get(0) instanceof ASTLeaf ?
+							unary(asts.get(0), asts.get(1)) : unary(asts.get(1), asts.get(0)))
+					.binaryRightAssociative(terminals.stringToType("EQ")).closeLayer()
+					.binary(terminals.stringToType("OR")).closeLayer()
+					.binary(terminals.stringToType("AND")).closeLayer()
+					.binary(terminals.stringToType("LT")).closeLayer()
+					.binary(terminals.stringToType("P")).binary(terminals.stringToType("MI")).closeLayer()
+					.binary(terminals.stringToType("M")).closeLayer()
+					.unary(terminals.stringToType("INV"), ExtGrammarBuilder.LEFT_OR_RIGHT.LEFT)
+					.unary(terminals.stringToType("MI"), ExtGrammarBuilder.LEFT_OR_RIGHT.LEFT).closeLayer()
+					.unary(terminals.stringToType("F"), ExtGrammarBuilder.LEFT_OR_RIGHT.RIGHT).closeLayer();
+		});
+		builder.addRule("primary", "N", asts -> number(asts.get(0)));
+		builder.addRule("primary", "L expression R", asts -> asts.get(1));
+		return builder.toGrammar("expression");
+	}
+
+	private static BaseAST binary(BaseAST left, BaseAST operator, BaseAST right){
+		return CustomAST.create("(" + left + " " + ((ASTLeaf) operator).token.value + " " + right + ")");
+	}
+
+	private static BaseAST unary(BaseAST operator, BaseAST operand){
+		String op = ((ASTLeaf) operator).token.value;
+		return CustomAST.create(op.equals("?") ? "(" + operand + " " + op + ")" : "(" + op + " " + operand + ")");
+	}
+
+	private static BaseAST number(BaseAST leaf){
+		return CustomAST.create(((ASTLeaf) leaf).token.value);
+	}
+
+	private static LRParserTable table(Grammar grammar){
+		return Graph.createFromGrammar(grammar, LRAlgorithm.LALR).toParserTable();
+	}
+
+	private String parse(Grammar grammar, LRParserTable table, String input){
+		return new LRParser(grammar, new AutomatonLexer(lexerTable, input, new int[]{' '}), table).parse().toString();
+	}
+}
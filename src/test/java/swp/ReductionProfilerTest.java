@@ -0,0 +1,119 @@
+package swp;
+
+import swp.grammar.Production;
+import swp.grammar.ReductionProfiler;
+import swp.parser.ll.LLParser;
+import swp.parser.ll.LLParserTable;
+import swp.parser.lr.ASTLeaf;
+import swp.parser.lr.CustomAST;
+import swp.parser.lr.LRParser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReductionProfilerTest {
+
+	static final String INPUT = "1 + 2 + (3) + 4 + 5 + 6 + 7 + 8 + 9 + 10";
+
+	/**
+	 * Number of the number reductions, every fifth of them sleeps
+	 */
+	private int numberCalls = 0;
+
+	private final GLRParserTest.Parsers parsers = new GLRParserTest.Parsers(GLRParserTest.CALCULATOR_LEXER, builder -> builder
+			.add("S", "E", "T").action(asts -> CustomAST.create("sum"))
+			.add("T", "P", "E", "T").action(asts -> CustomAST.create("+"))
+			.add("T", "")
+			.add("E", "L", "E", "R").action(asts -> asts.get(1))
+			.add("E", "N").action(asts -> {
+				if (numberCalls++ % 5 == 0){
+					sleep();
+				}
+				return CustomAST.create(((ASTLeaf) asts.get(0)).token.value);
+			}), "S");
+
+	@org.junit.Test
+	public void lrParser() throws Exception {
+		ReductionProfiler profiler = new ReductionProfiler(parsers.grammar, 5);
+		LRParser parser = new LRParser(parsers.grammar, parsers.lexer(INPUT), parsers.table);
+		parser.setProfiler(profiler);
+		assertEquals("sum", parser.parse().toString());
+		check(profiler);
+	}
+
+	@org.junit.Test
+	public void llParser() throws Exception {
+		ReductionProfiler profiler = new ReductionProfiler(parsers.grammar, 5);
+		LLParser parser = new LLParser(parsers.lexer(INPUT), LLParserTable.fromGrammar(parsers.grammar, 1));
+		parser.setProfiler(profiler);
+		assertEquals("sum", parser.parse().toString());
+		check(profiler);
+	}
+
+	@org.junit.Test
+	public void disabled() throws Exception {
+		LRParser parser = new LRParser(parsers.grammar, parsers.lexer(INPUT), parsers.table);
+		ReductionProfiler profiler = new ReductionProfiler(parsers.grammar);
+		parser.setProfiler(profiler);
+		parser.setProfiler(null);
+		parser.parse();
+		assertEquals(0, profiler.getCount(production("E", "N").id));
+		try {
+			new ReductionProfiler(parsers.grammar, 0);
+			assertTrue("The sample interval has to be positive", false);
+		} catch (IllegalArgumentException exception){
+		}
+	}
+
+	private void check(ReductionProfiler profiler){
+		Production number = production("E", "N");
+		Production braces = production("E", "L", "E", "R");
+		Production plus = production("T", "P", "E", "T");
+		assertEquals(10, profiler.getCount(number.id));
+		assertEquals(10, profiler.getCreatedNodes(number.id));
+		assertEquals(9, profiler.getCount(plus.id));
+		assertEquals(9, profiler.getCreatedNodes(plus.id));
+		assertEquals(1, profiler.getCount(production("S", "E", "T").id));
+		// the action returns one of the reduced ASTs
+		assertEquals(1, profiler.getCount(braces.id));
+		assertEquals(0, profiler.getCreatedNodes(braces.id));
+		// the 2 sampled reductions (and only them) sleep, the total time is extrapolated to all 10 reductions
+		assertTrue(profiler.getTime(number.id) >= 10 * 2000000L);
+		String report = profiler.report();
+		for (Production production : new Production[]{braces, plus}){
+			assertTrue(report, report.contains(production.toString()));
+		}
+		// the slowest production comes first
+		String[] lines = report.split("\n");
+		assertTrue(lines[0].contains("time [ms]") && lines[0].endsWith("production"));
+		assertTrue(lines[1], lines[1].endsWith(number.toString()));
+		assertTrue(lines[1], lines[1].matches(" *[0-9.]+ +10 +[0-9]+ +10  .*"));
+		profiler.clear();
+		assertEquals(0, profiler.getCount(number.id));
+		assertEquals(0, profiler.getTime(number.id));
+		assertEquals(1, profiler.report().split("\n").length);
+	}
+
+	private Production production(String left, String... right){
+		for (Production production : parsers.grammar.getProductions()){
+			if (production.left.name.equals(left) && production.right.size() == right.length){
+				boolean equal = true;
+				for (int i = 0; i < right.length; i++){
+					equal = equal && production.right.get(i).toString().replaceAll("[<>]", "").equals(right[i]);
+				}
+				if (equal){
+					return production;
+				}
+			}
+		}
+		throw new AssertionError("No production " + left);
+	}
+
+	private static void sleep(){
+		try {
+			Thread.sleep(2);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package swp;
+
+import swp.lexer.Token;
+import swp.lexer.automata.AutomatonLexer;
+import swp.lexer.automata.LexerDescriptionParser;
+import swp.lexer.automata.RunScanner;
+import swp.lexer.automata.Table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+public class RunScannerTest {
+
+	private static final String[] CLASSES = {
+			" \t\n\r", // few members, tested word wise
+			"abcdefghijklmnopqrstuvwxyz0123456789_", // tested byte wise
+			"*", // negated: every character besides the star
+			"\n" // negated: every character besides the line break
+	};
+
+	private static final boolean[] NEGATED = {false, false, true, true};
+
+	private static final byte[] ALPHABET = " \t\n\ra_z9*/".getBytes();
+
+	@org.junit.Test
+	public void sameAsNaiveScan() throws Exception {
+		Random random = new Random(42);
+		for (int i = 0; i < CLASSES.length; i++){
+			boolean[] members = members(i);
+			RunScanner scanner = new RunScanner(members);
+			for (int j = 0; j < 200; j++){
+				checkScan(scanner, members, randomInput(random, random.nextInt(40)));
+			}
+		}
+	}
+
+	/**
+	 * A scanner is shared by the lexers of all threads
+	 */
+	@org.junit.Test
+	public void sharedByThreads() throws Exception {
+		boolean[] members = members(0);
+		RunScanner scanner = new RunScanner(members);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 4; i++){
+				Random random = new Random(i);
+				futures.add(executor.submit(() -> {
+					for (int j = 0; j < 2000; j++){
+						checkScan(scanner, members, randomInput(random, 64));
+					}
+				}));
+			}
+			for (Future<?> future : futures){
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * The lexer skips the ignored tokens with the scanners, the locations have to stay the same
+	 */
+	@org.junit.Test
+	public void sameLocationsInLexer() throws Exception {
+		Table table = new LexerDescriptionParser().eval("WS = [\\s]+; ID = [a-z]+; C = /\\*([^*]|\\*[^/])*\\*/");
+		String input = "ab  cd\n\n   ef /* x\n y\n */ gh\t\r\n\n  ij                  \n klm /**/n";
+		int ws = table.terminalSet.stringToType("WS");
+		int comment = table.terminalSet.stringToType("C");
+		List<String> expected = new ArrayList<>();
+		AutomatonLexer lexer = new AutomatonLexer(table, input, new int[0]);
+		Token token;
+		do {
+			token = lexer.next();
+			if (token.type != ws && token.type != comment){
+				expected.add(token.toString());
+			}
+		} while (token.type != 0);
+		List<String> tokens = new ArrayList<>();
+		lexer = new AutomatonLexer(table, input, new int[0], new int[]{ws, comment});
+		do {
+			token = lexer.next();
+			tokens.add(token.toString());
+		} while (token.type != 0);
+		assertEquals(expected, tokens);
+	}
+
+	private static boolean[] members(int classIndex){
+		boolean[] members = new boolean[128];
+		for (int i = 0; i < 128; i++){
+			members[i] = CLASSES[classIndex].indexOf(i) != -1 != NEGATED[classIndex];
+		}
+		return members;
+	}
+
+	private static byte[] randomInput(Random random, int length){
+		byte[] input = new byte[length];
+		for (int i = 0; i < length; i++){
+			// a few bytes above 127 that never belong to a class
+			input[i] = random.nextInt(20) == 0 ? (byte) 0xe4 : ALPHABET[random.nextInt(ALPHABET.length)];
+		}
+		return input;
+	}
+
+	private static void checkScan(RunScanner scanner, boolean[] members, byte[] input){
+		for (int start = 0; start < input.length; start++){
+			int end = start;
+			int newlines = 0;
+			while (end < input.length && input[end] >= 0 && members[input[end]]){
+				if (input[end] == '\n'){
+					newlines++;
+				}
+				end++;
+			}
+			long run = scanner.scan(input, start);
+			assertEquals(end, RunScanner.end(run));
+			assertEquals(newlines, RunScanner.newlines(run));
+		}
+	}
+}